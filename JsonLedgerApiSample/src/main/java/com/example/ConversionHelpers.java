@@ -20,11 +20,17 @@ import com.example.client.ledger.model.JsActiveContract;
 import com.example.client.ledger.model.JsContractEntry;
 import com.example.client.ledger.model.JsContractEntryOneOf;
 import com.example.client.ledger.model.JsInterfaceView;
+import com.example.metrics.JsonConversionEvent;
 import com.example.models.ContractAndId;
 import com.example.models.TemplateId;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class ConversionHelpers {
 
@@ -43,13 +49,72 @@ public class ConversionHelpers {
             JsonEncoder<U> encoder,
             JsonDecoder<V> decoder
     ) {
+        JsonConversionEvent event = new JsonConversionEvent();
+        event.begin();
         String json = "";
         try {
             json = encoder.encode(payload);
         } catch (IOException ex) {
             throw new IllegalArgumentException("Cannot encode " + payload.toString(), ex);
         }
-        return convertFromJson(json, decoder);
+        V converted = convertFromJson(json, decoder);
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceType = payload.getClass();
+            event.jsonLength = json.length();
+            event.commit();
+        }
+        return converted;
+    }
+
+    /**
+     * Decode a value that the Ledger API client has already parsed into a generic JSON tree,
+     * i.e., a payload typed as {@code Object} in the OpenAPI models.
+     * <p>
+     * The codegen decoders only read JSON text, so the tree is written out once. This is done directly from the
+     * maps, lists, and primitives of the tree, which avoids the reflective serialization of {@link #convertViaJson}.
+     */
+    public static <T> T convertFromJsonTree(
+            Object tree,
+            JsonDecoder<T> decoder) {
+        StringWriter json = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(json)) {
+            writer.setSerializeNulls(false);
+            writeJsonTree(writer, tree);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Cannot encode " + tree, ex);
+        }
+        return convertFromJson(json.toString(), decoder);
+    }
+
+    private static void writeJsonTree(JsonWriter writer, Object tree) throws IOException {
+        if (tree == null) {
+            writer.nullValue();
+        } else if (tree instanceof String s) {
+            writer.value(s);
+        } else if (tree instanceof Boolean b) {
+            writer.value(b);
+        } else if (tree instanceof Number n) {
+            writer.value(n);
+        } else if (tree instanceof Map<?, ?> map) {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writer.name(String.valueOf(entry.getKey()));
+                writeJsonTree(writer, entry.getValue());
+            }
+            writer.endObject();
+        } else if (tree instanceof Collection<?> collection) {
+            writer.beginArray();
+            for (Object element : collection) {
+                writeJsonTree(writer, element);
+            }
+            writer.endArray();
+        } else if (tree instanceof JsonElement element) {
+            com.example.client.ledger.invoker.JSON.getGson().toJson(element, writer);
+        } else {
+            // not a generic JSON tree, fall back to serializing it using its type adapter
+            com.example.client.ledger.invoker.JSON.getGson().toJson(tree, tree.getClass(), writer);
+        }
     }
 
     public static <T extends DamlRecord<T>> ContractAndId<T> fromInterface(
@@ -70,7 +135,7 @@ public class ConversionHelpers {
         T record = interfaceViews
                 .stream()
                 .filter(v -> interfaceId.matchesModuleAndTypeName(v.getInterfaceId()))
-                .map(v -> convertViaJson(v.getViewValue(), com.example.client.ledger.invoker.JSON.getGson()::toJson, decoder))
+                .map(v -> convertFromJsonTree(v.getViewValue(), decoder))
                 .findFirst()
                 .orElseThrow();
         return new ContractAndId<>(instanceContractId, record);
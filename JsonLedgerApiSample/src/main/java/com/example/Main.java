@@ -17,26 +17,42 @@ package com.example;
 
 import com.example.access.ExternalParty;
 import com.example.client.ledger.invoker.JSON;
+import com.example.client.ledger.model.Completion1;
 import com.example.client.ledger.model.CompletionStreamResponse;
 import com.example.client.ledger.model.JsGetUpdatesResponse;
 import com.example.client.ledger.model.Status;
+import com.example.metrics.ApiMetrics;
+import com.example.metrics.JmxMetricsRegistry;
+import com.example.metrics.TextExpositionRegistry;
 import com.example.models.ContractAndId;
+import com.example.recording.HttpRecorder;
+import com.example.services.ApiClientInterceptors;
 import com.example.services.CommandCompletionTracker;
 import com.example.services.Ledger;
+import com.example.services.TransferListener;
 import com.example.services.Wallet;
 import com.example.signing.Keys;
 import com.example.signing.SignatureProvider;
+import com.example.store.HoldingReconciliation;
+import com.example.store.IngestionPipeline;
+import com.example.store.IngestionService;
 import com.example.store.IntegrationStore;
+import com.example.store.PrefetchingUpdateSource;
+import com.example.store.UpdateArchive;
 import com.example.testdata.TestFiles;
 import com.example.testdata.TestIdentities;
 import com.example.testdata.WorkflowInfo;
+import com.example.tracing.OtlpJsonExporter;
+import com.example.tracing.TransferTracer;
 import com.google.gson.Gson;
 import splice.api.token.holdingv1.HoldingView;
 import splice.api.token.holdingv1.InstrumentId;
 
 import java.math.BigDecimal;
+import java.net.URI;
 import java.nio.file.Path;
 import java.security.KeyPair;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -46,6 +62,18 @@ public class Main {
 
     private static final BigDecimal estimatedFeesMultiplier = new BigDecimal("0.1");
 
+    // Catching up with more offsets than this fetches offset ranges concurrently, see IngestionPipeline.backfill
+    private static final long BACKFILL_MIN_LAG = 100_000;
+    private static final long BACKFILL_RANGE_SIZE = 20_000;
+    private static final int BACKFILL_FETCH_THREADS = 4;
+
+    private static final Duration INGESTION_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    // While far behind the ledger end, ingest in catch-up mode and request larger pages
+    private static final IngestionService.CatchUpThresholds CATCH_UP_THRESHOLDS = new IngestionService.CatchUpThresholds(10_000, 1_000);
+    private static final PrefetchingUpdateSource.PageSizeBounds CATCH_UP_PAGE_SIZE_BOUNDS =
+            new PrefetchingUpdateSource.PageSizeBounds(100, 5_000, Duration.ofSeconds(2), 32 * 1024 * 1024);
+
     public static void main(String[] args) {
         try {
             /*
@@ -68,6 +96,26 @@ public class Main {
             SignatureProvider signatureProvider = Ledger::verifyAndSign;
             // SignatureProvider signatureProvider = Ledger::printAndSign;
 
+            // Record the traffic of all API clients for replay with a ReplayServer if requested via --record-http=<file>.
+            // The recorder must be added before the services are created.
+            Optional<Path> recordingFile = Arrays.stream(args)
+                    .filter(arg -> arg.startsWith("--record-http="))
+                    .map(arg -> Path.of(arg.substring("--record-http=".length())))
+                    .findFirst();
+            Optional<HttpRecorder> recorder = Optional.empty();
+            if (recordingFile.isPresent()) {
+                recorder = Optional.of(new HttpRecorder(recordingFile.get()));
+                ApiClientInterceptors.add(recorder.get());
+                System.out.println("Recording HTTP traffic to '" + recordingFile.get() + "'");
+            }
+
+            // Measure the requests of all API clients if requested via --api-metrics, exposed via JMX and printed at the end
+            Optional<TextExpositionRegistry> apiMetrics = Optional.empty();
+            if (Arrays.asList(args).contains("--api-metrics")) {
+                apiMetrics = Optional.of(new TextExpositionRegistry());
+                ApiMetrics.install(apiMetrics.get(), new JmxMetricsRegistry());
+            }
+
             Wallet wallet = new Wallet(
                     env.managingUser(),
                     env.scanApiUrl(),
@@ -78,6 +126,14 @@ public class Main {
                     signatureProvider
             );
 
+            // Trace the phases of each transfer if requested via --trace=<file or OTLP/HTTP collector URL>
+            Optional<TransferTracer> tracer = Arrays.stream(args)
+                    .filter(arg -> arg.startsWith("--trace="))
+                    .map(arg -> arg.substring("--trace=".length()))
+                    .findFirst()
+                    .map(Main::createTracer);
+            tracer.ifPresent(t -> wallet.transferListener = t);
+
             printStep("Confirm API connectivity");
             wallet.confirmConnectivity();
 
@@ -93,7 +149,18 @@ public class Main {
             // In production, we would just start with offset 0 and ingest the full tx history.
             Long testStartOffset = wallet.getLedgerEnd();
             IntegrationStore store = new IntegrationStore(ids.treasury().partyId(), testStartOffset);
-            ingestAndParseTransactions(wallet, store);
+            PrefetchingUpdateSource updateSource = new PrefetchingUpdateSource(holdingTransactionPages(wallet, store.getTreasuryParty()),
+                    PrefetchingUpdateSource.PageSizeBounds.DEFAULT);
+            IngestionPipeline pipeline = new IngestionPipeline(store, Runtime.getRuntime().availableProcessors(), 1000);
+            tracer.ifPresent(t -> t.traceIngestion(store));
+            // Ingest the treasury's updates with a background service, which each step below runs up to the ledger end
+            backfillUpdates(wallet, store, pipeline);
+            IngestionService.ModeListener pageSizes = mode -> updateSource.setPageSizeBounds(mode == IngestionService.Mode.CATCH_UP
+                    ? CATCH_UP_PAGE_SIZE_BOUNDS
+                    : PrefetchingUpdateSource.PageSizeBounds.DEFAULT);
+            IngestionService ingestionService = new IngestionService(store, pipeline, updateSource, wallet::getLedgerEnd,
+                    INGESTION_POLL_INTERVAL, CATCH_UP_THRESHOLDS, pageSizes);
+            ingestToLedgerEnd(wallet, ingestionService);
             System.out.println("State of local store after initial ingestion");
             System.out.println(store);
 
@@ -142,6 +209,7 @@ public class Main {
                     wallet,
                     ids,
                     store,
+                    ingestionService,
                     ids.alice().partyId(),
                     new BigDecimal(20),
                     ids.cantonCoinId(),
@@ -150,11 +218,26 @@ public class Main {
             printStep("Success!");
             printTotalHoldings(wallet, ids.all(), ids.cantonCoinId());
 
-            // Update IntegrationStore -- this would usually happen in a background process
-            ingestAndParseTransactions(wallet, store);
+            // Update IntegrationStore -- this would usually be left running in the background
+            ingestToLedgerEnd(wallet, ingestionService);
             printStep("State of local store after final transfer");
             System.out.println(store);
 
+            printStep("Reconcile local store against the ledger");
+            reconcileHoldings(wallet, store);
+
+            // Archive the treasury's updates for offline replay if requested via --archive-updates=<file>
+            printStep("Archive treasury updates");
+            Optional<Path> archiveFile = Arrays.stream(args)
+                    .filter(arg -> arg.startsWith("--archive-updates="))
+                    .map(arg -> Path.of(arg.substring("--archive-updates=".length())))
+                    .findFirst();
+            if (archiveFile.isPresent()) {
+                archiveUpdates(wallet, store.getTreasuryParty(), testStartOffset, archiveFile.get());
+            } else {
+                System.out.println("Skipping archiving of updates, pass --archive-updates=<file> to enable");
+            }
+
             // Write out test data for use in automated integration tests if requested via --write-test-data
             printStep("Write integration test data");
             if (Arrays.asList(args).contains("--write-test-data")) {
@@ -167,19 +250,77 @@ public class Main {
                 System.out.println("Skipping writing integration test data, pass --write-test-data to enable");
             }
 
+            printStep("API metrics");
+            if (apiMetrics.isPresent()) {
+                System.out.print(apiMetrics.get());
+            } else {
+                System.out.println("Skipping API metrics, pass --api-metrics to enable");
+            }
+
+            if (recorder.isPresent()) {
+                recorder.get().close();
+                System.out.println("Recorded " + recorder.get().getNumRecorded() + " HTTP exchanges to '" + recordingFile.get() + "'");
+            }
+            ingestionService.close();
+            pipeline.close();
+            updateSource.close();
+            if (tracer.isPresent()) {
+                tracer.get().close();
+            }
             System.exit(0);
         } catch (Exception ex) {
             handleException(ex);
         }
     }
 
-    private static void ingestAndParseTransactions(Wallet wallet, IntegrationStore store) {
+    /**
+     * Catch up with a large backlog of updates by fetching offset ranges concurrently.
+     */
+    private static void backfillUpdates(Wallet wallet, IntegrationStore store, IngestionPipeline pipeline) {
         long lastIngestedOffset = store.getLastIngestedOffset();
         assert lastIngestedOffset >= 0;
         try {
-            List<JsGetUpdatesResponse> updates = wallet.queryForHoldingTransactions(store.getTreasuryParty(), lastIngestedOffset);
-            for (JsGetUpdatesResponse updateResponse : updates) {
-                store.ingestUpdate(updateResponse.getUpdate());
+            long ledgerEnd = wallet.getLedgerEnd();
+            if (ledgerEnd - lastIngestedOffset > BACKFILL_MIN_LAG) {
+                IngestionPipeline.RangeUpdateSource ranges = (beginAfterOffset, endInclusive) ->
+                        wallet.queryForHoldingTransactions(store.getTreasuryParty(), beginAfterOffset, endInclusive);
+                long numBackfilled = pipeline.backfill(ranges, ledgerEnd, BACKFILL_RANGE_SIZE, BACKFILL_FETCH_THREADS, 2 * BACKFILL_FETCH_THREADS);
+                System.out.println("Backfilled " + numBackfilled + " updates up to offset " + ledgerEnd);
+            }
+        } catch (Exception ex) {
+            handleException(ex);
+        }
+    }
+
+    /**
+     * Resume the ingestion service and wait until it has ingested all updates up to the current ledger end.
+     */
+    private static void ingestToLedgerEnd(Wallet wallet, IngestionService ingestionService) {
+        try {
+            ingestionService.start();
+            ingestionService.stopAt(wallet.getLedgerEnd());
+            IngestionService.Metrics metrics = ingestionService.getMetrics();
+            if (metrics.failure() != null) {
+                throw new IllegalStateException("Ingestion failed after offset " + metrics.lastIngestedOffset(), metrics.failure());
+            }
+        } catch (Exception ex) {
+            handleException(ex);
+        }
+    }
+
+    private static void reconcileHoldings(Wallet wallet, IntegrationStore store) {
+        HoldingReconciliation.LedgerHoldingSource ledgerHoldings = (activeAtOffset, instrumentIds) ->
+                wallet.queryForHoldingsAt(store.getTreasuryParty(), activeAtOffset).stream()
+                        .filter(h -> instrumentIds == null || instrumentIds.contains(h.record().instrumentId))
+                        .toList();
+        try {
+            HoldingReconciliation.Result result = HoldingReconciliation.reconcile(store, ledgerHoldings);
+            if (result.matches()) {
+                System.out.println("Holdings in local store match the ledger at offset " + result.offset());
+            } else {
+                System.out.println("Holdings in local store do not match the ledger at offset " + result.offset() + " for instruments " + result.mismatchingInstruments());
+                System.out.println("- only in local store: " + result.onlyInStore().keySet());
+                System.out.println("- only on ledger: " + result.onlyOnLedger().keySet());
             }
         } catch (Exception ex) {
             handleException(ex);
@@ -379,7 +520,7 @@ public class Main {
         }
 
         System.out.printf("Awaiting completion of transfer from %s to %s (Command ID %s)%n%n", senderPartyId, receiverPartyId, commandId);
-        expectSuccessfulCompletion(wallet, senderPartyId, commandId, offsetBeforeTransfer);
+        awaitTransferCompletion(wallet, senderPartyId, commandId, offsetBeforeTransfer);
 
         System.out.println("Transfer complete");
     }
@@ -394,6 +535,7 @@ public class Main {
             Wallet wallet,
             TestIdentities ids,
             IntegrationStore store,
+            IngestionService ingestionService,
             String receiverPartyId,
             BigDecimal amount,
             InstrumentId instrumentId,
@@ -401,7 +543,7 @@ public class Main {
         printStep("Transfer " + amount + " from treasury (" + ids.treasury().partyId() + ") to " + receiverPartyId);
 
         // Update integration store to ensure we have the latest holdings
-        ingestAndParseTransactions(wallet, store);
+        ingestToLedgerEnd(wallet, ingestionService);
         List<String> holdings = store.selectHoldingsForWithdrawal(instrumentId, amount).orElseGet(
                 () -> {
                     throw new RuntimeException("Insufficient holdings in treasury to transfer " + amount + " units");
@@ -418,12 +560,28 @@ public class Main {
         }
 
         System.out.printf("Awaiting completion of transfer from %s to %s (Command ID %s)%n%n", ids.treasury().partyId(), receiverPartyId, commandId);
-        expectSuccessfulCompletion(wallet, ids.treasury().partyId(), commandId, offsetBeforeTransfer);
+        awaitTransferCompletion(wallet, ids.treasury().partyId(), commandId, offsetBeforeTransfer);
 
         System.out.println("Transfer complete");
     }
 
-    private static void expectSuccessfulCompletion(Wallet wallet, String partyId, String commandId, Long startOffset) throws Exception {
+    /**
+     * Expect the successful completion of a transfer, and report it to the transfer listener of the wallet.
+     */
+    private static void awaitTransferCompletion(Wallet wallet, String partyId, String commandId, Long startOffset) throws Exception {
+        long startNanos = System.nanoTime();
+        Completion1 completion;
+        try {
+            completion = expectSuccessfulCompletion(wallet, partyId, commandId, startOffset);
+        } catch (Exception ex) {
+            wallet.transferListener.phaseEnded(commandId, TransferListener.Phase.COMPLETION, startNanos, System.nanoTime(), ex);
+            throw ex;
+        }
+        wallet.transferListener.phaseEnded(commandId, TransferListener.Phase.COMPLETION, startNanos, System.nanoTime(), null);
+        wallet.transferListener.committed(commandId, completion.getUpdateId());
+    }
+
+    private static Completion1 expectSuccessfulCompletion(Wallet wallet, String partyId, String commandId, Long startOffset) throws Exception {
         CommandCompletionTracker completionTracker = new CommandCompletionTracker(startOffset);
         waitFor(2000, 10, () -> {
             List<CompletionStreamResponse> completions = wallet.checkForCommandCompletion(List.of(partyId), completionTracker.nextOffset);
@@ -442,6 +600,37 @@ public class Main {
             throw new IllegalStateException("Command with ID %s failed with status %d, reason: %s%n"
                     .formatted(commandId, status.getCode(), status.getMessage()));
         }
+        return completionTracker.completions.get(commandId);
+    }
+
+    private static TransferTracer createTracer(String target) {
+        try {
+            TransferTracer tracer = target.startsWith("http://") || target.startsWith("https://")
+                    ? new TransferTracer(OtlpJsonExporter.toCollector(URI.create(target), "JsonLedgerApiSample"))
+                    : new TransferTracer(OtlpJsonExporter.toFile(Path.of(target), "JsonLedgerApiSample"));
+            System.out.println("Tracing transfers to '" + target + "'");
+            return tracer;
+        } catch (java.io.IOException ex) {
+            throw new IllegalArgumentException("Cannot trace to " + target, ex);
+        }
+    }
+
+    private static PrefetchingUpdateSource.PagedUpdateSource holdingTransactionPages(Wallet wallet, String treasuryParty) {
+        return (beginAfterOffset, limit) -> {
+            Ledger.UpdatesPage page = wallet.queryForHoldingTransactionsPage(treasuryParty, beginAfterOffset, limit);
+            return new PrefetchingUpdateSource.Page(page.updates(), page.responseBytes());
+        };
+    }
+
+    private static void archiveUpdates(Wallet wallet, String treasuryParty, long startOffset, Path archiveFile) {
+        PrefetchingUpdateSource.PagedUpdateSource pages = holdingTransactionPages(wallet, treasuryParty);
+        try (PrefetchingUpdateSource source = new PrefetchingUpdateSource(pages, PrefetchingUpdateSource.PageSizeBounds.DEFAULT);
+             UpdateArchive.Writer writer = UpdateArchive.Writer.open(archiveFile, startOffset)) {
+            long numArchived = writer.appendFrom(source);
+            System.out.println("Archived " + numArchived + " updates up to offset " + writer.getLastOffset() + " to '" + archiveFile + "'");
+        } catch (Exception ex) {
+            handleException(ex);
+        }
     }
 
     private static void handleException(Exception ex) {
@@ -0,0 +1,114 @@
+package com.example.loadtest;
+
+import com.example.client.ledger.model.Completion1;
+import com.example.client.ledger.model.CompletionResponseOneOf;
+import com.example.client.ledger.model.CompletionResponseOneOf2;
+import com.example.client.ledger.model.CompletionStreamResponse;
+import com.example.services.Wallet;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls the completions of the commands of a set of parties on a single thread, and completes the futures of the
+ * commands that are awaited, so that concurrent senders do not each poll the completions.
+ */
+class CompletionWaiter implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(CompletionWaiter.class.getName());
+
+    private final Wallet wallet;
+    private final List<String> parties;
+    private final Duration pollInterval;
+    private final Map<String, CompletableFuture<Completion1>> awaited = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean closed;
+    private long nextOffset;
+
+    /**
+     * @param startOffset the offset after which the completions of the awaited commands are reported
+     */
+    CompletionWaiter(Wallet wallet, List<String> parties, long startOffset, Duration pollInterval) {
+        this.wallet = wallet;
+        this.parties = List.copyOf(parties);
+        this.pollInterval = pollInterval;
+        this.nextOffset = startOffset;
+        this.thread = new Thread(this::run, "completion-waiter");
+        this.thread.setDaemon(true);
+        if (!this.parties.isEmpty()) {
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Await the completion of a command, which must be submitted by one of the parties after this call.
+     */
+    CompletableFuture<Completion1> await(String commandId) {
+        if (parties.isEmpty()) {
+            throw new IllegalStateException("No parties to poll the completions of");
+        }
+        CompletableFuture<Completion1> completion = new CompletableFuture<>();
+        if (awaited.putIfAbsent(commandId, completion) != null) {
+            throw new IllegalArgumentException("Already awaiting the completion of " + commandId);
+        }
+        return completion;
+    }
+
+    /**
+     * Stop awaiting the completion of a command, e.g., because its submission failed.
+     */
+    void forget(String commandId) {
+        awaited.remove(commandId);
+    }
+
+    private void run() {
+        while (!closed) {
+            if (!awaited.isEmpty()) {
+                try {
+                    poll();
+                } catch (Exception ex) {
+                    log.log(Level.WARNING, "Failed to poll completions after offset " + nextOffset, ex);
+                }
+            }
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void poll() throws Exception {
+        for (CompletionStreamResponse response : wallet.checkForCommandCompletion(parties, nextOffset)) {
+            Object item = response.getCompletionResponse().getActualInstance();
+            if (item instanceof CompletionResponseOneOf completionItem) {
+                Completion1 completion = completionItem.getCompletion().getValue();
+                // resume after the completion, also if no checkpoint follows it in this page
+                if (completion.getOffset() != null) {
+                    nextOffset = Math.max(nextOffset, completion.getOffset());
+                }
+                CompletableFuture<Completion1> future = awaited.remove(completion.getCommandId());
+                if (future != null) {
+                    future.complete(completion);
+                }
+            } else if (item instanceof CompletionResponseOneOf2 checkpoint) {
+                nextOffset = Math.max(nextOffset, checkpoint.getOffsetCheckpoint().getValue().getOffset());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        thread.interrupt();
+        if (thread.isAlive()) {
+            thread.join();
+        }
+        awaited.values().forEach(future -> future.cancel(false));
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.loadtest;
+
+import com.example.Env;
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.access.LedgerUser;
+import com.example.client.ledger.model.Completion1;
+import com.example.client.ledger.model.Status;
+import com.example.models.ContractAndId;
+import com.example.services.Ledger;
+import com.example.services.TransferListener;
+import com.example.services.Wallet;
+import com.example.signing.Keys;
+import com.example.simulator.LedgerSimulator;
+import com.example.simulator.SimulatedLedger;
+import com.example.testdata.TestIdentities;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.holdingv1.InstrumentId;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives concurrent transfers through a {@link Wallet} at a target rate to find the saturation point of a deployment.
+ * <p>
+ * Each of the senders repeatedly transfers an amount to the receiver with {@link Wallet#transferHoldings}, using an
+ * input holding of its party that no other sender currently uses. Parties with a key pair submit externally signed
+ * transactions and wait for their completion, the other parties submit and wait for their transactions.
+ * <p>
+ * The transfers are started open-loop: the senders take turns to start a transfer every {@code 1 / targetRate}
+ * seconds, independently of how long the previous transfers took. A sender that falls behind starts its next transfer
+ * immediately, and the time it lagged behind counts towards the end-to-end latency, as reported by the
+ * {@link LoadReport}.
+ */
+public class LoadDriver {
+
+    private static final Logger log = Logger.getLogger(LoadDriver.class.getName());
+
+    /**
+     * A party that sends transfers, with the key pair of an external party, or without for a local party.
+     */
+    public record Sender(String partyId, Optional<KeyPair> keyPair) {
+    }
+
+    /**
+     * @param numSenders        the number of concurrent senders, which use the sender parties in turn
+     * @param targetRate        the number of transfers started per second across all senders
+     * @param duration          the time during which transfers are started
+     * @param amount            the amount of each transfer
+     * @param completionTimeout the time to wait for the completion of an externally signed transfer
+     */
+    public record Options(int numSenders, double targetRate, Duration duration, BigDecimal amount, Duration completionTimeout) {
+        public Options {
+            if (numSenders < 1) {
+                throw new IllegalArgumentException("numSenders must be positive, got " + numSenders);
+            }
+            if (!(targetRate > 0) || Double.isInfinite(targetRate)) {
+                throw new IllegalArgumentException("targetRate must be positive and finite, got " + targetRate);
+            }
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("duration must be positive, got " + duration);
+            }
+            if (amount.signum() <= 0) {
+                throw new IllegalArgumentException("amount must be positive, got " + amount);
+            }
+        }
+    }
+
+    private final Wallet wallet;
+    private final String synchronizerId;
+    private final InstrumentId instrumentId;
+    private final String receiverPartyId;
+    private final List<Sender> senders;
+    private final Options options;
+    private final Set<String> usedHoldings = ConcurrentHashMap.newKeySet();
+
+    public LoadDriver(Wallet wallet, String synchronizerId, InstrumentId instrumentId, String receiverPartyId, List<Sender> senders, Options options) {
+        if (senders.isEmpty()) {
+            throw new IllegalArgumentException("At least one sender is required");
+        }
+        this.wallet = wallet;
+        this.synchronizerId = synchronizerId;
+        this.instrumentId = instrumentId;
+        this.receiverPartyId = receiverPartyId;
+        this.senders = List.copyOf(senders);
+        this.options = options;
+    }
+
+    /**
+     * Run the senders for the configured duration, and wait until their last transfers ended.
+     */
+    public LoadReport run() throws Exception {
+        LoadReport report = new LoadReport();
+        List<String> externalParties = senders.stream()
+                .filter(sender -> sender.keyPair().isPresent())
+                .map(Sender::partyId)
+                .distinct()
+                .toList();
+        ExecutorService executor = Executors.newFixedThreadPool(options.numSenders(), runnable -> {
+            Thread thread = new Thread(runnable, "load-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TransferListener previousListener = wallet.transferListener;
+        wallet.transferListener = TransferListener.combine(previousListener, report);
+        try (CompletionWaiter completions = new CompletionWaiter(wallet, externalParties, wallet.getLedgerEnd(), Duration.ofMillis(50))) {
+            long intervalNanos = (long) (1e9 / options.targetRate());
+            report.start();
+            long startNanos = System.nanoTime();
+            long endNanos = startNanos + options.duration().toNanos();
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < options.numSenders(); i++) {
+                int index = i;
+                Sender sender = senders.get(i % senders.size());
+                running.add(executor.submit(() -> {
+                    for (long round = 0; ; round++) {
+                        long scheduledStartNanos = startNanos + (round * options.numSenders() + index) * intervalNanos;
+                        if (scheduledStartNanos >= endNanos) {
+                            return null;
+                        }
+                        long delayNanos = scheduledStartNanos - System.nanoTime();
+                        if (delayNanos > 0) {
+                            LockSupport.parkNanos(delayNanos);
+                        }
+                        transfer(sender, scheduledStartNanos, report, completions);
+                    }
+                }));
+            }
+            for (Future<?> sender : running) {
+                sender.get();
+            }
+            report.stop();
+        } finally {
+            wallet.transferListener = previousListener;
+            executor.shutdownNow();
+        }
+        return report;
+    }
+
+    private void transfer(Sender sender, long scheduledStartNanos, LoadReport report, CompletionWaiter completions) {
+        String commandId = "load-" + UUID.randomUUID();
+        report.transferStarted();
+        Optional<String> holdingCid = Optional.empty();
+        try {
+            long selectStartNanos = System.nanoTime();
+            holdingCid = selectHolding(sender.partyId());
+            report.recordLatency(LoadReport.SELECT_HOLDING, System.nanoTime() - selectStartNanos);
+            if (holdingCid.isEmpty()) {
+                report.transferFailed("no unused holding of at least " + options.amount());
+                return;
+            }
+
+            CompletableFuture<Completion1> completion = sender.keyPair().isPresent() ? completions.await(commandId) : null;
+            wallet.transferHoldings(synchronizerId, commandId, sender.partyId(), sender.keyPair(), receiverPartyId,
+                    instrumentId, Optional.of("load-test"), new HashMap<>(), options.amount(), List.of(holdingCid.get()), false);
+            if (completion != null) {
+                long completionStartNanos = System.nanoTime();
+                Completion1 completed;
+                try {
+                    completed = completion.get(options.completionTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ex) {
+                    wallet.transferListener.phaseEnded(commandId, TransferListener.Phase.COMPLETION, completionStartNanos, System.nanoTime(), ex);
+                    report.transferFailed("completion timeout");
+                    return;
+                }
+                Status status = completed.getStatus();
+                if (status != null && status.getCode() != 0) {
+                    IllegalStateException failure = new IllegalStateException("Completed with status " + status.getCode() + ": " + status.getMessage());
+                    wallet.transferListener.phaseEnded(commandId, TransferListener.Phase.COMPLETION, completionStartNanos, System.nanoTime(), failure);
+                    report.transferFailed("completed with status " + status.getCode());
+                    return;
+                }
+                wallet.transferListener.phaseEnded(commandId, TransferListener.Phase.COMPLETION, completionStartNanos, System.nanoTime(), null);
+                wallet.transferListener.committed(commandId, completed.getUpdateId());
+            }
+            report.transferSucceeded(scheduledStartNanos, System.nanoTime());
+        } catch (Exception ex) {
+            log.log(Level.FINE, "Transfer " + commandId + " of " + sender.partyId() + " failed", ex);
+            report.transferFailed(describe(ex));
+        } finally {
+            completions.forget(commandId);
+            holdingCid.ifPresent(usedHoldings::remove);
+        }
+    }
+
+    /**
+     * Reserve a holding of the party that is large enough for a transfer and not used by another sender.
+     */
+    private Optional<String> selectHolding(String partyId) throws Exception {
+        for (ContractAndId<HoldingView> holding : wallet.queryForHoldings(partyId, instrumentId)) {
+            if (holding.record().amount.compareTo(options.amount()) >= 0 && usedHoldings.add(holding.contractId())) {
+                return Optional.of(holding.contractId());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static String describe(Throwable ex) {
+        if (ex instanceof ExecutionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        if (ex instanceof com.example.client.ledger.invoker.ApiException apiException) {
+            return "ledger API " + apiException.getCode();
+        }
+        if (ex instanceof com.example.client.transferInstruction.invoker.ApiException apiException) {
+            return "transfer instruction API " + apiException.getCode();
+        }
+        return ex.getClass().getSimpleName();
+    }
+
+    /**
+     * Add sender parties with holdings to a simulated ledger, every other one an external party with a fresh key pair.
+     */
+    public static List<Sender> addSimulatedSenders(SimulatedLedger ledger, int numSenders, int holdingsPerSender, BigDecimal holdingAmount) throws Exception {
+        List<Sender> senders = new ArrayList<>();
+        for (int i = 0; i < numSenders; i++) {
+            String partyId = "sender-" + i + "::simulated";
+            Optional<KeyPair> keyPair = Optional.empty();
+            if (i % 2 == 1) {
+                keyPair = Optional.of(Keys.generate());
+                ledger.addParty(partyId, keyPair.get().getPublic());
+            } else {
+                ledger.addParty(partyId);
+            }
+            for (int j = 0; j < holdingsPerSender; j++) {
+                ledger.mint(partyId, holdingAmount);
+            }
+            senders.add(new Sender(partyId, keyPair));
+        }
+        return senders;
+    }
+
+    /**
+     * Run the load driver against the deployment configured in the environment, as for {@link com.example.Main}, or
+     * against an in-process {@link LedgerSimulator}.
+     * <p>
+     * Usage: {@code LoadDriver [--simulator] [--senders=<n>] [--rate=<transfers/s>] [--duration-seconds=<s>]
+     * [--amount=<amount>] [--completion-timeout-seconds=<s>] [--histogram-log=<file>]}
+     * <p>
+     * Against a deployment, the exchange party (locally signed) and the test party (externally signed) of the
+     * identities cache written by {@link com.example.Main} send transfers to the treasury.
+     */
+    public static void main(String[] args) {
+        try {
+            boolean simulator = false;
+            int numSenders = 8;
+            double targetRate = 10;
+            Duration duration = Duration.ofSeconds(60);
+            BigDecimal amount = BigDecimal.ONE;
+            Duration completionTimeout = Duration.ofSeconds(60);
+            Optional<Path> histogramLog = Optional.empty();
+            for (String arg : args) {
+                if (arg.equals("--simulator")) {
+                    simulator = true;
+                } else if (arg.startsWith("--senders=")) {
+                    numSenders = Integer.parseInt(arg.substring("--senders=".length()));
+                } else if (arg.startsWith("--rate=")) {
+                    targetRate = Double.parseDouble(arg.substring("--rate=".length()));
+                } else if (arg.startsWith("--duration-seconds=")) {
+                    duration = Duration.ofSeconds(Long.parseLong(arg.substring("--duration-seconds=".length())));
+                } else if (arg.startsWith("--amount=")) {
+                    amount = new BigDecimal(arg.substring("--amount=".length()));
+                } else if (arg.startsWith("--completion-timeout-seconds=")) {
+                    completionTimeout = Duration.ofSeconds(Long.parseLong(arg.substring("--completion-timeout-seconds=".length())));
+                } else if (arg.startsWith("--histogram-log=")) {
+                    histogramLog = Optional.of(Path.of(arg.substring("--histogram-log=".length())));
+                } else {
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            }
+            Options options = new Options(numSenders, targetRate, duration, amount, completionTimeout);
+
+            LoadReport report;
+            if (simulator) {
+                SimulatedLedger ledger = new SimulatedLedger("DSO::simulated", "global-domain::simulated");
+                String treasury = "treasury::simulated";
+                ledger.addParty(treasury);
+                ledger.createTransferPreapproval(treasury, ledger.getDsoParty());
+                List<Sender> senders = addSimulatedSenders(ledger, numSenders, 1, amount.multiply(BigDecimal.valueOf(1_000_000)));
+                try (LedgerSimulator server = LedgerSimulator.start(ledger)) {
+                    Wallet wallet = new Wallet(new LedgerUser("load-driver", "", "simulated-token"), server.getUrl(),
+                            server.getUrl(), server.getUrl(), server.getValidatorUrl(), server.getValidatorUrl(), Ledger::verifyAndSign);
+                    InstrumentId instrumentId = new InstrumentId(ledger.getDsoParty(), SimulatedLedger.INSTRUMENT_ID);
+                    report = new LoadDriver(wallet, ledger.getSynchronizerId(), instrumentId, treasury, senders, options).run();
+                }
+            } else {
+                Env env = Env.validate();
+                TestIdentities ids = ExtendedJson.gson.fromJson(Files.readString(Path.of(env.identitiesCacheFile())), TestIdentities.class);
+                Wallet wallet = new Wallet(env.managingUser(), env.scanApiUrl(), env.tokenStandardUrl(), env.ledgerApiUrl(),
+                        env.validatorApiUrl(), env.scanProxyApiUrl(), Ledger::verifyAndSign);
+                List<Sender> senders = List.of(
+                        new Sender(ids.exchangePartyId(), Optional.empty()),
+                        new Sender(ids.alice().partyId(), Optional.of(ids.alice().keyPair())));
+                report = new LoadDriver(wallet, ids.synchronizerId(), ids.cantonCoinId(), ids.treasury().partyId(), senders, options).run();
+            }
+
+            report.print(System.out);
+            report.printPercentileDistribution(LoadReport.END_TO_END, System.out);
+            if (histogramLog.isPresent()) {
+                report.writeHistogramLog(histogramLog.get());
+                System.out.println("Wrote latency histograms to '" + histogramLog.get() + "'");
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.loadtest;
+
+import com.example.services.TransferListener;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The throughput, latencies, and errors of a {@link LoadDriver} run.
+ * <p>
+ * Latencies are recorded in microseconds in an HdrHistogram per phase: the selection of the input holding, the phases
+ * reported by the {@link com.example.services.Wallet} and the completion, and the end-to-end latency of each
+ * successful transfer. The end-to-end latency is measured from the time at which the transfer was scheduled to start
+ * rather than when it actually started, so that it includes the time a saturated sender lags behind the target rate.
+ */
+public class LoadReport implements TransferListener {
+
+    public static final String SELECT_HOLDING = "select_holding";
+    public static final String END_TO_END = "end_to_end";
+
+    private final Map<String, Histogram> latencies;
+    private final LongAdder numStarted = new LongAdder();
+    private final LongAdder numSucceeded = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private long startMillis;
+    private long startNanos;
+    private long endNanos;
+
+    public LoadReport() {
+        Map<String, Histogram> latencies = new LinkedHashMap<>();
+        latencies.put(SELECT_HOLDING, new ConcurrentHistogram(3));
+        for (Phase phase : Phase.values()) {
+            latencies.put(phaseName(phase), new ConcurrentHistogram(3));
+        }
+        latencies.put(END_TO_END, new ConcurrentHistogram(3));
+        this.latencies = Collections.unmodifiableMap(latencies);
+    }
+
+    static String phaseName(Phase phase) {
+        return phase.name().toLowerCase(Locale.ROOT);
+    }
+
+    void start() {
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+    }
+
+    void stop() {
+        endNanos = System.nanoTime();
+    }
+
+    @Override
+    public void phaseEnded(String commandId, Phase phase, long startNanos, long endNanos, Throwable error) {
+        if (error == null) {
+            recordLatency(phaseName(phase), endNanos - startNanos);
+        }
+    }
+
+    void recordLatency(String name, long nanos) {
+        latencies.get(name).recordValue(Math.max(0, nanos / 1000));
+    }
+
+    void transferStarted() {
+        numStarted.increment();
+    }
+
+    void transferSucceeded(long scheduledStartNanos, long endNanos) {
+        numSucceeded.increment();
+        recordLatency(END_TO_END, endNanos - scheduledStartNanos);
+    }
+
+    void transferFailed(String error) {
+        errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+    }
+
+    public long getNumStarted() {
+        return numStarted.sum();
+    }
+
+    public long getNumSucceeded() {
+        return numSucceeded.sum();
+    }
+
+    public long getNumFailed() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * The number of failed transfers by error.
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((error, count) -> result.put(error, count.sum()));
+        return result;
+    }
+
+    /**
+     * The latency histograms in microseconds by phase, including {@link #SELECT_HOLDING} and {@link #END_TO_END}.
+     */
+    public Map<String, Histogram> getLatencies() {
+        return latencies;
+    }
+
+    public double getElapsedSeconds() {
+        return (endNanos - startNanos) / 1e9;
+    }
+
+    /**
+     * The number of successful transfers per second.
+     */
+    public double getThroughput() {
+        return getNumSucceeded() / getElapsedSeconds();
+    }
+
+    public double getErrorRate() {
+        long numEnded = getNumSucceeded() + getNumFailed();
+        return numEnded == 0 ? 0 : (double) getNumFailed() / numEnded;
+    }
+
+    /**
+     * Print a summary of the throughput, errors, and latency percentiles of the phases.
+     */
+    public void print(PrintStream out) {
+        out.printf(Locale.ROOT, "Transfers: %d started, %d succeeded, %d failed (%.2f%% errors) in %.1f s, %.1f transfers/s%n",
+                getNumStarted(), getNumSucceeded(), getNumFailed(), 100 * getErrorRate(), getElapsedSeconds(), getThroughput());
+        getErrors().forEach((error, count) -> out.printf(Locale.ROOT, "  %-40s %8d%n", error, count));
+        out.printf(Locale.ROOT, "%-16s %8s %10s %10s %10s %10s %10s%n", "Latency (ms)", "count", "p50", "p90", "p99", "p99.9", "max");
+        latencies.forEach((name, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                out.printf(Locale.ROOT, "%-16s %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(),
+                        histogram.getValueAtPercentile(50) / 1000.0,
+                        histogram.getValueAtPercentile(90) / 1000.0,
+                        histogram.getValueAtPercentile(99) / 1000.0,
+                        histogram.getValueAtPercentile(99.9) / 1000.0,
+                        histogram.getMaxValue() / 1000.0);
+            }
+        });
+    }
+
+    /**
+     * Print the HdrHistogram percentile distribution of a phase in milliseconds.
+     */
+    public void printPercentileDistribution(String name, PrintStream out) {
+        out.println("Percentile distribution of " + name + " latencies in ms:");
+        latencies.get(name).outputPercentileDistribution(out, 1000.0);
+    }
+
+    /**
+     * Write the latency histograms in the HdrHistogram log format, with one histogram per phase tagged with its name,
+     * e.g., to plot or merge the results of several runs with the HdrHistogram tools.
+     */
+    public void writeHistogramLog(Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            HistogramLogWriter writer = new HistogramLogWriter(out);
+            writer.outputComment("Latencies in microseconds of the transfer phases");
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startMillis);
+            writer.setBaseTime(startMillis);
+            writer.outputLegend();
+            long endMillis = startMillis + (endNanos - startNanos) / 1_000_000;
+            for (Map.Entry<String, Histogram> entry : latencies.entrySet()) {
+                Histogram histogram = entry.getValue().copy();
+                histogram.setTag(entry.getKey());
+                histogram.setStartTimeStamp(startMillis);
+                histogram.setEndTimeStamp(endMillis);
+                writer.outputIntervalHistogram(histogram);
+            }
+        }
+    }
+}
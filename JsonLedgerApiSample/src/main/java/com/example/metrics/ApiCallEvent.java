@@ -0,0 +1,44 @@
+package com.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for a call of an API client, recorded by {@link ApiCallEvents}.
+ * <p>
+ * The event ends when the response headers were received, the response body is read afterward by the caller.
+ */
+@Name("com.example.ApiCall")
+@Label("API Call")
+@Category({"Ledger API Sample", "API"})
+@StackTrace(false)
+public class ApiCallEvent extends Event {
+
+    @Label("API")
+    public String api;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    @Description("The path of the endpoint, with the path parameters replaced by {id}")
+    public String path;
+
+    @Label("Status")
+    @Description("The HTTP status of the response, or 0 if the call failed")
+    public int status;
+
+    @Label("Request Size")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Size")
+    @Description("The content length of the response, or -1 if unknown")
+    @DataAmount
+    public long responseBytes;
+}
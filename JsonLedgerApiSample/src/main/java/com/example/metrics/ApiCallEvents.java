@@ -0,0 +1,42 @@
+package com.example.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * An OkHttp interceptor that emits an {@link ApiCallEvent} for each call of the API clients while a Java Flight
+ * Recorder recording with the event enabled is running. It is installed on all services by
+ * {@link com.example.services.ApiClientInterceptors}.
+ */
+public class ApiCallEvents implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        ApiCallEvent event = new ApiCallEvent();
+        if (!event.isEnabled()) {
+            return chain.proceed(request);
+        }
+        event.begin();
+        Response response = null;
+        try {
+            response = chain.proceed(request);
+            return response;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                String encodedPath = request.url().encodedPath();
+                event.api = ApiMetrics.api(encodedPath);
+                event.method = request.method();
+                event.path = ApiMetrics.pathTemplate(encodedPath);
+                event.requestBytes = request.body() == null ? 0 : request.body().contentLength();
+                event.status = response == null ? 0 : response.code();
+                event.responseBytes = response == null || response.body() == null ? -1 : response.body().contentLength();
+                event.commit();
+            }
+        }
+    }
+}
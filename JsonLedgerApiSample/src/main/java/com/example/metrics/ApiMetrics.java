@@ -0,0 +1,201 @@
+package com.example.metrics;
+
+import com.example.services.ApiClientInterceptors;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An OkHttp interceptor that records the {@link EndpointMetrics} of the requests of the API clients, and registers
+ * the metrics of each endpoint with the given {@link MetricsRegistry registries}.
+ * <p>
+ * The API of a request is derived from the path prefix of its OpenAPI specification, e.g., {@code /v2} for the Ledger
+ * API or {@code /api/scan} for Scan, and the endpoint from its path, with the segments that are path parameters, e.g.,
+ * party or contract ids, replaced by {@code {id}}.
+ * <p>
+ * Use {@link #install} to record the requests of all services created afterwards.
+ */
+public class ApiMetrics implements Interceptor {
+
+    private final List<MetricsRegistry> registries;
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    // the number of network requests of the call on the current thread, as OkHttp runs all interceptors of a call on one thread
+    private final ThreadLocal<int[]> networkRequests = new ThreadLocal<>();
+    private final Interceptor networkInterceptor = chain -> {
+        int[] count = networkRequests.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return chain.proceed(chain.request());
+    };
+
+    public ApiMetrics(MetricsRegistry... registries) {
+        this.registries = List.of(registries);
+    }
+
+    /**
+     * Record the metrics of the services created after this call.
+     */
+    public static ApiMetrics install(MetricsRegistry... registries) {
+        ApiMetrics metrics = new ApiMetrics(registries);
+        ApiClientInterceptors.add(metrics);
+        ApiClientInterceptors.addNetworkInterceptor(metrics.networkInterceptor());
+        return metrics;
+    }
+
+    /**
+     * The interceptor that counts the retries, to be added as a network interceptor.
+     */
+    public Interceptor networkInterceptor() {
+        return networkInterceptor;
+    }
+
+    /**
+     * The metrics of the endpoints requested so far, ordered by API, path and method.
+     */
+    public List<EndpointMetrics> getEndpoints() {
+        return endpoints.values().stream()
+                .sorted(Comparator.comparing(EndpointMetrics::getApi)
+                        .thenComparing(EndpointMetrics::getPath)
+                        .thenComparing(EndpointMetrics::getMethod))
+                .toList();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        EndpointMetrics endpoint = endpoint(request.method(), request.url().encodedPath());
+        endpoint.requestStarted(request.body() == null ? 0 : request.body().contentLength());
+
+        int[] count = {0};
+        networkRequests.set(count);
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException ex) {
+            endpoint.requestFailed(System.nanoTime() - start);
+            throw ex;
+        } finally {
+            networkRequests.remove();
+            endpoint.retried(Math.max(0, count[0] - 1));
+        }
+        endpoint.responseReceived(response.code());
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            endpoint.requestEnded(System.nanoTime() - start);
+            return response;
+        }
+        return response.newBuilder().body(new MeasuredBody(body, endpoint, start)).build();
+    }
+
+    private EndpointMetrics endpoint(String method, String encodedPath) {
+        String path = pathTemplate(encodedPath);
+        return endpoints.computeIfAbsent(method + " " + path, key -> {
+            EndpointMetrics endpoint = new EndpointMetrics(api(encodedPath), method, path);
+            registries.forEach(registry -> registry.register(endpoint));
+            return endpoint;
+        });
+    }
+
+    static String api(String path) {
+        if (path.startsWith("/api/validator/v0/scan-proxy/")) {
+            return "scan-proxy";
+        } else if (path.startsWith("/api/validator/")) {
+            return "validator";
+        } else if (path.startsWith("/api/scan/")) {
+            return "scan";
+        } else if (path.startsWith("/registry/transfer-instruction/")) {
+            return "transfer-instruction";
+        } else if (path.startsWith("/registry/metadata/")) {
+            return "token-metadata";
+        } else if (path.startsWith("/v2/")) {
+            return "ledger";
+        } else {
+            return "other";
+        }
+    }
+
+    /**
+     * The path with the segments that look like path parameters replaced by {@code {id}}, so that the number of
+     * endpoints does not grow with the number of parties and contracts.
+     */
+    static String pathTemplate(String encodedPath) {
+        String[] segments = encodedPath.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean isParameter = segment.contains(":") || segment.contains("%") || segment.length() >= 32
+                    || (!segment.isEmpty() && segment.chars().allMatch(Character::isDigit));
+            if (isParameter) {
+                segments[i] = "{id}";
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * Counts the bytes of the response body as it is read, and ends the request when it was read or closed.
+     */
+    private static class MeasuredBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        MeasuredBody(ResponseBody delegate, EndpointMetrics endpoint, long start) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read == -1) {
+                        end();
+                    } else {
+                        endpoint.responseBytesRead(read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    end();
+                    super.close();
+                }
+
+                private void end() {
+                    if (ended.compareAndSet(false, true)) {
+                        endpoint.requestEnded(System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the requests to an endpoint of an API, i.e., to a path with a method.
+ * <p>
+ * The latency of a request is measured from sending the request until its response body was read or closed, and
+ * recorded in microseconds.
+ */
+public class EndpointMetrics implements EndpointMetricsMBean {
+
+    private final String api;
+    private final String method;
+    private final String path;
+
+    private final Histogram latencyMicros = new ConcurrentHistogram(3);
+    private final LongAdder requestCount = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param path the path of the endpoint, with the path parameters replaced by {@code {id}}
+     */
+    public EndpointMetrics(String api, String method, String path) {
+        this.api = api;
+        this.method = method;
+        this.path = path;
+    }
+
+    void requestStarted(long bytes) {
+        requestCount.increment();
+        inFlight.incrementAndGet();
+        if (bytes > 0) {
+            requestBytes.add(bytes);
+        }
+    }
+
+    void requestFailed(long nanos) {
+        failureCount.increment();
+        requestEnded(nanos);
+    }
+
+    void responseReceived(int status) {
+        statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    void responseBytesRead(long bytes) {
+        responseBytes.add(bytes);
+    }
+
+    void requestEnded(long nanos) {
+        inFlight.decrementAndGet();
+        latencyMicros.recordValue(Math.max(0, nanos / 1000));
+    }
+
+    void retried(int retries) {
+        retryCount.add(retries);
+    }
+
+    @Override
+    public String getApi() {
+        return api;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * The number of requests that failed without a response, e.g., because of a timeout.
+     */
+    @Override
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * The number of network requests beyond the first of each request, i.e., retries by the HTTP client, e.g., after a
+     * failure of a pooled connection, and redirects.
+     */
+    @Override
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    /**
+     * The total size of the request bodies in bytes.
+     */
+    @Override
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    /**
+     * The total size of the response bodies that were read in bytes.
+     */
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    /**
+     * The number of responses by status code.
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> result = new TreeMap<>();
+        statusCounts.forEach((status, count) -> result.put(status, count.sum()));
+        return result;
+    }
+
+    private long statusCount(int statusClass) {
+        return statusCounts.entrySet().stream()
+                .filter(entry -> entry.getKey() / 100 == statusClass)
+                .mapToLong(entry -> entry.getValue().sum())
+                .sum();
+    }
+
+    @Override
+    public long getStatus2xxCount() {
+        return statusCount(2);
+    }
+
+    @Override
+    public long getStatus4xxCount() {
+        return statusCount(4);
+    }
+
+    @Override
+    public long getStatus5xxCount() {
+        return statusCount(5);
+    }
+
+    /**
+     * A copy of the latency histogram in microseconds.
+     */
+    public Histogram getLatencyMicros() {
+        return latencyMicros.copy();
+    }
+
+    // queries use a copy, as a ConcurrentHistogram is only safe to copy while values are recorded
+
+    @Override
+    public double getLatencyMeanMillis() {
+        return getLatencyMicros().getMean() / 1000;
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return getLatencyMicros().getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return getLatencyMicros().getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return getLatencyMicros().getMaxValue() / 1000.0;
+    }
+}
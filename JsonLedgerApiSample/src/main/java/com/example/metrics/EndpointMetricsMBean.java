@@ -0,0 +1,39 @@
+package com.example.metrics;
+
+/**
+ * The JMX view of the {@link EndpointMetrics} of an endpoint. Latencies are in milliseconds.
+ */
+public interface EndpointMetricsMBean {
+
+    String getApi();
+
+    String getMethod();
+
+    String getPath();
+
+    long getRequestCount();
+
+    int getInFlight();
+
+    long getFailureCount();
+
+    long getRetryCount();
+
+    long getRequestBytes();
+
+    long getResponseBytes();
+
+    long getStatus2xxCount();
+
+    long getStatus4xxCount();
+
+    long getStatus5xxCount();
+
+    double getLatencyMeanMillis();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+}
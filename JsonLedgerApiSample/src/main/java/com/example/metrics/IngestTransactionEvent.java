@@ -0,0 +1,43 @@
+package com.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for the ingestion of a transaction by an {@link com.example.store.IntegrationStore},
+ * e.g., via {@link com.example.store.IntegrationStore#ingestUpdate}.
+ * <p>
+ * The event spans the parsing and the application of the transaction to the store. When transactions are staged
+ * concurrently, see {@link com.example.store.IntegrationStore#applyUpdates}, it spans only their application, and
+ * the parsing is reported as {@link #parseTime}.
+ */
+@Name("com.example.IngestTransaction")
+@Label("Ingest Transaction")
+@Category({"Ledger API Sample", "Integration Store"})
+@StackTrace(false)
+public class IngestTransactionEvent extends Event {
+
+    @Label("Update Id")
+    public String updateId;
+
+    @Label("Offset")
+    public long offset;
+
+    @Label("Event Count")
+    @Description("The number of events of the transaction")
+    public int eventCount;
+
+    @Label("Entries Produced")
+    @Description("The number of transaction history entries that the transaction produced")
+    public int entriesProduced;
+
+    @Label("Parse Time")
+    @Description("The time spent parsing the events into transaction history entries")
+    @Timespan(Timespan.NANOSECONDS)
+    public long parseTime;
+}
@@ -0,0 +1,64 @@
+package com.example.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registers the metrics of each endpoint as an MBean with the platform MBean server, named
+ * {@code com.example:type=ApiEndpoint,api=<api>,endpoint="<method> <path>"}.
+ */
+public class JmxMetricsRegistry implements MetricsRegistry, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(JmxMetricsRegistry.class.getName());
+
+    private final MBeanServer server;
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<>();
+
+    public JmxMetricsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxMetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    public static ObjectName objectName(EndpointMetrics endpoint) throws JMException {
+        return new ObjectName("com.example:type=ApiEndpoint,api=" + ObjectName.quote(endpoint.getApi())
+                + ",endpoint=" + ObjectName.quote(endpoint.getMethod() + " " + endpoint.getPath()));
+    }
+
+    @Override
+    public void register(EndpointMetrics endpoint) {
+        try {
+            ObjectName name = objectName(endpoint);
+            server.registerMBean(endpoint, name);
+            registered.add(name);
+        } catch (InstanceAlreadyExistsException ex) {
+            log.warning("Metrics of " + endpoint.getMethod() + " " + endpoint.getPath() + " are already registered by another registry");
+        } catch (JMException ex) {
+            log.log(Level.WARNING, "Failed to register the metrics of " + endpoint.getMethod() + " " + endpoint.getPath(), ex);
+        }
+    }
+
+    /**
+     * Unregister the MBeans registered by this registry.
+     */
+    @Override
+    public void close() {
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ex) {
+                log.log(Level.FINE, "Failed to unregister " + name, ex);
+            }
+        }
+        registered.clear();
+    }
+}
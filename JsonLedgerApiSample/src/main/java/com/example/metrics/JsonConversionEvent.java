@@ -0,0 +1,29 @@
+package com.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for the conversion of a value between the OpenAPI and the codegen models by
+ * {@link com.example.ConversionHelpers#convertViaJson}.
+ */
+@Name("com.example.JsonConversion")
+@Label("JSON Conversion")
+@Category({"Ledger API Sample", "Conversion"})
+@Description("Converting a value to another type by encoding it as JSON and decoding the JSON")
+@StackTrace(false)
+public class JsonConversionEvent extends Event {
+
+    @Label("Source Type")
+    public Class<?> sourceType;
+
+    @Label("JSON Length")
+    @Description("The number of characters of the intermediate JSON")
+    @DataAmount
+    public int jsonLength;
+}
@@ -0,0 +1,13 @@
+package com.example.metrics;
+
+/**
+ * Exposes the metrics of the endpoints recorded by {@link ApiMetrics}, e.g., via JMX with a {@link JmxMetricsRegistry}
+ * or in the text exposition format with a {@link TextExpositionRegistry}.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Called once for each endpoint, when the first request to it is made.
+     */
+    void register(EndpointMetrics endpoint);
+}
@@ -0,0 +1,26 @@
+package com.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for the signing of bytes with the private key of an external party by
+ * {@link com.example.signing.Keys}.
+ */
+@Name("com.example.Sign")
+@Label("Sign")
+@Category({"Ledger API Sample", "Signing"})
+@StackTrace(false)
+public class SignEvent extends Event {
+
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Bytes Signed")
+    @DataAmount
+    public int bytesSigned;
+}
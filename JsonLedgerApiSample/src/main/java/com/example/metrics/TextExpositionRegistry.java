@@ -0,0 +1,107 @@
+package com.example.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Exposes the metrics of the registered endpoints in the Prometheus text exposition format, e.g., to serve them to a
+ * scraper or to write them to a file at the end of a run.
+ * <p>
+ * Latencies are exposed as summaries in seconds, with the 0.5, 0.9, 0.99 and 0.999 quantiles since the start.
+ */
+public class TextExpositionRegistry implements MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final List<EndpointMetrics> endpoints = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void register(EndpointMetrics endpoint) {
+        endpoints.add(endpoint);
+    }
+
+    public void write(Writer out) throws IOException {
+        List<EndpointMetrics> sorted = endpoints.stream()
+                .sorted(Comparator.comparing(EndpointMetrics::getApi)
+                        .thenComparing(EndpointMetrics::getPath)
+                        .thenComparing(EndpointMetrics::getMethod))
+                .toList();
+
+        header(out, "api_request_duration_seconds", "summary", "Latency of the requests until the response body was read");
+        for (EndpointMetrics endpoint : sorted) {
+            Histogram latency = endpoint.getLatencyMicros();
+            for (double quantile : QUANTILES) {
+                sample(out, "api_request_duration_seconds", endpoint, "quantile=\"" + quantile + "\"",
+                        latency.getValueAtPercentile(100 * quantile) / 1e6);
+            }
+            sample(out, "api_request_duration_seconds_sum", endpoint, null, latency.getMean() * latency.getTotalCount() / 1e6);
+            sample(out, "api_request_duration_seconds_count", endpoint, null, latency.getTotalCount());
+        }
+        metric(out, sorted, "api_requests_total", "counter", "Requests sent", EndpointMetrics::getRequestCount);
+        metric(out, sorted, "api_requests_in_flight", "gauge", "Requests without a completely read response", EndpointMetrics::getInFlight);
+        metric(out, sorted, "api_request_failures_total", "counter", "Requests that failed without a response", EndpointMetrics::getFailureCount);
+        metric(out, sorted, "api_request_retries_total", "counter", "Network requests retried or redirected by the HTTP client", EndpointMetrics::getRetryCount);
+        metric(out, sorted, "api_request_bytes_total", "counter", "Bytes of the request bodies", EndpointMetrics::getRequestBytes);
+        metric(out, sorted, "api_response_bytes_total", "counter", "Bytes of the response bodies", EndpointMetrics::getResponseBytes);
+
+        header(out, "api_responses_total", "counter", "Responses by status code");
+        for (EndpointMetrics endpoint : sorted) {
+            for (Map.Entry<Integer, Long> entry : endpoint.getStatusCounts().entrySet()) {
+                sample(out, "api_responses_total", endpoint, "status=\"" + entry.getKey() + "\"", entry.getValue());
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringWriter out = new StringWriter();
+        try {
+            write(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toString();
+    }
+
+    private static void metric(Writer out, List<EndpointMetrics> endpoints, String name, String type, String help,
+                              ToDoubleFunction<EndpointMetrics> value) throws IOException {
+        header(out, name, type, help);
+        for (EndpointMetrics endpoint : endpoints) {
+            sample(out, name, endpoint, null, value.applyAsDouble(endpoint));
+        }
+    }
+
+    private static void header(Writer out, String name, String type, String help) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void sample(Writer out, String name, EndpointMetrics endpoint, String extraLabel, double value) throws IOException {
+        out.write(name);
+        out.write("{api=\"" + escape(endpoint.getApi()) + "\",method=\"" + escape(endpoint.getMethod())
+                + "\",path=\"" + escape(endpoint.getPath()) + "\"");
+        if (extraLabel != null) {
+            out.write("," + extraLabel);
+        }
+        out.write("} ");
+        out.write(value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.6g", value));
+        out.write("\n");
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for the hashing of a prepared transaction by
+ * {@link com.example.signing.TransactionHashBuilder#hash}.
+ */
+@Name("com.example.TransactionHash")
+@Label("Transaction Hash")
+@Category({"Ledger API Sample", "Signing"})
+@Description("Computing the hash of a prepared transaction to verify it before signing")
+@StackTrace(false)
+public class TransactionHashEvent extends Event {
+
+    @Label("Hash")
+    @Description("The hash of the prepared transaction, in hex")
+    public String hash;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    @Label("Bytes Hashed")
+    @Description("The number of bytes fed into SHA-256, across all nested hashes")
+    @DataAmount
+    public long bytesHashed;
+}
@@ -0,0 +1,72 @@
+package com.example.recording;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * An OkHttp interceptor that records every request and its response to an {@link HttpRecording}.
+ * <p>
+ * Add it with {@link com.example.services.ApiClientInterceptors#add} before creating the services to record the traffic
+ * of all API clients, which can then be served by a {@link ReplayServer}.
+ */
+public class HttpRecorder implements Interceptor, AutoCloseable {
+
+    private final HttpRecording.Writer writer;
+
+    public HttpRecorder(Path file) throws IOException {
+        this.writer = HttpRecording.Writer.open(file);
+    }
+
+    public long getNumRecorded() {
+        return writer.getNumAppended();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String requestBody = bodyOf(request);
+        long timestampMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        MediaType contentType = body == null ? null : body.contentType();
+        // read the whole body, so that the latency includes the transfer of the response
+        byte[] bytes = body == null ? new byte[0] : body.bytes();
+        long latencyMicros = (System.nanoTime() - start) / 1000;
+
+        writer.append(new HttpRecording.Exchange(
+                timestampMillis,
+                request.method(),
+                request.url().toString(),
+                requestBody,
+                response.code(),
+                contentType == null ? null : contentType.toString(),
+                new String(bytes, StandardCharsets.UTF_8),
+                latencyMicros));
+        return response.newBuilder().body(ResponseBody.create(bytes, contentType)).build();
+    }
+
+    private static String bodyOf(Request request) throws IOException {
+        RequestBody body = request.body();
+        if (body == null) {
+            return null;
+        }
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer.readUtf8();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
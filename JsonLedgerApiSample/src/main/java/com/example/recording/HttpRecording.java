@@ -0,0 +1,164 @@
+package com.example.recording;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A recording of HTTP traffic stored as newline-delimited JSON, with one {@link Exchange} per line in the order the
+ * responses were received.
+ * <p>
+ * Recordings whose file name ends in {@code .gz} are gzip-compressed, like an {@link com.example.store.UpdateArchive}.
+ */
+public final class HttpRecording {
+
+    private static final Logger log = Logger.getLogger(HttpRecording.class.getName());
+
+    private HttpRecording() {
+    }
+
+    /**
+     * A request and the response received for it. Request headers are not recorded, so that recordings do not contain
+     * bearer tokens.
+     *
+     * @param url           the full URL of the request, including the query
+     * @param requestBody   the request body, or null if the request has none
+     * @param contentType   the content type of the response, or null if it has none
+     * @param latencyMicros the time from sending the request until the response body was read
+     */
+    public record Exchange(
+            long timestampMillis,
+            String method,
+            String url,
+            String requestBody,
+            int status,
+            String contentType,
+            String responseBody,
+            long latencyMicros) {
+
+        /**
+         * The path and query of the URL, which identify the endpoint independently of the host it was recorded from.
+         */
+        public String pathAndQuery() {
+            URI uri = URI.create(url);
+            return uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        }
+
+        public String path() {
+            return URI.create(url).getRawPath();
+        }
+    }
+
+    private static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * Read all exchanges of a recording. A recording whose writer was not closed is read up to its last complete
+     * exchange, i.e., a missing gzip trailer and a partially written last exchange are ignored.
+     */
+    public static List<Exchange> read(Path file) throws IOException {
+        InputStream stream = Files.newInputStream(file);
+        try {
+            if (isCompressed(file)) {
+                stream = new GZIPInputStream(stream, 64 * 1024) {
+                    @Override
+                    public int read(byte[] buf, int off, int len) throws IOException {
+                        try {
+                            return super.read(buf, off, len);
+                        } catch (EOFException ex) {
+                            // a recording that was not closed ends without a gzip trailer after its last flushed exchange
+                            return -1;
+                        }
+                    }
+                };
+            }
+        } catch (IOException ex) {
+            stream.close();
+            throw ex;
+        }
+        List<Exchange> exchanges = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 64 * 1024)) {
+            String line = in.readLine();
+            while (line != null) {
+                String nextLine = in.readLine();
+                if (!line.isBlank()) {
+                    try {
+                        exchanges.add(ExtendedJson.gson.fromJson(line, Exchange.class));
+                    } catch (JsonParseException ex) {
+                        if (nextLine != null) {
+                            throw ex;
+                        }
+                        log.warning("Ignoring the partially written last exchange of " + file);
+                    }
+                }
+                line = nextLine;
+            }
+        }
+        return exchanges;
+    }
+
+    /**
+     * Appends exchanges to a recording. Each exchange is flushed as it is appended, so that {@link #read} recovers the
+     * exchanges appended before the process exited without closing the writer. Close the writer to complete the
+     * recording, in particular the trailer of a compressed one.
+     */
+    public static class Writer implements AutoCloseable {
+        private final BufferedWriter out;
+        private long numAppended;
+
+        private Writer(BufferedWriter out) {
+            this.out = out;
+        }
+
+        /**
+         * Open the recording for appending, creating it if it does not exist.
+         */
+        public static Writer open(Path file) throws IOException {
+            OutputStream stream = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            try {
+                if (isCompressed(file)) {
+                    stream = new GZIPOutputStream(stream, 64 * 1024, true);
+                }
+            } catch (IOException ex) {
+                stream.close();
+                throw ex;
+            }
+            return new Writer(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024));
+        }
+
+        public synchronized void append(Exchange exchange) throws IOException {
+            ExtendedJson.gson.toJson(exchange, out);
+            out.write('\n');
+            out.flush();
+            numAppended++;
+        }
+
+        public synchronized long getNumAppended() {
+            return numAppended;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
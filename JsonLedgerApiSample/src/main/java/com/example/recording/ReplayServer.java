@@ -0,0 +1,250 @@
+package com.example.recording;
+
+import com.example.simulator.HttpServers;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An embeddable HTTP server that serves the responses of an {@link HttpRecording}, so that the {@link
+ * com.example.services.Wallet}, the {@link com.example.services.Ledger} and the ingestion of updates can be run
+ * offline against real-world payloads, with reproducible response times.
+ * <p>
+ * A request is answered with a response recorded for the same method, path, query and body. If there is none, e.g.,
+ * because the request contains a fresh command id, a response recorded for the same method and path is served instead.
+ * The responses recorded for a request are served in the recorded order, starting over once all have been served.
+ * <p>
+ * Recordings keep the paths of the URLs, so all APIs are served on the same port: if the recorded URLs of the
+ * different APIs only differ in their host, {@link #getUrl()} serves as the URL of all of them.
+ * <p>
+ * Each response is delayed by its recorded latency times {@link Options#latencyMultiplier()}, plus
+ * {@link Options#addedLatency()}, without blocking the threads that handle requests.
+ */
+public class ReplayServer implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(ReplayServer.class.getName());
+
+    /**
+     * @param latencyMultiplier the factor by which the recorded latencies are scaled, e.g., 0 to respond immediately,
+     *                          1 to respond as fast as when recording, or 0.5 to simulate a server twice as fast
+     * @param addedLatency      the latency added to every response, e.g., to simulate a network round trip
+     */
+    public record Options(double latencyMultiplier, Duration addedLatency) {
+        public static final Options IMMEDIATE = new Options(0, Duration.ZERO);
+        public static final Options RECORDED = new Options(1, Duration.ZERO);
+
+        public Options {
+            if (!(latencyMultiplier >= 0) || Double.isInfinite(latencyMultiplier)) {
+                throw new IllegalArgumentException("latencyMultiplier must be non-negative and finite, got " + latencyMultiplier);
+            }
+            if (addedLatency.isNegative()) {
+                throw new IllegalArgumentException("addedLatency must not be negative, got " + addedLatency);
+            }
+        }
+
+        long delayMicros(HttpRecording.Exchange exchange) {
+            return (long) (exchange.latencyMicros() * latencyMultiplier) + addedLatency.toNanos() / 1000;
+        }
+    }
+
+    private static class Responses {
+        private final List<HttpRecording.Exchange> exchanges = new ArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        HttpRecording.Exchange next() {
+            return exchanges.get(Math.floorMod(next.getAndIncrement(), exchanges.size()));
+        }
+    }
+
+    private final Map<String, Responses> byRequest;
+    private final Map<String, Responses> byEndpoint;
+    private final Options options;
+    private final HttpServer server;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong numServed = new AtomicLong();
+    private final AtomicLong numUnmatched = new AtomicLong();
+
+    private ReplayServer(List<HttpRecording.Exchange> exchanges, Options options, HttpServer server, ScheduledExecutorService executor) {
+        this.byRequest = new HashMap<>();
+        this.byEndpoint = new HashMap<>();
+        for (HttpRecording.Exchange exchange : exchanges) {
+            byRequest.computeIfAbsent(requestKey(exchange.method(), exchange.pathAndQuery(), exchange.requestBody()), key -> new Responses())
+                    .exchanges.add(exchange);
+            byEndpoint.computeIfAbsent(endpointKey(exchange.method(), exchange.path()), key -> new Responses())
+                    .exchanges.add(exchange);
+        }
+        this.options = options;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Start a server for the recording on a free port of the loopback interface.
+     */
+    public static ReplayServer start(Path recording, Options options) throws IOException {
+        return start(HttpRecording.read(recording), 0, options);
+    }
+
+    /**
+     * Start a server for the exchanges on the given port of the loopback interface, or on a free port if {@code port}
+     * is 0.
+     */
+    public static ReplayServer start(List<HttpRecording.Exchange> exchanges, int port, Options options) throws IOException {
+        HttpServer server = HttpServers.createLoopback(port);
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "replay-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ReplayServer replayServer = new ReplayServer(exchanges, options, server, executor);
+        server.createContext("/", replayServer::handle);
+        server.setExecutor(executor);
+        server.start();
+        log.info("Started replay server for " + exchanges.size() + " exchanges at " + replayServer.getUrl());
+        return replayServer;
+    }
+
+    public String getUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * The number of requests answered with a recorded response.
+     */
+    public long getNumServed() {
+        return numServed.get();
+    }
+
+    /**
+     * The number of requests without a recorded response, which were answered with 404.
+     */
+    public long getNumUnmatched() {
+        return numUnmatched.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static String requestKey(String method, String pathAndQuery, String body) {
+        return method + " " + pathAndQuery + "\n" + (body == null ? "" : body);
+    }
+
+    private static String endpointKey(String method, String path) {
+        return method + " " + path;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] bytes = in.readAllBytes();
+                body = bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            Responses responses = byRequest.get(requestKey(method, query == null ? path : path + "?" + query, body));
+            if (responses == null) {
+                responses = byEndpoint.get(endpointKey(method, path));
+            }
+            if (responses == null) {
+                numUnmatched.incrementAndGet();
+                log.warning("No recorded response for " + method + " " + exchange.getRequestURI());
+                send(exchange, 404, "application/json", notFound(method + " " + exchange.getRequestURI()));
+                return;
+            }
+
+            HttpRecording.Exchange recorded = responses.next();
+            numServed.incrementAndGet();
+            executor.schedule(() -> {
+                try {
+                    send(exchange, recorded.status(), recorded.contentType(), recorded.responseBody());
+                } catch (IOException ex) {
+                    log.log(Level.FINE, "Failed to send the response for " + method + " " + exchange.getRequestURI(), ex);
+                }
+            }, options.delayMicros(recorded), TimeUnit.MICROSECONDS);
+        } catch (IOException | RuntimeException ex) {
+            exchange.close();
+            throw ex;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            if (contentType != null) {
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+            }
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String notFound(String request) {
+        JsonObject error = new JsonObject();
+        error.addProperty("code", "NOT_FOUND");
+        error.addProperty("cause", "No recorded response for " + request);
+        error.add("context", new JsonObject());
+        error.add("resources", new JsonArray());
+        return error.toString();
+    }
+
+    /**
+     * Serve a recording until the process is terminated.
+     * <p>
+     * Usage: {@code ReplayServer <recording> [--port=<port>] [--latency-multiplier=<factor>] [--added-latency-ms=<millis>]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayServer <recording> [--port=<port>] [--latency-multiplier=<factor>] [--added-latency-ms=<millis>]");
+            System.exit(2);
+        }
+        int port = 0;
+        double latencyMultiplier = 1;
+        Duration addedLatency = Duration.ZERO;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--latency-multiplier=")) {
+                latencyMultiplier = Double.parseDouble(arg.substring("--latency-multiplier=".length()));
+            } else if (arg.startsWith("--added-latency-ms=")) {
+                addedLatency = Duration.ofMillis(Long.parseLong(arg.substring("--added-latency-ms=".length())));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        ReplayServer server = start(HttpRecording.read(Path.of(args[0])), port, new Options(latencyMultiplier, addedLatency));
+        System.out.println("Replaying '" + args[0] + "' at " + server.getUrl());
+        Thread.currentThread().join();
+    }
+}
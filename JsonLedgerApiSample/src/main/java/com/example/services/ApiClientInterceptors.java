@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2025, by Digital Asset
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH
+ * REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY
+ * AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT,
+ * INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM
+ * LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR
+ * OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION WITH THE USE OR
+ * PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.example.services;
+
+import com.example.metrics.ApiCallEvents;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * OkHttp interceptors that are installed on the HTTP clients of all services, e.g., to record or measure the traffic
+ * of the Ledger, Scan, Scan proxy, Validator, token metadata and transfer instruction APIs.
+ * <p>
+ * The interceptors are installed when a service is constructed, so they must be added before the services are created.
+ * The {@link ApiCallEvents} for Java Flight Recorder are always installed first.
+ */
+public final class ApiClientInterceptors {
+
+    private static final List<Interceptor> interceptors = new CopyOnWriteArrayList<>();
+    private static final List<Interceptor> networkInterceptors = new CopyOnWriteArrayList<>();
+    private static final Interceptor apiCallEvents = new ApiCallEvents();
+
+    private ApiClientInterceptors() {
+    }
+
+    public static void add(Interceptor interceptor) {
+        interceptors.add(interceptor);
+    }
+
+    public static void remove(Interceptor interceptor) {
+        interceptors.remove(interceptor);
+    }
+
+    /**
+     * Add an interceptor that observes each network request, i.e., also the retries and redirects of a call.
+     */
+    public static void addNetworkInterceptor(Interceptor interceptor) {
+        networkInterceptors.add(interceptor);
+    }
+
+    public static void removeNetworkInterceptor(Interceptor interceptor) {
+        networkInterceptors.remove(interceptor);
+    }
+
+    /**
+     * A client that calls the given one through the added interceptors, in the order they were added.
+     */
+    static OkHttpClient install(OkHttpClient httpClient) {
+        OkHttpClient.Builder builder = httpClient.newBuilder();
+        builder.addInterceptor(apiCallEvents);
+        interceptors.forEach(builder::addInterceptor);
+        networkInterceptors.forEach(builder::addNetworkInterceptor);
+        return builder.build();
+    }
+}
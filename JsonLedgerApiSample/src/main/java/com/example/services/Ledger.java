@@ -36,6 +36,7 @@ import splice.api.token.metadatav1.anyvalue.AV_ContractId;
 import java.security.*;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -46,13 +47,22 @@ public class Ledger {
         JSON.setGson(ExtendedJson.gson);
     }
 
+    /**
+     * A page of updates and the number of bytes of the response that it was read from.
+     */
+    public record UpdatesPage(List<JsGetUpdatesResponse> updates, long responseBytes) {
+    }
+
     private final DefaultApi ledgerApi;
     private final LedgerUser user;
+    private final ResponseSizeCounter responseSizes = new ResponseSizeCounter();
 
     public Ledger(String baseUrl, LedgerUser user) {
         ApiClient client = new ApiClient();
         client.setBasePath(baseUrl);
         client.setReadTimeout(60 * 1000); // 60 seconds
+        client.setHttpClient(ApiClientInterceptors.install(
+                client.getHttpClient().newBuilder().addInterceptor(responseSizes).build()));
         client.setBearerToken(user.bearerToken());
 
         this.ledgerApi = new DefaultApi(client);
@@ -405,8 +415,10 @@ public class Ledger {
     }
 
     public List<JsGetActiveContractsResponse> getActiveContractsByFilter(String partyId, List<CumulativeFilter> cumulativeFilters) throws Exception {
-        long offset = getLedgerEnd();
+        return getActiveContractsByFilter(partyId, cumulativeFilters, getLedgerEnd(), 100L);
+    }
 
+    public List<JsGetActiveContractsResponse> getActiveContractsByFilter(String partyId, List<CumulativeFilter> cumulativeFilters, long offset, Long limit) throws Exception {
         Filters filters = new Filters()
                 .cumulative(cumulativeFilters);
 
@@ -419,22 +431,48 @@ public class Ledger {
                 .filter(transactionFilter);
 
 //        System.out.println("\nget active contracts by interface request: " + request.toJson() + "\n");
-        List<JsGetActiveContractsResponse> response = this.ledgerApi.postV2StateActiveContracts(request, 100L, null);
+        List<JsGetActiveContractsResponse> response = this.ledgerApi.postV2StateActiveContracts(request, limit, null);
 //        System.out.println("\nget active contracts by interface response: " + JSON.getGson().toJson(response) + "\n");
 
         return response;
     }
 
     public List<JsGetUpdatesResponse> getUpdatesWithFilter(String partyId, List<CumulativeFilter> cumulativeFilters, long beginAfterOffset ) throws Exception {
+        return getUpdatesWithFilter(partyId, cumulativeFilters, beginAfterOffset, null);
+    }
+
+    /**
+     * Get the updates in the ledger section after {@code beginAfterOffset} up to and including {@code endInclusive},
+     * or without an upper bound if {@code endInclusive} is null.
+     */
+    public List<JsGetUpdatesResponse> getUpdatesWithFilter(String partyId, List<CumulativeFilter> cumulativeFilters, long beginAfterOffset, Long endInclusive) throws Exception {
+        return getUpdatesPageWithFilter(partyId, cumulativeFilters, beginAfterOffset, endInclusive, 100L).updates();
+    }
+
+    /**
+     * Get a page of at most {@code limit} updates, together with the size of the response.
+     */
+    public UpdatesPage getUpdatesPageWithFilter(String partyId, List<CumulativeFilter> cumulativeFilters, long beginAfterOffset, Long endInclusive, long limit) throws Exception {
+        return getUpdatesPageWithFilter(List.of(partyId), cumulativeFilters, beginAfterOffset, endInclusive, limit);
+    }
+
+    /**
+     * Get a page of at most {@code limit} updates visible to any of the given parties, using the same filters for each party.
+     */
+    public UpdatesPage getUpdatesPageWithFilter(List<String> partyIds, List<CumulativeFilter> cumulativeFilters, long beginAfterOffset, Long endInclusive, long limit) throws Exception {
         Filters filters = new Filters()
                 .cumulative(cumulativeFilters);
+        Map<String, Filters> filtersByParty = new HashMap<>();
+        for (String partyId : partyIds) {
+            filtersByParty.put(partyId, filters);
+        }
 
         TransactionFormat transactionFormat = new TransactionFormat()
                 .transactionShape("TRANSACTION_SHAPE_LEDGER_EFFECTS")
                 .eventFormat(
                         new EventFormat()
                                 .verbose(true)
-                                .filtersByParty(Map.of(partyId, filters))
+                                .filtersByParty(filtersByParty)
                 );
 
         UpdateFormat updateFormat = new UpdateFormat()
@@ -443,13 +481,15 @@ public class Ledger {
         GetUpdatesRequest request = new GetUpdatesRequest()
                 .verbose(false)
                 .beginExclusive(beginAfterOffset)
+                .endInclusive(endInclusive)
                 .updateFormat(updateFormat);
 
         // System.out.println("\nget updates by interface request: " + request.toJson() + "\n");
-        List<JsGetUpdatesResponse> response = this.ledgerApi.postV2Updates(request, 100L, null);
-        // System.out.println("\nget updates by interface response: " + JSON.getGson().toJson(response) + "\n");
+        ResponseSizeCounter.Measured<List<JsGetUpdatesResponse>> response =
+                responseSizes.measure(() -> this.ledgerApi.postV2Updates(request, limit, null));
+        // System.out.println("\nget updates by interface response: " + JSON.getGson().toJson(response.value()) + "\n");
 
-        return response;
+        return new UpdatesPage(response.value(), response.responseBytes());
     }
 
     public JsSubmitAndWaitForTransactionResponse submitAndWaitForCommands(
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2025, by Digital Asset
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH
+ * REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY
+ * AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT,
+ * INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM
+ * LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR
+ * OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION WITH THE USE OR
+ * PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.example.services;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * Counts the bytes of the response bodies that are read by the calls made within {@link #measure}.
+ * <p>
+ * The bytes are counted as they are read, after decompression, so chunked responses without a Content-Length header
+ * are measured as well. The generated API clients read the response body on the calling thread, which is where the
+ * count is kept.
+ */
+final class ResponseSizeCounter implements Interceptor {
+
+    record Measured<T>(T value, long responseBytes) {
+    }
+
+    private final ThreadLocal<long[]> counts = new ThreadLocal<>();
+
+    <T> Measured<T> measure(Callable<T> call) throws Exception {
+        long[] previous = counts.get();
+        long[] count = {0};
+        counts.set(count);
+        try {
+            T value = call.call();
+            return new Measured<>(value, count[0]);
+        } finally {
+            if (previous == null) {
+                counts.remove();
+            } else {
+                counts.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        long[] count = counts.get();
+        ResponseBody body = response.body();
+        if (count == null || body == null) {
+            return response;
+        }
+        ForwardingSource countingSource = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    count[0] += read;
+                }
+                return read;
+            }
+        };
+        ResponseBody countingBody = ResponseBody.create(Okio.buffer(countingSource), body.contentType(), body.contentLength());
+        return response.newBuilder().body(countingBody).build();
+    }
+}
@@ -31,6 +31,7 @@ public class Scan {
 
         ApiClient client = new ApiClient();
         client.setReadTimeout(60 * 1000); // 60 seconds
+        client.setHttpClient(ApiClientInterceptors.install(client.getHttpClient()));
 
         URI scanBaseUrl = (new URI(scanHostUrl)).resolve("/api/scan");
         client.setBasePath(scanBaseUrl.toString());
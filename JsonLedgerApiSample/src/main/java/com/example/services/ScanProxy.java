@@ -33,6 +33,7 @@ public class ScanProxy {
         ApiClient client = new ApiClient();
         client.setBasePath(scanProxyBaseUrl);
         client.setReadTimeout(60 * 1000); // 60 seconds
+        client.setHttpClient(ApiClientInterceptors.install(client.getHttpClient()));
         client.setBearerToken(user.bearerToken());
         this.scanProxyApi = new ScanProxyApi(client);
     }
@@ -29,6 +29,7 @@ public class TokenMetadata {
         ApiClient client = new ApiClient();
         client.setBasePath(scanBaseUrl);
         client.setReadTimeout(60 * 1000); // 60 seconds
+        client.setHttpClient(ApiClientInterceptors.install(client.getHttpClient()));
 
         this.tokenMetadataApi = new DefaultApi(client);
     }
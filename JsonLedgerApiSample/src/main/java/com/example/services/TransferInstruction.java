@@ -45,6 +45,7 @@ public class TransferInstruction {
         ApiClient client = new ApiClient();
         client.setBasePath(transferInstructionBaseUrl);
         client.setReadTimeout(60 * 1000); // 60 seconds
+        client.setHttpClient(ApiClientInterceptors.install(client.getHttpClient()));
 
         this.transferInstructionApi = new DefaultApi(client);
     }
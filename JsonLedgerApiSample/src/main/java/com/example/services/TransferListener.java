@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2025, by Digital Asset
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH
+ * REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY
+ * AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT,
+ * INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM
+ * LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR
+ * OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION WITH THE USE OR
+ * PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.example.services;
+
+import java.util.List;
+
+/**
+ * Observes the phases of the transfers submitted by a {@link Wallet}, e.g., to measure their latency.
+ * <p>
+ * Listeners are called on the thread that submits the transfer, so they must be thread-safe and fast.
+ */
+public interface TransferListener {
+
+    TransferListener NONE = (commandId, phase, startNanos, endNanos, error) -> {
+    };
+
+    enum Phase {
+        /** Fetching the transfer factory and its choice context from the token standard registry. */
+        FACTORY_LOOKUP,
+        /** Submitting the transfer of a local party and waiting for its transaction. */
+        SUBMIT_AND_WAIT,
+        /** Preparing the transaction of an external party for signing. */
+        PREPARE,
+        /** Signing the prepared transaction with the key of the external party. */
+        SIGN,
+        /** Executing the signed transaction. */
+        EXECUTE,
+        /**
+         * Waiting for the completion of an executed transaction. Not reported by the {@link Wallet}, but by whoever
+         * observes the completions.
+         */
+        COMPLETION
+    }
+
+    /**
+     * Called when a phase of the command ended.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the phase started
+     * @param endNanos   the {@link System#nanoTime()} at which the phase ended
+     * @param error      the exception with which the phase failed, or null if it succeeded
+     */
+    void phaseEnded(String commandId, Phase phase, long startNanos, long endNanos, Throwable error);
+
+    /**
+     * Called when the transaction of the command was committed as the update with the given id, by the {@link Wallet}
+     * for a submit-and-wait, or by whoever observes the completion of an executed transaction.
+     */
+    default void committed(String commandId, String updateId) {
+    }
+
+    /**
+     * A listener that calls each of the given listeners in turn.
+     */
+    static TransferListener combine(TransferListener... listeners) {
+        List<TransferListener> all = List.of(listeners);
+        return new TransferListener() {
+            @Override
+            public void phaseEnded(String commandId, Phase phase, long startNanos, long endNanos, Throwable error) {
+                all.forEach(listener -> listener.phaseEnded(commandId, phase, startNanos, endNanos, error));
+            }
+
+            @Override
+            public void committed(String commandId, String updateId) {
+                all.forEach(listener -> listener.committed(commandId, updateId));
+            }
+        };
+    }
+}
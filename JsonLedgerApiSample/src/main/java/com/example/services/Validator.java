@@ -37,6 +37,7 @@ public class Validator {
         ApiClient client = new ApiClient();
         client.setBasePath(baseUrl);
         client.setReadTimeout(60 * 1000); // 60 seconds
+        client.setHttpClient(ApiClientInterceptors.install(client.getHttpClient()));
         client.setBearerToken(user.bearerToken());
 
         this.validatorApi = new ValidatorApi(client);
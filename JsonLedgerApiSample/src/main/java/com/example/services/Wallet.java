@@ -40,6 +40,7 @@ import java.net.URISyntaxException;
 import java.security.KeyPair;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 public class Wallet {
     public Scan scanApi;
@@ -54,6 +55,7 @@ public class Wallet {
 
     // callbacks
     public SignatureProvider signatureProvider;
+    public TransferListener transferListener = TransferListener.NONE;
 
     public Wallet(
             LedgerUser managingUser,
@@ -162,14 +164,41 @@ public class Wallet {
                 .toList();
     }
 
+    /**
+     * All holdings visible to the party that are active at the given offset, e.g., for
+     * {@link com.example.store.HoldingReconciliation}.
+     */
+    public List<ContractAndId<HoldingView>> queryForHoldingsAt(String partyId, long activeAtOffset) throws Exception {
+        CumulativeFilter holdingInterfaceFilter = Ledger.createFilterByInterface(TemplateId.HOLDING_INTERFACE_ID);
+        return this.ledgerApi.getActiveContractsByFilter(partyId, List.of(holdingInterfaceFilter), activeAtOffset, null).stream()
+                .map(r -> ConversionHelpers.fromInterface(r.getContractEntry(), TemplateId.HOLDING_INTERFACE_ID, HoldingView::fromJson))
+                .filter(v -> v != null)
+                .toList();
+    }
+
     public List<JsGetUpdatesResponse> queryForHoldingTransactions(String partyId, Long beginAfterOffset) throws Exception {
-        List<CumulativeFilter> filters = List.of(
+        return queryForHoldingTransactions(partyId, beginAfterOffset, null);
+    }
+
+    public List<JsGetUpdatesResponse> queryForHoldingTransactions(String partyId, Long beginAfterOffset, Long endInclusive) throws Exception {
+        return this.ledgerApi.getUpdatesWithFilter(partyId, holdingTransactionFilters(), beginAfterOffset, endInclusive);
+    }
+
+    public Ledger.UpdatesPage queryForHoldingTransactionsPage(String partyId, Long beginAfterOffset, long limit) throws Exception {
+        return this.ledgerApi.getUpdatesPageWithFilter(partyId, holdingTransactionFilters(), beginAfterOffset, null, limit);
+    }
+
+    public Ledger.UpdatesPage queryForHoldingTransactionsPage(List<String> partyIds, Long beginAfterOffset, long limit) throws Exception {
+        return this.ledgerApi.getUpdatesPageWithFilter(partyIds, holdingTransactionFilters(), beginAfterOffset, null, limit);
+    }
+
+    private static List<CumulativeFilter> holdingTransactionFilters() {
+        return List.of(
                 Ledger.wildcardFilter(),
                 Ledger.createFilterByInterface(TemplateId.HOLDING_INTERFACE_ID),
                 Ledger.createFilterByInterface(TemplateId.TRANSFER_FACTORY_INTERFACE_ID),
                 Ledger.createFilterByInterface(TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID)
-                );
-        return this.ledgerApi.getUpdatesWithFilter(partyId, filters, beginAfterOffset);
+        );
     }
 
     public List<ContractAndId<HoldingView>> selectHoldingsForTransfer(String partyId, InstrumentId instrumentId, BigDecimal transferAmount) throws Exception {
@@ -224,7 +253,8 @@ public class Wallet {
         Instant requestExpiresDate = requestDate.plusSeconds(24 * 60 * 60);
 
         TransferFactory_Transfer proposedTransfer = TokenStandard.makeProposedTransfer(senderPartyId, receiverPartyId, amount, instrumentId, memoTag, otherTransferMetadata, requestDate, requestExpiresDate, holdingContractIds);
-        TransferFactoryWithChoiceContext transferFactoryWithChoiceContext = this.transferInstructionApi.getTransferFactory(proposedTransfer);
+        TransferFactoryWithChoiceContext transferFactoryWithChoiceContext = timed(commandId, TransferListener.Phase.FACTORY_LOOKUP,
+                () -> this.transferInstructionApi.getTransferFactory(proposedTransfer));
 
         TransferFactoryWithChoiceContext.TransferKindEnum kind = transferFactoryWithChoiceContext.getTransferKind();
 
@@ -250,11 +280,12 @@ public class Wallet {
         );
 
         if (senderKeyPair.isEmpty()) {
-            this.ledgerApi.submitAndWaitForCommands(
+            JsSubmitAndWaitForTransactionResponse response = timed(commandId, TransferListener.Phase.SUBMIT_AND_WAIT, () -> this.ledgerApi.submitAndWaitForCommands(
                     senderPartyId,
                     commandId,
                     transferCommands,
-                    disclosures);
+                    disclosures));
+            transferListener.committed(commandId, response.getTransaction().getUpdateId());
 
         } else {
             prepareAndSign(senderPartyId, senderKeyPair.get(), synchronizerId, commandId, transferCommands, disclosures);
@@ -269,19 +300,34 @@ public class Wallet {
     }
 
     public void prepareAndSign(String externalPartyId, KeyPair externalPartyKeyPair, String synchronizerId, String commandId, List<Command> commands, List<DisclosedContract> disclosures) throws Exception {
-        JsPrepareSubmissionResponse preparedTransaction = this.ledgerApi.prepareSubmissionForSigning(
+        JsPrepareSubmissionResponse preparedTransaction = timed(commandId, TransferListener.Phase.PREPARE, () -> this.ledgerApi.prepareSubmissionForSigning(
                 synchronizerId,
                 externalPartyId,
                 commandId,
                 commands,
-                disclosures);
+                disclosures));
 
-        Signature signature = signatureProvider.sign(
+        Signature signature = timed(commandId, TransferListener.Phase.SIGN, () -> signatureProvider.sign(
                 externalPartyKeyPair,
                 preparedTransaction.getPreparedTransaction(),
-                preparedTransaction.getPreparedTransactionHash());
+                preparedTransaction.getPreparedTransactionHash()));
 
-        this.ledgerApi.executeSignedSubmission(preparedTransaction, externalPartyId, signature);
+        timed(commandId, TransferListener.Phase.EXECUTE, () -> {
+            this.ledgerApi.executeSignedSubmission(preparedTransaction, externalPartyId, signature);
+            return null;
+        });
+    }
+
+    private <T> T timed(String commandId, TransferListener.Phase phase, Callable<T> call) throws Exception {
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            transferListener.phaseEnded(commandId, phase, start, System.nanoTime(), null);
+            return result;
+        } catch (Exception ex) {
+            transferListener.phaseEnded(commandId, phase, start, System.nanoTime(), ex);
+            throw ex;
+        }
     }
 
     public List<CompletionStreamResponse> checkForCommandCompletion(List<String> parties, Long beginExclusive) throws Exception {
@@ -11,6 +11,7 @@ public class HashWriter {
     }
 
     ByteArrayBuilder currentContext;
+    private long numBytesHashed = 0;
 
     public HashWriter() {
         this.currentContext = new ByteArrayBuilder();
@@ -23,7 +24,9 @@ public class HashWriter {
 
         callback.writeHashItems();
 
-        byte[] hashedContext = Sha256.hash(this.currentContext.build());
+        byte[] context = this.currentContext.build();
+        numBytesHashed += context.length;
+        byte[] hashedContext = Sha256.hash(context);
         this.currentContext = prev.append(hashedContext);
     }
 
@@ -63,6 +66,21 @@ public class HashWriter {
         this.currentContext.append(s);
     }
 
+    /**
+     * Discard everything written so far, to start a new hash.
+     */
+    protected void reset() {
+        this.currentContext = new ByteArrayBuilder();
+        this.numBytesHashed = 0;
+    }
+
+    /**
+     * The number of bytes hashed so far, across all nested {@link #hashed} contexts.
+     */
+    public long getNumBytesHashed() {
+        return numBytesHashed;
+    }
+
     public byte[] finish() {
         return this.currentContext.build();
     }
@@ -15,6 +15,8 @@
 
 package com.example.signing;
 
+import com.example.metrics.SignEvent;
+
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
@@ -104,10 +106,19 @@ public class Keys {
     }
 
     private static byte[] signBytes(PrivateKey privateKey, byte[] inputBytes) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        SignEvent event = new SignEvent();
+        event.begin();
         Signature signer = Signature.getInstance("Ed25519");
         signer.initSign(privateKey);
         signer.update(inputBytes);
-        return signer.sign();
+        byte[] signature = signer.sign();
+        event.end();
+        if (event.shouldCommit()) {
+            event.algorithm = signer.getAlgorithm();
+            event.bytesSigned = inputBytes.length;
+            event.commit();
+        }
+        return signature;
     }
 
     public static byte[] fingerPrintOf(PublicKey key) throws NoSuchAlgorithmException {
@@ -3,6 +3,7 @@ package com.example.signing;
 import com.daml.ledger.api.v2.ValueOuterClass;
 import com.daml.ledger.api.v2.interactive.InteractiveSubmissionServiceOuterClass;
 import com.daml.ledger.api.v2.interactive.transaction.v1.InteractiveSubmissionDataOuterClass;
+import com.example.metrics.TransactionHashEvent;
 import com.google.protobuf.ByteString;
 
 import java.nio.charset.StandardCharsets;
@@ -321,7 +322,19 @@ public class TransactionHashBuilder extends HashWriter {
     }
 
     public byte[] hash() {
+        TransactionHashEvent event = new TransactionHashEvent();
+        event.begin();
+        // start from scratch, so that hashing again returns the same hash and counts its bytes only once
+        reset();
         hashed(this::encodePreparedTransaction);
-        return finish();
+        byte[] hash = finish();
+        event.end();
+        if (event.shouldCommit()) {
+            event.hash = Encode.toHexString(hash);
+            event.nodeCount = preparedTransaction.getTransaction().getNodesCount();
+            event.bytesHashed = getNumBytesHashed();
+            event.commit();
+        }
+        return hash;
     }
 }
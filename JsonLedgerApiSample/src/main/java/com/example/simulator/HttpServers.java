@@ -0,0 +1,33 @@
+package com.example.simulator;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Creates the JDK HTTP servers of the simulator and the {@link com.example.recording.ReplayServer}.
+ */
+public final class HttpServers {
+
+    static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private HttpServers() {
+    }
+
+    /**
+     * Create a server on the given port of the loopback interface, or on a free port if {@code port} is 0.
+     * <p>
+     * Without TCP_NODELAY, the JDK server delays every response by the delayed ACK timeout of the client, i.e., ~40 ms,
+     * which would dominate any latency measured against it. The server only reads the JVM-wide
+     * {@code sun.net.httpserver.nodelay} property when the first server of the JVM is created, so it is set to
+     * {@code true} here unless it was set, e.g., with {@code -Dsun.net.httpserver.nodelay=false}.
+     */
+    public static HttpServer createLoopback(int port) throws IOException {
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        return HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    }
+}
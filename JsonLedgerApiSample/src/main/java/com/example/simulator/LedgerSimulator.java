@@ -0,0 +1,343 @@
+package com.example.simulator;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An embeddable HTTP server that simulates the subset of the Ledger API, Scan, Scan proxy, and token standard
+ * registry APIs that the sample uses, backed by a {@link SimulatedLedger}. It allows to load test the
+ * {@link com.example.services.Wallet} and the ingestion of updates end-to-end on a single machine, without a LocalNet.
+ * <p>
+ * All APIs are served on the same port at the paths of their OpenAPI specifications: the Ledger API and the token
+ * standard registry at the root, Scan below {@code /api/scan}, and the Scan proxy below {@code /api/validator}. That is,
+ * {@link #getUrl()} serves as the ledger API, Scan, and token standard URL, and {@link #getValidatorUrl()} as the
+ * Scan proxy URL. Bearer tokens are not checked.
+ */
+public class LedgerSimulator implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(LedgerSimulator.class.getName());
+
+    private static final String VERSION = "3.3.0-simulated";
+    private static final String VALIDATOR_PATH = "/api/validator";
+    private static final String PARTIES_PATH = "/v2/parties/";
+    private static final String PREAPPROVALS_PATH = VALIDATOR_PATH + "/v0/scan-proxy/transfer-preapprovals/by-party/";
+    private static final String TRANSFER_INSTRUCTION_PATH = "/registry/transfer-instruction/v1/";
+
+    private final SimulatedLedger ledger;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private LedgerSimulator(SimulatedLedger ledger, HttpServer server, ExecutorService executor) {
+        this.ledger = ledger;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Start a simulator on a free port of the loopback interface.
+     */
+    public static LedgerSimulator start(SimulatedLedger ledger) throws IOException {
+        return start(ledger, 0, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Start a simulator on the given port of the loopback interface, or on a free port if {@code port} is 0.
+     *
+     * @param numThreads the number of threads that handle requests
+     */
+    public static LedgerSimulator start(SimulatedLedger ledger, int port, int numThreads) throws IOException {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive, got " + numThreads);
+        }
+        HttpServer server = HttpServers.createLoopback(port);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ledger-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LedgerSimulator simulator = new LedgerSimulator(ledger, server, executor);
+        server.createContext("/", simulator::handle);
+        server.setExecutor(executor);
+        server.start();
+        log.info("Started ledger simulator at " + simulator.getUrl());
+        return simulator;
+    }
+
+    public SimulatedLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * The URL of the Ledger API, Scan, and the token standard registry.
+     */
+    public String getUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * The URL of the Scan proxy.
+     */
+    public String getValidatorUrl() {
+        return getUrl() + VALIDATOR_PATH;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            int status = 200;
+            String body;
+            try {
+                body = route(exchange);
+            } catch (NoSuchElementException ex) {
+                status = 404;
+                body = error("NOT_FOUND", ex.getMessage());
+            } catch (IllegalStateException ex) {
+                status = 409;
+                body = error("ABORTED", ex.getMessage());
+            } catch (IllegalArgumentException | JsonParseException ex) {
+                // malformed requests, see RequestJson, and requests that the ledger rejects
+                status = 400;
+                body = error("INVALID_ARGUMENT", String.valueOf(ex.getMessage()));
+            } catch (RuntimeException ex) {
+                log.log(Level.WARNING, "Failed to handle " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), ex);
+                status = 500;
+                body = error("INTERNAL", String.valueOf(ex.getMessage()));
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (method.equals("GET")) {
+            switch (path) {
+                case "/v2/version" -> {
+                    JsonObject response = new JsonObject();
+                    response.addProperty("version", VERSION);
+                    return json(response);
+                }
+                case "/v2/state/ledger-end" -> {
+                    JsonObject response = new JsonObject();
+                    response.addProperty("offset", ledger.getLedgerEnd());
+                    return json(response);
+                }
+                case "/api/scan/v0/scans" -> {
+                    return json(scans());
+                }
+                case VALIDATOR_PATH + "/v0/scan-proxy/dso-party-id" -> {
+                    JsonObject response = new JsonObject();
+                    response.addProperty("dso_party_id", ledger.getDsoParty());
+                    return json(response);
+                }
+                case "/registry/metadata/v1/info" -> {
+                    return json(registryInfo());
+                }
+                default -> {
+                }
+            }
+            if (path.startsWith(PARTIES_PATH)) {
+                return json(partyDetails(path.substring(PARTIES_PATH.length())));
+            }
+            if (path.startsWith(PREAPPROVALS_PATH)) {
+                String receiver = path.substring(PREAPPROVALS_PATH.length());
+                JsonObject response = new JsonObject();
+                response.add("transfer_preapproval", ledger.lookupTransferPreapproval(receiver)
+                        .orElseThrow(() -> new NoSuchElementException("No transfer preapproval for " + receiver)));
+                return json(response);
+            }
+        } else if (method.equals("POST")) {
+            JsonObject request = readRequest(exchange);
+            switch (path) {
+                case "/v2/state/active-contracts" -> {
+                    long activeAtOffset = request.has("activeAtOffset") ? RequestJson.longValue(request, "activeAtOffset") : ledger.getLedgerEnd();
+                    JsonObject filtersByParty = RequestJson.object(RequestJson.object(request, "filter"), "filtersByParty");
+                    return json(array(ledger.getActiveContracts(filtersByParty, activeAtOffset, limit(query))));
+                }
+                case "/v2/updates" -> {
+                    return updates(request, limit(query));
+                }
+                case "/v2/commands/submit-and-wait-for-transaction" -> {
+                    JsonObject commands = RequestJson.object(request, "commands");
+                    JsonObject response = new JsonObject();
+                    response.add("transaction", ledger.submitAndWait(
+                            commands.has("userId") ? RequestJson.string(commands, "userId") : "",
+                            strings(RequestJson.array(commands, "actAs")),
+                            RequestJson.string(commands, "commandId"),
+                            RequestJson.array(commands, "commands")));
+                    return json(response);
+                }
+                case "/v2/interactive-submission/prepare" -> {
+                    return json(ledger.prepare(
+                            strings(RequestJson.array(request, "actAs")),
+                            RequestJson.string(request, "commandId"),
+                            RequestJson.array(request, "commands")));
+                }
+                case "/v2/interactive-submission/execute" -> {
+                    ledger.execute(
+                            RequestJson.string(request, "userId"),
+                            RequestJson.string(request, "submissionId"),
+                            RequestJson.string(request, "preparedTransaction"),
+                            RequestJson.object(request, "partySignatures"));
+                    return json(new JsonObject());
+                }
+                case "/v2/commands/completions" -> {
+                    return json(ledger.getCompletions(
+                            RequestJson.string(request, "userId"),
+                            strings(RequestJson.array(request, "parties")),
+                            request.has("beginExclusive") ? RequestJson.longValue(request, "beginExclusive") : 0L));
+                }
+                case TRANSFER_INSTRUCTION_PATH + "transfer-factory" -> {
+                    return json(ledger.getTransferFactory(RequestJson.object(request, "choiceArguments")));
+                }
+                default -> {
+                }
+            }
+            if (path.startsWith(TRANSFER_INSTRUCTION_PATH) && path.contains("/choice-contexts/")) {
+                // accepting, rejecting, and withdrawing transfer instructions needs no context
+                return json(SimulatedLedger.choiceContext(List.of()));
+            }
+        }
+        throw new NoSuchElementException("Unknown endpoint " + method + " " + path);
+    }
+
+    private String updates(JsonObject request, long limit) {
+        long beginExclusive = request.has("beginExclusive") ? RequestJson.longValue(request, "beginExclusive") : 0L;
+        Long endInclusive = request.has("endInclusive") && !request.get("endInclusive").isJsonNull() ? RequestJson.longValue(request, "endInclusive") : null;
+        JsonObject filtersByParty = null;
+        if (request.has("updateFormat")) {
+            JsonObject eventFormat = RequestJson.object(RequestJson.object(RequestJson.object(request, "updateFormat"), "includeTransactions"), "eventFormat");
+            filtersByParty = RequestJson.object(eventFormat, "filtersByParty");
+        } else if (request.has("filter")) {
+            filtersByParty = RequestJson.object(RequestJson.object(request, "filter"), "filtersByParty");
+        }
+        Set<String> parties = filtersByParty == null ? null : new LinkedHashSet<>(filtersByParty.keySet());
+        // the updates are kept serialized, so they are concatenated rather than parsed again
+        return "[" + String.join(",", ledger.getUpdates(parties, beginExclusive, endInclusive, limit)) + "]";
+    }
+
+    private JsonObject partyDetails(String party) {
+        if (!ledger.hasParty(party)) {
+            throw new NoSuchElementException("Unknown party " + party);
+        }
+        JsonObject details = new JsonObject();
+        details.addProperty("party", party);
+        details.addProperty("isLocal", true);
+        details.addProperty("identityProviderId", "");
+        JsonObject response = new JsonObject();
+        response.add("partyDetails", array(List.of(details)));
+        return response;
+    }
+
+    private JsonObject scans() {
+        JsonObject scan = new JsonObject();
+        scan.addProperty("publicUrl", getUrl());
+        scan.addProperty("svName", "simulated-sv");
+        JsonObject domainScans = new JsonObject();
+        domainScans.addProperty("domainId", ledger.getSynchronizerId());
+        domainScans.add("scans", array(List.of(scan)));
+        JsonObject response = new JsonObject();
+        response.add("scans", array(List.of(domainScans)));
+        return response;
+    }
+
+    private JsonObject registryInfo() {
+        JsonObject supportedApis = new JsonObject();
+        supportedApis.addProperty("splice-api-token-metadata-v1", 1);
+        supportedApis.addProperty("splice-api-token-holding-v1", 1);
+        supportedApis.addProperty("splice-api-token-transfer-instruction-v1", 1);
+        JsonObject response = new JsonObject();
+        response.addProperty("adminId", ledger.getDsoParty());
+        response.add("supportedApis", supportedApis);
+        return response;
+    }
+
+    private static JsonObject readRequest(HttpExchange exchange) throws IOException {
+        try (InputStreamReader in = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            JsonElement request = JsonParser.parseReader(in);
+            return request.isJsonObject() ? request.getAsJsonObject() : new JsonObject();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    query.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static long limit(Map<String, String> query) {
+        return query.containsKey("limit") ? Long.parseLong(query.get("limit")) : Long.MAX_VALUE;
+    }
+
+    private static List<String> strings(JsonArray array) {
+        List<String> strings = new ArrayList<>(array.size());
+        array.forEach(element -> strings.add(RequestJson.asString(element, "party")));
+        return strings;
+    }
+
+    private static JsonArray array(List<? extends JsonElement> values) {
+        JsonArray array = new JsonArray(values.size());
+        values.forEach(array::add);
+        return array;
+    }
+
+    private static String json(JsonElement element) {
+        return ExtendedJson.gson.toJson(element);
+    }
+
+    private static String error(String code, String cause) {
+        JsonObject error = new JsonObject();
+        error.addProperty("code", code);
+        error.addProperty("cause", cause);
+        error.add("context", new JsonObject());
+        error.add("resources", new JsonArray());
+        return json(error);
+    }
+}
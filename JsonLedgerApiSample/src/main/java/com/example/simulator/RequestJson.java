@@ -0,0 +1,68 @@
+package com.example.simulator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.math.BigDecimal;
+
+/**
+ * Reads the fields of JSON requests. Missing fields and fields of the wrong type are rejected with an
+ * {@link IllegalArgumentException}, so that malformed requests can be told apart from failures of the simulator.
+ */
+final class RequestJson {
+
+    private RequestJson() {
+    }
+
+    static JsonElement field(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        if (value == null || value.isJsonNull()) {
+            throw new IllegalArgumentException("Missing field " + name);
+        }
+        return value;
+    }
+
+    static JsonObject object(JsonObject object, String name) {
+        return asObject(field(object, name), name);
+    }
+
+    static JsonArray array(JsonObject object, String name) {
+        JsonElement value = field(object, name);
+        if (!value.isJsonArray()) {
+            throw new IllegalArgumentException("Expected " + name + " to be an array, got " + value);
+        }
+        return value.getAsJsonArray();
+    }
+
+    static String string(JsonObject object, String name) {
+        return asString(field(object, name), name);
+    }
+
+    static long longValue(JsonObject object, String name) {
+        // a malformed number fails with a NumberFormatException, which is an IllegalArgumentException
+        return primitive(field(object, name), name).getAsLong();
+    }
+
+    static BigDecimal decimal(JsonObject object, String name) {
+        return primitive(field(object, name), name).getAsBigDecimal();
+    }
+
+    static JsonObject asObject(JsonElement value, String name) {
+        if (!value.isJsonObject()) {
+            throw new IllegalArgumentException("Expected " + name + " to be an object, got " + value);
+        }
+        return value.getAsJsonObject();
+    }
+
+    static String asString(JsonElement value, String name) {
+        return primitive(value, name).getAsString();
+    }
+
+    private static JsonElement primitive(JsonElement value, String name) {
+        if (!value.isJsonPrimitive()) {
+            throw new IllegalArgumentException("Expected " + name + " to be a string or number, got " + value);
+        }
+        return value;
+    }
+}
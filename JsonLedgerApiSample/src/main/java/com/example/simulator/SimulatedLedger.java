@@ -0,0 +1,1043 @@
+package com.example.simulator;
+
+import com.daml.ledger.api.v2.interactive.InteractiveSubmissionServiceOuterClass;
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.models.TemplateId;
+import com.example.signing.Encode;
+import com.example.signing.TransactionHashBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+import static com.example.models.TokenStandard.*;
+
+/**
+ * The state of a {@link LedgerSimulator}: an in-memory UTXO ledger of the holdings of a single instrument administered
+ * by the DSO party, together with the transfer instructions and transfer preapprovals, and the updates and completions
+ * of all transactions.
+ * <p>
+ * The simulator interprets the commands itself rather than running Daml. It supports the commands that the
+ * {@link com.example.services.Wallet} submits:
+ * - TransferFactory_Transfer on the transfer factory, which completes directly for self-transfers and receivers with
+ * a transfer preapproval, and creates a transfer instruction with a locked holding otherwise,
+ * - TransferInstruction_Accept, TransferInstruction_Reject, and TransferInstruction_Withdraw on transfer instructions,
+ * - the creation of a TransferPreapprovalProposal, which creates the transfer preapproval right away.
+ * <p>
+ * The events of the transactions have the same shape as those served by the Ledger API, so that the updates can be
+ * ingested by the {@link com.example.store.IntegrationStore}. Transactions are not projected to the requesting
+ * parties: a party sees each transaction that it is an informee of in full.
+ * <p>
+ * All contracts, updates, and completions are kept in memory for the lifetime of the ledger. All methods are
+ * thread-safe.
+ */
+public class SimulatedLedger {
+
+    private static final Logger log = Logger.getLogger(SimulatedLedger.class.getName());
+
+    public static final String INSTRUMENT_ID = "Amulet";
+
+    private static final String AMULET_TEMPLATE_ID = "#splice-amulet:Splice.Amulet:Amulet";
+    private static final String LOCKED_AMULET_TEMPLATE_ID = "#splice-amulet:Splice.Amulet:LockedAmulet";
+    private static final String TRANSFER_INSTRUCTION_TEMPLATE_ID = "#splice-amulet:Splice.AmuletTransferInstruction:AmuletTransferInstruction";
+    private static final String TRANSFER_FACTORY_TEMPLATE_ID = "#splice-amulet:Splice.ExternalPartyAmuletRules:ExternalPartyAmuletRules";
+
+    private static final String CREATED_EVENT = "CreatedEvent";
+    private static final String EXERCISED_EVENT = "ExercisedEvent";
+
+    private static final String DAML_TRANSACTION_VERSION = "2.1";
+    private static final String HASHING_SCHEME_VERSION = "HASHING_SCHEME_VERSION_V2";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'").withZone(ZoneOffset.UTC);
+
+    // gRPC status codes of completions
+    private static final int STATUS_OK = 0;
+    private static final int STATUS_FAILED_PRECONDITION = 9;
+    private static final int STATUS_ABORTED = 10;
+
+    /**
+     * A contract, and the interface through which it is viewed, if any. The created event is shared with the
+     * transaction that created the contract, and carries its offset.
+     */
+    private record Contract(String contractId, String templateId, TemplateId interfaceId, List<String> signatories,
+                            List<String> observers, JsonObject createArgument, JsonObject view, JsonObject createdEvent) {
+
+        List<String> stakeholders() {
+            List<String> stakeholders = new ArrayList<>(signatories);
+            observers.stream().filter(observer -> !stakeholders.contains(observer)).forEach(stakeholders::add);
+            return stakeholders;
+        }
+
+        long createdOffset() {
+            return createdEvent.get("offset").getAsLong();
+        }
+
+        boolean isHolding() {
+            return TemplateId.HOLDING_INTERFACE_ID.equals(interfaceId);
+        }
+
+        String owner() {
+            return view.get("owner").getAsString();
+        }
+
+        BigDecimal amount() {
+            return view.get("amount").getAsBigDecimal();
+        }
+
+        boolean isLocked() {
+            return !view.get("lock").isJsonNull();
+        }
+    }
+
+    /**
+     * An event and the events of its subtransaction, which are numbered in pre-order when the transaction is committed.
+     */
+    private record Node(String kind, JsonObject event, List<Node> children, int size) {
+        Node(String kind, JsonObject event, List<Node> children) {
+            this(kind, event, children, 1 + children.stream().mapToInt(Node::size).sum());
+        }
+
+        String contractId() {
+            return event.get("contractId").getAsString();
+        }
+    }
+
+    /**
+     * The effects of a transaction under interpretation, which are only applied to the ledger when it is committed.
+     */
+    private static class Effects {
+        final Set<String> archived = new LinkedHashSet<>();
+        final List<Contract> created = new ArrayList<>();
+        final Set<String> informees = new TreeSet<>();
+    }
+
+    private record PreparedSubmission(List<String> actAs, String commandId, JsonArray commands, byte[] hash) {
+    }
+
+    private record Update(long offset, Set<String> informees, String json) {
+    }
+
+    private record CompletionEntry(long offset, String userId, List<String> actAs, JsonObject json) {
+    }
+
+    private final String dsoParty;
+    private final String synchronizerId;
+    private final String transferFactoryId;
+
+    private final Set<String> parties = new LinkedHashSet<>();
+    private final Map<String, PublicKey> signingKeys = new HashMap<>();
+
+    // all contracts in the order of their creation, and the offsets at which they were archived
+    private final Map<String, Contract> contracts = new LinkedHashMap<>();
+    private final Map<String, Long> archivedOffsets = new HashMap<>();
+    private final Map<String, Set<String>> activeContractIdsByParty = new HashMap<>();
+    private final Map<String, String> transferPreapprovalIdsByReceiver = new HashMap<>();
+
+    private final Map<String, PreparedSubmission> preparedSubmissions = new HashMap<>();
+    private final List<Update> updates = new ArrayList<>();
+    private final List<CompletionEntry> completions = new ArrayList<>();
+
+    private long ledgerEnd = 0;
+    private long numContracts = 0;
+
+    public SimulatedLedger(String dsoParty, String synchronizerId) {
+        this.dsoParty = dsoParty;
+        this.synchronizerId = synchronizerId;
+        parties.add(dsoParty);
+
+        JsonObject factory = new JsonObject();
+        factory.addProperty("admin", dsoParty);
+        factory.add("meta", meta(Map.of()));
+        Effects effects = new Effects();
+        Node created = create(effects, TRANSFER_FACTORY_TEMPLATE_ID, TemplateId.TRANSFER_FACTORY_INTERFACE_ID, List.of(dsoParty), List.of(), factory, factory);
+        this.transferFactoryId = created.contractId();
+        commit("bootstrap", List.of(created), effects);
+    }
+
+    public String getDsoParty() {
+        return dsoParty;
+    }
+
+    public String getSynchronizerId() {
+        return synchronizerId;
+    }
+
+    public String getTransferFactoryId() {
+        return transferFactoryId;
+    }
+
+    public synchronized long getLedgerEnd() {
+        return ledgerEnd;
+    }
+
+    public synchronized boolean hasParty(String party) {
+        return parties.contains(party);
+    }
+
+    /**
+     * Add a local party, whose submissions need no signature.
+     */
+    public synchronized void addParty(String party) {
+        parties.add(party);
+    }
+
+    /**
+     * Add an external party, whose prepared transactions must be signed with the private key of {@code signingKey}.
+     */
+    public synchronized void addParty(String party, PublicKey signingKey) {
+        parties.add(party);
+        signingKeys.put(party, signingKey);
+    }
+
+    /**
+     * Create a holding of the instrument for the owner in a transaction of its own.
+     *
+     * @return the contract ID of the holding
+     */
+    public synchronized String mint(String owner, BigDecimal amount) {
+        requireParty(owner);
+        Effects effects = new Effects();
+        Node created = createHolding(effects, AMULET_TEMPLATE_ID, owner, checkAmount(amount), null);
+        commit("mint-" + (ledgerEnd + 1), List.of(created), effects);
+        return created.contractId();
+    }
+
+    /**
+     * Create a transfer preapproval for the receiver in a transaction of its own, so that transfers to the receiver
+     * complete directly.
+     *
+     * @return the contract ID of the transfer preapproval
+     */
+    public synchronized String createTransferPreapproval(String receiver, String provider) {
+        requireParty(receiver);
+        Effects effects = new Effects();
+        Node created = createTransferPreapproval(effects, receiver, provider);
+        commit("preapproval-" + (ledgerEnd + 1), List.of(created), effects);
+        return created.contractId();
+    }
+
+    /**
+     * The total amount of the active holdings of the owner, including the locked ones.
+     */
+    public synchronized BigDecimal getBalance(String owner) {
+        return activeContractIdsByParty.getOrDefault(owner, Set.of()).stream()
+                .map(contracts::get)
+                .filter(contract -> contract.isHolding() && contract.owner().equals(owner))
+                .map(Contract::amount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    // Ledger API
+
+    /**
+     * The active contracts at the given offset that match the filters of one of the parties, as a list of
+     * JsGetActiveContractsResponse.
+     *
+     * @param filtersByParty the filters by party of a TransactionFilter
+     */
+    synchronized List<JsonObject> getActiveContracts(JsonObject filtersByParty, long activeAtOffset, long limit) {
+        if (activeAtOffset > ledgerEnd) {
+            throw new IllegalArgumentException("Offset " + activeAtOffset + " is after the ledger end " + ledgerEnd);
+        }
+        Map<String, Contract> matching = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> partyFilters : filtersByParty.entrySet()) {
+            String party = partyFilters.getKey();
+            JsonObject filters = RequestJson.asObject(partyFilters.getValue(), "filters of " + party);
+            JsonArray cumulative = filters.has("cumulative") ? RequestJson.array(filters, "cumulative") : null;
+            for (Contract contract : contractsActiveAt(party, activeAtOffset)) {
+                if (matchesAny(contract, cumulative)) {
+                    matching.putIfAbsent(contract.contractId(), contract);
+                }
+            }
+        }
+        return matching.values().stream()
+                .sorted((a, b) -> Long.compare(a.createdOffset(), b.createdOffset()))
+                .limit(limit)
+                .map(this::activeContractResponse)
+                .toList();
+    }
+
+    private List<Contract> contractsActiveAt(String party, long offset) {
+        if (offset == ledgerEnd) {
+            return activeContractIdsByParty.getOrDefault(party, Set.of()).stream().map(contracts::get).toList();
+        }
+        return contracts.values().stream()
+                .filter(contract -> contract.createdOffset() <= offset)
+                .filter(contract -> archivedOffsets.getOrDefault(contract.contractId(), Long.MAX_VALUE) > offset)
+                .filter(contract -> contract.stakeholders().contains(party))
+                .toList();
+    }
+
+    private static boolean matchesAny(Contract contract, JsonArray cumulative) {
+        if (cumulative == null || cumulative.isEmpty()) {
+            return true;
+        }
+        for (JsonElement filter : cumulative) {
+            JsonObject filterObject = RequestJson.asObject(filter, "cumulative filter");
+            JsonObject identifierFilter = filterObject.has("identifierFilter") ? RequestJson.object(filterObject, "identifierFilter") : null;
+            if (identifierFilter == null || identifierFilter.has("WildcardFilter")) {
+                return true;
+            } else if (identifierFilter.has("InterfaceFilter")) {
+                String interfaceId = RequestJson.string(RequestJson.object(RequestJson.object(identifierFilter, "InterfaceFilter"), "value"), "interfaceId");
+                if (contract.interfaceId() != null && contract.interfaceId().matchesModuleAndTypeName(interfaceId)) {
+                    return true;
+                }
+            } else if (identifierFilter.has("TemplateFilter")) {
+                String templateId = RequestJson.string(RequestJson.object(RequestJson.object(identifierFilter, "TemplateFilter"), "value"), "templateId");
+                TemplateId filterTemplateId = TemplateId.parse(templateId);
+                if (filterTemplateId != null && filterTemplateId.matchesModuleAndTypeName(contract.templateId())) {
+                    return true;
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported identifier filter: " + identifierFilter.keySet());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The updates after {@code beginExclusive} up to and including {@code endInclusive} that any of the parties is an
+     * informee of, each as the JSON of a JsGetUpdatesResponse.
+     *
+     * @param parties the parties, or null for all parties
+     */
+    synchronized List<String> getUpdates(Set<String> parties, long beginExclusive, Long endInclusive, long limit) {
+        List<String> page = new ArrayList<>();
+        for (int i = firstIndexAfter(updates, Update::offset, beginExclusive); i < updates.size() && page.size() < limit; i++) {
+            Update update = updates.get(i);
+            if (endInclusive != null && update.offset() > endInclusive) {
+                break;
+            }
+            if (parties == null || parties.stream().anyMatch(update.informees()::contains)) {
+                page.add(update.json());
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Interpret and commit the commands, as for submit-and-wait-for-transaction.
+     *
+     * @return the committed JsTransaction
+     */
+    synchronized JsonObject submitAndWait(String userId, List<String> actAs, String commandId, JsonArray commands) {
+        Effects effects = new Effects();
+        List<Node> roots = interpret(actAs, commands, effects);
+        JsonObject transaction = commit(commandId, roots, effects);
+        addCompletion(userId, actAs, commandId, "", transaction.get("updateId").getAsString(), ledgerEnd, STATUS_OK, "");
+        return transaction;
+    }
+
+    /**
+     * Interpret the commands against the current state, to reject invalid submissions early, and prepare them for
+     * signing by the submitting parties.
+     * <p>
+     * The prepared transaction contains the metadata of the submission but no nodes, as the simulator does not run
+     * Daml. Its hash is computed as by the participant, so that it can be verified by the client.
+     *
+     * @return the JsPrepareSubmissionResponse
+     */
+    synchronized JsonObject prepare(List<String> actAs, String commandId, JsonArray commands) {
+        interpret(actAs, commands, new Effects());
+
+        String transactionUuid = UUID.randomUUID().toString();
+        InteractiveSubmissionServiceOuterClass.PreparedTransaction preparedTransaction = InteractiveSubmissionServiceOuterClass.PreparedTransaction.newBuilder()
+                .setTransaction(InteractiveSubmissionServiceOuterClass.DamlTransaction.newBuilder()
+                        .setVersion(DAML_TRANSACTION_VERSION))
+                .setMetadata(InteractiveSubmissionServiceOuterClass.Metadata.newBuilder()
+                        .setSubmitterInfo(InteractiveSubmissionServiceOuterClass.Metadata.SubmitterInfo.newBuilder()
+                                .addAllActAs(actAs)
+                                .setCommandId(commandId))
+                        .setTransactionUuid(transactionUuid)
+                        .setSynchronizerId(synchronizerId)
+                        .setPreparationTime(ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now())))
+                .build();
+        byte[] hash = new TransactionHashBuilder(preparedTransaction).hash();
+        preparedSubmissions.put(transactionUuid, new PreparedSubmission(List.copyOf(actAs), commandId, commands, hash));
+
+        JsonObject response = new JsonObject();
+        response.addProperty("preparedTransaction", Encode.toBase64String(preparedTransaction.toByteArray()));
+        response.addProperty("preparedTransactionHash", Encode.toBase64String(hash));
+        response.addProperty("hashingSchemeVersion", HASHING_SCHEME_VERSION);
+        return response;
+    }
+
+    /**
+     * Verify the signatures of a prepared transaction, and interpret and commit its commands against the then current
+     * state. The outcome is reported as a completion, as by the participant.
+     *
+     * @param partySignatures the PartySignatures of the JsExecuteSubmissionRequest
+     */
+    synchronized void execute(String userId, String submissionId, String base64PreparedTransaction, JsonObject partySignatures) {
+        String transactionUuid;
+        try {
+            transactionUuid = InteractiveSubmissionServiceOuterClass.PreparedTransaction
+                    .parseFrom(Encode.fromBase64String(base64PreparedTransaction))
+                    .getMetadata()
+                    .getTransactionUuid();
+        } catch (InvalidProtocolBufferException ex) {
+            throw new IllegalArgumentException("Invalid prepared transaction", ex);
+        }
+        PreparedSubmission submission = preparedSubmissions.get(transactionUuid);
+        if (submission == null) {
+            throw new IllegalArgumentException("Unknown or already executed prepared transaction " + transactionUuid);
+        }
+        verifySignatures(submission, partySignatures);
+        preparedSubmissions.remove(transactionUuid);
+
+        Effects effects = new Effects();
+        try {
+            List<Node> roots = interpret(submission.actAs(), submission.commands(), effects);
+            JsonObject transaction = commit(submission.commandId(), roots, effects);
+            addCompletion(userId, submission.actAs(), submission.commandId(), submissionId, transaction.get("updateId").getAsString(), ledgerEnd, STATUS_OK, "");
+        } catch (IllegalStateException ex) {
+            addCompletion(userId, submission.actAs(), submission.commandId(), submissionId, "", ++ledgerEnd, STATUS_ABORTED, ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            addCompletion(userId, submission.actAs(), submission.commandId(), submissionId, "", ++ledgerEnd, STATUS_FAILED_PRECONDITION, ex.getMessage());
+        }
+    }
+
+    private void verifySignatures(PreparedSubmission submission, JsonObject partySignatures) {
+        for (String party : submission.actAs()) {
+            PublicKey signingKey = signingKeys.get(party);
+            if (signingKey == null) {
+                continue;
+            }
+            boolean signed = false;
+            for (JsonElement element : RequestJson.array(partySignatures, "signatures")) {
+                JsonObject singlePartySignatures = RequestJson.asObject(element, "signatures of a party");
+                if (RequestJson.string(singlePartySignatures, "party").equals(party)) {
+                    for (JsonElement signature : RequestJson.array(singlePartySignatures, "signatures")) {
+                        signed |= isValidSignature(signingKey, submission.hash(), RequestJson.string(RequestJson.asObject(signature, "signature"), "signature"));
+                    }
+                }
+            }
+            if (!signed) {
+                throw new IllegalArgumentException("Missing or invalid signature of party " + party);
+            }
+        }
+    }
+
+    private static boolean isValidSignature(PublicKey signingKey, byte[] hash, String base64Signature) {
+        try {
+            Signature verifier = Signature.getInstance("Ed25519");
+            verifier.initVerify(signingKey);
+            verifier.update(hash);
+            return verifier.verify(Encode.fromBase64String(base64Signature));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Ed25519 signatures are not supported", ex);
+        } catch (InvalidKeyException | SignatureException | IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * The completions of the user's commands after {@code beginExclusive} that were submitted by any of the parties,
+     * followed by an offset checkpoint at the ledger end, each as a CompletionStreamResponse.
+     */
+    synchronized JsonArray getCompletions(String userId, List<String> parties, long beginExclusive) {
+        JsonArray response = new JsonArray();
+        for (int i = firstIndexAfter(completions, CompletionEntry::offset, beginExclusive); i < completions.size(); i++) {
+            CompletionEntry completion = completions.get(i);
+            // submissions that do not name their user are reported to all users
+            boolean ofUser = completion.userId().isEmpty() || completion.userId().equals(userId);
+            if (ofUser && completion.actAs().stream().anyMatch(parties::contains)) {
+                response.add(completionResponse("Completion", completion.json()));
+            }
+        }
+        JsonObject checkpoint = new JsonObject();
+        checkpoint.addProperty("offset", ledgerEnd);
+        checkpoint.add("synchronizerTimes", array(List.of(synchronizerTime(timestamp(Instant.now())))));
+        response.add(completionResponse("OffsetCheckpoint", checkpoint));
+        return response;
+    }
+
+    private void addCompletion(String userId, List<String> actAs, String commandId, String submissionId, String updateId,
+                               long offset, int code, String message) {
+        JsonObject status = new JsonObject();
+        status.addProperty("code", code);
+        status.addProperty("message", message);
+        status.add("details", new JsonArray());
+        JsonObject unknownFields = new JsonObject();
+        unknownFields.add("fields", new JsonObject());
+        status.add("unknownFields", unknownFields);
+        JsonObject deduplicationPeriod = new JsonObject();
+        deduplicationPeriod.add("Empty", new JsonObject());
+
+        JsonObject completion = new JsonObject();
+        completion.add("actAs", strings(actAs));
+        completion.addProperty("commandId", commandId);
+        completion.add("deduplicationPeriod", deduplicationPeriod);
+        completion.addProperty("offset", offset);
+        completion.add("status", status);
+        completion.addProperty("submissionId", submissionId);
+        completion.add("synchronizerTime", synchronizerTime(timestamp(Instant.now())));
+        completion.addProperty("updateId", updateId);
+        completion.addProperty("userId", userId);
+        completions.add(new CompletionEntry(offset, userId, List.copyOf(actAs), completion));
+        if (code != STATUS_OK) {
+            log.fine("Command " + commandId + " failed with status " + code + ": " + message);
+        }
+    }
+
+    private JsonObject synchronizerTime(String recordTime) {
+        JsonObject synchronizerTime = new JsonObject();
+        synchronizerTime.addProperty("synchronizerId", synchronizerId);
+        synchronizerTime.addProperty("recordTime", recordTime);
+        return synchronizerTime;
+    }
+
+    private static JsonObject completionResponse(String kind, JsonObject value) {
+        JsonObject wrapped = new JsonObject();
+        wrapped.add("value", value);
+        JsonObject completionResponse = new JsonObject();
+        completionResponse.add(kind, wrapped);
+        JsonObject response = new JsonObject();
+        response.add("completionResponse", completionResponse);
+        return response;
+    }
+
+    // Scan proxy and token standard registry
+
+    /**
+     * The transfer preapproval of the receiver, as a ContractWithState of the Scan proxy API.
+     */
+    synchronized Optional<JsonObject> lookupTransferPreapproval(String receiver) {
+        String contractId = transferPreapprovalIdsByReceiver.get(receiver);
+        if (contractId == null || archivedOffsets.containsKey(contractId)) {
+            return Optional.empty();
+        }
+        Contract preapproval = contracts.get(contractId);
+        JsonObject contract = new JsonObject();
+        contract.addProperty("template_id", preapproval.templateId());
+        contract.addProperty("contract_id", contractId);
+        contract.add("payload", preapproval.createArgument());
+        contract.addProperty("created_event_blob", "");
+        contract.add("created_at", preapproval.createdEvent().get("createdAt"));
+        JsonObject contractWithState = new JsonObject();
+        contractWithState.add("contract", contract);
+        contractWithState.addProperty("domain_id", synchronizerId);
+        return Optional.of(contractWithState);
+    }
+
+    /**
+     * The transfer factory for the choice arguments of a TransferFactory_Transfer, as a
+     * TransferFactoryWithChoiceContext of the token standard registry API.
+     */
+    synchronized JsonObject getTransferFactory(JsonObject choiceArguments) {
+        if (!dsoParty.equals(RequestJson.string(choiceArguments, "expectedAdmin"))) {
+            throw new IllegalArgumentException("Unknown instrument admin " + choiceArguments.get("expectedAdmin"));
+        }
+        JsonObject transfer = RequestJson.object(choiceArguments, "transfer");
+        Contract factory = contracts.get(transferFactoryId);
+        JsonObject disclosedFactory = new JsonObject();
+        disclosedFactory.addProperty("templateId", factory.templateId());
+        disclosedFactory.addProperty("contractId", transferFactoryId);
+        disclosedFactory.addProperty("createdEventBlob", "");
+        disclosedFactory.addProperty("synchronizerId", synchronizerId);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("factoryId", transferFactoryId);
+        response.addProperty("transferKind", transferKind(RequestJson.string(transfer, "sender"), RequestJson.string(transfer, "receiver")));
+        response.add("choiceContext", choiceContext(List.of(disclosedFactory)));
+        return response;
+    }
+
+    static JsonObject choiceContext(List<JsonObject> disclosedContracts) {
+        JsonObject choiceContextData = new JsonObject();
+        choiceContextData.add("values", new JsonObject());
+        JsonObject choiceContext = new JsonObject();
+        choiceContext.add("choiceContextData", choiceContextData);
+        choiceContext.add("disclosedContracts", array(disclosedContracts));
+        return choiceContext;
+    }
+
+    private String transferKind(String sender, String receiver) {
+        if (sender.equals(receiver)) {
+            return "self";
+        }
+        return transferPreapprovalIdsByReceiver.containsKey(receiver) ? "direct" : "offer";
+    }
+
+    // Interpretation
+
+    private List<Node> interpret(List<String> actAs, JsonArray commands, Effects effects) {
+        if (actAs.isEmpty()) {
+            throw new IllegalArgumentException("No acting parties");
+        }
+        actAs.forEach(this::requireParty);
+        List<Node> roots = new ArrayList<>();
+        for (JsonElement command : commands) {
+            JsonObject commandObject = RequestJson.asObject(command, "command");
+            if (commandObject.has("ExerciseCommand")) {
+                roots.add(exercise(actAs, RequestJson.object(commandObject, "ExerciseCommand"), effects));
+            } else if (commandObject.has("CreateCommand")) {
+                roots.add(create(actAs, RequestJson.object(commandObject, "CreateCommand"), effects));
+            } else {
+                throw new IllegalArgumentException("Unsupported command: " + commandObject.keySet());
+            }
+        }
+        return roots;
+    }
+
+    private Node exercise(List<String> actAs, JsonObject command, Effects effects) {
+        String choice = RequestJson.string(command, "choice");
+        Contract contract = fetchActive(RequestJson.string(command, "contractId"), effects);
+        JsonObject argument = RequestJson.object(command, "choiceArgument");
+        return switch (choice) {
+            case "TransferFactory_Transfer" -> transferFactoryTransfer(actAs, contract, argument, effects);
+            case "TransferInstruction_Accept", "TransferInstruction_Reject", "TransferInstruction_Withdraw" ->
+                    completeInstruction(actAs, contract, choice, argument, effects);
+            default -> throw new IllegalArgumentException("Unsupported choice: " + choice);
+        };
+    }
+
+    private Node create(List<String> actAs, JsonObject command, Effects effects) {
+        String templateId = RequestJson.string(command, "templateId");
+        if (!TemplateId.TRANSFER_PREAPPROVAL_PROPOSAL_ID.matchesModuleAndTypeName(templateId)) {
+            throw new IllegalArgumentException("Unsupported template: " + templateId);
+        }
+        JsonObject proposal = RequestJson.object(command, "createArguments");
+        String receiver = RequestJson.string(proposal, "receiver");
+        requireActAs(actAs, receiver);
+        if (!dsoParty.equals(RequestJson.string(proposal, "expectedDso"))) {
+            throw new IllegalArgumentException("Unexpected DSO party " + proposal.get("expectedDso"));
+        }
+        return createTransferPreapproval(effects, receiver, RequestJson.string(proposal, "provider"));
+    }
+
+    private Node transferFactoryTransfer(List<String> actAs, Contract factory, JsonObject argument, Effects effects) {
+        if (!factory.templateId().equals(TRANSFER_FACTORY_TEMPLATE_ID)) {
+            throw new IllegalArgumentException("Contract " + factory.contractId() + " is not a transfer factory");
+        }
+        if (!dsoParty.equals(RequestJson.string(argument, "expectedAdmin"))) {
+            throw new IllegalArgumentException("Unexpected instrument admin " + argument.get("expectedAdmin"));
+        }
+        JsonObject transfer = RequestJson.object(argument, "transfer");
+        String sender = RequestJson.string(transfer, "sender");
+        String receiver = RequestJson.string(transfer, "receiver");
+        BigDecimal amount = checkAmount(RequestJson.decimal(transfer, "amount"));
+        requireActAs(actAs, sender);
+        requireParty(receiver);
+        JsonObject instrumentId = RequestJson.object(transfer, "instrumentId");
+        if (!dsoParty.equals(RequestJson.string(instrumentId, "admin")) || !INSTRUMENT_ID.equals(RequestJson.string(instrumentId, "id"))) {
+            throw new IllegalArgumentException("Unknown instrument " + instrumentId);
+        }
+
+        List<Node> children = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (JsonElement inputCid : RequestJson.array(transfer, "inputHoldingCids")) {
+            Contract holding = fetchActive(RequestJson.asString(inputCid, "input holding"), effects);
+            if (!holding.isHolding() || !holding.owner().equals(sender) || holding.isLocked()) {
+                throw new IllegalArgumentException("Contract " + holding.contractId() + " is not an unlocked holding of " + sender);
+            }
+            total = total.add(holding.amount());
+            children.add(archive(effects, holding, sender));
+        }
+        if (total.compareTo(amount) < 0) {
+            throw new IllegalArgumentException("Insufficient funds: the input holdings of " + sender + " amount to " + total + ", but " + amount + " are transferred");
+        }
+
+        String transferKind = transferKind(sender, receiver);
+        JsonObject result;
+        List<String> senderChangeCids = new ArrayList<>();
+        if (transferKind.equals("offer")) {
+            Node locked = createHolding(effects, LOCKED_AMULET_TEMPLATE_ID, sender, amount, lock(receiver, transfer.get("executeBefore")));
+            children.add(locked);
+            addChange(effects, sender, total.subtract(amount), children, senderChangeCids);
+
+            JsonObject instructionArgument = new JsonObject();
+            instructionArgument.addProperty("lockedAmulet", locked.contractId());
+            instructionArgument.add("transfer", normalizedTransfer(transfer, amount));
+            JsonObject instructionView = new JsonObject();
+            instructionView.add("meta", meta(Map.of()));
+            instructionView.add("originalInstructionCid", JsonNull.INSTANCE);
+            instructionView.add("status", variant("TransferPendingReceiverAcceptance", new JsonObject()));
+            instructionView.add("transfer", normalizedTransfer(transfer, amount));
+            Node instruction = create(effects, TRANSFER_INSTRUCTION_TEMPLATE_ID, TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID,
+                    List.of(dsoParty, sender), List.of(receiver), instructionArgument, instructionView);
+            children.add(instruction);
+
+            JsonObject pending = new JsonObject();
+            pending.addProperty("transferInstructionCid", instruction.contractId());
+            result = transferResult(variant("TransferInstructionResult_Pending", pending), senderChangeCids);
+        } else {
+            Node received = createHolding(effects, AMULET_TEMPLATE_ID, receiver, amount, null);
+            children.add(received);
+            addChange(effects, sender, total.subtract(amount), children, senderChangeCids);
+            result = completedResult(List.of(received.contractId()), senderChangeCids);
+        }
+        return exercised(effects, factory, TemplateId.TRANSFER_FACTORY_INTERFACE_ID, List.of(), "TransferFactory_Transfer", false,
+                sender, argument, result, children);
+    }
+
+    private void addChange(Effects effects, String sender, BigDecimal change, List<Node> children, List<String> senderChangeCids) {
+        if (change.signum() > 0) {
+            Node created = createHolding(effects, AMULET_TEMPLATE_ID, sender, change, null);
+            children.add(created);
+            senderChangeCids.add(created.contractId());
+        }
+    }
+
+    private Node completeInstruction(List<String> actAs, Contract instruction, String choice, JsonObject argument, Effects effects) {
+        if (!instruction.templateId().equals(TRANSFER_INSTRUCTION_TEMPLATE_ID)) {
+            throw new IllegalArgumentException("Contract " + instruction.contractId() + " is not a transfer instruction");
+        }
+        JsonObject transfer = instruction.view().getAsJsonObject("transfer");
+        String sender = transfer.get("sender").getAsString();
+        String receiver = transfer.get("receiver").getAsString();
+        BigDecimal amount = transfer.get("amount").getAsBigDecimal();
+        Contract locked = fetchActive(instruction.createArgument().get("lockedAmulet").getAsString(), effects);
+
+        String actingParty = choice.equals("TransferInstruction_Withdraw") ? sender : receiver;
+        requireActAs(actAs, actingParty);
+        List<Node> children = new ArrayList<>();
+        JsonObject result;
+        if (choice.equals("TransferInstruction_Accept")) {
+            children.add(archive(effects, locked, actingParty));
+            Node received = createHolding(effects, AMULET_TEMPLATE_ID, receiver, amount, null);
+            children.add(received);
+            result = completedResult(List.of(received.contractId()), List.of());
+        } else {
+            Node returned = createHolding(effects, AMULET_TEMPLATE_ID, sender, amount, null);
+            children.add(exercised(effects, locked, null, List.of(TemplateId.HOLDING_INTERFACE_ID), "LockedAmulet_Unlock", true,
+                    actingParty, new JsonObject(), unlockResult(returned.contractId()), List.of(returned)));
+            result = transferResult(variant("TransferInstructionResult_Failed", new JsonObject()), List.of(returned.contractId()));
+        }
+        return exercised(effects, instruction, TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID, List.of(TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID),
+                choice, true, actingParty, argument, result, children);
+    }
+
+    private Contract fetchActive(String contractId, Effects effects) {
+        Contract contract = contracts.get(contractId);
+        if (contract == null) {
+            throw new IllegalArgumentException("Unknown contract " + contractId);
+        }
+        if (archivedOffsets.containsKey(contractId) || effects.archived.contains(contractId)) {
+            throw new IllegalStateException("Contract " + contractId + " is not active");
+        }
+        return contract;
+    }
+
+    private void requireParty(String party) {
+        if (!parties.contains(party)) {
+            throw new IllegalArgumentException("Unknown party " + party);
+        }
+    }
+
+    private static void requireActAs(List<String> actAs, String party) {
+        if (!actAs.contains(party)) {
+            throw new IllegalArgumentException("Missing authorization of " + party);
+        }
+    }
+
+    private static BigDecimal checkAmount(BigDecimal amount) {
+        if (amount.signum() <= 0 || amount.stripTrailingZeros().scale() > 10) {
+            throw new IllegalArgumentException("Amounts must be positive with at most 10 decimal places, got " + amount);
+        }
+        return amount;
+    }
+
+    // Commits
+
+    private JsonObject commit(String commandId, List<Node> roots, Effects effects) {
+        long offset = ++ledgerEnd;
+        String time = timestamp(Instant.now());
+        JsonArray events = new JsonArray();
+        for (Node root : roots) {
+            appendEvents(root, offset, time, events);
+        }
+
+        for (String contractId : effects.archived) {
+            archivedOffsets.put(contractId, offset);
+            for (String stakeholder : contracts.get(contractId).stakeholders()) {
+                activeContractIdsByParty.get(stakeholder).remove(contractId);
+            }
+        }
+        for (Contract contract : effects.created) {
+            contracts.put(contract.contractId(), contract);
+            for (String stakeholder : contract.stakeholders()) {
+                activeContractIdsByParty.computeIfAbsent(stakeholder, party -> new LinkedHashSet<>()).add(contract.contractId());
+            }
+            if (contract.templateId().equals(TemplateId.TRANSFER_PREAPPROVAL_ID.getRaw())) {
+                transferPreapprovalIdsByReceiver.put(contract.createArgument().get("receiver").getAsString(), contract.contractId());
+            }
+        }
+
+        JsonObject tx = new JsonObject();
+        tx.addProperty("commandId", commandId);
+        tx.addProperty("effectiveAt", time);
+        tx.add("events", events);
+        tx.addProperty("offset", offset);
+        tx.addProperty("recordTime", time);
+        tx.addProperty("synchronizerId", synchronizerId);
+        tx.add("traceContext", JsonNull.INSTANCE);
+        tx.addProperty("updateId", "update-" + offset);
+        tx.addProperty("workflowId", "");
+
+        JsonObject transaction = new JsonObject();
+        transaction.add("value", tx);
+        JsonObject update = new JsonObject();
+        update.add("Transaction", transaction);
+        JsonObject response = new JsonObject();
+        response.add("update", update);
+        updates.add(new Update(offset, Set.copyOf(effects.informees), ExtendedJson.gson.toJson(response)));
+        return tx;
+    }
+
+    /**
+     * Append the events of the tree in pre-order, assigning their node IDs. Uses an explicit stack, as exercises may be
+     * nested arbitrarily deep.
+     */
+    private static void appendEvents(Node root, long offset, String time, JsonArray events) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int nodeId = events.size();
+            node.event().addProperty("nodeId", nodeId);
+            node.event().addProperty("offset", offset);
+            if (node.kind().equals(EXERCISED_EVENT)) {
+                node.event().addProperty("lastDescendantNodeId", nodeId + node.size() - 1);
+            } else {
+                node.event().addProperty("createdAt", time);
+            }
+            JsonObject event = new JsonObject();
+            event.add(node.kind(), node.event());
+            events.add(event);
+            for (int i = node.children().size() - 1; i >= 0; i--) {
+                stack.push(node.children().get(i));
+            }
+        }
+    }
+
+    private static <T> int firstIndexAfter(List<T> entries, ToLongFunction<T> offset, long beginExclusive) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offset.applyAsLong(entries.get(mid)) <= beginExclusive) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Events
+
+    private Node create(Effects effects, String templateId, TemplateId interfaceId, List<String> signatories,
+                        List<String> observers, JsonObject createArgument, JsonObject view) {
+        String contractId = "00" + Long.toHexString(++numContracts);
+        JsonObject event = new JsonObject();
+        event.addProperty("contractId", contractId);
+        event.add("contractKey", JsonNull.INSTANCE);
+        event.add("createArgument", createArgument);
+        event.addProperty("createdEventBlob", "");
+        if (interfaceId != null) {
+            JsonObject viewStatus = new JsonObject();
+            viewStatus.addProperty("code", 0);
+            viewStatus.add("details", new JsonArray());
+            viewStatus.addProperty("message", "");
+            JsonObject interfaceView = new JsonObject();
+            interfaceView.addProperty("interfaceId", interfaceId.getRaw());
+            interfaceView.add("viewStatus", viewStatus);
+            interfaceView.add("viewValue", view);
+            event.add("interfaceViews", array(List.of(interfaceView)));
+        } else {
+            event.add("interfaceViews", new JsonArray());
+        }
+        event.add("observers", strings(observers));
+        event.addProperty("packageName", packageName(templateId));
+        event.add("signatories", strings(signatories));
+        event.addProperty("templateId", templateId);
+
+        Contract contract = new Contract(contractId, templateId, interfaceId, List.copyOf(signatories), List.copyOf(observers),
+                createArgument, view, event);
+        event.add("witnessParties", strings(contract.stakeholders()));
+        effects.created.add(contract);
+        effects.informees.addAll(contract.stakeholders());
+        return new Node(CREATED_EVENT, event, List.of());
+    }
+
+    private Node createHolding(Effects effects, String templateId, String owner, BigDecimal amount, JsonObject lock) {
+        JsonObject instrumentId = new JsonObject();
+        instrumentId.addProperty("admin", dsoParty);
+        instrumentId.addProperty("id", INSTRUMENT_ID);
+        JsonObject view = new JsonObject();
+        view.addProperty("amount", decimal(amount));
+        view.add("instrumentId", instrumentId);
+        view.add("lock", lock == null ? JsonNull.INSTANCE : lock);
+        view.add("meta", meta(Map.of()));
+        view.addProperty("owner", owner);
+        // the view stands in for the create argument, which the store does not look at
+        return create(effects, templateId, TemplateId.HOLDING_INTERFACE_ID, List.of(dsoParty, owner), List.of(), view, view);
+    }
+
+    private Node createTransferPreapproval(Effects effects, String receiver, String provider) {
+        String now = timestamp(Instant.now());
+        JsonObject preapproval = new JsonObject();
+        preapproval.addProperty("dso", dsoParty);
+        preapproval.addProperty("expiresAt", timestamp(Instant.now().plus(365, ChronoUnit.DAYS)));
+        preapproval.addProperty("lastRenewedAt", now);
+        preapproval.addProperty("provider", provider);
+        preapproval.addProperty("receiver", receiver);
+        preapproval.addProperty("validFrom", now);
+        List<String> signatories = receiver.equals(provider) ? List.of(dsoParty, receiver) : List.of(dsoParty, provider, receiver);
+        return create(effects, TemplateId.TRANSFER_PREAPPROVAL_ID.getRaw(), null, signatories, List.of(), preapproval, null);
+    }
+
+    private Node exercised(Effects effects, Contract contract, TemplateId interfaceId, List<TemplateId> implementedInterfaces,
+                           String choice, boolean consuming, String actingParty, JsonElement choiceArgument,
+                           JsonElement exerciseResult, List<Node> children) {
+        List<String> witnesses = new ArrayList<>(contract.stakeholders());
+        if (!witnesses.contains(actingParty)) {
+            witnesses.add(actingParty);
+        }
+        JsonObject event = new JsonObject();
+        event.add("actingParties", strings(List.of(actingParty)));
+        event.addProperty("choice", choice);
+        event.add("choiceArgument", choiceArgument);
+        event.addProperty("consuming", consuming);
+        event.addProperty("contractId", contract.contractId());
+        event.add("exerciseResult", exerciseResult);
+        event.add("implementedInterfaces", strings(implementedInterfaces.stream().map(TemplateId::getRaw).toList()));
+        event.add("interfaceId", interfaceId == null ? JsonNull.INSTANCE : new JsonPrimitive(interfaceId.getRaw()));
+        event.addProperty("packageName", packageName(contract.templateId()));
+        event.addProperty("templateId", contract.templateId());
+        event.add("witnessParties", strings(witnesses));
+        if (consuming) {
+            effects.archived.add(contract.contractId());
+        }
+        effects.informees.addAll(witnesses);
+        return new Node(EXERCISED_EVENT, event, children);
+    }
+
+    private Node archive(Effects effects, Contract contract, String actingParty) {
+        return exercised(effects, contract, null, List.of(TemplateId.HOLDING_INTERFACE_ID), "Archive", true, actingParty,
+                new JsonObject(), new JsonObject(), List.of());
+    }
+
+    private JsonObject activeContractResponse(Contract contract) {
+        JsonObject activeContract = new JsonObject();
+        activeContract.add("createdEvent", contract.createdEvent());
+        activeContract.addProperty("reassignmentCounter", 0);
+        activeContract.addProperty("synchronizerId", synchronizerId);
+        JsonObject contractEntry = new JsonObject();
+        contractEntry.add("JsActiveContract", activeContract);
+        JsonObject response = new JsonObject();
+        response.add("contractEntry", contractEntry);
+        response.addProperty("workflowId", "");
+        return response;
+    }
+
+    // Choice arguments and results
+
+    /**
+     * The transfer of a choice argument, with the amount in the Daml encoding of decimals.
+     */
+    private static JsonObject normalizedTransfer(JsonObject transfer, BigDecimal amount) {
+        JsonObject normalized = transfer.deepCopy();
+        normalized.addProperty("amount", decimal(amount));
+        return normalized;
+    }
+
+    private JsonObject lock(String receiver, JsonElement expiresAt) {
+        JsonObject lock = new JsonObject();
+        lock.addProperty("context", "transfer to '" + receiver + "'");
+        lock.add("expiresAfter", JsonNull.INSTANCE);
+        lock.add("expiresAt", expiresAt);
+        lock.add("holders", strings(List.of(dsoParty)));
+        return lock;
+    }
+
+    private static JsonObject completedResult(List<String> receiverHoldingCids, List<String> senderChangeCids) {
+        JsonObject completed = new JsonObject();
+        completed.add("receiverHoldingCids", strings(receiverHoldingCids));
+        return transferResult(variant("TransferInstructionResult_Completed", completed), senderChangeCids);
+    }
+
+    private static JsonObject transferResult(JsonObject output, List<String> senderChangeCids) {
+        JsonObject result = new JsonObject();
+        result.add("meta", meta(Map.of()));
+        result.add("output", output);
+        result.add("senderChangeCids", strings(senderChangeCids));
+        return result;
+    }
+
+    private static JsonObject unlockResult(String amuletCid) {
+        JsonObject amuletSum = new JsonObject();
+        amuletSum.addProperty("amulet", amuletCid);
+        JsonObject result = new JsonObject();
+        result.add("amuletSum", amuletSum);
+        result.add("meta", meta(Map.of(MEMO_KEY, "holders released lock", TRANSFER_KIND_KEY, "unlock")));
+        return result;
+    }
+
+    private static JsonObject meta(Map<String, String> values) {
+        JsonObject valuesJson = new JsonObject();
+        values.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> valuesJson.addProperty(entry.getKey(), entry.getValue()));
+        JsonObject meta = new JsonObject();
+        meta.add("values", valuesJson);
+        return meta;
+    }
+
+    private static JsonObject variant(String tag, JsonObject value) {
+        JsonObject variant = new JsonObject();
+        variant.addProperty("tag", tag);
+        variant.add("value", value);
+        return variant;
+    }
+
+    private static JsonArray strings(List<String> values) {
+        JsonArray array = new JsonArray(values.size());
+        values.forEach(array::add);
+        return array;
+    }
+
+    private static JsonArray array(List<? extends JsonElement> values) {
+        JsonArray array = new JsonArray(values.size());
+        values.forEach(array::add);
+        return array;
+    }
+
+    private static String packageName(String templateId) {
+        return templateId.substring(1, templateId.indexOf(':'));
+    }
+
+    private static String decimal(BigDecimal amount) {
+        return amount.setScale(10, RoundingMode.UNNECESSARY).toPlainString();
+    }
+
+    private static String timestamp(Instant instant) {
+        return TIMESTAMP_FORMAT.format(instant);
+    }
+}
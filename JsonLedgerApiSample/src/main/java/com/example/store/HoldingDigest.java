@@ -0,0 +1,142 @@
+package com.example.store;
+
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.holdingv1.InstrumentId;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * An order-independent summary of a set of holdings, bucketed by instrument.
+ * <p>
+ * Each bucket summarizes the holdings of one instrument by their number, their total amount, and the XOR of the
+ * SHA-256 hashes of their contract IDs and amounts. As XOR is its own inverse, the summary can be maintained
+ * incrementally when holdings are created and archived, see {@link IntegrationStore#getHoldingDigest()}.
+ * The root hash combines the bucket summaries, so that two sets of holdings can be compared with a single hash,
+ * and only the buckets of mismatching instruments need to be compared in detail, see {@link HoldingReconciliation}.
+ */
+public final class HoldingDigest {
+
+    private static final int HASH_SIZE = 32;
+
+    /**
+     * The summary of the holdings of one instrument.
+     *
+     * @param hash the hex-encoded XOR of the hashes of the holdings
+     */
+    public record InstrumentSummary(InstrumentId instrumentId, long numHoldings, BigDecimal totalAmount, String hash) {
+    }
+
+    private static final class Bucket {
+        private long numHoldings = 0;
+        private BigDecimal totalAmount = BigDecimal.ZERO;
+        private final byte[] hash = new byte[HASH_SIZE];
+
+        private Bucket copy() {
+            Bucket copy = new Bucket();
+            copy.numHoldings = numHoldings;
+            copy.totalAmount = totalAmount;
+            System.arraycopy(hash, 0, copy.hash, 0, HASH_SIZE);
+            return copy;
+        }
+    }
+
+    private final HashMap<InstrumentId, Bucket> buckets = new HashMap<>();
+    private final MessageDigest sha256 = newSha256();
+
+    public HoldingDigest() {
+    }
+
+    public static HoldingDigest of(Map<String, HoldingView> holdings) {
+        HoldingDigest digest = new HoldingDigest();
+        holdings.forEach(digest::add);
+        return digest;
+    }
+
+    public HoldingDigest copy() {
+        HoldingDigest copy = new HoldingDigest();
+        buckets.forEach((instrumentId, bucket) -> copy.buckets.put(instrumentId, bucket.copy()));
+        return copy;
+    }
+
+    public void add(String contractId, HoldingView holding) {
+        Bucket bucket = buckets.computeIfAbsent(holding.instrumentId, k -> new Bucket());
+        bucket.numHoldings++;
+        bucket.totalAmount = bucket.totalAmount.add(holding.amount);
+        xorInto(bucket.hash, hashHolding(contractId, holding));
+    }
+
+    public void remove(String contractId, HoldingView holding) {
+        Bucket bucket = buckets.get(holding.instrumentId);
+        if (bucket == null) {
+            throw new IllegalArgumentException("Cannot remove holding " + contractId + " of instrument " + holding.instrumentId + " that is not in the digest");
+        }
+        bucket.numHoldings--;
+        bucket.totalAmount = bucket.totalAmount.subtract(holding.amount);
+        xorInto(bucket.hash, hashHolding(contractId, holding));
+        if (bucket.numHoldings == 0) {
+            buckets.remove(holding.instrumentId);
+        }
+    }
+
+    public Map<InstrumentId, InstrumentSummary> getInstrumentSummaries() {
+        Map<InstrumentId, InstrumentSummary> summaries = new HashMap<>();
+        buckets.forEach((instrumentId, bucket) -> summaries.put(instrumentId, summarize(instrumentId, bucket)));
+        return summaries;
+    }
+
+    /**
+     * The hex-encoded hash over the summaries of all instruments, which is equal for equal sets of holdings.
+     */
+    public String rootHash() {
+        List<InstrumentId> instrumentIds = new ArrayList<>(buckets.keySet());
+        instrumentIds.sort(Comparator.comparing((InstrumentId instrumentId) -> instrumentId.admin).thenComparing(instrumentId -> instrumentId.id));
+        for (InstrumentId instrumentId : instrumentIds) {
+            Bucket bucket = buckets.get(instrumentId);
+            updateWithString(instrumentId.admin);
+            updateWithString(instrumentId.id);
+            updateWithString(Long.toString(bucket.numHoldings));
+            updateWithString(canonicalAmount(bucket.totalAmount));
+            sha256.update(bucket.hash);
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private static InstrumentSummary summarize(InstrumentId instrumentId, Bucket bucket) {
+        return new InstrumentSummary(instrumentId, bucket.numHoldings, bucket.totalAmount, HexFormat.of().formatHex(bucket.hash));
+    }
+
+    private byte[] hashHolding(String contractId, HoldingView holding) {
+        updateWithString(contractId);
+        updateWithString(canonicalAmount(holding.amount));
+        return sha256.digest();
+    }
+
+    private void updateWithString(String value) {
+        sha256.update(value.getBytes(StandardCharsets.UTF_8));
+        // Separator, so that the concatenation of the fields is unambiguous
+        sha256.update((byte) 0);
+    }
+
+    // The same amount might be rendered with different scales, e.g., by the ACS and the update streams
+    private static String canonicalAmount(BigDecimal amount) {
+        return amount.stripTrailingZeros().toPlainString();
+    }
+
+    private static void xorInto(byte[] target, byte[] hash) {
+        for (int i = 0; i < HASH_SIZE; i++) {
+            target[i] ^= hash[i];
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.store;
+
+import com.example.models.ContractAndId;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.holdingv1.InstrumentId;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Reconciliation of the active holdings tracked by an {@link IntegrationStore} against the active contracts
+ * on the ledger at the last ingested offset of the store.
+ * <p>
+ * The ledger holdings are first only summarized into a {@link HoldingDigest}, and compared against the digest that
+ * the store maintains incrementally. Only if the root hashes differ are the holdings of the mismatching instruments
+ * read again from the ledger and compared contract by contract.
+ */
+public final class HoldingReconciliation {
+
+    private static final Logger log = Logger.getLogger(HoldingReconciliation.class.getName());
+
+    /**
+     * Source of the active holdings on the ledger, e.g., {@link com.example.services.Wallet#queryForHoldingsAt}.
+     */
+    public interface LedgerHoldingSource {
+        /**
+         * The holdings visible to the treasury party that are active at the given offset.
+         *
+         * @param instrumentIds the instruments to return the holdings for, or null for all instruments
+         */
+        Iterable<ContractAndId<HoldingView>> fetchHoldings(long activeAtOffset, Set<InstrumentId> instrumentIds) throws Exception;
+    }
+
+    /**
+     * The outcome of a reconciliation.
+     *
+     * @param offset                  the offset at which the store and the ledger were compared
+     * @param matches                 whether the holdings of the store match the ledger
+     * @param mismatchingInstruments  the instruments whose summaries differ
+     * @param onlyInStore             the holdings of the mismatching instruments that the store has but the ledger does not, or has with different values
+     * @param onlyOnLedger            the holdings of the mismatching instruments that the ledger has but the store does not, or has with different values
+     */
+    public record Result(
+            long offset,
+            boolean matches,
+            Set<InstrumentId> mismatchingInstruments,
+            Map<String, HoldingView> onlyInStore,
+            Map<String, HoldingView> onlyOnLedger) {
+    }
+
+    private HoldingReconciliation() {
+    }
+
+    /**
+     * Reconcile the holdings of the store against the ledger.
+     * <p>
+     * Must be called from the ingesting thread, or while no updates are ingested.
+     */
+    public static Result reconcile(IntegrationStore store, LedgerHoldingSource source) throws Exception {
+        long offset = store.getLastIngestedOffset();
+        String treasuryParty = store.getTreasuryParty();
+        HoldingDigest storeDigest = store.getHoldingDigest();
+
+        HoldingDigest ledgerDigest = new HoldingDigest();
+        for (ContractAndId<HoldingView> holding : source.fetchHoldings(offset, null)) {
+            if (holding.record().owner.equals(treasuryParty)) {
+                ledgerDigest.add(holding.contractId(), holding.record());
+            }
+        }
+        if (storeDigest.rootHash().equals(ledgerDigest.rootHash())) {
+            log.fine(() -> "Holdings of " + treasuryParty + " match the ledger at offset " + offset);
+            return new Result(offset, true, Set.of(), Map.of(), Map.of());
+        }
+
+        Map<InstrumentId, HoldingDigest.InstrumentSummary> storeSummaries = storeDigest.getInstrumentSummaries();
+        Map<InstrumentId, HoldingDigest.InstrumentSummary> ledgerSummaries = ledgerDigest.getInstrumentSummaries();
+        Set<InstrumentId> mismatchingInstruments = new HashSet<>(storeSummaries.keySet());
+        mismatchingInstruments.addAll(ledgerSummaries.keySet());
+        mismatchingInstruments.removeIf(instrumentId -> sameSummary(storeSummaries.get(instrumentId), ledgerSummaries.get(instrumentId)));
+
+        // Drill into the mismatching instruments only
+        Map<String, HoldingView> onlyInStore = new HashMap<>();
+        store.getActiveHoldings().forEach((contractId, holding) -> {
+            if (mismatchingInstruments.contains(holding.instrumentId)) {
+                onlyInStore.put(contractId, holding);
+            }
+        });
+        Map<String, HoldingView> onlyOnLedger = new HashMap<>();
+        for (ContractAndId<HoldingView> holding : source.fetchHoldings(offset, mismatchingInstruments)) {
+            HoldingView view = holding.record();
+            if (!view.owner.equals(treasuryParty) || !mismatchingInstruments.contains(view.instrumentId)) {
+                continue;
+            }
+            HoldingView storeView = onlyInStore.get(holding.contractId());
+            if (storeView != null && sameHolding(storeView, view)) {
+                onlyInStore.remove(holding.contractId());
+            } else {
+                onlyOnLedger.put(holding.contractId(), view);
+            }
+        }
+
+        log.warning("Holdings of " + treasuryParty + " do not match the ledger at offset " + offset + " for instruments " + mismatchingInstruments
+                + ": only in store " + onlyInStore.keySet() + ", only on ledger " + onlyOnLedger.keySet());
+        return new Result(offset, false, mismatchingInstruments, onlyInStore, onlyOnLedger);
+    }
+
+    // The same amounts might be rendered with different scales by the store and the ledger, as in the digest
+    private static boolean sameSummary(HoldingDigest.InstrumentSummary storeSummary, HoldingDigest.InstrumentSummary ledgerSummary) {
+        if (storeSummary == null || ledgerSummary == null) {
+            return storeSummary == ledgerSummary;
+        }
+        return storeSummary.numHoldings() == ledgerSummary.numHoldings()
+                && storeSummary.totalAmount().compareTo(ledgerSummary.totalAmount()) == 0
+                && storeSummary.hash().equals(ledgerSummary.hash());
+    }
+
+    private static boolean sameHolding(HoldingView storeView, HoldingView ledgerView) {
+        return storeView.amount.compareTo(ledgerView.amount) == 0
+                && storeView.owner.equals(ledgerView.owner)
+                && storeView.instrumentId.equals(ledgerView.instrumentId)
+                && storeView.lock.equals(ledgerView.lock);
+    }
+}
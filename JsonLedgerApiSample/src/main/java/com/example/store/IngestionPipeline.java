@@ -0,0 +1,266 @@
+package com.example.store;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.client.ledger.model.Update;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Pipelined ingestion of updates into an {@link IntegrationStore}.
+ * <p>
+ * The ingestion is split into three stages:
+ * - a fetch stage that reads pages of updates from an {@link UpdateSource} or {@link RangeUpdateSource},
+ * - a decode stage that decodes the updates in parallel using {@link IntegrationStore#decodeUpdate}, and
+ * - an apply stage that applies the decoded updates to the store in offset order, see {@link IntegrationStore#applyUpdates}.
+ * <p>
+ * The stages are connected by a bounded buffer of pending decodes, so that fetching and decoding runs
+ * at most {@code bufferSize} updates ahead of the apply stage.
+ * <p>
+ * For catching up from an old offset, {@link #backfill} fetches consecutive offset ranges concurrently
+ * and reassembles them in offset order before handing them to the decode stage.
+ */
+public class IngestionPipeline implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(IngestionPipeline.class.getName());
+
+    /**
+     * Source of the updates to ingest, e.g., {@link com.example.services.Wallet#queryForHoldingTransactions}.
+     */
+    public interface UpdateSource {
+        /**
+         * Fetch the next page of updates after the given offset. An empty page signals that there are
+         * no further updates to ingest.
+         */
+        List<JsGetUpdatesResponse> fetchUpdates(long beginAfterOffset) throws Exception;
+
+        /**
+         * Discard any page fetched ahead of the caller, so that the next page is requested after this call, e.g.,
+         * after the caller refreshed the ledger end that it compares the fetched pages against.
+         */
+        default void discardPrefetched() {
+        }
+    }
+
+    /**
+     * Source of the updates in a bounded ledger section, e.g.,
+     * {@link com.example.services.Wallet#queryForHoldingTransactions(String, Long, Long)}.
+     */
+    public interface RangeUpdateSource {
+        /**
+         * Fetch the next page of updates after {@code beginAfterOffset} up to and including {@code endInclusive}.
+         * An empty page signals that there are no further updates in the ledger section.
+         */
+        List<JsGetUpdatesResponse> fetchUpdates(long beginAfterOffset, long endInclusive) throws Exception;
+    }
+
+    /**
+     * Listener that is called on the apply thread after each batch of updates has been applied to the store.
+     */
+    public interface ApplyListener {
+        void applied(int numUpdates);
+    }
+
+    private interface FetchStage {
+        void fetch(BlockingQueue<Future<IntegrationStore.DecodedUpdate>> buffer) throws Exception;
+    }
+
+    private static final int MAX_APPLY_BATCH_SIZE = 100;
+
+    // Marks the end of the updates in the buffer
+    private static final Future<IntegrationStore.DecodedUpdate> END_OF_UPDATES = CompletableFuture.completedFuture(null);
+
+    private final IntegrationStore store;
+    private final int bufferSize;
+    private final ExecutorService fetchExecutor;
+    private final ExecutorService decodeExecutor;
+    private volatile ApplyListener applyListener = null;
+
+    public IngestionPipeline(IntegrationStore store, int decodeThreads, int bufferSize) {
+        if (decodeThreads < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("decodeThreads and bufferSize must be positive, got " + decodeThreads + " and " + bufferSize);
+        }
+        this.store = store;
+        this.bufferSize = bufferSize;
+        this.fetchExecutor = Executors.newSingleThreadExecutor(daemonThreads("ingestion-fetch"));
+        this.decodeExecutor = Executors.newFixedThreadPool(decodeThreads, daemonThreads("ingestion-decode"));
+    }
+
+    public void setApplyListener(ApplyListener applyListener) {
+        this.applyListener = applyListener;
+    }
+
+    /**
+     * Ingest all updates after the last ingested offset of the store until the update source returns an empty page.
+     * <p>
+     * The apply stage runs on the calling thread. The store must not be modified concurrently.
+     *
+     * @return the number of ingested updates
+     */
+    public long ingestToEnd(UpdateSource source) throws Exception {
+        long startOffset = store.getLastIngestedOffset();
+        return ingest(buffer -> {
+            long offset = startOffset;
+            while (true) {
+                List<JsGetUpdatesResponse> page = source.fetchUpdates(offset);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (JsGetUpdatesResponse response : page) {
+                    offset = submitDecode(response, buffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Ingest all updates after the last ingested offset of the store up to and including {@code endOffset},
+     * e.g., the current ledger end.
+     * <p>
+     * The ledger section is split into ranges of {@code rangeSize} offsets, which are fetched concurrently
+     * on {@code fetchThreads} threads. At most {@code reorderWindow} ranges are fetched ahead of the range
+     * that is being handed to the decode stage, which bounds the memory used to reassemble them in offset order.
+     *
+     * @return the number of ingested updates
+     */
+    public long backfill(RangeUpdateSource source, long endOffset, long rangeSize, int fetchThreads, int reorderWindow) throws Exception {
+        if (rangeSize < 1 || fetchThreads < 1 || reorderWindow < fetchThreads) {
+            throw new IllegalArgumentException("rangeSize and fetchThreads must be positive and reorderWindow must be at least fetchThreads, got "
+                    + rangeSize + ", " + fetchThreads + ", and " + reorderWindow);
+        }
+        long startOffset = store.getLastIngestedOffset();
+        return ingest(buffer -> {
+            ExecutorService rangeExecutor = Executors.newFixedThreadPool(fetchThreads, daemonThreads("ingestion-backfill"));
+            try {
+                ArrayDeque<Future<List<JsGetUpdatesResponse>>> window = new ArrayDeque<>();
+                long nextBegin = startOffset;
+                while (nextBegin < endOffset || !window.isEmpty()) {
+                    while (nextBegin < endOffset && window.size() < reorderWindow) {
+                        long begin = nextBegin;
+                        long end = Math.min(endOffset, begin + rangeSize);
+                        window.add(rangeExecutor.submit(() -> fetchRange(source, begin, end)));
+                        nextBegin = end;
+                    }
+                    for (JsGetUpdatesResponse response : getResult(window.poll())) {
+                        submitDecode(response, buffer);
+                    }
+                }
+            } finally {
+                rangeExecutor.shutdownNow();
+            }
+        });
+    }
+
+    private long ingest(FetchStage fetchStage) throws Exception {
+        BlockingQueue<Future<IntegrationStore.DecodedUpdate>> buffer = new ArrayBlockingQueue<>(bufferSize);
+        long startOffset = store.getLastIngestedOffset();
+        Future<?> fetching = fetchExecutor.submit(() -> runFetchStage(fetchStage, buffer));
+        long numIngested = 0;
+        List<Future<IntegrationStore.DecodedUpdate>> pending = new ArrayList<>();
+        List<IntegrationStore.DecodedUpdate> batch = new ArrayList<>();
+        try {
+            boolean done = false;
+            while (!done) {
+                // Apply all updates that are available, so that transactions from different synchronizers can be applied concurrently
+                pending.clear();
+                pending.add(buffer.take());
+                buffer.drainTo(pending, MAX_APPLY_BATCH_SIZE - 1);
+                batch.clear();
+                for (Future<IntegrationStore.DecodedUpdate> next : pending) {
+                    if (next == END_OF_UPDATES) {
+                        done = true;
+                        break;
+                    }
+                    try {
+                        batch.add(getResult(next));
+                    } catch (Exception ex) {
+                        store.applyUpdates(batch, decodeExecutor);
+                        throw ex;
+                    }
+                }
+                store.applyUpdates(batch, decodeExecutor);
+                numIngested += batch.size();
+                ApplyListener listener = applyListener;
+                if (listener != null && !batch.isEmpty()) {
+                    listener.applied(batch.size());
+                }
+            }
+        } finally {
+            // Stops the fetch stage if the apply stage failed
+            fetching.cancel(true);
+        }
+        log.fine("Ingested " + numIngested + " updates after offset " + startOffset);
+        return numIngested;
+    }
+
+    private static void runFetchStage(FetchStage fetchStage, BlockingQueue<Future<IntegrationStore.DecodedUpdate>> buffer) {
+        try {
+            fetchStage.fetch(buffer);
+            buffer.put(END_OF_UPDATES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            // Surface the failure in the apply stage once it has applied all updates fetched before
+            try {
+                buffer.put(CompletableFuture.failedFuture(ex));
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hand an update to the decode stage.
+     *
+     * @return the offset of the update
+     */
+    private long submitDecode(JsGetUpdatesResponse response, BlockingQueue<Future<IntegrationStore.DecodedUpdate>> buffer) throws InterruptedException {
+        Update update = response.getUpdate();
+        buffer.put(decodeExecutor.submit(() -> store.decodeUpdate(update)));
+        return IntegrationStore.getUpdateOffset(update);
+    }
+
+    private static List<JsGetUpdatesResponse> fetchRange(RangeUpdateSource source, long beginAfterOffset, long endInclusive) throws Exception {
+        List<JsGetUpdatesResponse> updates = new ArrayList<>();
+        long offset = beginAfterOffset;
+        while (offset < endInclusive) {
+            List<JsGetUpdatesResponse> page = source.fetchUpdates(offset, endInclusive);
+            if (page.isEmpty()) {
+                break;
+            }
+            updates.addAll(page);
+            offset = IntegrationStore.getUpdateOffset(page.get(page.size() - 1).getUpdate());
+        }
+        return updates;
+    }
+
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        }
+    }
+
+    @Override
+    public void close() {
+        fetchExecutor.shutdownNow();
+        decodeExecutor.shutdownNow();
+    }
+
+    /**
+     * Daemon threads named after the given prefix and their index, e.g., {@code ingestion-decode-1}.
+     */
+    static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.store;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background service that continuously tails the updates of the treasury party into an {@link IntegrationStore}.
+ * <p>
+ * The updates are ingested using an {@link IngestionPipeline}, whose bounded buffer stops fetching updates when the
+ * apply stage falls behind. Once the service has caught up with the ledger end, it polls for new updates
+ * every {@code pollInterval}.
+ * <p>
+ * Stopping the service completes the application of all updates fetched so far, so the store is always left at the
+ * offset of a fully applied update, from which the service can be resumed by calling {@link #start()} again.
+ * While the service runs, the store must be read through {@link IntegrationStore#getSnapshot()} or
+ * {@link IntegrationStore#subscribe}, its other accessors must only be used while the service is stopped.
+ * <p>
+ * If configured with {@link CatchUpThresholds}, the service switches the store to catch-up mode while it lags far
+ * behind the ledger end, and back to tail mode once it is close to the ledger end, see
+ * {@link IntegrationStore#setCatchUpMode}. A {@link ModeListener} can be used to adjust further settings,
+ * e.g., the page size of a {@link PrefetchingUpdateSource}.
+ */
+public class IngestionService implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(IngestionService.class.getName());
+
+    /**
+     * Source of the current ledger end, e.g., {@link com.example.services.Wallet#getLedgerEnd()}.
+     */
+    public interface LedgerEndSource {
+        long getLedgerEnd() throws Exception;
+    }
+
+    public enum Mode {
+        /** Ingesting a large backlog of updates, optimized for throughput */
+        CATCH_UP,
+        /** Ingesting updates close to the ledger end, optimized for latency */
+        TAIL
+    }
+
+    public interface ModeListener {
+        void modeChanged(Mode mode);
+    }
+
+    /**
+     * The offset lags at which to switch between the ingestion modes.
+     *
+     * @param enterCatchUpLag switch to catch-up mode when the offset lag exceeds this
+     * @param exitCatchUpLag  switch back to tail mode when the offset lag is at most this
+     */
+    public record CatchUpThresholds(long enterCatchUpLag, long exitCatchUpLag) {
+        public CatchUpThresholds {
+            if (exitCatchUpLag < 0 || enterCatchUpLag < exitCatchUpLag) {
+                throw new IllegalArgumentException("Invalid catch-up thresholds: enter at " + enterCatchUpLag + ", exit at " + exitCatchUpLag);
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the progress of the ingestion.
+     *
+     * @param ledgerEnd          the ledger end as of the last poll
+     * @param lastIngestedOffset the offset of the last applied update
+     * @param offsetLag          the number of offsets between the ledger end and the last applied update
+     * @param recordTimeLag      the time since the record time of the last applied update, or null if unknown
+     * @param updatesPerSecond   the number of updates applied per second over the last measurement window
+     * @param totalIngested      the total number of updates applied since the service was created
+     * @param failure            the failure that stopped the service, or null
+     * @param mode               the current ingestion mode
+     */
+    public record Metrics(
+            long ledgerEnd,
+            long lastIngestedOffset,
+            long offsetLag,
+            Duration recordTimeLag,
+            double updatesPerSecond,
+            long totalIngested,
+            Throwable failure,
+            Mode mode) {
+    }
+
+    private static final Duration THROUGHPUT_WINDOW = Duration.ofSeconds(1);
+
+    private final IntegrationStore store;
+    private final IngestionPipeline pipeline;
+    private final IngestionPipeline.UpdateSource source;
+    private final LedgerEndSource ledgerEndSource;
+    private final Duration pollInterval;
+    private final CatchUpThresholds catchUpThresholds;
+    private final ModeListener modeListener;
+
+    private final Object lock = new Object();
+    private Thread thread = null;
+    private volatile boolean stopRequested = false;
+    private volatile Long stopOffset = null;
+
+    // Progress, written by the ingestion thread
+    private volatile long ledgerEnd;
+    private volatile long lastIngestedOffset;
+    private volatile String lastIngestedRecordTime;
+    private volatile double updatesPerSecond = 0;
+    private volatile long totalIngested = 0;
+    private volatile Throwable failure = null;
+    private volatile Mode mode = Mode.TAIL;
+    private volatile long windowStartNanos = System.nanoTime();
+    private long windowUpdates = 0;
+
+    public IngestionService(
+            IntegrationStore store,
+            IngestionPipeline pipeline,
+            IngestionPipeline.UpdateSource source,
+            LedgerEndSource ledgerEndSource,
+            Duration pollInterval) {
+        this(store, pipeline, source, ledgerEndSource, pollInterval, null, null);
+    }
+
+    /**
+     * @param catchUpThresholds the thresholds for switching between catch-up and tail mode, or null to always tail
+     * @param modeListener      called on the ingestion thread when the mode changes, or null
+     */
+    public IngestionService(
+            IntegrationStore store,
+            IngestionPipeline pipeline,
+            IngestionPipeline.UpdateSource source,
+            LedgerEndSource ledgerEndSource,
+            Duration pollInterval,
+            CatchUpThresholds catchUpThresholds,
+            ModeListener modeListener) {
+        this.store = store;
+        this.pipeline = pipeline;
+        this.source = source;
+        this.ledgerEndSource = ledgerEndSource;
+        this.pollInterval = pollInterval;
+        this.catchUpThresholds = catchUpThresholds;
+        this.modeListener = modeListener;
+        this.lastIngestedOffset = store.getLastIngestedOffset();
+        this.ledgerEnd = lastIngestedOffset;
+        this.lastIngestedRecordTime = store.getLastIngestedRecordTime();
+        pipeline.setApplyListener(this::onApplied);
+    }
+
+    /**
+     * Start or resume tailing updates after the last ingested offset of the store.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (thread != null) {
+                throw new IllegalStateException("Ingestion service is already running");
+            }
+            stopRequested = false;
+            stopOffset = null;
+            failure = null;
+            thread = new Thread(this::run, "ingestion-service");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop tailing updates, and wait until all updates fetched so far have been applied.
+     */
+    public void stop() throws InterruptedException {
+        Thread running;
+        synchronized (lock) {
+            stopRequested = true;
+            lock.notifyAll();
+            running = thread;
+        }
+        if (running != null) {
+            running.join();
+        }
+    }
+
+    /**
+     * Wait until all updates up to and including the given offset have been applied, and then stop tailing updates.
+     * <p>
+     * The store is left exactly at the last update at or before the given offset.
+     */
+    public void stopAt(long offset) throws InterruptedException {
+        Thread running;
+        synchronized (lock) {
+            stopOffset = offset;
+            lock.notifyAll();
+            running = thread;
+        }
+        if (running != null) {
+            running.join();
+        }
+    }
+
+    public boolean isRunning() {
+        synchronized (lock) {
+            return thread != null;
+        }
+    }
+
+    public Metrics getMetrics() {
+        long end = ledgerEnd;
+        long offset = lastIngestedOffset;
+        // Report no throughput if nothing was applied for a while
+        boolean idle = System.nanoTime() - windowStartNanos > 2 * THROUGHPUT_WINDOW.toNanos();
+        return new Metrics(
+                end,
+                offset,
+                Math.max(0, end - offset),
+                recordTimeLag(lastIngestedRecordTime),
+                idle ? 0 : updatesPerSecond,
+                totalIngested,
+                failure,
+                mode);
+    }
+
+    private void run() {
+        try {
+            while (!isStopping()) {
+                long ledgerEndBeforeFetch = refreshLedgerEnd();
+                // A page fetched ahead before the refresh, e.g., before the service was last stopped, may miss updates up
+                // to this ledger end, so it must not count as having caught up with it
+                source.discardPrefetched();
+                updateMode();
+                long numIngested = pipeline.ingestToEnd(this::fetchUpdates);
+                Long stopAt = stopOffset;
+                if (stopAt != null && ledgerEndBeforeFetch >= stopAt) {
+                    // The pipeline caught up with a ledger end at or after the stop offset, so there are no further updates before it
+                    break;
+                }
+                if (numIngested == 0 && !isStopping()) {
+                    synchronized (lock) {
+                        if (!isStopping()) {
+                            lock.wait(pollInterval.toMillis());
+                        }
+                    }
+                }
+            }
+        } catch (Throwable ex) {
+            log.log(Level.WARNING, "Ingestion stopped at offset " + store.getLastIngestedOffset() + " due to failure", ex);
+            failure = ex;
+        } finally {
+            // Leave the store in tail mode, so that transactions ingested directly are logged and retained as usual
+            switchMode(Mode.TAIL);
+            synchronized (lock) {
+                thread = null;
+            }
+        }
+    }
+
+    private boolean isStopping() {
+        Long stopAt = stopOffset;
+        return stopRequested || (stopAt != null && lastIngestedOffset >= stopAt);
+    }
+
+    private List<JsGetUpdatesResponse> fetchUpdates(long beginAfterOffset) throws Exception {
+        // Returning an empty page lets the pipeline apply the updates it already fetched and then return
+        Long stopAt = stopOffset;
+        if (stopRequested || (stopAt != null && beginAfterOffset >= stopAt)) {
+            return List.of();
+        }
+        List<JsGetUpdatesResponse> page = source.fetchUpdates(beginAfterOffset);
+        if (stopAt != null) {
+            page = page.stream()
+                    .takeWhile(response -> IntegrationStore.getUpdateOffset(response.getUpdate()) <= stopAt)
+                    .toList();
+        }
+        return page;
+    }
+
+    private long refreshLedgerEnd() {
+        try {
+            ledgerEnd = Math.max(ledgerEnd, ledgerEndSource.getLedgerEnd());
+        } catch (Exception ex) {
+            log.log(Level.FINE, "Failed to refresh the ledger end, keeping " + ledgerEnd, ex);
+        }
+        return ledgerEnd;
+    }
+
+    private void onApplied(int numUpdates) {
+        lastIngestedOffset = store.getLastIngestedOffset();
+        lastIngestedRecordTime = store.getLastIngestedRecordTime();
+        totalIngested += numUpdates;
+        if (lastIngestedOffset > ledgerEnd) {
+            ledgerEnd = lastIngestedOffset;
+        }
+        updateMode();
+
+        windowUpdates += numUpdates;
+        long now = System.nanoTime();
+        long elapsedNanos = now - windowStartNanos;
+        if (elapsedNanos >= THROUGHPUT_WINDOW.toNanos()) {
+            updatesPerSecond = windowUpdates * 1e9 / elapsedNanos;
+            windowUpdates = 0;
+            windowStartNanos = now;
+        }
+    }
+
+    private void updateMode() {
+        if (catchUpThresholds == null) {
+            return;
+        }
+        long lag = ledgerEnd - lastIngestedOffset;
+        Mode newMode = switch (mode) {
+            case TAIL -> lag > catchUpThresholds.enterCatchUpLag() ? Mode.CATCH_UP : Mode.TAIL;
+            case CATCH_UP -> lag <= catchUpThresholds.exitCatchUpLag() ? Mode.TAIL : Mode.CATCH_UP;
+        };
+        switchMode(newMode);
+    }
+
+    private void switchMode(Mode newMode) {
+        if (newMode != mode) {
+            log.info("Switching ingestion to " + newMode + " mode at offset " + lastIngestedOffset + " with ledger end " + ledgerEnd);
+            mode = newMode;
+            store.setCatchUpMode(newMode == Mode.CATCH_UP);
+            if (modeListener != null) {
+                modeListener.modeChanged(newMode);
+            }
+        }
+    }
+
+    private static Duration recordTimeLag(String recordTime) {
+        if (recordTime == null) {
+            return null;
+        }
+        try {
+            return Duration.between(Instant.parse(recordTime), Instant.now());
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        stop();
+    }
+}
@@ -2,15 +2,35 @@ package com.example.store;
 
 import com.example.GsonTypeAdapters.ExtendedJson;
 import com.example.client.ledger.model.*;
+import com.example.metrics.IngestTransactionEvent;
 import com.example.store.models.TxHistoryEntry;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 import org.jetbrains.annotations.NotNull;
 import splice.api.token.holdingv1.HoldingView;
 import splice.api.token.holdingv1.InstrumentId;
 import splice.api.token.transferinstructionv1.Transfer;
 import splice.api.token.transferinstructionv1.TransferInstructionView;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -25,7 +45,11 @@ import java.util.logging.Logger;
  * - The set of pending transfer instructions where the treasury party is either sender or receiver
  * - A transaction history log that explains the reason for each change to the above two sets
  * - The last ingested offset, synchronizer ID, record time, and update ID
- *
+ * - The last ingested offset, record time, and update ID per synchronizer
+ * - A digest of the active holdings, for reconciling them against the ledger, see {@link HoldingReconciliation}
+ * <p>
+ * Transactions from different synchronizers touch disjoint sets of contracts as long as no contracts
+ * are reassigned. {@link #applyUpdates} uses this to parse them concurrently per synchronizer.
  */
 public class IntegrationStore {
 
@@ -38,15 +62,43 @@ public class IntegrationStore {
     // Might be lagging behind lastIngestedOffset if an offset checkpoint was ingested last
     private String lastIngestedUpdateId = null;
 
+    // Not serialized, so that the state of single-synchronizer stores is shown as before. Like the other transient
+    // state, the positions are derived from the ingested updates: the JSON of a store is only an export, a store is
+    // never restored from it but rebuilt by ingesting the updates after its starting offset, which rebuilds them too.
+    private final transient TreeMap<String, SynchronizerPosition> synchronizerPositions = new TreeMap<>();
+
+    private final transient CopyOnWriteArrayList<StoreSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // The latest published snapshot, and the changes applied since it was published
+    private transient volatile StoreSnapshot snapshot;
+    private final transient HashMap<String, Optional<HoldingView>> unpublishedHoldingChanges = new HashMap<>();
+    private final transient HashMap<String, Optional<TransferInstructionView>> unpublishedInstructionChanges = new HashMap<>();
+    private final transient ArrayList<TxHistoryEntry> unpublishedHistoryEntries = new ArrayList<>();
+    // The changes of the transaction being ingested, which are delivered to the subscribers once its snapshot is published
+    private final transient ArrayList<StoreChange> unpublishedChanges = new ArrayList<>();
+
+    // Maintained incrementally for reconciling the active holdings against the ledger
+    private final transient HoldingDigest holdingDigest = new HoldingDigest();
+
+    // In catch-up mode, changes are logged at a finer level and the raw events of transactions are not retained
+    private transient volatile boolean catchUpMode = false;
+
     private final String treasuryParty;
 
     private final HashMap<String, HoldingView> activeHoldings = new HashMap<>();
     private final HashMap<String, TransferInstructionView> pendingTransferInstructions = new HashMap<>();
     private final ArrayList<TxHistoryEntry> txHistoryLog = new ArrayList<>();
 
+    /**
+     * The last ingested offset, record time, and update ID of a synchronizer.
+     */
+    public record SynchronizerPosition(long offset, String recordTime, String updateId) {
+    }
+
     public IntegrationStore(String treasuryParty, Long startingOffset) {
         this.treasuryParty = treasuryParty;
         this.lastIngestedOffset = startingOffset;
+        this.snapshot = StoreSnapshot.of(startingOffset, null, Map.of(), Map.of(), List.of());
     }
 
     static public IntegrationStore copyWithoutTransactionEvents(IntegrationStore other) {
@@ -54,7 +106,9 @@ public class IntegrationStore {
         copy.sourceSynchronizerId = other.sourceSynchronizerId;
         copy.lastIngestedRecordTime = other.lastIngestedRecordTime;
         copy.lastIngestedUpdateId = other.lastIngestedUpdateId;
+        copy.synchronizerPositions.putAll(other.synchronizerPositions);
         copy.activeHoldings.putAll(other.activeHoldings);
+        copy.activeHoldings.forEach(copy.holdingDigest::add);
         copy.pendingTransferInstructions.putAll(other.pendingTransferInstructions);
         for (TxHistoryEntry entry : other.txHistoryLog) {
             TxHistoryEntry entryCopy = new TxHistoryEntry(
@@ -68,6 +122,7 @@ public class IntegrationStore {
             );
             copy.txHistoryLog.add(entryCopy);
         }
+        copy.snapshot = StoreSnapshot.of(copy.lastIngestedOffset, copy.lastIngestedRecordTime, copy.activeHoldings, copy.pendingTransferInstructions, copy.txHistoryLog);
         return copy;
     }
 
@@ -76,14 +131,133 @@ public class IntegrationStore {
         return ExtendedJson.gsonPretty.toJson(this);
     }
 
+    /**
+     * The sections and format of a JSON export of the store, see {@link #writeJson(OutputStream, ExportOptions)}.
+     *
+     * @param includeHoldings             whether to export the active holdings
+     * @param includeTransferInstructions whether to export the pending transfer instructions
+     * @param includeTxHistory            whether to export the transaction history log
+     * @param includeTransactionEvents    whether to export the raw transaction events of the history entries
+     * @param pretty                      whether to indent the output
+     */
+    public record ExportOptions(
+            boolean includeHoldings,
+            boolean includeTransferInstructions,
+            boolean includeTxHistory,
+            boolean includeTransactionEvents,
+            boolean pretty) {
+
+        /** Exports the same JSON as {@link #toString()} */
+        public static final ExportOptions FULL = new ExportOptions(true, true, true, true, true);
+
+        /** Exports the state without the transaction history, e.g., for reconciliation */
+        public static final ExportOptions STATE_ONLY = new ExportOptions(true, true, false, false, false);
+    }
+
+    /**
+     * Write the store as JSON to the given stream, without materializing the whole JSON document in memory.
+     * <p>
+     * The output uses the same field names and order as {@link #toString()}, and omits the sections that are
+     * not included in the options. The stream is flushed, but not closed.
+     * <p>
+     * Must be called from the ingesting thread, or while no updates are ingested.
+     */
+    public void writeJson(OutputStream out, ExportOptions options) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeJson(writer, options);
+        writer.flush();
+    }
+
+    public void writeJson(WritableByteChannel channel, ExportOptions options) throws IOException {
+        writeJson(Channels.newOutputStream(channel), options);
+    }
+
+    private void writeJson(Writer out, ExportOptions options) throws IOException {
+        Gson gson = ExtendedJson.gson;
+        JsonWriter writer = gson.newJsonWriter(out);
+        if (options.pretty()) {
+            // Same indentation as ExtendedJson.gsonPretty
+            writer.setIndent("  ");
+        }
+        writer.beginObject();
+        writer.name("lastIngestedOffset").value(lastIngestedOffset);
+        writeNullableField(writer, "sourceSynchronizerId", sourceSynchronizerId);
+        writeNullableField(writer, "lastIngestedRecordTime", lastIngestedRecordTime);
+        writeNullableField(writer, "lastIngestedUpdateId", lastIngestedUpdateId);
+        writeNullableField(writer, "treasuryParty", treasuryParty);
+        if (options.includeHoldings()) {
+            writer.name("activeHoldings");
+            writeMap(writer, activeHoldings, gson.getAdapter(HoldingView.class));
+        }
+        if (options.includeTransferInstructions()) {
+            writer.name("pendingTransferInstructions");
+            writeMap(writer, pendingTransferInstructions, gson.getAdapter(TransferInstructionView.class));
+        }
+        if (options.includeTxHistory()) {
+            TypeAdapter<TxHistoryEntry> entryAdapter = gson.getAdapter(TxHistoryEntry.class);
+            writer.name("txHistoryLog");
+            writer.beginArray();
+            for (TxHistoryEntry entry : txHistoryLog) {
+                if (!options.includeTransactionEvents() && !entry.transactionEvents().isEmpty()) {
+                    entry = new TxHistoryEntry(
+                            entry.updateMetadata(),
+                            entry.exerciseNodeId(),
+                            entry.transfer(),
+                            entry.unrecognized(),
+                            entry.treasuryHoldingChanges(),
+                            entry.pendingTransferInstructionChanges(),
+                            List.of()
+                    );
+                }
+                entryAdapter.write(writer, entry);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static void writeNullableField(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null || writer.getSerializeNulls()) {
+            writer.name(name).value(value);
+        }
+    }
+
+    private static <V> void writeMap(JsonWriter writer, Map<String, V> map, TypeAdapter<V> valueAdapter) throws IOException {
+        writer.beginObject();
+        for (Map.Entry<String, V> entry : map.entrySet()) {
+            writer.name(entry.getKey());
+            valueAdapter.write(writer, entry.getValue());
+        }
+        writer.endObject();
+    }
+
     public List<TxHistoryEntry> getTxHistoryLog() {
         return txHistoryLog;
     }
 
+    /**
+     * The state of the store as of the last applied update, which can be read concurrently with the ingestion.
+     */
+    public StoreSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The live map of active holdings, which must only be accessed from the ingesting thread; see {@link #getSnapshot()}
+     * for reading from other threads.
+     */
     public HashMap<String, HoldingView> getActiveHoldings() {
         return activeHoldings;
     }
 
+    /**
+     * A copy of the digest of the active holdings, see {@link HoldingReconciliation}.
+     */
+    public HoldingDigest getHoldingDigest() {
+        return holdingDigest.copy();
+    }
+
     public long getLastIngestedOffset() {
         return lastIngestedOffset;
     }
@@ -96,6 +270,80 @@ public class IntegrationStore {
         return lastIngestedRecordTime;
     }
 
+    public Map<String, SynchronizerPosition> getSynchronizerPositions() {
+        return Collections.unmodifiableMap(synchronizerPositions);
+    }
+
+    /**
+     * Subscribe to the changes of this store, which are delivered in the order in which they are applied.
+     * <p>
+     * The changes of a transaction are delivered after the snapshot that includes them is published, so a subscriber
+     * that reads the snapshot on receiving a change observes the state after that change. The changes of a
+     * transaction that fails to be ingested are not delivered.
+     * <p>
+     * Subscribers should first read the state of the store and then process the changes after its last ingested offset.
+     *
+     * @param capacity       the maximal number of changes that are queued for the subscriber
+     * @param overflowPolicy what to do when the queue of the subscriber is full
+     */
+    public StoreSubscription subscribe(int capacity, StoreSubscription.OverflowPolicy overflowPolicy) {
+        StoreSubscription subscription = new StoreSubscription(this, capacity, overflowPolicy);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void unsubscribe(StoreSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    private void publish(StoreChange change) {
+        unpublishedChanges.add(change);
+    }
+
+    private void publishChanges() {
+        for (StoreChange change : unpublishedChanges) {
+            for (StoreSubscription subscription : subscriptions) {
+                subscription.publish(change);
+            }
+        }
+        unpublishedChanges.clear();
+    }
+
+    private void publishSnapshot() {
+        snapshot = snapshot.next(
+                lastIngestedOffset,
+                lastIngestedRecordTime,
+                unpublishedHoldingChanges,
+                unpublishedInstructionChanges,
+                unpublishedHistoryEntries);
+        // The snapshot copies the changes
+        unpublishedHoldingChanges.clear();
+        unpublishedInstructionChanges.clear();
+        unpublishedHistoryEntries.clear();
+    }
+
+    private void appendToHistory(List<TxHistoryEntry> entries) {
+        txHistoryLog.addAll(entries);
+        unpublishedHistoryEntries.addAll(entries);
+        if (!subscriptions.isEmpty()) {
+            for (TxHistoryEntry entry : entries) {
+                publish(new StoreChange.HistoryEntryAppended(lastIngestedOffset, entry));
+            }
+        }
+    }
+
+    public boolean isCatchUpMode() {
+        return catchUpMode;
+    }
+
+    /**
+     * Switch between catch-up mode, which speeds up ingesting a large backlog of updates by not logging each change
+     * and not retaining the raw events of the ingested transactions in the log entries, and the default tail mode.
+     */
+    public void setCatchUpMode(boolean catchUpMode) {
+        this.catchUpMode = catchUpMode;
+    }
+
     public String getTreasuryParty() {
         return treasuryParty;
     }
@@ -114,67 +362,325 @@ public class IntegrationStore {
      * holdings are available
      */
     public Optional<List<String>> selectHoldingsForWithdrawal(InstrumentId instrumentId, BigDecimal amount) {
-        // Simple greedy algorithm: select arbitrary holdings until the amount is covered
-        // TODO: switch to selecting as per https://docs.digitalasset.com/integrate/devnet/exchange-integration/workflows.html#utxo-selection-and-management
-        List<String> selected = new ArrayList<>();
-        BigDecimal total = BigDecimal.ZERO;
-        for (Map.Entry<String, HoldingView> entry : activeHoldings.entrySet()) {
-            HoldingView holding = entry.getValue();
-            // TODO: allow using locked holdings if the lock has expired
-            if (holding.instrumentId.equals(instrumentId) && holding.lock.isEmpty()) {
-                selected.add(entry.getKey());
-                total = total.add(holding.amount);
-                if (total.compareTo(amount) >= 0) {
-                    log.info("Selected holdings " + selected + " worth " + total + " to cover withdrawal of " + amount + " of " + instrumentId);
-                    return Optional.of(selected);
-                }
-            }
+        return StoreSnapshot.selectHoldings(activeHoldings, instrumentId, amount);
+    }
+
+    /**
+     * An update together with the views of its transaction as decoded by {@link #decodeUpdate}.
+     */
+    public record DecodedUpdate(Update update, TransactionParser.DecodedViews decodedViews) {
+    }
+
+    /**
+     * Decode the parts of an update that are relevant for the treasury party.
+     * <p>
+     * This does not read or modify the state of the store, and can thus be called concurrently for different updates.
+     * The decoded updates must then be applied in offset order using {@link #applyUpdate}.
+     */
+    public DecodedUpdate decodeUpdate(Update update0) {
+        if (update0.getActualInstance() instanceof UpdateOneOf3 update) {
+            JsTransaction tx = update.getTransaction().getValue();
+            assert tx.getEvents() != null;
+            return new DecodedUpdate(update0, TransactionParser.decode(tx.getEvents(), treasuryParty));
         }
-        log.warning("Insufficient holdings to cover withdrawal of " + amount + " of " + instrumentId + " (total available: " + total + "), returning empty selection");
-        return Optional.empty();
+        return new DecodedUpdate(update0, null);
     }
 
     public void ingestUpdate(Update update0) {
+        applyUpdate(decodeUpdate(update0));
+    }
+
+    public void applyUpdate(DecodedUpdate decoded) {
+        Update update0 = decoded.update();
         if (update0.getActualInstance() instanceof UpdateOneOf update) {
             ingestOffsetCheckpoint(update.getOffsetCheckpoint().getValue());
         } else if (update0.getActualInstance() instanceof UpdateOneOf1 update) {
-            throw new UnsupportedOperationException("Multiple synchronizer are not yet supported, failed to handle reassignment: " + update.toJson());
+            throw new UnsupportedOperationException("Reassignments are not yet supported, failed to handle reassignment: " + update.toJson());
         } else if (update0.getActualInstance() instanceof UpdateOneOf2 update) {
             log.finer(() -> "Ignoring topology transaction (not relevant): " + update.toJson());
         } else if (update0.getActualInstance() instanceof UpdateOneOf3 update) {
-            ingestTransaction(update.getTransaction().getValue());
+            JsTransaction tx = update.getTransaction().getValue();
+            ingestTransaction(tx, tx.getEvents(), decoded.decodedViews());
         } else {
             throw new UnsupportedOperationException("Failed to handle: " + update0.toJson());
         }
     }
 
-    private void ingestTransaction(JsTransaction tx) {
+    /**
+     * Apply a batch of decoded updates in offset order.
+     * <p>
+     * Runs of transactions from more than one synchronizer are parsed concurrently per synchronizer on the given
+     * executor, each against a staged view of the store. The staged changes are then committed in offset order,
+     * so that the resulting state is the same as when applying the updates one by one.
+     */
+    public void applyUpdates(List<DecodedUpdate> batch, ExecutorService executor) throws InterruptedException {
+        int start = 0;
+        while (start < batch.size()) {
+            int end = start;
+            while (end < batch.size() && batch.get(end).update().getActualInstance() instanceof UpdateOneOf3) {
+                end++;
+            }
+            if (end == start) {
+                // Other updates are applied on their own, as reassignments can move contracts between synchronizers
+                applyUpdate(batch.get(start));
+                start++;
+            } else {
+                applyTransactions(batch.subList(start, end), executor);
+                start = end;
+            }
+        }
+    }
+
+    private void applyTransactions(List<DecodedUpdate> txs, ExecutorService executor) throws InterruptedException {
+        LinkedHashMap<String, List<Integer>> partitions = new LinkedHashMap<>();
+        for (int i = 0; i < txs.size(); i++) {
+            partitions.computeIfAbsent(getTransaction(txs.get(i)).getSynchronizerId(), k -> new ArrayList<>()).add(i);
+        }
+        if (partitions.size() == 1) {
+            for (DecodedUpdate tx : txs) {
+                applyUpdate(tx);
+            }
+            return;
+        }
+
+        StagedTransaction[] staged = new StagedTransaction[txs.size()];
+        RuntimeException[] failures = new RuntimeException[txs.size()];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (List<Integer> partition : partitions.values()) {
+            tasks.add(() -> {
+                StagedUtxoStore stagedStore = new StagedUtxoStore();
+                for (int i : partition) {
+                    try {
+                        staged[i] = stagedStore.stage(getTransaction(txs.get(i)), txs.get(i).decodedViews());
+                    } catch (RuntimeException ex) {
+                        // The later transactions of this synchronizer might depend on the failed one
+                        failures[i] = ex;
+                        break;
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : executor.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (ExecutionException ex) {
+                // Parse failures are recorded per transaction, so this is an Error, which fails the whole batch
+                Throwable cause = ex.getCause();
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw cause instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(cause);
+            }
+        }
+
+        // Commit up to the first failed transaction, as if the transactions had been applied one by one
+        for (int i = 0; i < txs.size(); i++) {
+            if (staged[i] == null) {
+                throw failures[i];
+            }
+            commit(staged[i]);
+        }
+    }
+
+    private static JsTransaction getTransaction(DecodedUpdate decoded) {
+        return ((UpdateOneOf3) decoded.update().getActualInstance()).getTransaction().getValue();
+    }
+
+    private void commit(StagedTransaction staged) {
+        IngestTransactionEvent event = new IngestTransactionEvent();
+        event.begin();
+        JsTransaction tx = staged.tx();
+        updateLastIngested(tx.getOffset(), tx.getSynchronizerId(), tx.getRecordTime(), tx.getUpdateId());
+        UtxoStoreImpl utxoStore = new UtxoStoreImpl();
+        for (Consumer<TransactionParser.IUtxoStore> operation : staged.operations()) {
+            operation.accept(utxoStore);
+        }
+        appendToHistory(staged.entries());
+        publishSnapshot();
+        publishChanges();
+        commitEvent(event, tx, staged.entries().size(), staged.parseNanos());
+    }
+
+    /**
+     * The offset of an update, which is used to resume reading updates after it.
+     */
+    public static long getUpdateOffset(Update update0) {
+        if (update0.getActualInstance() instanceof UpdateOneOf update) {
+            return update.getOffsetCheckpoint().getValue().getOffset();
+        } else if (update0.getActualInstance() instanceof UpdateOneOf1 update) {
+            return update.getReassignment().getValue().getOffset();
+        } else if (update0.getActualInstance() instanceof UpdateOneOf2 update) {
+            return update.getTopologyTransaction().getValue().getOffset();
+        } else if (update0.getActualInstance() instanceof UpdateOneOf3 update) {
+            return update.getTransaction().getValue().getOffset();
+        } else {
+            throw new UnsupportedOperationException("Failed to determine offset of: " + update0.toJson());
+        }
+    }
+
+    /**
+     * Ingest a transaction restricted to the given subset of its events, e.g., the events visible to the treasury party
+     * of a transaction that was read on behalf of multiple parties.
+     */
+    void ingestTransaction(JsTransaction tx, List<Event> events) {
+        ingestTransaction(tx, events, TransactionParser.decode(events, treasuryParty));
+    }
+
+    private void ingestTransaction(JsTransaction tx, List<Event> events, TransactionParser.DecodedViews decodedViews) {
+        IngestTransactionEvent event = new IngestTransactionEvent();
+        event.begin();
         updateLastIngested(tx.getOffset(), tx.getSynchronizerId(), tx.getRecordTime(), tx.getUpdateId());
-        assert tx.getEvents() != null;
+        assert events != null;
         TxHistoryEntry.UpdateMetadata updateMetadata = new TxHistoryEntry.UpdateMetadata(tx.getUpdateId(), tx.getRecordTime(), tx.getOffset());
-        TransactionParser parser = new TransactionParser(updateMetadata, new UtxoStoreImpl());
-        List<TxHistoryEntry> entries = parser.parse(null, tx.getEvents());
-        txHistoryLog.addAll(entries);
+        TransactionParser parser = new TransactionParser(updateMetadata, new UtxoStoreImpl(), !catchUpMode);
+        long parseStart = System.nanoTime();
+        List<TxHistoryEntry> entries;
+        try {
+            entries = parser.parse(events, decodedViews);
+        } catch (RuntimeException e) {
+            unpublishedChanges.clear();
+            throw e;
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        appendToHistory(entries);
+        publishSnapshot();
+        publishChanges();
+        commitEvent(event, tx, entries.size(), parseNanos);
+    }
+
+    private static void commitEvent(IngestTransactionEvent event, JsTransaction tx, int entriesProduced, long parseNanos) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.updateId = tx.getUpdateId();
+            event.offset = tx.getOffset();
+            event.eventCount = tx.getEvents() == null ? 0 : tx.getEvents().size();
+            event.entriesProduced = entriesProduced;
+            event.parseTime = parseNanos;
+            event.commit();
+        }
     }
 
+    /**
+     * Advance the position of each synchronizer of the checkpoint. The store-wide synchronizer and record time are
+     * those of the synchronizer with the latest record time, and the last ingested update ID is kept, as a checkpoint
+     * is not an update.
+     */
     private void ingestOffsetCheckpoint(OffsetCheckpoint1 checkpoint) {
         List<SynchronizerTime> times = checkpoint.getSynchronizerTimes();
-        if (times != null && times.size() == 1) {
-            SynchronizerTime time = times.get(0);
-            updateLastIngested(checkpoint.getOffset(), time.getSynchronizerId(), time.getRecordTime(), null);
-        } else {
-            throw new UnsupportedOperationException("Multiple synchronizers are not yet supported, failed to handle checkpoint: " + checkpoint.toJson());
+        if (times == null || times.isEmpty()) {
+            throw new UnsupportedOperationException("Failed to handle checkpoint without synchronizer times: " + checkpoint.toJson());
+        }
+        SynchronizerTime latest = times.get(0);
+        for (SynchronizerTime time : times) {
+            updateSynchronizerPosition(checkpoint.getOffset(), time.getSynchronizerId(), time.getRecordTime(), null);
+            if (parseRecordTime(time.getRecordTime()).isAfter(parseRecordTime(latest.getRecordTime()))) {
+                latest = time;
+            }
         }
+        this.lastIngestedOffset = checkpoint.getOffset();
+        this.sourceSynchronizerId = latest.getSynchronizerId();
+        this.lastIngestedRecordTime = latest.getRecordTime();
+        publishSnapshot();
+    }
+
+    private static Instant parseRecordTime(String recordTime) {
+        return recordTime == null ? Instant.MIN : Instant.parse(recordTime);
     }
 
     private void updateLastIngested(Long offset, String synchronizerId, String recordTime, String updateId) {
-        if (this.sourceSynchronizerId != null && !this.sourceSynchronizerId.equals(synchronizerId)) {
-            throw new IllegalStateException("Multiple synchronizers are not yet supported. Existing: " + this.sourceSynchronizerId + ", new: " + synchronizerId);
-        }
         this.lastIngestedOffset = offset;
         this.sourceSynchronizerId = synchronizerId;
         this.lastIngestedRecordTime = recordTime;
         this.lastIngestedUpdateId = updateId;
+        updateSynchronizerPosition(offset, synchronizerId, recordTime, updateId);
+    }
+
+    private void updateSynchronizerPosition(Long offset, String synchronizerId, String recordTime, String updateId) {
+        SynchronizerPosition previous = synchronizerPositions.get(synchronizerId);
+        String lastUpdateId = updateId == null && previous != null ? previous.updateId() : updateId;
+        synchronizerPositions.put(synchronizerId, new SynchronizerPosition(offset, recordTime, lastUpdateId));
+    }
+
+    /**
+     * The result of parsing a transaction against a {@link StagedUtxoStore}.
+     */
+    private record StagedTransaction(
+            JsTransaction tx,
+            List<TxHistoryEntry> entries,
+            List<Consumer<TransactionParser.IUtxoStore>> operations,
+            long parseNanos) {
+    }
+
+    /**
+     * A view of the store that records the changes of the transactions of one synchronizer instead of applying them.
+     * <p>
+     * Reads fall back to the store, which is not modified while transactions are being staged.
+     */
+    private class StagedUtxoStore implements TransactionParser.IUtxoStore {
+        // Empty values mark archived contracts
+        private final HashMap<String, Optional<HoldingView>> stagedHoldings = new HashMap<>();
+        private final HashMap<String, Optional<TransferInstructionView>> stagedInstructions = new HashMap<>();
+        private List<Consumer<TransactionParser.IUtxoStore>> operations;
+
+        StagedTransaction stage(JsTransaction tx, TransactionParser.DecodedViews decodedViews) {
+            operations = new ArrayList<>();
+            TxHistoryEntry.UpdateMetadata updateMetadata = new TxHistoryEntry.UpdateMetadata(tx.getUpdateId(), tx.getRecordTime(), tx.getOffset());
+            TransactionParser parser = new TransactionParser(updateMetadata, this, !catchUpMode);
+            long parseStart = System.nanoTime();
+            List<TxHistoryEntry> entries = parser.parse(tx.getEvents(), decodedViews);
+            return new StagedTransaction(tx, entries, operations, System.nanoTime() - parseStart);
+        }
+
+        @Override
+        public String treasuryPartyId() {
+            return treasuryParty;
+        }
+
+        @Override
+        public void ingestTransferInstructionCreation(String contractId, TransferInstructionView instruction) {
+            Transfer t = instruction.transfer;
+            if (t.sender.equals(treasuryParty) || t.receiver.equals(treasuryParty)) {
+                stagedInstructions.put(contractId, Optional.of(instruction));
+            }
+            operations.add(store -> store.ingestTransferInstructionCreation(contractId, instruction));
+        }
+
+        @NotNull
+        @Override
+        public Optional<TransferInstructionView> ingestTransferInstructionArchival(String contractId) {
+            Optional<TransferInstructionView> staged = stagedInstructions.get(contractId);
+            Optional<TransferInstructionView> instruction = staged != null ? staged : Optional.ofNullable(pendingTransferInstructions.get(contractId));
+            if (instruction.isPresent()) {
+                stagedInstructions.put(contractId, Optional.empty());
+            }
+            operations.add(store -> store.ingestTransferInstructionArchival(contractId));
+            return instruction;
+        }
+
+        @Override
+        public void ingestHoldingCreation(String contractId, HoldingView holding) {
+            if (holding.owner.equals(treasuryParty)) {
+                stagedHoldings.put(contractId, Optional.of(holding));
+            }
+            operations.add(store -> store.ingestHoldingCreation(contractId, holding));
+        }
+
+        @NotNull
+        @Override
+        public Optional<HoldingView> ingestHoldingArchival(String contractId) {
+            Optional<HoldingView> staged = stagedHoldings.get(contractId);
+            Optional<HoldingView> holding = staged != null ? staged : Optional.ofNullable(activeHoldings.get(contractId));
+            if (holding.isPresent()) {
+                stagedHoldings.put(contractId, Optional.empty());
+            }
+            operations.add(store -> store.ingestHoldingArchival(contractId));
+            return holding;
+        }
+    }
+
+    private Level changeLogLevel() {
+        return catchUpMode ? Level.FINER : Level.INFO;
     }
 
     private class UtxoStoreImpl implements TransactionParser.IUtxoStore {
@@ -188,8 +694,12 @@ public class IntegrationStore {
         public void ingestTransferInstructionCreation(String contractId, TransferInstructionView instruction) {
             Transfer t = instruction.transfer;
             if (t.sender.equals(treasuryParty) || t.receiver.equals(treasuryParty)) {
-                log.info("New pending transfer instruction for treasury party: " + contractId + " -> " + instruction.toJson());
+                log.log(changeLogLevel(), () -> "New pending transfer instruction for treasury party: " + contractId + " -> " + instruction.toJson());
                 pendingTransferInstructions.put(contractId, instruction);
+                unpublishedInstructionChanges.put(contractId, Optional.of(instruction));
+                if (!subscriptions.isEmpty()) {
+                    publish(new StoreChange.TransferInstructionAdded(lastIngestedOffset, contractId, instruction));
+                }
             } else {
                 log.finer(() -> "Ignoring creation of transfer instruction not affecting treasury party: " + contractId + " -> " + instruction.toJson());
             }
@@ -200,7 +710,11 @@ public class IntegrationStore {
         public Optional<TransferInstructionView> ingestTransferInstructionArchival(String contractId) {
             TransferInstructionView instruction = pendingTransferInstructions.remove(contractId);
             if (instruction != null) {
-                log.info("Archiving pending transfer instruction for treasury party: " + contractId + " -> " + instruction.toJson());
+                unpublishedInstructionChanges.put(contractId, Optional.empty());
+                if (!subscriptions.isEmpty()) {
+                    publish(new StoreChange.TransferInstructionRemoved(lastIngestedOffset, contractId, instruction));
+                }
+                log.log(changeLogLevel(), () -> "Archiving pending transfer instruction for treasury party: " + contractId + " -> " + instruction.toJson());
             } else {
                 log.finer(() -> "Ignoring archival of transfer instruction not affecting treasury party: " + contractId);
             }
@@ -210,8 +724,16 @@ public class IntegrationStore {
         @Override
         public void ingestHoldingCreation(String contractId, HoldingView holding) {
             if (holding.owner.equals(treasuryParty)) {
-                log.info("New active holding for treasury party: " + contractId + " -> " + holding.toJson());
-                activeHoldings.put(contractId, holding);
+                log.log(changeLogLevel(), () -> "New active holding for treasury party: " + contractId + " -> " + holding.toJson());
+                HoldingView previous = activeHoldings.put(contractId, holding);
+                if (previous != null) {
+                    holdingDigest.remove(contractId, previous);
+                }
+                holdingDigest.add(contractId, holding);
+                unpublishedHoldingChanges.put(contractId, Optional.of(holding));
+                if (!subscriptions.isEmpty()) {
+                    publish(new StoreChange.HoldingAdded(lastIngestedOffset, contractId, holding));
+                }
             } else {
                 log.finer(() -> "Ignoring creation of holding not owned by treasury party: " + contractId + " -> " + holding.toJson());
             }
@@ -222,7 +744,12 @@ public class IntegrationStore {
         public Optional<HoldingView> ingestHoldingArchival(String contractId) {
             HoldingView holding = activeHoldings.remove(contractId);
             if (holding != null) {
-                log.info("Archiving active holding for treasury party: " + contractId + " -> " + holding.toJson());
+                holdingDigest.remove(contractId, holding);
+                unpublishedHoldingChanges.put(contractId, Optional.empty());
+                if (!subscriptions.isEmpty()) {
+                    publish(new StoreChange.HoldingRemoved(lastIngestedOffset, contractId, holding));
+                }
+                log.log(changeLogLevel(), () -> "Archiving active holding for treasury party: " + contractId + " -> " + holding.toJson());
             } else {
                 log.finer(() -> "Ignoring archival of holding not owned by treasury party: " + contractId);
             }
@@ -0,0 +1,448 @@
+package com.example.store;
+
+import com.example.ConversionHelpers;
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.*;
+import com.example.store.models.TxHistoryEntry;
+import org.jetbrains.annotations.NotNull;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.holdingv1.InstrumentId;
+import splice.api.token.transferinstructionv1.Transfer;
+import splice.api.token.transferinstructionv1.TransferInstructionView;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TransactionParser.IUtxoStore} that keeps the active holdings, pending transfer instructions, transaction
+ * history log, and resume offset of the treasury party in a relational database, as the Canton Integration DB would, see
+ * https://docs.digitalasset.com/integrate/devnet/exchange-integration/architecture.html#canton-integration-components
+ * <p>
+ * The changes of a batch of updates are collected in memory while parsing, and then written in a single database
+ * transaction using batched statements, together with the new offset. Updates at or before the last committed
+ * offset are skipped, so re-applying a batch after a crash or retry is a no-op. The offset is only advanced if it
+ * has not been advanced concurrently, so that two writers cannot apply the same updates twice.
+ * <p>
+ * The schema only uses column types that are common to H2, PostgreSQL, and MySQL, and creates the index on the
+ * instruments only if the database does not have it yet, as not all databases support {@code CREATE INDEX IF NOT EXISTS}.
+ * The party, contract, and instrument IDs are limited to 255 characters, as in Canton, so that the primary keys and
+ * the index on the instruments stay within the 3072 bytes of an InnoDB key with the 4 bytes per character of utf8mb4.
+ * The tests only run the schema on H2.
+ * <p>
+ * The store uses the given connection exclusively, and must only be used from one thread at a time.
+ */
+public class JdbcUtxoStore implements TransactionParser.IUtxoStore {
+
+    private static final Logger log = Logger.getLogger(JdbcUtxoStore.class.getName());
+
+    private static final List<String> SCHEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS store_offsets ("
+                    + " treasury_party VARCHAR(255) NOT NULL PRIMARY KEY,"
+                    + " last_ingested_offset BIGINT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS active_holdings ("
+                    + " treasury_party VARCHAR(255) NOT NULL,"
+                    + " contract_id VARCHAR(255) NOT NULL,"
+                    + " instrument_admin VARCHAR(255) NOT NULL,"
+                    + " instrument_id VARCHAR(255) NOT NULL,"
+                    + " amount DECIMAL(38, 10) NOT NULL,"
+                    + " locked BOOLEAN NOT NULL,"
+                    + " view_json TEXT NOT NULL,"
+                    + " PRIMARY KEY (treasury_party, contract_id))",
+            "CREATE TABLE IF NOT EXISTS pending_transfer_instructions ("
+                    + " treasury_party VARCHAR(255) NOT NULL,"
+                    + " contract_id VARCHAR(255) NOT NULL,"
+                    + " view_json TEXT NOT NULL,"
+                    + " PRIMARY KEY (treasury_party, contract_id))",
+            "CREATE TABLE IF NOT EXISTS tx_history_log ("
+                    + " treasury_party VARCHAR(255) NOT NULL,"
+                    + " update_offset BIGINT NOT NULL,"
+                    + " entry_index INT NOT NULL,"
+                    + " exercise_node_id BIGINT NOT NULL,"
+                    + " update_id VARCHAR(512) NOT NULL,"
+                    + " record_time VARCHAR(64) NOT NULL,"
+                    + " entry_json TEXT NOT NULL,"
+                    + " PRIMARY KEY (treasury_party, update_offset, entry_index))"
+    );
+
+    private static final String INSTRUMENT_INDEX = "active_holdings_by_instrument";
+    private static final String INSTRUMENT_INDEX_DDL = "CREATE INDEX " + INSTRUMENT_INDEX
+            + " ON active_holdings (treasury_party, instrument_admin, instrument_id, locked)";
+
+    private final Connection connection;
+    private final String treasuryParty;
+
+    // The last offset committed to the database
+    private long lastIngestedOffset;
+
+    // The changes of the batch that is being ingested, empty values mark archived contracts
+    private final LinkedHashMap<String, Optional<HoldingView>> pendingHoldings = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Optional<TransferInstructionView>> pendingInstructions = new LinkedHashMap<>();
+    private final ArrayList<TxHistoryEntry> pendingHistoryEntries = new ArrayList<>();
+
+    /**
+     * Create a store for the treasury party, which resumes after the offset stored in the database if there is one,
+     * and otherwise starts after {@code startingOffset}.
+     */
+    public JdbcUtxoStore(Connection connection, String treasuryParty, long startingOffset) throws SQLException {
+        this.connection = connection;
+        this.treasuryParty = treasuryParty;
+        createSchema(connection);
+        Long storedOffset = readStoredOffset();
+        if (storedOffset == null) {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO store_offsets (treasury_party, last_ingested_offset) VALUES (?, ?)")) {
+                insert.setString(1, treasuryParty);
+                insert.setLong(2, startingOffset);
+                insert.executeUpdate();
+            }
+            commitIfNeeded();
+            this.lastIngestedOffset = startingOffset;
+        } else {
+            this.lastIngestedOffset = storedOffset;
+        }
+    }
+
+    public static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String ddl : SCHEMA) {
+                statement.execute(ddl);
+            }
+            if (!indexExists(connection, "active_holdings", INSTRUMENT_INDEX)) {
+                statement.execute(INSTRUMENT_INDEX_DDL);
+            }
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private static boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // The metadata is looked up by the name as the database stores it
+        String storedTable = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT)
+                : metaData.storesLowerCaseIdentifiers() ? table.toLowerCase(Locale.ROOT) : table;
+        try (ResultSet rows = metaData.getIndexInfo(connection.getCatalog(), null, storedTable, false, true)) {
+            while (rows.next()) {
+                if (index.equalsIgnoreCase(rows.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public long getLastIngestedOffset() {
+        return lastIngestedOffset;
+    }
+
+    public void ingestUpdate(Update update) throws SQLException {
+        ingestUpdates(List.of(update));
+    }
+
+    /**
+     * Ingest a batch of updates in offset order, and write all their changes and the offset of the last update
+     * in a single database transaction.
+     * <p>
+     * Updates at or before the last committed offset are skipped. If ingesting or writing the batch fails, then
+     * none of its changes are written.
+     */
+    public void ingestUpdates(List<Update> updates) throws SQLException {
+        long newOffset = lastIngestedOffset;
+        try {
+            for (Update update0 : updates) {
+                long offset = IntegrationStore.getUpdateOffset(update0);
+                if (offset <= newOffset) {
+                    log.finer(() -> "Skipping already ingested update at offset " + offset);
+                    continue;
+                }
+                if (update0.getActualInstance() instanceof UpdateOneOf1 update) {
+                    throw new UnsupportedOperationException("Reassignments are not yet supported, failed to handle reassignment: " + update.toJson());
+                } else if (update0.getActualInstance() instanceof UpdateOneOf3 update) {
+                    JsTransaction tx = update.getTransaction().getValue();
+                    List<Event> events = tx.getEvents();
+                    assert events != null;
+                    TxHistoryEntry.UpdateMetadata updateMetadata = new TxHistoryEntry.UpdateMetadata(tx.getUpdateId(), tx.getRecordTime(), tx.getOffset());
+                    TransactionParser parser = new TransactionParser(updateMetadata, this, false);
+                    pendingHistoryEntries.addAll(parser.parse(events, TransactionParser.decode(events, treasuryParty)));
+                }
+                newOffset = offset;
+            }
+            if (newOffset == lastIngestedOffset) {
+                return;
+            }
+            writeBatch(newOffset);
+            lastIngestedOffset = newOffset;
+        } finally {
+            pendingHoldings.clear();
+            pendingInstructions.clear();
+            pendingHistoryEntries.clear();
+        }
+    }
+
+    private void writeBatch(long newOffset) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        boolean advanced;
+        try {
+            try (PreparedStatement advance = connection.prepareStatement(
+                    "UPDATE store_offsets SET last_ingested_offset = ? WHERE treasury_party = ? AND last_ingested_offset = ?")) {
+                advance.setLong(1, newOffset);
+                advance.setString(2, treasuryParty);
+                advance.setLong(3, lastIngestedOffset);
+                advanced = advance.executeUpdate() == 1;
+            }
+            if (advanced) {
+                writeHoldings();
+                writeInstructions();
+                writeHistoryEntries();
+                connection.commit();
+                log.fine(() -> "Committed " + pendingHoldings.size() + " holding changes, " + pendingInstructions.size() + " instruction changes, and "
+                        + pendingHistoryEntries.size() + " history entries up to offset " + newOffset);
+            } else {
+                connection.rollback();
+            }
+        } catch (SQLException | RuntimeException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (!advanced) {
+            long expectedOffset = lastIngestedOffset;
+            // Resume from the offset written by the other writer, so that retrying skips the updates it already wrote
+            Long storedOffset = readStoredOffset();
+            lastIngestedOffset = storedOffset == null ? lastIngestedOffset : storedOffset;
+            throw new IllegalStateException("The offset of " + treasuryParty + " was advanced concurrently from " + expectedOffset
+                    + " to " + lastIngestedOffset + ", failed to advance it to " + newOffset);
+        }
+    }
+
+    private void writeHoldings() throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM active_holdings WHERE treasury_party = ? AND contract_id = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO active_holdings (treasury_party, contract_id, instrument_admin, instrument_id, amount, locked, view_json) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (Map.Entry<String, Optional<HoldingView>> change : pendingHoldings.entrySet()) {
+                if (change.getValue().isPresent()) {
+                    HoldingView holding = change.getValue().get();
+                    insert.setString(1, treasuryParty);
+                    insert.setString(2, change.getKey());
+                    insert.setString(3, holding.instrumentId.admin);
+                    insert.setString(4, holding.instrumentId.id);
+                    insert.setBigDecimal(5, holding.amount);
+                    insert.setBoolean(6, holding.lock.isPresent());
+                    insert.setString(7, holding.toJson());
+                    insert.addBatch();
+                } else {
+                    delete.setString(1, treasuryParty);
+                    delete.setString(2, change.getKey());
+                    delete.addBatch();
+                }
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+        }
+    }
+
+    private void writeInstructions() throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM pending_transfer_instructions WHERE treasury_party = ? AND contract_id = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO pending_transfer_instructions (treasury_party, contract_id, view_json) VALUES (?, ?, ?)")) {
+            for (Map.Entry<String, Optional<TransferInstructionView>> change : pendingInstructions.entrySet()) {
+                if (change.getValue().isPresent()) {
+                    insert.setString(1, treasuryParty);
+                    insert.setString(2, change.getKey());
+                    insert.setString(3, change.getValue().get().toJson());
+                    insert.addBatch();
+                } else {
+                    delete.setString(1, treasuryParty);
+                    delete.setString(2, change.getKey());
+                    delete.addBatch();
+                }
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+        }
+    }
+
+    private void writeHistoryEntries() throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO tx_history_log (treasury_party, update_offset, entry_index, exercise_node_id, update_id, record_time, entry_json) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            long previousOffset = Long.MIN_VALUE;
+            int entryIndex = 0;
+            for (TxHistoryEntry entry : pendingHistoryEntries) {
+                long offset = entry.updateMetadata().offset();
+                entryIndex = offset == previousOffset ? entryIndex + 1 : 0;
+                previousOffset = offset;
+                insert.setString(1, treasuryParty);
+                insert.setLong(2, offset);
+                insert.setInt(3, entryIndex);
+                insert.setLong(4, entry.exerciseNodeId());
+                insert.setString(5, entry.updateMetadata().updateId());
+                insert.setString(6, entry.updateMetadata().recordTime());
+                insert.setString(7, ExtendedJson.gson.toJson(entry));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    public Optional<HoldingView> lookupHoldingById(String contractId) throws SQLException {
+        Optional<HoldingView> pending = pendingHoldings.get(contractId);
+        if (pending != null) {
+            return pending;
+        }
+        return readView("SELECT view_json FROM active_holdings WHERE treasury_party = ? AND contract_id = ?", contractId)
+                .map(json -> ConversionHelpers.convertFromJson(json, HoldingView::fromJson));
+    }
+
+    public Optional<TransferInstructionView> lookupTransferInstructionById(String contractId) throws SQLException {
+        Optional<TransferInstructionView> pending = pendingInstructions.get(contractId);
+        if (pending != null) {
+            return pending;
+        }
+        return readView("SELECT view_json FROM pending_transfer_instructions WHERE treasury_party = ? AND contract_id = ?", contractId)
+                .map(json -> ConversionHelpers.convertFromJson(json, TransferInstructionView::fromJson));
+    }
+
+    public long getNumActiveHoldings() throws SQLException {
+        return count("SELECT COUNT(*) FROM active_holdings WHERE treasury_party = ?");
+    }
+
+    public long getNumTxHistoryEntries() throws SQLException {
+        return count("SELECT COUNT(*) FROM tx_history_log WHERE treasury_party = ?");
+    }
+
+    /**
+     * Select unlocked holdings of the given instrument to cover the given amount, see {@link IntegrationStore#selectHoldingsForWithdrawal}.
+     */
+    public Optional<List<String>> selectHoldingsForWithdrawal(InstrumentId instrumentId, BigDecimal amount) throws SQLException {
+        List<String> selected = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT contract_id, amount FROM active_holdings"
+                        + " WHERE treasury_party = ? AND instrument_admin = ? AND instrument_id = ? AND locked = FALSE"
+                        + " ORDER BY contract_id")) {
+            query.setString(1, treasuryParty);
+            query.setString(2, instrumentId.admin);
+            query.setString(3, instrumentId.id);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    selected.add(rows.getString(1));
+                    total = total.add(rows.getBigDecimal(2));
+                    if (total.compareTo(amount) >= 0) {
+                        log.info("Selected holdings " + selected + " worth " + total + " to cover withdrawal of " + amount + " of " + instrumentId);
+                        return Optional.of(selected);
+                    }
+                }
+            }
+        }
+        log.warning("Insufficient holdings to cover withdrawal of " + amount + " of " + instrumentId + " (total available: " + total + "), returning empty selection");
+        return Optional.empty();
+    }
+
+    @Override
+    public String treasuryPartyId() {
+        return treasuryParty;
+    }
+
+    @Override
+    public void ingestTransferInstructionCreation(String contractId, TransferInstructionView instruction) {
+        Transfer t = instruction.transfer;
+        if (t.sender.equals(treasuryParty) || t.receiver.equals(treasuryParty)) {
+            log.fine(() -> "New pending transfer instruction for treasury party: " + contractId);
+            pendingInstructions.put(contractId, Optional.of(instruction));
+        }
+    }
+
+    @NotNull
+    @Override
+    public Optional<TransferInstructionView> ingestTransferInstructionArchival(String contractId) {
+        Optional<TransferInstructionView> instruction = uncheckedLookup(() -> lookupTransferInstructionById(contractId));
+        if (instruction.isPresent()) {
+            log.fine(() -> "Archiving pending transfer instruction for treasury party: " + contractId);
+            pendingInstructions.put(contractId, Optional.empty());
+        }
+        return instruction;
+    }
+
+    @Override
+    public void ingestHoldingCreation(String contractId, HoldingView holding) {
+        if (holding.owner.equals(treasuryParty)) {
+            log.fine(() -> "New active holding for treasury party: " + contractId);
+            pendingHoldings.put(contractId, Optional.of(holding));
+        }
+    }
+
+    @NotNull
+    @Override
+    public Optional<HoldingView> ingestHoldingArchival(String contractId) {
+        Optional<HoldingView> holding = uncheckedLookup(() -> lookupHoldingById(contractId));
+        if (holding.isPresent()) {
+            log.fine(() -> "Archiving active holding for treasury party: " + contractId);
+            pendingHoldings.put(contractId, Optional.empty());
+        }
+        return holding;
+    }
+
+    private interface Lookup<T> {
+        Optional<T> lookup() throws SQLException;
+    }
+
+    // The parser does not expect checked exceptions
+    private static <T> Optional<T> uncheckedLookup(Lookup<T> lookup) {
+        try {
+            return lookup.lookup();
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Failed to look up contract", ex);
+        }
+    }
+
+    private Optional<String> readView(String sql, String contractId) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(sql)) {
+            query.setString(1, treasuryParty);
+            query.setString(2, contractId);
+            try (ResultSet rows = query.executeQuery()) {
+                return rows.next() ? Optional.of(rows.getString(1)) : Optional.empty();
+            }
+        }
+    }
+
+    private long count(String sql) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(sql)) {
+            query.setString(1, treasuryParty);
+            try (ResultSet rows = query.executeQuery()) {
+                rows.next();
+                return rows.getLong(1);
+            }
+        }
+    }
+
+    private Long readStoredOffset() throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement("SELECT last_ingested_offset FROM store_offsets WHERE treasury_party = ?")) {
+            query.setString(1, treasuryParty);
+            try (ResultSet rows = query.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : null;
+            }
+        }
+    }
+
+    private void commitIfNeeded() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.store;
+
+import com.example.ConversionHelpers;
+import com.example.client.ledger.model.*;
+import com.example.store.models.TxHistoryEntry;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.jetbrains.annotations.NotNull;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.holdingv1.InstrumentId;
+import splice.api.token.transferinstructionv1.Transfer;
+import splice.api.token.transferinstructionv1.TransferInstructionView;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TransactionParser.IUtxoStore} that keeps the active holdings and pending transfer instructions of the
+ * treasury party in an embedded on-disk MVStore, so that the UTXO set can be larger than the heap and survives restarts.
+ * <p>
+ * The holdings and transfer instructions are stored as their JSON encoding, keyed by contract ID. An index from
+ * instrument to unlocked holdings and their amounts allows selecting holdings without decoding them.
+ * <p>
+ * The changes of an update are collected while parsing it, and written together with its offset once the whole update
+ * has been parsed. They are only made durable by {@link #commit()}, which is called every {@code commitInterval}
+ * updates, so that the writes to disk are batched. As the offset is part of every commit, the store can always be
+ * resumed after {@link #getLastIngestedOffset()} when reopened.
+ * The transaction history is not persisted; the history entries are returned by {@link #ingestUpdate} instead.
+ */
+public class MVStoreUtxoStore implements TransactionParser.IUtxoStore, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(MVStoreUtxoStore.class.getName());
+
+    private static final String LAST_INGESTED_OFFSET = "lastIngestedOffset";
+    private static final String TREASURY_PARTY = "treasuryParty";
+    private static final char KEY_SEPARATOR = '\0';
+
+    private final MVStore mvStore;
+    private final String treasuryParty;
+    private final int commitInterval;
+
+    private final MVMap<String, String> meta;
+    private final MVMap<String, String> holdings;
+    private final MVMap<String, String> transferInstructions;
+    // instrument admin, instrument id, and contract ID of the unlocked holdings -> amount
+    private final MVMap<String, String> unlockedHoldingsByInstrument;
+
+    // The changes of the update that is being ingested, null values mark removed entries
+    private final Map<String, String> pendingHoldings = new LinkedHashMap<>();
+    private final Map<String, String> pendingTransferInstructions = new LinkedHashMap<>();
+    private final Map<String, String> pendingUnlockedHoldings = new LinkedHashMap<>();
+
+    private long lastIngestedOffset;
+    private int uncommittedUpdates = 0;
+
+    private MVStoreUtxoStore(MVStore mvStore, String treasuryParty, long startingOffset, int commitInterval) {
+        this.mvStore = mvStore;
+        this.treasuryParty = treasuryParty;
+        this.commitInterval = commitInterval;
+        this.meta = mvStore.openMap("meta");
+        this.holdings = mvStore.openMap("holdings");
+        this.transferInstructions = mvStore.openMap("transferInstructions");
+        this.unlockedHoldingsByInstrument = mvStore.openMap("unlockedHoldingsByInstrument");
+
+        String storedParty = meta.get(TREASURY_PARTY);
+        if (storedParty == null) {
+            meta.put(TREASURY_PARTY, treasuryParty);
+            meta.put(LAST_INGESTED_OFFSET, Long.toString(startingOffset));
+            mvStore.commit();
+        } else if (!storedParty.equals(treasuryParty)) {
+            throw new IllegalArgumentException("Store was created for treasury party " + storedParty + ", not " + treasuryParty);
+        }
+        this.lastIngestedOffset = Long.parseLong(meta.get(LAST_INGESTED_OFFSET));
+    }
+
+    /**
+     * Open the store in the given file, or create it starting after {@code startingOffset} if it does not exist.
+     *
+     * @param commitInterval the number of updates after which the changes are committed to disk
+     */
+    public static MVStoreUtxoStore open(Path file, String treasuryParty, long startingOffset, int commitInterval) {
+        if (commitInterval < 1) {
+            throw new IllegalArgumentException("commitInterval must be positive, got " + commitInterval);
+        }
+        MVStore mvStore = new MVStore.Builder()
+                .fileName(file.toString())
+                .autoCommitDisabled()
+                .open();
+        try {
+            return new MVStoreUtxoStore(mvStore, treasuryParty, startingOffset, commitInterval);
+        } catch (RuntimeException ex) {
+            mvStore.close();
+            throw ex;
+        }
+    }
+
+    public long getLastIngestedOffset() {
+        return lastIngestedOffset;
+    }
+
+    /**
+     * Ingest an update, and commit the changes to disk if {@code commitInterval} updates have been ingested since
+     * the last commit.
+     * <p>
+     * If the update fails to be ingested, then none of its changes are written, but those of the updates before it are
+     * kept, so that the ingestion can be resumed after {@link #getLastIngestedOffset()} without ingesting an update twice.
+     *
+     * @return the history entries of the update, without the raw transaction events
+     */
+    public List<TxHistoryEntry> ingestUpdate(Update update0) {
+        List<TxHistoryEntry> entries = List.of();
+        try {
+            if (update0.getActualInstance() instanceof UpdateOneOf1 update) {
+                throw new UnsupportedOperationException("Reassignments are not yet supported, failed to handle reassignment: " + update.toJson());
+            } else if (update0.getActualInstance() instanceof UpdateOneOf3 update) {
+                JsTransaction tx = update.getTransaction().getValue();
+                List<Event> events = tx.getEvents();
+                assert events != null;
+                TxHistoryEntry.UpdateMetadata updateMetadata = new TxHistoryEntry.UpdateMetadata(tx.getUpdateId(), tx.getRecordTime(), tx.getOffset());
+                TransactionParser parser = new TransactionParser(updateMetadata, this, false);
+                entries = parser.parse(events, TransactionParser.decode(events, treasuryParty));
+            }
+            writeChanges(holdings, pendingHoldings);
+            writeChanges(transferInstructions, pendingTransferInstructions);
+            writeChanges(unlockedHoldingsByInstrument, pendingUnlockedHoldings);
+            lastIngestedOffset = IntegrationStore.getUpdateOffset(update0);
+            meta.put(LAST_INGESTED_OFFSET, Long.toString(lastIngestedOffset));
+        } finally {
+            pendingHoldings.clear();
+            pendingTransferInstructions.clear();
+            pendingUnlockedHoldings.clear();
+        }
+        uncommittedUpdates++;
+        if (uncommittedUpdates >= commitInterval) {
+            commit();
+        }
+        return entries;
+    }
+
+    /**
+     * Write the changes of all updates ingested since the last commit to disk.
+     */
+    public void commit() {
+        if (uncommittedUpdates > 0) {
+            mvStore.commit();
+            log.fine(() -> "Committed " + uncommittedUpdates + " updates up to offset " + lastIngestedOffset);
+            uncommittedUpdates = 0;
+        }
+    }
+
+    private static void writeChanges(MVMap<String, String> map, Map<String, String> changes) {
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                map.remove(change.getKey());
+            } else {
+                map.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    // The value of the key, including the changes of the update that is being ingested
+    private static String lookup(MVMap<String, String> map, Map<String, String> changes, String key) {
+        return changes.containsKey(key) ? changes.get(key) : map.get(key);
+    }
+
+    public long getNumActiveHoldings() {
+        return holdings.sizeAsLong();
+    }
+
+    public Optional<HoldingView> lookupHoldingById(String contractId) {
+        return Optional.ofNullable(lookup(holdings, pendingHoldings, contractId)).map(json -> ConversionHelpers.convertFromJson(json, HoldingView::fromJson));
+    }
+
+    public Optional<TransferInstructionView> lookupTransferInstructionById(String contractId) {
+        return Optional.ofNullable(lookup(transferInstructions, pendingTransferInstructions, contractId)).map(json -> ConversionHelpers.convertFromJson(json, TransferInstructionView::fromJson));
+    }
+
+    /**
+     * Select unlocked holdings of the given instrument to cover the given amount, see {@link IntegrationStore#selectHoldingsForWithdrawal}.
+     * Only reads the index entries of the instrument.
+     */
+    public Optional<List<String>> selectHoldingsForWithdrawal(InstrumentId instrumentId, BigDecimal amount) {
+        String prefix = instrumentKeyPrefix(instrumentId);
+        List<String> selected = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        Cursor<String, String> cursor = unlockedHoldingsByInstrument.cursor(prefix);
+        while (cursor.hasNext()) {
+            String key = cursor.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            selected.add(key.substring(prefix.length()));
+            total = total.add(new BigDecimal(cursor.getValue()));
+            if (total.compareTo(amount) >= 0) {
+                log.info("Selected holdings " + selected + " worth " + total + " to cover withdrawal of " + amount + " of " + instrumentId);
+                return Optional.of(selected);
+            }
+        }
+        log.warning("Insufficient holdings to cover withdrawal of " + amount + " of " + instrumentId + " (total available: " + total + "), returning empty selection");
+        return Optional.empty();
+    }
+
+    @Override
+    public String treasuryPartyId() {
+        return treasuryParty;
+    }
+
+    @Override
+    public void ingestTransferInstructionCreation(String contractId, TransferInstructionView instruction) {
+        Transfer t = instruction.transfer;
+        if (t.sender.equals(treasuryParty) || t.receiver.equals(treasuryParty)) {
+            log.fine(() -> "New pending transfer instruction for treasury party: " + contractId);
+            pendingTransferInstructions.put(contractId, instruction.toJson());
+        }
+    }
+
+    @NotNull
+    @Override
+    public Optional<TransferInstructionView> ingestTransferInstructionArchival(String contractId) {
+        String json = lookup(transferInstructions, pendingTransferInstructions, contractId);
+        if (json == null) {
+            return Optional.empty();
+        }
+        pendingTransferInstructions.put(contractId, null);
+        log.fine(() -> "Archiving pending transfer instruction for treasury party: " + contractId);
+        return Optional.of(ConversionHelpers.convertFromJson(json, TransferInstructionView::fromJson));
+    }
+
+    @Override
+    public void ingestHoldingCreation(String contractId, HoldingView holding) {
+        if (holding.owner.equals(treasuryParty)) {
+            log.fine(() -> "New active holding for treasury party: " + contractId);
+            pendingHoldings.put(contractId, holding.toJson());
+            if (holding.lock.isEmpty()) {
+                pendingUnlockedHoldings.put(instrumentKeyPrefix(holding.instrumentId) + contractId, holding.amount.toPlainString());
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public Optional<HoldingView> ingestHoldingArchival(String contractId) {
+        String json = lookup(holdings, pendingHoldings, contractId);
+        if (json == null) {
+            return Optional.empty();
+        }
+        pendingHoldings.put(contractId, null);
+        HoldingView holding = ConversionHelpers.convertFromJson(json, HoldingView::fromJson);
+        pendingUnlockedHoldings.put(instrumentKeyPrefix(holding.instrumentId) + contractId, null);
+        log.fine(() -> "Archiving active holding for treasury party: " + contractId);
+        return Optional.of(holding);
+    }
+
+    private static String instrumentKeyPrefix(InstrumentId instrumentId) {
+        return instrumentId.admin + KEY_SEPARATOR + instrumentId.id + KEY_SEPARATOR;
+    }
+
+    /**
+     * Commit the pending changes and close the store.
+     */
+    @Override
+    public void close() {
+        try {
+            commit();
+        } catch (RuntimeException ex) {
+            log.log(Level.WARNING, "Failed to commit pending changes on close", ex);
+        }
+        mvStore.close();
+    }
+}
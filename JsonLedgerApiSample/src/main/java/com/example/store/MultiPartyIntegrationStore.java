@@ -0,0 +1,128 @@
+package com.example.store;
+
+import com.example.client.ledger.model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Store for tracking the holdings and transfer instructions of multiple treasury parties, e.g., one per customer
+ * omnibus account, from a single stream of updates read on behalf of all of them.
+ * <p>
+ * Each party is tracked by its own {@link IntegrationStore} shard. The events of a transaction are routed to
+ * the shards of the parties that witness them, so that each shard sees the same events as if it had read the
+ * updates for its party alone. The shards are then updated in parallel, and share no state.
+ */
+public class MultiPartyIntegrationStore implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(MultiPartyIntegrationStore.class.getName());
+
+    private final Map<String, IntegrationStore> shards;
+    private final ExecutorService shardExecutor;
+
+    // The offset after which to resume reading updates for all parties
+    private long lastIngestedOffset;
+
+    public MultiPartyIntegrationStore(Collection<String> treasuryParties, long startingOffset, int numThreads) {
+        if (treasuryParties.isEmpty()) {
+            throw new IllegalArgumentException("At least one treasury party is required");
+        }
+        LinkedHashMap<String, IntegrationStore> shards = new LinkedHashMap<>();
+        for (String party : treasuryParties) {
+            shards.put(party, new IntegrationStore(party, startingOffset));
+        }
+        this.shards = Collections.unmodifiableMap(shards);
+        this.lastIngestedOffset = startingOffset;
+        this.shardExecutor = Executors.newFixedThreadPool(numThreads, IngestionPipeline.daemonThreads("store-shard"));
+    }
+
+    public List<String> getTreasuryParties() {
+        return List.copyOf(shards.keySet());
+    }
+
+    public IntegrationStore getShard(String treasuryParty) {
+        IntegrationStore shard = shards.get(treasuryParty);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown treasury party: " + treasuryParty);
+        }
+        return shard;
+    }
+
+    public long getLastIngestedOffset() {
+        return lastIngestedOffset;
+    }
+
+    /**
+     * Ingest a batch of updates read on behalf of all treasury parties, e.g., a page returned by
+     * {@link com.example.services.Wallet#queryForHoldingTransactionsPage(List, Long, long)}.
+     * <p>
+     * The shards ingest their share of the batch in parallel. If a shard fails, then the exception is rethrown
+     * and the store must be discarded, as the other shards may have already ingested the batch.
+     */
+    public void ingestUpdates(List<JsGetUpdatesResponse> updates) throws Exception {
+        if (updates.isEmpty()) {
+            return;
+        }
+        Map<IntegrationStore, List<Runnable>> work = new LinkedHashMap<>();
+        for (JsGetUpdatesResponse response : updates) {
+            route(response.getUpdate(), work);
+        }
+
+        List<Future<Object>> results = shardExecutor.invokeAll(work.values().stream()
+                .map(shardWork -> (Callable<Object>) () -> {
+                    shardWork.forEach(Runnable::run);
+                    return null;
+                })
+                .toList());
+        for (Future<Object> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            }
+        }
+
+        lastIngestedOffset = IntegrationStore.getUpdateOffset(updates.get(updates.size() - 1).getUpdate());
+        log.fine(() -> "Ingested " + updates.size() + " updates into " + work.size() + " shards up to offset " + lastIngestedOffset);
+    }
+
+    private void route(Update update0, Map<IntegrationStore, List<Runnable>> work) {
+        if (update0.getActualInstance() instanceof UpdateOneOf3 update) {
+            JsTransaction tx = update.getTransaction().getValue();
+            Map<IntegrationStore, List<Event>> eventsByShard = new LinkedHashMap<>();
+            for (Event event : tx.getEvents()) {
+                for (String party : witnessParties(event)) {
+                    IntegrationStore shard = shards.get(party);
+                    if (shard != null) {
+                        eventsByShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(event);
+                    }
+                }
+            }
+            // Transactions without events for a party are skipped, as they would not be served when reading for that party alone
+            eventsByShard.forEach((shard, events) ->
+                    work.computeIfAbsent(shard, k -> new ArrayList<>()).add(() -> shard.ingestTransaction(tx, events)));
+        } else {
+            for (IntegrationStore shard : shards.values()) {
+                work.computeIfAbsent(shard, k -> new ArrayList<>()).add(() -> shard.ingestUpdate(update0));
+            }
+        }
+    }
+
+    private static List<String> witnessParties(Event event) {
+        List<String> parties = null;
+        if (event.getActualInstance() instanceof EventOneOf archivedEvent) {
+            parties = archivedEvent.getArchivedEvent().getWitnessParties();
+        } else if (event.getActualInstance() instanceof EventOneOf1 createdEvent) {
+            parties = createdEvent.getCreatedEvent().getWitnessParties();
+        } else if (event.getActualInstance() instanceof EventOneOf2 exercisedEvent) {
+            parties = exercisedEvent.getExercisedEvent().getWitnessParties();
+        }
+        return parties == null ? List.of() : parties;
+    }
+
+    @Override
+    public void close() {
+        shardExecutor.shutdownNow();
+    }
+}
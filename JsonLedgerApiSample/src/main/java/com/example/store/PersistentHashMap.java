@@ -0,0 +1,369 @@
+package com.example.store;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable hash map that shares most of its structure with the map it was derived from.
+ * <p>
+ * The entries are kept in a hash array mapped trie, where each level branches on the next 5 bits of the hash of the
+ * key. {@link #with} and {@link #without} thus only copy the nodes on the path to the changed entry, and lookups
+ * visit at most 7 nodes. Keys and values must not be null.
+ */
+final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NOT_FOUND = new Object();
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    static <K, V> PersistentHashMap<K, V> copyOf(Map<K, V> map) {
+        if (map instanceof PersistentHashMap<K, V> persistent) {
+            return persistent;
+        }
+        PersistentHashMap<K, V> result = empty();
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * The map with the given entry added or replaced.
+     */
+    PersistentHashMap<K, V> with(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        boolean[] added = {false};
+        Node newRoot = root.with(hash(key), key, value, 0, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * The map without the entry of the given key.
+     */
+    PersistentHashMap<K, V> without(Object key) {
+        if (key == null) {
+            return this;
+        }
+        Node newRoot = root.without(hash(key), key, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Object value = root.find(hash(key), key, 0);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && root.find(hash(key), key, 0) != NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * A node of the trie. Its array holds a key and a value per entry, or null and a child node per subtrie.
+     */
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int hash, Object key, int shift);
+
+        abstract Node with(int hash, Object key, Object value, int shift, boolean[] added);
+
+        /**
+         * The node without the given key, the same node if it does not contain the key, or null if it becomes empty.
+         */
+        abstract Node without(int hash, Object key, int shift);
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        // The bits of the 5-bit hash fragments that are present, in the order of the array
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int i = index(bit);
+            Object entryKey = array[i];
+            if (entryKey == null) {
+                return ((Node) array[i + 1]).find(hash, key, shift + BITS);
+            }
+            return key.equals(entryKey) ? array[i + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node with(int hash, Object key, Object value, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object entryKey = array[i];
+            Object entryValue = array[i + 1];
+            if (entryKey == null) {
+                Node child = (Node) entryValue;
+                Node newChild = child.with(hash, key, value, shift + BITS, added);
+                return newChild == child ? this : replace(i, null, newChild);
+            }
+            if (key.equals(entryKey)) {
+                return value == entryValue ? this : replace(i, entryKey, value);
+            }
+            added[0] = true;
+            return replace(i, null, pair(entryKey, entryValue, hash(entryKey), key, value, hash, shift + BITS));
+        }
+
+        @Override
+        Node without(int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object entryKey = array[i];
+            if (entryKey == null) {
+                Node child = (Node) array[i + 1];
+                Node newChild = child.without(hash, key, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                } else if (newChild == null) {
+                    return remove(bit, i);
+                } else if (newChild instanceof BitmapNode bitmapChild
+                        && Integer.bitCount(bitmapChild.bitmap) == 1 && bitmapChild.array[0] != null) {
+                    // Pull a single remaining entry up into this node
+                    return replace(i, bitmapChild.array[0], bitmapChild.array[1]);
+                }
+                return replace(i, null, newChild);
+            }
+            return key.equals(entryKey) ? remove(bit, i) : this;
+        }
+
+        private BitmapNode replace(int i, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private BitmapNode remove(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        private static Node pair(Object key1, Object value1, int hash1, Object key2, Object value2, int hash2, int shift) {
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            int bit1 = bit(hash1, shift);
+            int bit2 = bit(hash2, shift);
+            if (bit1 == bit2) {
+                return new BitmapNode(bit1, new Object[]{null, pair(key1, value1, hash1, key2, value2, hash2, shift + BITS)});
+            }
+            return Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new BitmapNode(bit1 | bit2, new Object[]{key1, value1, key2, value2})
+                    : new BitmapNode(bit1 | bit2, new Object[]{key2, value2, key1, value1});
+        }
+    }
+
+    /**
+     * The entries of keys whose hashes are equal.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        Node with(int hash, Object key, Object value, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                return new BitmapNode(bit(this.hash, shift), new Object[]{null, this}).with(hash, key, value, shift, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node without(int hash, Object key, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 4) {
+                // The remaining entry can be pulled up into the parent
+                int remaining = i == 0 ? 2 : 0;
+                return new BitmapNode(bit(hash, shift), new Object[]{array[remaining], array[remaining + 1]});
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new CollisionNode(hash, newArray);
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final ArrayDeque<Object[]> arrays = new ArrayDeque<>();
+        private final ArrayDeque<Integer> positions = new ArrayDeque<>();
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            arrays.push(root.array);
+            positions.push(0);
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] array = arrays.peek();
+                int position = positions.pop();
+                if (position >= array.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(position + 2);
+                if (array[position] == null) {
+                    arrays.push(((Node) array[position + 1]).array);
+                    positions.push(0);
+                } else {
+                    next = new SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+}
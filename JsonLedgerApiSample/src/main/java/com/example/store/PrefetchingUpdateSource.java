@@ -0,0 +1,151 @@
+package com.example.store;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * An {@link IngestionPipeline.UpdateSource} that adapts the page size to the observed responses, and
+ * requests the next page while the current one is being processed.
+ * <p>
+ * The page size is doubled while full pages are served quickly and are small, and halved when a page
+ * takes longer than the target latency or exceeds the maximal page size in bytes. At most one page is
+ * fetched ahead of the caller, which is kept until it is requested or {@link #discardPrefetched discarded}.
+ */
+public class PrefetchingUpdateSource implements IngestionPipeline.UpdateSource, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(PrefetchingUpdateSource.class.getName());
+
+    /**
+     * Source of pages of updates, e.g., {@link com.example.services.Wallet#queryForHoldingTransactionsPage}.
+     */
+    public interface PagedUpdateSource {
+        Page fetchPage(long beginAfterOffset, long limit) throws Exception;
+    }
+
+    /**
+     * A page of updates.
+     *
+     * @param updates       the updates, in offset order
+     * @param responseBytes the number of bytes read to receive the updates, or 0 if unknown
+     */
+    public record Page(List<JsGetUpdatesResponse> updates, long responseBytes) {
+    }
+
+    /**
+     * The bounds within which the page size is adapted.
+     *
+     * @param minPageSize   the minimal number of updates requested per page
+     * @param maxPageSize   the maximal number of updates requested per page
+     * @param targetLatency the latency above which the page size is reduced
+     * @param maxPageBytes  the response size in bytes above which the page size is reduced
+     */
+    public record PageSizeBounds(long minPageSize, long maxPageSize, Duration targetLatency, long maxPageBytes) {
+        public static final PageSizeBounds DEFAULT = new PageSizeBounds(10, 1000, Duration.ofSeconds(1), 8 * 1024 * 1024);
+
+        public PageSizeBounds {
+            if (minPageSize < 1 || maxPageSize < minPageSize) {
+                throw new IllegalArgumentException("Invalid page size bounds [" + minPageSize + ", " + maxPageSize + "]");
+            }
+        }
+    }
+
+    private final PagedUpdateSource source;
+    private volatile PageSizeBounds bounds;
+    private final ExecutorService prefetchExecutor;
+
+    // Only accessed from the prefetch thread
+    private long pageSize;
+
+    private Future<List<JsGetUpdatesResponse>> prefetchedPage = null;
+    private long prefetchedAfterOffset = -1;
+
+    public PrefetchingUpdateSource(PagedUpdateSource source, PageSizeBounds bounds) {
+        this.source = source;
+        this.bounds = bounds;
+        this.pageSize = bounds.minPageSize();
+        this.prefetchExecutor = Executors.newSingleThreadExecutor(IngestionPipeline.daemonThreads("update-prefetch"));
+    }
+
+    /**
+     * Change the bounds of the page size, e.g., to use larger pages while catching up with the ledger end.
+     * Takes effect from the next page that is requested.
+     */
+    public void setPageSizeBounds(PageSizeBounds bounds) {
+        this.bounds = bounds;
+    }
+
+    @Override
+    public List<JsGetUpdatesResponse> fetchUpdates(long beginAfterOffset) throws Exception {
+        Future<List<JsGetUpdatesResponse>> page = prefetchedPage;
+        prefetchedPage = null;
+        if (page == null || prefetchedAfterOffset != beginAfterOffset) {
+            if (page != null) {
+                page.cancel(true);
+            }
+            page = prefetchExecutor.submit(() -> fetchPage(beginAfterOffset));
+        }
+
+        List<JsGetUpdatesResponse> updates;
+        try {
+            updates = page.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        }
+
+        if (!updates.isEmpty()) {
+            // Request the next page while the caller processes this one
+            long nextOffset = IntegrationStore.getUpdateOffset(updates.get(updates.size() - 1).getUpdate());
+            prefetchedAfterOffset = nextOffset;
+            prefetchedPage = prefetchExecutor.submit(() -> fetchPage(nextOffset));
+        }
+        return updates;
+    }
+
+    @Override
+    public void discardPrefetched() {
+        if (prefetchedPage != null) {
+            prefetchedPage.cancel(true);
+            prefetchedPage = null;
+        }
+    }
+
+    private List<JsGetUpdatesResponse> fetchPage(long beginAfterOffset) throws Exception {
+        PageSizeBounds currentBounds = bounds;
+        long limit = Math.min(currentBounds.maxPageSize(), Math.max(currentBounds.minPageSize(), pageSize));
+        pageSize = limit;
+        long start = System.nanoTime();
+        Page page = source.fetchPage(beginAfterOffset, limit);
+        Duration latency = Duration.ofNanos(System.nanoTime() - start);
+        adaptPageSize(limit, page.updates().size(), latency, page.responseBytes());
+        return page.updates();
+    }
+
+    private void adaptPageSize(long limit, int numUpdates, Duration latency, long responseBytes) {
+        PageSizeBounds bounds = this.bounds;
+        long newPageSize = pageSize;
+        if (latency.compareTo(bounds.targetLatency()) > 0 || responseBytes > bounds.maxPageBytes()) {
+            newPageSize = Math.max(bounds.minPageSize(), limit / 2);
+        } else if (numUpdates >= limit
+                && latency.compareTo(bounds.targetLatency().dividedBy(2)) < 0
+                && responseBytes < bounds.maxPageBytes() / 2) {
+            // Only grow on full pages, as partial pages mean that we caught up with the ledger end
+            newPageSize = Math.min(bounds.maxPageSize(), limit * 2);
+        }
+        if (newPageSize != pageSize) {
+            long oldPageSize = pageSize;
+            long adaptedPageSize = newPageSize;
+            log.fine(() -> "Changing update page size from " + oldPageSize + " to " + adaptedPageSize + " after fetching "
+                    + numUpdates + " updates (" + responseBytes + " bytes) in " + latency.toMillis() + " ms");
+            pageSize = newPageSize;
+        }
+    }
+
+    @Override
+    public void close() {
+        prefetchExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.store;
+
+import com.example.store.models.TxHistoryEntry;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.transferinstructionv1.TransferInstructionView;
+
+/**
+ * A change to the state of an {@link IntegrationStore}, as delivered to a {@link StoreSubscription}.
+ * <p>
+ * Each change carries the offset of the update that caused it.
+ */
+public sealed interface StoreChange {
+
+    long offset();
+
+    record HoldingAdded(long offset, String contractId, HoldingView holding) implements StoreChange {
+    }
+
+    record HoldingRemoved(long offset, String contractId, HoldingView holding) implements StoreChange {
+    }
+
+    record TransferInstructionAdded(long offset, String contractId, TransferInstructionView instruction) implements StoreChange {
+    }
+
+    record TransferInstructionRemoved(long offset, String contractId, TransferInstructionView instruction) implements StoreChange {
+    }
+
+    record HistoryEntryAppended(long offset, TxHistoryEntry entry) implements StoreChange {
+    }
+}
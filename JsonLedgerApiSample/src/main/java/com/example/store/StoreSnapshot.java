@@ -0,0 +1,201 @@
+package com.example.store;
+
+import com.example.store.models.TxHistoryEntry;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.holdingv1.InstrumentId;
+import splice.api.token.transferinstructionv1.TransferInstructionView;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * An immutable view of the state of an {@link IntegrationStore} after applying all updates up to a specific offset.
+ * <p>
+ * The store publishes a new snapshot after each applied update, see {@link IntegrationStore#getSnapshot()}.
+ * Snapshots can be read from any thread without blocking the ingestion.
+ * <p>
+ * To keep publishing and reading cheap, a snapshot shares its state with the previous snapshot: the maps are persistent
+ * hash maps, of which each update only copies the paths to the changed entries, and the history log is a prefix of a
+ * shared append-only buffer. Neither publishing nor reading a snapshot copies its maps or its history log.
+ */
+public final class StoreSnapshot {
+
+    private static final Logger log = Logger.getLogger(StoreSnapshot.class.getName());
+
+    private final long lastIngestedOffset;
+    private final String lastIngestedRecordTime;
+    private final PersistentHashMap<String, HoldingView> activeHoldings;
+    private final PersistentHashMap<String, TransferInstructionView> pendingTransferInstructions;
+    private final SnapshotList<TxHistoryEntry> txHistoryLog;
+
+    private StoreSnapshot(
+            long lastIngestedOffset,
+            String lastIngestedRecordTime,
+            PersistentHashMap<String, HoldingView> activeHoldings,
+            PersistentHashMap<String, TransferInstructionView> pendingTransferInstructions,
+            SnapshotList<TxHistoryEntry> txHistoryLog) {
+        this.lastIngestedOffset = lastIngestedOffset;
+        this.lastIngestedRecordTime = lastIngestedRecordTime;
+        this.activeHoldings = activeHoldings;
+        this.pendingTransferInstructions = pendingTransferInstructions;
+        this.txHistoryLog = txHistoryLog;
+    }
+
+    static StoreSnapshot of(
+            long lastIngestedOffset,
+            String lastIngestedRecordTime,
+            Map<String, HoldingView> activeHoldings,
+            Map<String, TransferInstructionView> pendingTransferInstructions,
+            List<TxHistoryEntry> txHistoryLog) {
+        return new StoreSnapshot(
+                lastIngestedOffset,
+                lastIngestedRecordTime,
+                PersistentHashMap.copyOf(activeHoldings),
+                PersistentHashMap.copyOf(pendingTransferInstructions),
+                SnapshotList.of(txHistoryLog));
+    }
+
+    /**
+     * The snapshot after applying the given changes to this snapshot. Empty values mark removed entries.
+     */
+    StoreSnapshot next(
+            long lastIngestedOffset,
+            String lastIngestedRecordTime,
+            Map<String, Optional<HoldingView>> holdingChanges,
+            Map<String, Optional<TransferInstructionView>> instructionChanges,
+            List<TxHistoryEntry> newHistoryEntries) {
+        return new StoreSnapshot(
+                lastIngestedOffset,
+                lastIngestedRecordTime,
+                withChanges(activeHoldings, holdingChanges),
+                withChanges(pendingTransferInstructions, instructionChanges),
+                txHistoryLog.withAppended(newHistoryEntries));
+    }
+
+    private static <K, V> PersistentHashMap<K, V> withChanges(PersistentHashMap<K, V> map, Map<K, Optional<V>> changes) {
+        for (Map.Entry<K, Optional<V>> change : changes.entrySet()) {
+            map = change.getValue().isPresent()
+                    ? map.with(change.getKey(), change.getValue().get())
+                    : map.without(change.getKey());
+        }
+        return map;
+    }
+
+    public long getLastIngestedOffset() {
+        return lastIngestedOffset;
+    }
+
+    public String getLastIngestedRecordTime() {
+        return lastIngestedRecordTime;
+    }
+
+    public Map<String, HoldingView> getActiveHoldings() {
+        return activeHoldings;
+    }
+
+    public Map<String, TransferInstructionView> getPendingTransferInstructions() {
+        return pendingTransferInstructions;
+    }
+
+    public List<TxHistoryEntry> getTxHistoryLog() {
+        return txHistoryLog;
+    }
+
+    public Optional<HoldingView> lookupHoldingById(String contractId) {
+        return Optional.ofNullable(activeHoldings.get(contractId));
+    }
+
+    /**
+     * See {@link IntegrationStore#selectHoldingsForWithdrawal}.
+     */
+    public Optional<List<String>> selectHoldingsForWithdrawal(InstrumentId instrumentId, BigDecimal amount) {
+        return selectHoldings(activeHoldings, instrumentId, amount);
+    }
+
+    static Optional<List<String>> selectHoldings(Map<String, HoldingView> activeHoldings, InstrumentId instrumentId, BigDecimal amount) {
+        // Simple greedy algorithm: select arbitrary holdings until the amount is covered
+        // TODO: switch to selecting as per https://docs.digitalasset.com/integrate/devnet/exchange-integration/workflows.html#utxo-selection-and-management
+        List<String> selected = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<String, HoldingView> entry : activeHoldings.entrySet()) {
+            HoldingView holding = entry.getValue();
+            // TODO: allow using locked holdings if the lock has expired
+            if (holding.instrumentId.equals(instrumentId) && holding.lock.isEmpty()) {
+                selected.add(entry.getKey());
+                total = total.add(holding.amount);
+                if (total.compareTo(amount) >= 0) {
+                    log.info("Selected holdings " + selected + " worth " + total + " to cover withdrawal of " + amount + " of " + instrumentId);
+                    return Optional.of(selected);
+                }
+            }
+        }
+        log.warning("Insufficient holdings to cover withdrawal of " + amount + " of " + instrumentId + " (total available: " + total + "), returning empty selection");
+        return Optional.empty();
+    }
+
+    /**
+     * An immutable list that is a prefix of an append-only buffer, which is shared with the versions derived from it.
+     * <p>
+     * Appending to the latest version adds to the shared buffer instead of copying it. The entries visible to a version
+     * are never modified, and are published to other threads together with the snapshot.
+     */
+    private static final class SnapshotList<T> extends AbstractList<T> implements RandomAccess {
+        private final Buffer buffer;
+        private final Object[] elements;
+        private final int size;
+
+        // Only modified by the store, which appends to its latest snapshot
+        private static final class Buffer {
+            Object[] elements;
+            int size;
+
+            Buffer(Object[] elements, int size) {
+                this.elements = elements;
+                this.size = size;
+            }
+        }
+
+        private SnapshotList(Buffer buffer, Object[] elements, int size) {
+            this.buffer = buffer;
+            this.elements = elements;
+            this.size = size;
+        }
+
+        static <T> SnapshotList<T> of(List<T> list) {
+            Object[] elements = list.toArray();
+            return new SnapshotList<>(new Buffer(elements, elements.length), elements, elements.length);
+        }
+
+        SnapshotList<T> withAppended(List<T> newEntries) {
+            if (newEntries.isEmpty()) {
+                return this;
+            }
+            Buffer target = buffer;
+            if (target.size != size) {
+                // This is not the latest version, so it cannot share the buffer
+                target = new Buffer(Arrays.copyOf(elements, size), size);
+            }
+            int newSize = size + newEntries.size();
+            if (newSize > target.elements.length) {
+                target.elements = Arrays.copyOf(target.elements, Math.max(newSize, 2 * target.elements.length));
+            }
+            for (T entry : newEntries) {
+                target.elements[target.size++] = entry;
+            }
+            return new SnapshotList<>(target, target.elements, newSize);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            return (T) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
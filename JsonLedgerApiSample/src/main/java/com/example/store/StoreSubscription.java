@@ -0,0 +1,100 @@
+package com.example.store;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A subscription to the changes of an {@link IntegrationStore}, see {@link IntegrationStore#subscribe}.
+ * <p>
+ * The changes are delivered in the order in which they are applied to the store, through a bounded queue.
+ * What happens when the queue is full is determined by the {@link OverflowPolicy} of the subscription.
+ */
+public class StoreSubscription implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(StoreSubscription.class.getName());
+
+    public enum OverflowPolicy {
+        /** Block the ingestion until the subscriber has made room in its queue */
+        BLOCK,
+        /**
+         * Close the subscription. The subscriber must then re-read the state of the store and subscribe again,
+         * as it missed changes.
+         */
+        DISCONNECT
+    }
+
+    private final IntegrationStore store;
+    private final BlockingQueue<StoreChange> queue;
+    private final OverflowPolicy overflowPolicy;
+    private volatile boolean closed = false;
+    private volatile boolean overflowed = false;
+
+    StoreSubscription(IntegrationStore store, int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, got " + capacity);
+        }
+        this.store = store;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Wait for the next change for at most the given time.
+     *
+     * @return the next change, or null if there was none within the given time, or the subscription is closed
+     * and all changes have been consumed
+     */
+    public StoreChange poll(Duration timeout) throws InterruptedException {
+        StoreChange change = queue.poll();
+        if (change != null || closed) {
+            return change;
+        }
+        return queue.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Whether the subscription was closed because the subscriber did not keep up with the changes.
+     */
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        store.unsubscribe(this);
+    }
+
+    void publish(StoreChange change) {
+        if (closed) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    // Re-check regularly, so that closing the subscription unblocks the ingestion
+                    while (!closed && !queue.offer(change, 100, TimeUnit.MILLISECONDS)) {
+                        log.finer("Waiting for subscriber to consume changes");
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while publishing store change at offset " + change.offset(), ex);
+                }
+            }
+            case DISCONNECT -> {
+                if (!queue.offer(change)) {
+                    log.warning("Closing store subscription whose queue of " + queue.size() + " changes is full at offset " + change.offset());
+                    overflowed = true;
+                    close();
+                }
+            }
+        }
+    }
+}
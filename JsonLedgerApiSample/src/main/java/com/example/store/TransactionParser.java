@@ -2,14 +2,10 @@ package com.example.store;
 
 import com.example.ConversionHelpers;
 import com.example.GsonTypeAdapters.ExtendedJson;
-import com.example.client.ledger.invoker.JSON;
 import com.example.client.ledger.model.*;
 import com.example.models.TemplateId;
 import com.example.store.models.Balances;
 import com.example.store.models.TxHistoryEntry;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import jakarta.annotation.Nonnull;
 import splice.api.token.holdingv1.HoldingView;
 import splice.api.token.holdingv1.InstrumentId;
@@ -20,12 +16,21 @@ import splice.api.token.transferinstructionv1.transferinstructionresult_output.T
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import static com.example.models.TokenStandard.*;
 
 /**
  * Parsing the changes to the treasury's holdings and pending transfer instructions from a transaction.
+ * <p>
+ * The events of a transaction are listed in pre-order, and the subtransaction rooted at an exercise node spans the
+ * events with node IDs in the interval {@code [nodeId, lastDescendantNodeId]}. The parser makes a single pass over the
+ * events and tracks the enclosing exercise nodes on an explicit stack. Changes and log entries are recorded in shared
+ * lists, so that a (sub)transaction only needs to remember where its range of these lists starts.
+ * <p>
+ * The interface views and choice payloads are decoded up-front using {@link #decode}, which does not depend on the
+ * state of the store. Only the parsing itself has to happen sequentially in offset order.
  */
 public class TransactionParser {
 
@@ -33,8 +38,16 @@ public class TransactionParser {
 
     final private IUtxoStore utxoStore;
     final private TxHistoryEntry.UpdateMetadata updateMetadata;
-    private final ArrayList<Event> subtransactionEvents = new ArrayList<>();
-    final private ArrayList<TxHistoryEntry> childEntries = new ArrayList<>();
+    final private boolean retainTransactionEvents;
+    private DecodedViews decodedViews;
+
+    // Changes in the order in which they were parsed. Archivals of transfer instructions that are not reported
+    // as part of any log entry are set to null.
+    private final ArrayList<TxHistoryEntry.HoldingChange> holdingChanges = new ArrayList<>();
+    private final ArrayList<TxHistoryEntry.TransferInstructionChange> instructionChanges = new ArrayList<>();
+
+    // Log entries that have not (yet) been subsumed by a log entry for an enclosing exercise node
+    private final ArrayList<PendingEntry> pendingEntries = new ArrayList<>();
 
     /**
      * An interface to abstract over the tracking of UTXOs for holdings and transfer instructions.
@@ -53,124 +66,310 @@ public class TransactionParser {
         Optional<HoldingView> ingestHoldingArchival(String contractId);
     }
 
+    /**
+     * The interface views and choice payloads of a transaction that are relevant for parsing it, keyed by node ID.
+     */
+    public static class DecodedViews {
+        // views of created holdings owned by the treasury
+        private final HashMap<Integer, HoldingView> holdingViews = new HashMap<>();
+        // views of created transfer instructions where the treasury is the sender or receiver
+        private final HashMap<Integer, TransferInstructionView> instructionViews = new HashMap<>();
+        // choice arguments and results of TransferFactory_Transfer and TransferInstruction choices
+        private final HashMap<Integer, Supplier<TransferFactory_Transfer>> transferArguments = new HashMap<>();
+        private final HashMap<Integer, Supplier<TransferInstructionResult>> transferResults = new HashMap<>();
+
+        private TransferFactory_Transfer transferArgument(int nodeId) {
+            return transferArguments.get(nodeId).get();
+        }
+
+        private TransferInstructionResult transferResult(int nodeId) {
+            return transferResults.get(nodeId).get();
+        }
+    }
+
+    /**
+     * The parsing state of the root transaction or of a subtransaction rooted at an exercise node.
+     */
+    private static class Frame {
+        // null for the root transaction
+        final ExercisedEvent exercisedEvent;
+        final int eventIndex;
+        final int lastDescendantNodeId;
+        final Optional<HoldingView> consumedHolding;
+        final Optional<TransferInstructionView> consumedTransferInstruction;
+
+        // start of the ranges of the shared lists that belong to this (sub)transaction
+        final int holdingChangesStart;
+        final int instructionChangesStart;
+        final int pendingEntriesStart;
+
+        // summary of the changes in the above ranges
+        final Balances balances = new Balances();
+        int droppedInstructionChanges = 0;
+        int childTransfers = 0;
+
+        Frame(ExercisedEvent exercisedEvent, int eventIndex, int lastDescendantNodeId,
+              Optional<HoldingView> consumedHolding, Optional<TransferInstructionView> consumedTransferInstruction,
+              int holdingChangesStart, int instructionChangesStart, int pendingEntriesStart) {
+            this.exercisedEvent = exercisedEvent;
+            this.eventIndex = eventIndex;
+            this.lastDescendantNodeId = lastDescendantNodeId;
+            this.consumedHolding = consumedHolding;
+            this.consumedTransferInstruction = consumedTransferInstruction;
+            this.holdingChangesStart = holdingChangesStart;
+            this.instructionChangesStart = instructionChangesStart;
+            this.pendingEntriesStart = pendingEntriesStart;
+        }
+    }
+
+    /**
+     * A log entry whose changes are given as ranges of the shared change lists. It is only turned into a
+     * {@link TxHistoryEntry} once it is known not to be subsumed by an entry for an enclosing exercise node.
+     */
+    private record PendingEntry(
+            int nodeId,
+            TxHistoryEntry.Transfer transfer,
+            TxHistoryEntry.Unrecognized unrecognized,
+            int holdingChangesStart,
+            int holdingChangesEnd,
+            int instructionChangesStart,
+            int instructionChangesEnd,
+            List<Event> transactionEvents
+    ) {
+    }
+
     TransactionParser(TxHistoryEntry.UpdateMetadata updateMetadata, IUtxoStore utxoStore) {
+        this(updateMetadata, utxoStore, true);
+    }
+
+    /**
+     * @param retainTransactionEvents whether to retain the raw events of each subtransaction in its log entry
+     */
+    TransactionParser(TxHistoryEntry.UpdateMetadata updateMetadata, IUtxoStore utxoStore, boolean retainTransactionEvents) {
         this.updateMetadata = updateMetadata;
         this.utxoStore = utxoStore;
+        this.retainTransactionEvents = retainTransactionEvents;
     }
 
     /**
-     * Parse a (sub)transaction starting at the given exercise event.
-     *
-     * @param exercisedEvent the root exercise event of the (sub)transaction, or null if parsing the root transaction
-     * @return the list of log entries parsed from this (sub)transaction
+     * Decode the interface views and choice payloads of a transaction that are relevant for the given treasury party.
      * <p>
-     * Must be called at most once per TransactionParser instance.
+     * This is a pure function of its arguments, and can thus be called concurrently for different transactions.
+     *
+     * @param transactionEvents the events of the transaction
+     * @param treasuryParty     the party whose holdings and transfer instructions are tracked
+     * @return the decoded views to pass to {@link #parse}
      */
-    List<TxHistoryEntry> parse(ExercisedEvent exercisedEvent, Collection<Event> transactionEvents) {
-        // Shared values
-        String treasuryParty = utxoStore.treasuryPartyId();
-
-        // Recording consumption
-        Optional<HoldingView> consumedHolding = Optional.empty();
-        Optional<TransferInstructionView> consumedTransferInstruction = Optional.empty();
-        if (exercisedEvent != null) {
-            if (exercisedEvent.getConsuming()) {
-                consumedHolding = utxoStore.ingestHoldingArchival(exercisedEvent.getContractId());
-                consumedTransferInstruction = utxoStore.ingestTransferInstructionArchival(exercisedEvent.getContractId());
+    public static DecodedViews decode(List<Event> transactionEvents, String treasuryParty) {
+        DecodedViews decoded = new DecodedViews();
+        for (Event event : transactionEvents) {
+            if (event.getActualInstance() instanceof EventOneOf1 createdEvent) {
+                decodeCreateEvent(createdEvent.getCreatedEvent(), treasuryParty, decoded);
+            } else if (event.getActualInstance() instanceof EventOneOf2 exercisedEvent) {
+                decodeExerciseEvent(exercisedEvent.getExercisedEvent(), decoded);
             }
         }
+        return decoded;
+    }
 
-        // Extract events of subtransaction rooted at exercisedEvent
-        if (exercisedEvent == null) {
-            subtransactionEvents.addAll(transactionEvents);
-        } else {
-            subtransactionEvents.add(new Event(new EventOneOf2().exercisedEvent(exercisedEvent)));
-            int exerciseNodeId = exercisedEvent.getNodeId();
-            int lastDescendantNodeId = exercisedEvent.getLastDescendantNodeId();
-            for (Event e : transactionEvents) {
-                int nodeId = getEventNodeId(e);
-                if (nodeId > lastDescendantNodeId)
-                    break;
-                if (exerciseNodeId < nodeId)
-                    subtransactionEvents.add(e);
+    private static void decodeCreateEvent(CreatedEvent createdEvent, String treasuryParty, DecodedViews decoded) {
+        List<JsInterfaceView> interfaceViews = createdEvent.getInterfaceViews();
+        // Skip the decoding of the views of contracts that the treasury is not involved in
+        if (interfaceViews == null || !isWitnessedBy(createdEvent, treasuryParty)) {
+            return;
+        }
+        for (JsInterfaceView view : interfaceViews) {
+            if (TemplateId.HOLDING_INTERFACE_ID.matchesModuleAndTypeName(view.getInterfaceId())) {
+                if (isOtherParty(getJsonField(view.getViewValue(), "owner"), treasuryParty)) {
+                    continue;
+                }
+                HoldingView holding = ConversionHelpers.convertFromJsonTree(view.getViewValue(), HoldingView::fromJson);
+                if (holding.owner.equals(treasuryParty)) {
+                    // We only care about created holdings owned by the treasury
+                    decoded.holdingViews.put(createdEvent.getNodeId(), holding);
+                }
+            } else if (TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID.matchesModuleAndTypeName(view.getInterfaceId())) {
+                Object rawTransfer = getJsonField(view.getViewValue(), "transfer");
+                if (isOtherParty(getJsonField(rawTransfer, "sender"), treasuryParty)
+                        && isOtherParty(getJsonField(rawTransfer, "receiver"), treasuryParty)) {
+                    continue;
+                }
+                TransferInstructionView instruction = ConversionHelpers.convertFromJsonTree(view.getViewValue(), TransferInstructionView::fromJson);
+                Transfer t = instruction.transfer;
+                if (t.sender.equals(treasuryParty) || t.receiver.equals(treasuryParty)) {
+                    // We only care about instructions that the treasury is party to
+                    decoded.instructionViews.put(createdEvent.getNodeId(), instruction);
+                }
             }
         }
+    }
+
+    private static void decodeExerciseEvent(ExercisedEvent exercisedEvent, DecodedViews decoded) {
+        int nodeId = exercisedEvent.getNodeId();
+        if (exercisedEvent.getChoice().equals(TransferFactory.CHOICE_TransferFactory_Transfer.name)
+                && TemplateId.TRANSFER_FACTORY_INTERFACE_ID.matchesModuleAndTypeName(exercisedEvent.getInterfaceId())) {
+            decoded.transferArguments.put(nodeId, decodeOrDefer(exercisedEvent.getChoiceArgument(), TransferFactory_Transfer::fromJson));
+            decoded.transferResults.put(nodeId, decodeOrDefer(exercisedEvent.getExerciseResult(), TransferInstructionResult::fromJson));
+        } else if (TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID.matchesModuleAndTypeName(exercisedEvent.getInterfaceId())) {
+            decoded.transferResults.put(nodeId, decodeOrDefer(exercisedEvent.getExerciseResult(), TransferInstructionResult::fromJson));
+        }
+    }
 
-        // parse all child events of this subtransaction
-        int lastParsedEventId = exercisedEvent != null ?  exercisedEvent.getNodeId() : Integer.MIN_VALUE;
-        for (Event e : subtransactionEvents) {
-            int nodeId = getEventNodeId(e);
-            // skip events that were already parsed as part of a child transaction
-            if (lastParsedEventId < nodeId) {
-                lastParsedEventId = parseEvent(e);
+    /**
+     * Decode a choice payload, deferring any decoding failure to when the payload is actually needed for parsing.
+     */
+    private static <T> Supplier<T> decodeOrDefer(Object tree, ConversionHelpers.JsonDecoder<T> decoder) {
+        try {
+            T value = ConversionHelpers.convertFromJsonTree(tree, decoder);
+            return () -> value;
+        } catch (RuntimeException ex) {
+            return () -> {
+                throw ex;
+            };
+        }
+    }
+
+    /**
+     * Parse a transaction.
+     *
+     * @param transactionEvents the events of the transaction, ordered by node ID
+     * @param decodedViews      the views of the transaction as decoded by {@link #decode}
+     * @return the list of log entries parsed from this transaction
+     * <p>
+     * Must be called at most once per TransactionParser instance.
+     */
+    List<TxHistoryEntry> parse(List<Event> transactionEvents, DecodedViews decodedViews) {
+        this.decodedViews = decodedViews;
+        Frame root = new Frame(null, -1, Integer.MAX_VALUE, Optional.empty(), Optional.empty(), 0, 0, 0);
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        for (int i = 0; i < transactionEvents.size(); i++) {
+            Event event = transactionEvents.get(i);
+            int nodeId = getEventNodeId(event);
+            // complete all subtransactions that do not contain this event
+            while (stack.peek().lastDescendantNodeId < nodeId) {
+                Frame completed = stack.pop();
+                completeExercise(completed, stack.peek(), transactionEvents.subList(completed.eventIndex, i));
+            }
+            if (event.getActualInstance() instanceof EventOneOf1 createdEvent) {
+                parseCreateEvent(createdEvent.getCreatedEvent(), event, stack.peek());
+            } else if (event.getActualInstance() instanceof EventOneOf2 exercisedEvent) {
+                stack.push(startExercise(exercisedEvent.getExercisedEvent(), i));
             }
         }
+        while (stack.peek() != root) {
+            Frame completed = stack.pop();
+            completeExercise(completed, stack.peek(), transactionEvents.subList(completed.eventIndex, transactionEvents.size()));
+        }
 
-        // compute changes to treasury holdings
-        List<TxHistoryEntry.HoldingChange> holdingChanges = new ArrayList<>();
-        if (consumedHolding.isPresent()) {
-            TxHistoryEntry.HoldingChange archival = new TxHistoryEntry.HoldingChange(
-                    exercisedEvent.getContractId(),
-                    consumedHolding.get(),
-                    true
-            );
-            holdingChanges.add(archival);
+        // we are at the root transaction ==> just return the parsed child entries
+        List<TxHistoryEntry> entries = new ArrayList<>(pendingEntries.size());
+        for (PendingEntry pending : pendingEntries) {
+            entries.add(toTxHistoryEntry(pending));
         }
-        for (TxHistoryEntry entry : childEntries) {
-            holdingChanges.addAll(entry.treasuryHoldingChanges());
+        return entries;
+    }
+
+    private Frame startExercise(ExercisedEvent exercisedEvent, int eventIndex) {
+        // Recording consumption
+        Optional<HoldingView> consumedHolding = Optional.empty();
+        Optional<TransferInstructionView> consumedTransferInstruction = Optional.empty();
+        // The treasury is an informee of all consuming exercises on holdings and instructions that it is tracking
+        if (exercisedEvent.getConsuming() && isWitnessedBy(exercisedEvent, utxoStore.treasuryPartyId())) {
+            consumedHolding = utxoStore.ingestHoldingArchival(exercisedEvent.getContractId());
+            consumedTransferInstruction = utxoStore.ingestTransferInstructionArchival(exercisedEvent.getContractId());
         }
 
-        // compute changes to pending transfer instructions
-        List<TxHistoryEntry.TransferInstructionChange> instructionChanges = new ArrayList<>();
+        Frame frame = new Frame(
+                exercisedEvent,
+                eventIndex,
+                exercisedEvent.getLastDescendantNodeId(),
+                consumedHolding,
+                consumedTransferInstruction,
+                holdingChanges.size(),
+                instructionChanges.size(),
+                pendingEntries.size());
+
+        // The archivals are the first changes of the subtransaction
+        if (consumedHolding.isPresent()) {
+            HoldingView holding = consumedHolding.get();
+            holdingChanges.add(new TxHistoryEntry.HoldingChange(exercisedEvent.getContractId(), holding, true));
+            frame.balances.debit(holding.instrumentId, holding.amount);
+        }
         if (consumedTransferInstruction.isPresent()) {
-            TxHistoryEntry.TransferInstructionChange archival = new TxHistoryEntry.TransferInstructionChange(
+            instructionChanges.add(new TxHistoryEntry.TransferInstructionChange(
                     exercisedEvent.getContractId(),
                     consumedTransferInstruction.get(),
                     true
-            );
-            instructionChanges.add(archival);
+            ));
         }
-        for (TxHistoryEntry entry : childEntries) {
-            instructionChanges.addAll(entry.pendingTransferInstructionChanges());
+        return frame;
+    }
+
+    /**
+     * Determine the log entries of a fully parsed subtransaction and report them to the enclosing (sub)transaction.
+     */
+    private void completeExercise(Frame frame, Frame parent, List<Event> subtransactionEvents) {
+        PendingEntry entry = parseSubtransactionEntry(frame, subtransactionEvents);
+        if (entry != null) {
+            // the entry explains all changes of the subtransaction ==> it replaces the child entries
+            pendingEntries.subList(frame.pendingEntriesStart, pendingEntries.size()).clear();
+            pendingEntries.add(entry);
+            if (entry.transfer() != null) {
+                parent.childTransfers++;
+            }
+        } else {
+            // the child entries are reported as they are, which does not include the archival of the transfer instruction
+            if (frame.consumedTransferInstruction.isPresent()) {
+                instructionChanges.set(frame.instructionChangesStart, null);
+                frame.droppedInstructionChanges++;
+            }
+            parent.childTransfers += frame.childTransfers;
         }
+        parent.droppedInstructionChanges += frame.droppedInstructionChanges;
+        parent.balances.add(frame.balances);
+    }
+
+    /**
+     * Parse the log entry for a subtransaction, or return null if its child entries should be reported instead.
+     */
+    private PendingEntry parseSubtransactionEntry(Frame frame, List<Event> subtransactionEvents) {
+        // Shared values
+        String treasuryParty = utxoStore.treasuryPartyId();
+        ExercisedEvent exercisedEvent = frame.exercisedEvent;
+        Optional<TransferInstructionView> consumedTransferInstruction = frame.consumedTransferInstruction;
+        int holdingChangesEnd = holdingChanges.size();
+        int instructionChangesEnd = instructionChanges.size();
 
         // Determine log entries to return
-        if (holdingChanges.isEmpty() && instructionChanges.isEmpty()) {
+        boolean noHoldingChanges = holdingChangesEnd == frame.holdingChangesStart;
+        boolean noInstructionChanges = instructionChangesEnd - frame.instructionChangesStart == frame.droppedInstructionChanges;
+        if (noHoldingChanges && noInstructionChanges) {
             // no holding changes ==> nothing to report
-            return List.of();
-
-        } else if (exercisedEvent == null) {
-            // we are parsing the root transaction ==> just return the parsed child entries
-            return childEntries;
+            return null;
 
         } else if (exercisedEvent.getChoice().equals(TransferFactory.CHOICE_TransferFactory_Transfer.name)
                 && TemplateId.TRANSFER_FACTORY_INTERFACE_ID.matchesModuleAndTypeName(exercisedEvent.getInterfaceId())) {
             // we are parsing TransferFactory_Transfer choice ==> determine kind of transfer
 
-            TransferFactory_Transfer transferChoiceArg = ConversionHelpers.convertViaJson(
-                    exercisedEvent.getChoiceArgument(),
-                    JSON.getGson()::toJson,
-                    TransferFactory_Transfer::fromJson);
+            TransferFactory_Transfer transferChoiceArg = decodedViews.transferArgument(exercisedEvent.getNodeId());
             Transfer t = transferChoiceArg.transfer;
 
             // Attempt to determine transfer
-            TransferInstructionResult transferResult =
-                    ConversionHelpers.convertViaJson(
-                            exercisedEvent.getExerciseResult(),
-                            JSON.getGson()::toJson,
-                            TransferInstructionResult::fromJson);
+            TransferInstructionResult transferResult = decodedViews.transferResult(exercisedEvent.getNodeId());
             Optional<TxHistoryEntry.Transfer> transfer = parseTransfer(t, treasuryParty, exercisedEvent.getChoice(), transferResult, null);
             if (transfer.isPresent()) {
-                TxHistoryEntry entry = new TxHistoryEntry(
-                        updateMetadata,
+                return new PendingEntry(
                         exercisedEvent.getNodeId(),
                         transfer.get(),
                         null,
-                        holdingChanges,
-                        instructionChanges,
+                        frame.holdingChangesStart,
+                        holdingChangesEnd,
+                        frame.instructionChangesStart,
+                        instructionChangesEnd,
                         subtransactionEvents
                 );
-                return List.of(entry);
             }
         } else if (consumedTransferInstruction.isPresent()
                 && TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID.matchesModuleAndTypeName(exercisedEvent.getInterfaceId())) {
@@ -179,23 +378,19 @@ public class TransactionParser {
             String multiStepCorrelationId = getMultiStepCorrelationId(exercisedEvent.getContractId(), consumedTransferInstruction.get());
 
             // Attempt to determine transfer
-            TransferInstructionResult transferResult =
-                    ConversionHelpers.convertViaJson(
-                            exercisedEvent.getExerciseResult(),
-                            JSON.getGson()::toJson,
-                            TransferInstructionResult::fromJson);
+            TransferInstructionResult transferResult = decodedViews.transferResult(exercisedEvent.getNodeId());
             Optional<TxHistoryEntry.Transfer> transfer = parseTransfer(t, treasuryParty, exercisedEvent.getChoice(), transferResult, multiStepCorrelationId);
             if (transfer.isPresent()) {
-                TxHistoryEntry entry = new TxHistoryEntry(
-                        updateMetadata,
+                return new PendingEntry(
                         exercisedEvent.getNodeId(),
                         transfer.get(),
                         null,
-                        holdingChanges,
-                        instructionChanges,
+                        frame.holdingChangesStart,
+                        holdingChangesEnd,
+                        frame.instructionChangesStart,
+                        instructionChangesEnd,
                         subtransactionEvents
                 );
-                return List.of(entry);
             }
         } else {
             // Attempt to parse the info from a "meta" field in an exerciseResult
@@ -206,31 +401,23 @@ public class TransactionParser {
             // Note that we expect the need for this fallback to go away once transfer preapprovals have also been
             // standardized (tracking ticket: https://github.com/hyperledger-labs/splice/issues/2085).
 
-            // convert to JSON and parse as generic JSON to see whether there is a .meta field
+            // look for a .meta field in the result, which the Ledger API client already parsed as generic JSON
             Object result0 = exercisedEvent.getExerciseResult();
-            String resultJson = JSON.getGson().toJson(result0);
             try {
-                JsonElement element = JsonParser.parseString(resultJson);
                     /* Example JSON:
                         {"round":{"number":"20"},"summary":{"inputAppRewardAmount":"0.0000000000","inputValidatorRewardAmount":"0.0000000000","inputSvRewardAmount":"0.0000000000","inputAmuletAmount":"110.0000000000","balanceChanges":[["alice::1220edbbec72ee1fb1b99d40e3a19a0bfc7ea1306e24023efb34e2b4444230158866",{"changeToInitialAmountAsOfRoundZero":"-100.0000000000","changeToHoldingFeesRate":"0.0000000000"}],["treasury::12206b095339d93f62c84ae52c8d60e057f6da8ad14903d5f4c43e5bb274fb5ea3d0",{"changeToInitialAmountAsOfRoundZero":"100.0761036000","changeToHoldingFeesRate":"0.0038051800"}]],"holdingFees":"0.0000000000","outputFees":["0.0000000000"],"senderChangeFee":"0.0000000000","senderChangeAmount":"10.0000000000","amuletPrice":"0.0050000000","inputValidatorFaucetAmount":"0.0000000000","inputUnclaimedActivityRecordAmount":"0.0000000000"},"createdAmulets":[{"tag":"TransferResultAmulet","value":"007cf8d59d435576203ed6dfcede6798b49a2fcdb3a7932cfb7295b71745e8d257ca111220497e2d05b3f64cc2c79b84ab525e2a5d2b17bdd1488c8db78446a582a668a22e"}],"senderChangeAmulet":"0003752939fc734f75a441de5ab43f650338dc293ac1c98a5aea41678676cf192eca1112206847143bd3ba6eebc0caebc8428378784057f7f04ba34a273c0e7b697c545a1f",
                          "meta":{"values":{"splice.lfdecentralizedtrust.org/sender":"alice::1220edbbec72ee1fb1b99d40e3a19a0bfc7ea1306e24023efb34e2b4444230158866","splice.lfdecentralizedtrust.org/tx-kind":"transfer"}}
                         }
                      */
-                JsonObject metadata = element.getAsJsonObject().getAsJsonObject("meta").getAsJsonObject("values");
-                if (metadata.has(TRANSFER_KIND_KEY) && metadata.has(SENDER_KEY) && metadata.has(MEMO_KEY)) {
-                    String kind = metadata.get(TRANSFER_KIND_KEY).getAsString();
-                    String sender = metadata.get(SENDER_KEY).getAsString();
-                    String memoTag = metadata.get(MEMO_KEY).getAsString();
+                Map<?, ?> metadata = getMetaValues(result0);
+                if (metadata.get(TRANSFER_KIND_KEY) instanceof String kind
+                        && metadata.get(SENDER_KEY) instanceof String sender
+                        && metadata.get(MEMO_KEY) instanceof String memoTag) {
                     if (kind.equals("transfer") && !sender.equals(utxoStore.treasuryPartyId())) {
                         // We only expect incoming transfers to be tagged that way.
+                        // The balances of the frame are copied, as getBalanceMap() drops zero balances.
                         Balances balances = new Balances();
-                        for (TxHistoryEntry.HoldingChange hc : holdingChanges) {
-                            if (hc.archived()) {
-                                balances.debit(hc.holding().instrumentId, hc.holding().amount);
-                            } else {
-                                balances.credit(hc.holding().instrumentId, hc.holding().amount);
-                            }
-                        }
+                        balances.add(frame.balances);
                         // We expect exactly one instrument ID to be affected
                         Map<InstrumentId, BigDecimal> balanceMap = balances.getBalanceMap();
                         if (balanceMap.size() == 1) {
@@ -248,16 +435,16 @@ public class TransactionParser {
                                         null,
                                         null);
                                 TxHistoryEntry.Transfer transfer = new TxHistoryEntry.Transfer(sender, treasuryParty, TxHistoryEntry.TransferKind.TRANSFER_IN, details);
-                                TxHistoryEntry entry = new TxHistoryEntry(
-                                        updateMetadata,
+                                return new PendingEntry(
                                         exercisedEvent.getNodeId(),
                                         transfer,
                                         null,
-                                        holdingChanges,
-                                        instructionChanges,
+                                        frame.holdingChangesStart,
+                                        holdingChangesEnd,
+                                        frame.instructionChangesStart,
+                                        instructionChangesEnd,
                                         subtransactionEvents
                                 );
-                                return List.of(entry);
                             }
                         }
                     }
@@ -276,27 +463,89 @@ public class TransactionParser {
                         "choiceName", exercisedEvent.getChoice()
                 ))
         );
-        TxHistoryEntry entry = new TxHistoryEntry(
-                updateMetadata,
+        PendingEntry entry = new PendingEntry(
                 exercisedEvent.getNodeId(),
                 null,
                 unrecognized,
-                holdingChanges,
-                instructionChanges,
+                frame.holdingChangesStart,
+                holdingChangesEnd,
+                frame.instructionChangesStart,
+                instructionChangesEnd,
                 subtransactionEvents
         );
-        if (consumedHolding.isPresent()) {
+        if (frame.consumedHolding.isPresent()) {
             // This is a non-standard choice consuming a holding
-            return List.of(entry);
-        } else if (childEntries.stream().allMatch(e -> e.transfer() == null)) {
+            return entry;
+        } else if (frame.childTransfers == 0) {
             // No child entry represents a transfer ==> explain them succinctly via this exercise node
-            return List.of(entry);
+            return entry;
         } else {
             // There were some recognized transfers ==> return them together with unrecognized ones
-            return childEntries;
+            return null;
         }
     }
 
+    private TxHistoryEntry toTxHistoryEntry(PendingEntry pending) {
+        List<TxHistoryEntry.HoldingChange> entryHoldingChanges =
+                new ArrayList<>(holdingChanges.subList(pending.holdingChangesStart(), pending.holdingChangesEnd()));
+        List<TxHistoryEntry.TransferInstructionChange> entryInstructionChanges = new ArrayList<>();
+        for (int i = pending.instructionChangesStart(); i < pending.instructionChangesEnd(); i++) {
+            TxHistoryEntry.TransferInstructionChange change = instructionChanges.get(i);
+            if (change != null) {
+                entryInstructionChanges.add(change);
+            }
+        }
+        return new TxHistoryEntry(
+                updateMetadata,
+                pending.nodeId(),
+                pending.transfer(),
+                pending.unrecognized(),
+                entryHoldingChanges,
+                entryInstructionChanges,
+                // the pending entry holds a view of the events of the whole transaction, copy its slice so that the
+                // entry does not retain the other events
+                retainTransactionEvents ? List.copyOf(pending.transactionEvents()) : List.of()
+        );
+    }
+
+    private static boolean isWitnessedBy(CreatedEvent createdEvent, String party) {
+        return containsParty(createdEvent.getWitnessParties(), party)
+                || containsParty(createdEvent.getSignatories(), party)
+                || containsParty(createdEvent.getObservers(), party);
+    }
+
+    private static boolean isWitnessedBy(ExercisedEvent exercisedEvent, String party) {
+        return containsParty(exercisedEvent.getWitnessParties(), party)
+                || containsParty(exercisedEvent.getActingParties(), party);
+    }
+
+    private static boolean containsParty(List<String> parties, String party) {
+        return parties != null && parties.contains(party);
+    }
+
+    /**
+     * Whether a raw party field of a view is known to differ from the given party, without decoding the view.
+     */
+    private static boolean isOtherParty(Object rawParty, String party) {
+        return rawParty instanceof String rawPartyId && !rawPartyId.equals(party);
+    }
+
+    private static Object getJsonField(Object tree, String fieldName) {
+        return tree instanceof Map<?, ?> fields ? fields.get(fieldName) : null;
+    }
+
+    /**
+     * Get the {@code .meta.values} field of a generic JSON tree, or an empty map if there is no such field.
+     */
+    private static Map<?, ?> getMetaValues(Object result) {
+        if (result instanceof Map<?, ?> resultFields
+                && resultFields.get("meta") instanceof Map<?, ?> meta
+                && meta.get("values") instanceof Map<?, ?> values) {
+            return values;
+        }
+        return Map.of();
+    }
+
     private static int getEventNodeId(Event event) {
         if (event.getActualInstance() instanceof EventOneOf1 createdEvent) {
             return createdEvent.getCreatedEvent().getNodeId();
@@ -350,32 +599,21 @@ public class TransactionParser {
         }
     }
 
-    private int parseEvent(Event event0) {
-        if (event0.getActualInstance() instanceof EventOneOf event) {
-            throw new UnsupportedOperationException("Did not expect archive event as we are subscribing using LEDGER_EFFECTS: " + event.toJson());
-        } else if (event0.getActualInstance() instanceof EventOneOf1 event) {
-            return parseCreateEvent(event.getCreatedEvent());
-        } else if (event0.getActualInstance() instanceof EventOneOf2 event) {
-            return parseExerciseEvent(event.getExercisedEvent());
-        } else {
-            throw new UnsupportedOperationException("Failed to handle event: " + event0.toJson());
-        }
-    }
-
-    private int parseCreateEvent(CreatedEvent createdEvent) {
+    private void parseCreateEvent(CreatedEvent createdEvent, Event event, Frame parent) {
         List<JsInterfaceView> interfaceViews = createdEvent.getInterfaceViews();
         if (interfaceViews != null) {
             for (JsInterfaceView view : interfaceViews) {
                 if (TemplateId.HOLDING_INTERFACE_ID.matchesModuleAndTypeName(view.getInterfaceId())) {
                     // A bare create event of a holding is never a transfer, but it may be due to minting
                     // We must parse it as it may create a holding owned by the treasury
-                    String viewJson = JSON.getGson().toJson(view.getViewValue());
-                    HoldingView holding = ConversionHelpers.convertFromJson(viewJson, HoldingView::fromJson);
-                    if (holding.owner.equals(utxoStore.treasuryPartyId())) {
+                    HoldingView holding = decodedViews.holdingViews.get(createdEvent.getNodeId());
+                    if (holding != null) {
                         // We only care about created holdings owned by the treasury
                         String cid = createdEvent.getContractId();
                         utxoStore.ingestHoldingCreation(cid, holding);
-                        TxHistoryEntry.HoldingChange creation = new TxHistoryEntry.HoldingChange(cid, holding, false);
+                        int changeIndex = holdingChanges.size();
+                        holdingChanges.add(new TxHistoryEntry.HoldingChange(cid, holding, false));
+                        parent.balances.credit(holding.instrumentId, holding.amount);
                         TxHistoryEntry.Unrecognized unrecognized = new TxHistoryEntry.Unrecognized(
                                 TxHistoryEntry.UnrecognizedKind.BARE_CREATE,
                                 new TreeMap<>(Map.of(
@@ -383,49 +621,47 @@ public class TransactionParser {
                                         "packageName", createdEvent.getPackageName()
                                 ))
                         );
-                        childEntries.add(new TxHistoryEntry(
-                                updateMetadata,
+                        pendingEntries.add(new PendingEntry(
                                 createdEvent.getNodeId(),
                                 null,
                                 unrecognized,
-                                List.of(creation),
-                                List.of(),
-                                List.of(new Event(new EventOneOf1().createdEvent(createdEvent))
-                                )));
+                                changeIndex,
+                                changeIndex + 1,
+                                instructionChanges.size(),
+                                instructionChanges.size(),
+                                List.of(event)
+                        ));
                     }
                 } else if (TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID.matchesModuleAndTypeName(view.getInterfaceId())) {
                     // A bare create of a transfer instruction is a pending transfer
-                    String viewJson = JSON.getGson().toJson(view.getViewValue());
+                    TransferInstructionView instruction = decodedViews.instructionViews.get(createdEvent.getNodeId());
+                    if (instruction == null) {
+                        continue;
+                    }
                     TransferInstruction.ContractId pendingInstructionCid = new TransferInstruction.ContractId(createdEvent.getContractId());
-                    TransferInstructionView instruction = ConversionHelpers.convertFromJson(viewJson, TransferInstructionView::fromJson);
                     Transfer t = instruction.transfer;
                     String multiStepCorrelationId = getMultiStepCorrelationId(createdEvent.getContractId(), instruction);
                     TxHistoryEntry.TransferDetails details = new TxHistoryEntry.TransferDetails("", t.instrumentId, t.amount, TxHistoryEntry.TransferStatus.PENDING, multiStepCorrelationId, pendingInstructionCid);
                     Optional<TxHistoryEntry.Transfer> transfer = TxHistoryEntry.tryMkTransfer(utxoStore.treasuryPartyId(), t.sender, t.receiver, details);
                     if (transfer.isPresent()) {
                         String cid = createdEvent.getContractId();
-                        TxHistoryEntry.TransferInstructionChange creation = new TxHistoryEntry.TransferInstructionChange(cid, instruction, false);
                         utxoStore.ingestTransferInstructionCreation(cid, instruction);
-                        childEntries.add(new TxHistoryEntry(
-                                updateMetadata,
+                        int changeIndex = instructionChanges.size();
+                        instructionChanges.add(new TxHistoryEntry.TransferInstructionChange(cid, instruction, false));
+                        pendingEntries.add(new PendingEntry(
                                 createdEvent.getNodeId(),
                                 transfer.get(),
                                 null,
-                                List.of(),
-                                List.of(creation),
-                                List.of(new Event(new EventOneOf1().createdEvent(createdEvent))
-                                )));
+                                holdingChanges.size(),
+                                holdingChanges.size(),
+                                changeIndex,
+                                changeIndex + 1,
+                                List.of(event)
+                        ));
+                        parent.childTransfers++;
                     }
                 }
             }
         }
-        return createdEvent.getNodeId();
-    }
-
-    private int parseExerciseEvent(ExercisedEvent exercisedEvent) {
-        TransactionParser subtransactionParser = new TransactionParser(updateMetadata, utxoStore);
-        List<TxHistoryEntry> parsedChildEntries = subtransactionParser.parse(exercisedEvent, subtransactionEvents);
-        childEntries.addAll(parsedChildEntries);
-        return exercisedEvent.getLastDescendantNodeId();
     }
 }
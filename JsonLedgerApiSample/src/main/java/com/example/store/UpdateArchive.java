@@ -0,0 +1,358 @@
+package com.example.store;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An archive of updates stored as newline-delimited JSON, with one {@link JsGetUpdatesResponse} per line in offset order.
+ * <p>
+ * Archives whose file name ends in {@code .gz} are gzip-compressed. Appending to an existing compressed archive adds
+ * another gzip member, which readers decompress as part of the same stream.
+ * <p>
+ * An archive that is still being written, or whose writer crashed, lacks the gzip trailer of its last member and may end
+ * with a partially written update. Readers treat the end of the flushed data as the end of the archive and ignore a
+ * partial last update, and {@link Writer#open} rewrites such an archive before appending to it.
+ * <p>
+ * Both the {@link Writer} and the {@link Reader} stream the updates, so that archives of any size can be written from
+ * the ledger and replayed into a store, e.g., to rebuild the store offline or for audits, with constant memory.
+ */
+public final class UpdateArchive {
+
+    private static final Logger log = Logger.getLogger(UpdateArchive.class.getName());
+
+    private UpdateArchive() {
+    }
+
+    private static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * The offset of the last update in the archive, or {@code defaultOffset} if the archive does not exist or is empty.
+     * Reads through the whole archive.
+     */
+    public static long lastOffset(Path file, long defaultOffset) throws IOException {
+        if (!Files.exists(file)) {
+            return defaultOffset;
+        }
+        long offset = defaultOffset;
+        try (Reader reader = Reader.open(file)) {
+            JsGetUpdatesResponse update;
+            while ((update = reader.next()) != null) {
+                offset = IntegrationStore.getUpdateOffset(update.getUpdate());
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Ingest the updates of the archive after the last ingested offset of the store.
+     *
+     * @return the number of ingested updates
+     */
+    public static long replay(Path file, IntegrationStore store) throws IOException {
+        long startOffset = store.getLastIngestedOffset();
+        long numIngested = 0;
+        try (Reader reader = Reader.open(file)) {
+            JsGetUpdatesResponse update;
+            while ((update = reader.next()) != null) {
+                if (IntegrationStore.getUpdateOffset(update.getUpdate()) > store.getLastIngestedOffset()) {
+                    store.ingestUpdate(update.getUpdate());
+                    numIngested++;
+                }
+            }
+        }
+        log.info("Replayed " + numIngested + " updates after offset " + startOffset + " from " + file);
+        return numIngested;
+    }
+
+    /**
+     * Appends updates to an archive.
+     */
+    public static class Writer implements AutoCloseable {
+        private final Path file;
+        private final BufferedWriter out;
+        private long lastOffset;
+
+        private Writer(Path file, BufferedWriter out, long lastOffset) {
+            this.file = file;
+            this.out = out;
+            this.lastOffset = lastOffset;
+        }
+
+        /**
+         * Open the archive for appending, creating it if it does not exist. An archive that was not closed is first
+         * rewritten with only its complete updates.
+         *
+         * @param startingOffset the offset after which the updates of a new archive start
+         */
+        public static Writer open(Path file, long startingOffset) throws IOException {
+            long lastOffset = startingOffset;
+            if (Files.exists(file)) {
+                boolean truncated;
+                try (Reader reader = Reader.open(file)) {
+                    JsGetUpdatesResponse update;
+                    while ((update = reader.next()) != null) {
+                        lastOffset = IntegrationStore.getUpdateOffset(update.getUpdate());
+                    }
+                    truncated = reader.isTruncated();
+                }
+                if (truncated || (!isCompressed(file) && endsWithPartialLine(file))) {
+                    // Appending to the unfinished gzip member or to the partial last line would corrupt the archive
+                    log.warning("Rewriting the complete updates of " + file + ", which was not closed");
+                    rewrite(file);
+                }
+            }
+            return openForAppend(file, lastOffset);
+        }
+
+        private static Writer openForAppend(Path file, long lastOffset) throws IOException {
+            OutputStream stream = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            try {
+                if (isCompressed(file)) {
+                    // sync-flush, so that each flushed page can be decompressed before the gzip trailer is written
+                    stream = new GZIPOutputStream(stream, 64 * 1024, true);
+                }
+            } catch (IOException ex) {
+                stream.close();
+                throw ex;
+            }
+            return new Writer(file, new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024), lastOffset);
+        }
+
+        private static boolean endsWithPartialLine(Path file) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+                if (in.length() == 0) {
+                    return false;
+                }
+                in.seek(in.length() - 1);
+                return in.read() != '\n';
+            }
+        }
+
+        private static void rewrite(Path file) throws IOException {
+            // Keep the file name suffix, so that the copy is compressed like the archive
+            Path copy = file.resolveSibling("rewrite-" + file.getFileName());
+            Files.deleteIfExists(copy);
+            try (Reader reader = Reader.open(file); Writer writer = openForAppend(copy, Long.MIN_VALUE)) {
+                JsGetUpdatesResponse update;
+                while ((update = reader.next()) != null) {
+                    writer.append(update);
+                }
+            }
+            Files.move(copy, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * The offset of the last update in the archive, after which further updates must be appended.
+         */
+        public long getLastOffset() {
+            return lastOffset;
+        }
+
+        public void append(JsGetUpdatesResponse update) throws IOException {
+            long offset = IntegrationStore.getUpdateOffset(update.getUpdate());
+            if (offset <= lastOffset) {
+                throw new IllegalArgumentException("Update at offset " + offset + " does not follow the last archived offset " + lastOffset + " of " + file);
+            }
+            ExtendedJson.gson.toJson(update, out);
+            out.write('\n');
+            lastOffset = offset;
+        }
+
+        /**
+         * Append all updates after the last archived offset until the source returns an empty page, e.g., to follow
+         * the ledger with a {@link PrefetchingUpdateSource}. The archive is flushed after every page.
+         *
+         * @return the number of appended updates
+         */
+        public long appendFrom(IngestionPipeline.UpdateSource source) throws Exception {
+            long numAppended = 0;
+            while (true) {
+                List<JsGetUpdatesResponse> page = source.fetchUpdates(lastOffset);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (JsGetUpdatesResponse update : page) {
+                    append(update);
+                }
+                numAppended += page.size();
+                out.flush();
+            }
+            log.fine("Archived " + numAppended + " updates up to offset " + lastOffset + " to " + file);
+            return numAppended;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the updates of an archive in order.
+     * <p>
+     * The reader ends after the last complete update of an archive that was not closed, so that it can read an archive
+     * that is still being written up to its last flushed page.
+     * <p>
+     * Also serves as an {@link IngestionPipeline.UpdateSource}, so that an archive can be ingested using an
+     * {@link IngestionPipeline}.
+     */
+    public static class Reader implements IngestionPipeline.UpdateSource, AutoCloseable {
+        private static final int DEFAULT_PAGE_SIZE = 1000;
+
+        private final Path file;
+        private final BufferedReader in;
+        private final UnterminatedGZIPInputStream gzip;
+        private final int pageSize;
+        // Whether the archive lacks the gzip header or ends with a partial update
+        private boolean truncated;
+
+        private Reader(Path file, BufferedReader in, UnterminatedGZIPInputStream gzip, boolean truncated, int pageSize) {
+            this.file = file;
+            this.in = in;
+            this.gzip = gzip;
+            this.truncated = truncated;
+            this.pageSize = pageSize;
+        }
+
+        public static Reader open(Path file) throws IOException {
+            return open(file, DEFAULT_PAGE_SIZE);
+        }
+
+        /**
+         * @param pageSize the maximal number of updates returned by {@link #fetchUpdates}
+         */
+        public static Reader open(Path file, int pageSize) throws IOException {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("pageSize must be positive, got " + pageSize);
+            }
+            InputStream stream = Files.newInputStream(file);
+            UnterminatedGZIPInputStream gzip = null;
+            boolean truncated = false;
+            try {
+                if (isCompressed(file)) {
+                    stream = gzip = new UnterminatedGZIPInputStream(stream);
+                }
+            } catch (EOFException ex) {
+                // the writer did not get to write the whole gzip header
+                stream.close();
+                stream = InputStream.nullInputStream();
+                truncated = true;
+            } catch (IOException ex) {
+                stream.close();
+                throw ex;
+            }
+            return new Reader(file, new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 64 * 1024), gzip, truncated, pageSize);
+        }
+
+        /**
+         * Whether the archive read so far was not closed by its writer, i.e., lacks a gzip trailer or ends with a
+         * partially written update.
+         */
+        public boolean isTruncated() {
+            return truncated || (gzip != null && gzip.truncated);
+        }
+
+        /**
+         * Read the next update, or return null at the end of the archive.
+         */
+        public JsGetUpdatesResponse next() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            try {
+                return ExtendedJson.gson.fromJson(line, JsGetUpdatesResponse.class);
+            } catch (JsonParseException ex) {
+                String nextLine;
+                do {
+                    nextLine = in.readLine();
+                } while (nextLine != null && nextLine.isBlank());
+                if (nextLine != null) {
+                    throw ex;
+                }
+                log.warning("Ignoring the partially written last update of " + file);
+                truncated = true;
+                return null;
+            }
+        }
+
+        /**
+         * Call the consumer for each of the remaining updates.
+         */
+        public void forEachRemaining(Consumer<JsGetUpdatesResponse> consumer) throws IOException {
+            JsGetUpdatesResponse update;
+            while ((update = next()) != null) {
+                consumer.accept(update);
+            }
+        }
+
+        /**
+         * Read the next page of updates after the given offset, skipping the updates at or before it.
+         */
+        @Override
+        public List<JsGetUpdatesResponse> fetchUpdates(long beginAfterOffset) throws IOException {
+            List<JsGetUpdatesResponse> page = new ArrayList<>();
+            JsGetUpdatesResponse update;
+            while (page.size() < pageSize && (update = next()) != null) {
+                if (IntegrationStore.getUpdateOffset(update.getUpdate()) > beginAfterOffset) {
+                    page.add(update);
+                }
+            }
+            return page;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * A gzip stream that ends, instead of failing, where the data of an archive that was not closed ends.
+     */
+    private static class UnterminatedGZIPInputStream extends GZIPInputStream {
+        private boolean truncated = false;
+
+        UnterminatedGZIPInputStream(InputStream in) throws IOException {
+            super(in, 64 * 1024);
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            try {
+                return super.read(buf, off, len);
+            } catch (EOFException ex) {
+                // the last member lacks its trailer, or the end of its compressed data, after the last flushed page
+                truncated = true;
+                return -1;
+            }
+        }
+    }
+}
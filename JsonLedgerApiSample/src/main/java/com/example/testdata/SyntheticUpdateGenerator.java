@@ -0,0 +1,735 @@
+package com.example.testdata;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.models.TemplateId;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.example.models.TokenStandard.*;
+
+/**
+ * Generates a synthetic stream of updates for a treasury party, to test the ingestion of the
+ * {@link com.example.store.IntegrationStore} at scale without a ledger.
+ * <p>
+ * The updates have the same shape as the ones served by the Ledger API for the treasury party, see the golden test data.
+ * Each update is a transaction for one of the {@link Scenario}s, which are drawn at random according to the configured mix.
+ * The generator tracks the holdings and pending transfer instructions of the treasury, so that withdrawals spend
+ * existing holdings, multi-step transfers are completed by later updates, and the number of holdings of the treasury
+ * stays around the configured number.
+ * <p>
+ * The generated updates only depend on the configuration and the starting offset. They can be consumed in-process via
+ * {@link #next()} and {@link #stream(long)}, or written as newline-delimited JSON via {@link #writeNdjson}.
+ */
+public class SyntheticUpdateGenerator {
+
+    /**
+     * The kinds of transactions that the generator produces.
+     */
+    public enum Scenario {
+        /**
+         * A TransferFactory_Transfer that completes directly, either depositing to or withdrawing from the treasury.
+         */
+        ONE_STEP_TRANSFER,
+        /**
+         * Either the creation of a transfer instruction, or the acceptance, rejection, or withdrawal of a pending one.
+         */
+        MULTI_STEP_TRANSFER,
+        /**
+         * A holding of the treasury that is created outside any exercise.
+         */
+        BARE_MINT,
+        /**
+         * A deposit via TransferPreapproval_Send, which is only recognizable from the Amulet-specific metadata of the choice result.
+         */
+        AMULET_TRANSFER,
+        /**
+         * A one-step or Amulet transfer nested below a chain of {@code maxNestingDepth} batch exercises.
+         */
+        NESTED_TRANSFER
+    }
+
+    /**
+     * @param treasuryParty   the party whose updates are generated
+     * @param numParties      the number of counterparties of the treasury
+     * @param numHoldings     the number of holdings around which the treasury's holdings are kept
+     * @param maxNestingDepth the number of exercises enclosing the transfer of a {@link Scenario#NESTED_TRANSFER}
+     * @param mix             the relative weight of each scenario, missing scenarios are not generated
+     * @param seed            the seed of the random choices
+     */
+    public record Config(
+            String treasuryParty,
+            int numParties,
+            int numHoldings,
+            int maxNestingDepth,
+            Map<Scenario, Integer> mix,
+            long seed
+    ) {
+        public static final Map<Scenario, Integer> DEFAULT_MIX = Map.of(
+                Scenario.ONE_STEP_TRANSFER, 40,
+                Scenario.MULTI_STEP_TRANSFER, 30,
+                Scenario.BARE_MINT, 5,
+                Scenario.AMULET_TRANSFER, 20,
+                Scenario.NESTED_TRANSFER, 5
+        );
+
+        public Config {
+            if (numParties < 1) {
+                throw new IllegalArgumentException("numParties must be positive, got " + numParties);
+            }
+            if (numHoldings < 1) {
+                throw new IllegalArgumentException("numHoldings must be positive, got " + numHoldings);
+            }
+            if (maxNestingDepth < 0) {
+                throw new IllegalArgumentException("maxNestingDepth must not be negative, got " + maxNestingDepth);
+            }
+            if (mix.values().stream().anyMatch(weight -> weight < 0) || mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+                throw new IllegalArgumentException("mix must have non-negative weights and at least one positive weight, got " + mix);
+            }
+            mix = Map.copyOf(mix);
+        }
+
+        public static Config defaults(String treasuryParty) {
+            return new Config(treasuryParty, 10, 100, 32, DEFAULT_MIX, 42L);
+        }
+    }
+
+    private static final String SYNCHRONIZER_ID = "sync::synthetic";
+    private static final String INSTRUMENT_ADMIN = "dso::synthetic";
+    private static final String INSTRUMENT_ID = "Amulet";
+    private static final Instant START_TIME = Instant.parse("2025-06-18T00:00:00Z");
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'").withZone(ZoneOffset.UTC);
+
+    private static final String AMULET_TEMPLATE_ID = "#splice-amulet:Splice.Amulet:Amulet";
+    private static final String LOCKED_AMULET_TEMPLATE_ID = "#splice-amulet:Splice.Amulet:LockedAmulet";
+    private static final String TRANSFER_INSTRUCTION_TEMPLATE_ID = "#splice-amulet:Splice.AmuletTransferInstruction:AmuletTransferInstruction";
+    private static final String TRANSFER_FACTORY_TEMPLATE_ID = "#splice-amulet:Splice.ExternalPartyAmuletRules:ExternalPartyAmuletRules";
+    private static final String WALLET_APP_INSTALL_TEMPLATE_ID = "#splice-wallet:Splice.Wallet.Install:WalletAppInstall";
+
+    private static final String CREATED_EVENT = "CreatedEvent";
+    private static final String EXERCISED_EVENT = "ExercisedEvent";
+
+    private record Holding(String contractId, BigDecimal amount) {
+    }
+
+    /**
+     * A pending transfer instruction of the treasury, and for outgoing transfers the holding locked for it.
+     */
+    private record PendingInstruction(String contractId, String counterparty, boolean outgoing, Holding lockedHolding,
+                                      BigDecimal amount) {
+    }
+
+    /**
+     * An event and the events of its subtransaction, which are numbered in pre-order when the transaction is built.
+     */
+    private record Node(String kind, JsonObject event, List<Node> children, int size) {
+        Node(String kind, JsonObject event, List<Node> children) {
+            this(kind, event, children, 1 + children.stream().mapToInt(Node::size).sum());
+        }
+    }
+
+    private final Config config;
+    private final String treasury;
+    private final Random random;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+    private final List<String> counterparties = new ArrayList<>();
+
+    // unlocked holdings of the treasury
+    private final ArrayList<Holding> holdings = new ArrayList<>();
+    private final ArrayList<PendingInstruction> pendingInstructions = new ArrayList<>();
+
+    private long offset;
+    private long numContracts = 0;
+    private String time;
+
+    /**
+     * @param startingOffset the offset after which the generated updates start
+     */
+    public SyntheticUpdateGenerator(Config config, long startingOffset) {
+        this.config = config;
+        this.treasury = config.treasuryParty();
+        this.random = new Random(config.seed());
+        this.offset = startingOffset;
+        for (int i = 0; i < config.numParties(); i++) {
+            counterparties.add("party-" + i + "::synthetic");
+        }
+        EnumMap<Scenario, Integer> mix = new EnumMap<>(config.mix());
+        this.scenarios = mix.keySet().toArray(new Scenario[0]);
+        this.cumulativeWeights = new int[scenarios.length];
+        int total = 0;
+        for (int i = 0; i < scenarios.length; i++) {
+            total += mix.get(scenarios[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public long getLastOffset() {
+        return offset;
+    }
+
+    public int getNumTreasuryHoldings() {
+        return holdings.size() + (int) pendingInstructions.stream().filter(PendingInstruction::outgoing).count();
+    }
+
+    /**
+     * Generate the next update.
+     */
+    public JsGetUpdatesResponse next() {
+        return ExtendedJson.gson.fromJson(nextJson(), JsGetUpdatesResponse.class);
+    }
+
+    /**
+     * Generate the next {@code numUpdates} updates lazily.
+     */
+    public Stream<JsGetUpdatesResponse> stream(long numUpdates) {
+        return Stream.generate(this::next).limit(numUpdates);
+    }
+
+    /**
+     * Write the next {@code numUpdates} updates as newline-delimited JSON, one {@link JsGetUpdatesResponse} per line.
+     */
+    public void writeNdjson(Writer out, long numUpdates) throws IOException {
+        for (long i = 0; i < numUpdates; i++) {
+            ExtendedJson.gson.toJson(nextJson(), out);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Generate the JSON encoding of the next update.
+     */
+    public JsonObject nextJson() {
+        offset++;
+        time = timestamp(START_TIME.plusSeconds(offset));
+        List<Node> roots = switch (nextScenario()) {
+            case ONE_STEP_TRANSFER -> List.of(oneStepTransfer());
+            case MULTI_STEP_TRANSFER -> List.of(multiStepTransfer());
+            case BARE_MINT -> List.of(bareMint());
+            case AMULET_TRANSFER -> List.of(amuletTransfer());
+            case NESTED_TRANSFER -> List.of(nestedTransfer());
+        };
+        return transaction(roots);
+    }
+
+    private Scenario nextScenario() {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= draw) {
+            i++;
+        }
+        return scenarios[i];
+    }
+
+    // Scenarios
+
+    private Node oneStepTransfer() {
+        String counterparty = randomCounterparty();
+        if (isWithdrawal()) {
+            List<Holding> inputs = takeInputs();
+            BigDecimal total = sum(inputs);
+            BigDecimal amount = fractionOf(total);
+            List<Node> children = new ArrayList<>();
+            for (Holding input : inputs) {
+                children.add(archiveHolding(input.contractId(), AMULET_TEMPLATE_ID, treasury));
+            }
+            String receiverCid = nextContractId();
+            children.add(holdingCreated(receiverCid, AMULET_TEMPLATE_ID, counterparty, amount, null));
+            String changeCid = nextContractId();
+            children.add(holdingCreated(changeCid, AMULET_TEMPLATE_ID, treasury, total.subtract(amount), null));
+            holdings.add(new Holding(changeCid, total.subtract(amount)));
+
+            JsonObject transfer = transfer(treasury, counterparty, amount, inputs.stream().map(Holding::contractId).toList(), null);
+            return transferFactoryTransfer(treasury, transfer, completedResult(List.of(receiverCid), List.of(changeCid)), children);
+        } else {
+            BigDecimal amount = randomAmount();
+            String inputCid = nextContractId();
+            String receiverCid = nextContractId();
+            String changeCid = nextContractId();
+            holdings.add(new Holding(receiverCid, amount));
+            List<Node> children = List.of(
+                    holdingCreated(receiverCid, AMULET_TEMPLATE_ID, treasury, amount, null),
+                    holdingCreated(changeCid, AMULET_TEMPLATE_ID, counterparty, randomAmount(), null));
+
+            JsonObject transfer = transfer(counterparty, treasury, amount, List.of(inputCid), "deposit-" + offset);
+            return transferFactoryTransfer(counterparty, transfer, completedResult(List.of(receiverCid), List.of(changeCid)), children);
+        }
+    }
+
+    private Node multiStepTransfer() {
+        if (!pendingInstructions.isEmpty() && random.nextBoolean()) {
+            PendingInstruction instruction = pendingInstructions.remove(random.nextInt(pendingInstructions.size()));
+            return completeInstruction(instruction);
+        }
+        String counterparty = randomCounterparty();
+        String instructionCid = nextContractId();
+        List<Node> children = new ArrayList<>();
+        JsonObject transfer;
+        List<String> senderChangeCids;
+        if (isWithdrawal()) {
+            List<Holding> inputs = takeInputs();
+            BigDecimal total = sum(inputs);
+            BigDecimal amount = fractionOf(total);
+            for (Holding input : inputs) {
+                children.add(archiveHolding(input.contractId(), AMULET_TEMPLATE_ID, treasury));
+            }
+            Holding locked = new Holding(nextContractId(), amount);
+            children.add(holdingCreated(locked.contractId(), LOCKED_AMULET_TEMPLATE_ID, treasury, amount, lock(counterparty)));
+            String changeCid = nextContractId();
+            children.add(holdingCreated(changeCid, AMULET_TEMPLATE_ID, treasury, total.subtract(amount), null));
+            holdings.add(new Holding(changeCid, total.subtract(amount)));
+            senderChangeCids = List.of(changeCid);
+
+            transfer = transfer(treasury, counterparty, amount, inputs.stream().map(Holding::contractId).toList(), null);
+            pendingInstructions.add(new PendingInstruction(instructionCid, counterparty, true, locked, amount));
+        } else {
+            BigDecimal amount = randomAmount();
+            senderChangeCids = List.of(nextContractId());
+            transfer = transfer(counterparty, treasury, amount, List.of(nextContractId()), "deposit-" + offset);
+            pendingInstructions.add(new PendingInstruction(instructionCid, counterparty, false, null, amount));
+        }
+        JsonObject instruction = new JsonObject();
+        instruction.add("meta", meta(Map.of()));
+        instruction.add("originalInstructionCid", JsonNull.INSTANCE);
+        instruction.add("status", variant("TransferPendingReceiverAcceptance", new JsonObject()));
+        instruction.add("transfer", transfer);
+        children.add(created(instructionCid, TRANSFER_INSTRUCTION_TEMPLATE_ID, List.of(INSTRUMENT_ADMIN, transfer.get("sender").getAsString()),
+                TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID, instruction));
+
+        JsonObject pending = new JsonObject();
+        pending.addProperty("transferInstructionCid", instructionCid);
+        JsonObject result = transferResult(variant("TransferInstructionResult_Pending", pending), senderChangeCids);
+        return transferFactoryTransfer(transfer.get("sender").getAsString(), transfer, result, children);
+    }
+
+    private Node completeInstruction(PendingInstruction instruction) {
+        List<Node> children = new ArrayList<>();
+        String choice;
+        String actingParty;
+        JsonObject result;
+        // outgoing: accepted or rejected by the receiver, or withdrawn by the treasury; incoming: accepted or rejected by the treasury
+        int outcome = random.nextInt(instruction.outgoing() ? 3 : 2);
+        if (outcome == 0) {
+            choice = "TransferInstruction_Accept";
+            String receiver = instruction.outgoing() ? instruction.counterparty() : treasury;
+            actingParty = receiver;
+            if (instruction.outgoing()) {
+                children.add(archiveHolding(instruction.lockedHolding().contractId(), LOCKED_AMULET_TEMPLATE_ID, treasury));
+            }
+            String receiverCid = nextContractId();
+            children.add(holdingCreated(receiverCid, AMULET_TEMPLATE_ID, receiver, instruction.amount(), null));
+            if (!instruction.outgoing()) {
+                holdings.add(new Holding(receiverCid, instruction.amount()));
+            }
+            result = completedResult(List.of(receiverCid), List.of());
+        } else {
+            choice = outcome == 1 ? "TransferInstruction_Reject" : "TransferInstruction_Withdraw";
+            actingParty = outcome == 1 && instruction.outgoing() ? instruction.counterparty() : treasury;
+            String returnedCid = nextContractId();
+            if (instruction.outgoing()) {
+                Node returned = holdingCreated(returnedCid, AMULET_TEMPLATE_ID, treasury, instruction.amount(), null);
+                children.add(exercised(instruction.lockedHolding().contractId(), LOCKED_AMULET_TEMPLATE_ID, null,
+                        List.of(TemplateId.HOLDING_INTERFACE_ID), "LockedAmulet_Unlock", true, treasury,
+                        new JsonObject(), unlockResult(returnedCid), List.of(returned)));
+                holdings.add(new Holding(returnedCid, instruction.amount()));
+            } else {
+                children.add(holdingCreated(returnedCid, AMULET_TEMPLATE_ID, instruction.counterparty(), instruction.amount(), null));
+            }
+            result = transferResult(variant("TransferInstructionResult_Failed", new JsonObject()), List.of(returnedCid));
+        }
+        JsonObject argument = new JsonObject();
+        argument.add("extraArgs", extraArgs());
+        return exercised(instruction.contractId(), TRANSFER_INSTRUCTION_TEMPLATE_ID, TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID,
+                List.of(TemplateId.TRANSFER_INSTRUCTION_INTERFACE_ID), choice, true, actingParty, argument, result, children);
+    }
+
+    private Node bareMint() {
+        BigDecimal amount = randomAmount();
+        String contractId = nextContractId();
+        holdings.add(new Holding(contractId, amount));
+        return holdingCreated(contractId, AMULET_TEMPLATE_ID, treasury, amount, null);
+    }
+
+    private Node amuletTransfer() {
+        String sender = randomCounterparty();
+        BigDecimal amount = randomAmount();
+        String memo = "deposit-" + offset;
+        String inputCid = nextContractId();
+        String receiverCid = nextContractId();
+        String changeCid = nextContractId();
+        holdings.add(new Holding(receiverCid, amount));
+
+        JsonObject input = variant("InputAmulet", inputCid);
+        JsonObject argument = new JsonObject();
+        argument.addProperty("amount", decimal(amount));
+        argument.add("context", new JsonObject());
+        argument.addProperty("description", memo);
+        argument.add("inputs", array(List.of(input)));
+        argument.addProperty("sender", sender);
+
+        JsonObject result = new JsonObject();
+        result.add("meta", meta(Map.of(
+                MEMO_KEY, memo,
+                SENDER_KEY, sender,
+                TRANSFER_KIND_KEY, "transfer")));
+        result.add("result", new JsonObject());
+
+        List<Node> children = List.of(
+                archiveHolding(inputCid, AMULET_TEMPLATE_ID, sender),
+                holdingCreated(receiverCid, AMULET_TEMPLATE_ID, treasury, amount, null),
+                holdingCreated(changeCid, AMULET_TEMPLATE_ID, sender, randomAmount(), null));
+        return exercised(nextContractId(), TemplateId.TRANSFER_PREAPPROVAL_ID.getRaw(), null, List.of(),
+                "TransferPreapproval_Send", false, sender, argument, result, children);
+    }
+
+    private Node nestedTransfer() {
+        Node node = random.nextBoolean() ? oneStepTransfer() : amuletTransfer();
+        String installCid = nextContractId();
+        for (int level = 0; level < config.maxNestingDepth(); level++) {
+            node = exercised(installCid, WALLET_APP_INSTALL_TEMPLATE_ID, null, List.of(),
+                    "WalletAppInstall_ExecuteBatch", false, treasury, new JsonObject(), new JsonObject(), List.of(node));
+        }
+        return node;
+    }
+
+    // Treasury state
+
+    /**
+     * Withdraw with a probability that grows with the number of holdings, so that their number stays around the target.
+     */
+    private boolean isWithdrawal() {
+        return !holdings.isEmpty() && random.nextInt(2 * config.numHoldings()) < holdings.size();
+    }
+
+    /**
+     * Remove up to two random holdings to spend them.
+     */
+    private List<Holding> takeInputs() {
+        int numInputs = Math.min(2, holdings.size());
+        List<Holding> inputs = new ArrayList<>(numInputs);
+        for (int i = 0; i < numInputs; i++) {
+            int index = random.nextInt(holdings.size());
+            // swap with the last holding for a constant-time removal
+            Holding last = holdings.remove(holdings.size() - 1);
+            inputs.add(index == holdings.size() ? last : holdings.set(index, last));
+        }
+        return inputs;
+    }
+
+    private static BigDecimal sum(List<Holding> inputs) {
+        return inputs.stream().map(Holding::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private BigDecimal randomAmount() {
+        return BigDecimal.valueOf(1_000 + random.nextInt(1_000_000), 3).setScale(10, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * A random amount strictly between zero and the given total.
+     */
+    private BigDecimal fractionOf(BigDecimal total) {
+        return total.multiply(BigDecimal.valueOf(1 + random.nextInt(9), 1)).setScale(10, RoundingMode.DOWN);
+    }
+
+    private String randomCounterparty() {
+        return counterparties.get(random.nextInt(counterparties.size()));
+    }
+
+    private String nextContractId() {
+        return "00" + Long.toHexString(++numContracts);
+    }
+
+    // Transactions and events
+
+    private JsonObject transaction(List<Node> roots) {
+        JsonArray events = new JsonArray();
+        for (Node root : roots) {
+            appendEvents(root, events);
+        }
+        JsonObject tx = new JsonObject();
+        tx.addProperty("commandId", "command-" + offset);
+        tx.addProperty("effectiveAt", time);
+        tx.add("events", events);
+        tx.addProperty("offset", offset);
+        tx.addProperty("recordTime", time);
+        tx.addProperty("synchronizerId", SYNCHRONIZER_ID);
+        tx.add("traceContext", JsonNull.INSTANCE);
+        tx.addProperty("updateId", "update-" + offset);
+        tx.addProperty("workflowId", "");
+
+        JsonObject transaction = new JsonObject();
+        transaction.add("value", tx);
+        JsonObject update = new JsonObject();
+        update.add("Transaction", transaction);
+        JsonObject response = new JsonObject();
+        response.add("update", update);
+        return response;
+    }
+
+    /**
+     * Append the events of the tree in pre-order, assigning their node IDs. Uses an explicit stack, as nested exercises
+     * may be arbitrarily deep.
+     */
+    private void appendEvents(Node root, JsonArray events) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int nodeId = events.size();
+            node.event().addProperty("nodeId", nodeId);
+            node.event().addProperty("offset", offset);
+            if (node.kind().equals(EXERCISED_EVENT)) {
+                node.event().addProperty("lastDescendantNodeId", nodeId + node.size() - 1);
+            }
+            JsonObject event = new JsonObject();
+            event.add(node.kind(), node.event());
+            events.add(event);
+            for (int i = node.children().size() - 1; i >= 0; i--) {
+                stack.push(node.children().get(i));
+            }
+        }
+    }
+
+    private Node created(String contractId, String templateId, List<String> signatories, TemplateId interfaceId, JsonObject view) {
+        JsonObject viewStatus = new JsonObject();
+        viewStatus.addProperty("code", 0);
+        viewStatus.add("details", new JsonArray());
+        viewStatus.addProperty("message", "");
+        JsonObject interfaceView = new JsonObject();
+        interfaceView.addProperty("interfaceId", interfaceId.getRaw());
+        interfaceView.add("viewStatus", viewStatus);
+        interfaceView.add("viewValue", view);
+
+        JsonObject event = new JsonObject();
+        event.addProperty("contractId", contractId);
+        event.add("contractKey", JsonNull.INSTANCE);
+        // the view stands in for the create argument, which the store does not look at
+        event.add("createArgument", view);
+        event.addProperty("createdAt", time);
+        event.addProperty("createdEventBlob", "");
+        event.add("interfaceViews", array(List.of(interfaceView)));
+        event.add("observers", new JsonArray());
+        event.addProperty("packageName", packageName(templateId));
+        event.add("signatories", strings(signatories));
+        event.addProperty("templateId", templateId);
+        event.add("witnessParties", strings(List.of(treasury)));
+        return new Node(CREATED_EVENT, event, List.of());
+    }
+
+    private Node holdingCreated(String contractId, String templateId, String owner, BigDecimal amount, JsonObject lock) {
+        JsonObject instrumentId = new JsonObject();
+        instrumentId.addProperty("admin", INSTRUMENT_ADMIN);
+        instrumentId.addProperty("id", INSTRUMENT_ID);
+        JsonObject view = new JsonObject();
+        view.addProperty("amount", decimal(amount));
+        view.add("instrumentId", instrumentId);
+        view.add("lock", lock == null ? JsonNull.INSTANCE : lock);
+        view.add("meta", meta(Map.of()));
+        view.addProperty("owner", owner);
+        return created(contractId, templateId, List.of(INSTRUMENT_ADMIN, owner), TemplateId.HOLDING_INTERFACE_ID, view);
+    }
+
+    private Node exercised(String contractId, String templateId, TemplateId interfaceId, List<TemplateId> implementedInterfaces,
+                           String choice, boolean consuming, String actingParty, JsonElement choiceArgument,
+                           JsonElement exerciseResult, List<Node> children) {
+        JsonObject event = new JsonObject();
+        event.add("actingParties", strings(List.of(actingParty)));
+        event.addProperty("choice", choice);
+        event.add("choiceArgument", choiceArgument);
+        event.addProperty("consuming", consuming);
+        event.addProperty("contractId", contractId);
+        event.add("exerciseResult", exerciseResult);
+        event.add("implementedInterfaces", strings(implementedInterfaces.stream().map(TemplateId::getRaw).toList()));
+        event.add("interfaceId", interfaceId == null ? JsonNull.INSTANCE : new JsonPrimitive(interfaceId.getRaw()));
+        event.addProperty("packageName", packageName(templateId));
+        event.addProperty("templateId", templateId);
+        event.add("witnessParties", strings(List.of(treasury)));
+        return new Node(EXERCISED_EVENT, event, children);
+    }
+
+    private Node archiveHolding(String contractId, String templateId, String owner) {
+        return exercised(contractId, templateId, null, List.of(TemplateId.HOLDING_INTERFACE_ID), "Archive", true, owner,
+                new JsonObject(), new JsonObject(), List.of());
+    }
+
+    private Node transferFactoryTransfer(String sender, JsonObject transfer, JsonObject result, List<Node> children) {
+        JsonObject argument = new JsonObject();
+        argument.addProperty("expectedAdmin", INSTRUMENT_ADMIN);
+        argument.add("extraArgs", extraArgs());
+        argument.add("transfer", transfer);
+        return exercised(nextContractId(), TRANSFER_FACTORY_TEMPLATE_ID, TemplateId.TRANSFER_FACTORY_INTERFACE_ID, List.of(),
+                "TransferFactory_Transfer", false, sender, argument, result, children);
+    }
+
+    // Choice arguments and results
+
+    private JsonObject transfer(String sender, String receiver, BigDecimal amount, List<String> inputHoldingCids, String memo) {
+        JsonObject instrumentId = new JsonObject();
+        instrumentId.addProperty("admin", INSTRUMENT_ADMIN);
+        instrumentId.addProperty("id", INSTRUMENT_ID);
+        JsonObject transfer = new JsonObject();
+        transfer.addProperty("amount", decimal(amount));
+        transfer.addProperty("executeBefore", timestamp(START_TIME.plusSeconds(offset + 86_400)));
+        transfer.add("inputHoldingCids", strings(inputHoldingCids));
+        transfer.add("instrumentId", instrumentId);
+        transfer.add("meta", meta(memo == null ? Map.of() : Map.of(MEMO_KEY, memo)));
+        transfer.addProperty("receiver", receiver);
+        transfer.addProperty("requestedAt", time);
+        transfer.addProperty("sender", sender);
+        return transfer;
+    }
+
+    private JsonObject lock(String receiver) {
+        JsonObject lock = new JsonObject();
+        lock.addProperty("context", "transfer to '" + receiver + "'");
+        lock.add("expiresAfter", JsonNull.INSTANCE);
+        lock.addProperty("expiresAt", timestamp(START_TIME.plusSeconds(offset + 86_400)));
+        lock.add("holders", strings(List.of(INSTRUMENT_ADMIN)));
+        return lock;
+    }
+
+    private static JsonObject completedResult(List<String> receiverHoldingCids, List<String> senderChangeCids) {
+        JsonObject completed = new JsonObject();
+        completed.add("receiverHoldingCids", strings(receiverHoldingCids));
+        return transferResult(variant("TransferInstructionResult_Completed", completed), senderChangeCids);
+    }
+
+    private static JsonObject transferResult(JsonObject output, List<String> senderChangeCids) {
+        JsonObject result = new JsonObject();
+        result.add("meta", meta(Map.of()));
+        result.add("output", output);
+        result.add("senderChangeCids", strings(senderChangeCids));
+        return result;
+    }
+
+    private static JsonObject unlockResult(String amuletCid) {
+        JsonObject amuletSum = new JsonObject();
+        amuletSum.addProperty("amulet", amuletCid);
+        JsonObject result = new JsonObject();
+        result.add("amuletSum", amuletSum);
+        result.add("meta", meta(Map.of(MEMO_KEY, "holders released lock", TRANSFER_KIND_KEY, "unlock")));
+        return result;
+    }
+
+    private static JsonObject extraArgs() {
+        JsonObject context = new JsonObject();
+        context.add("values", new JsonObject());
+        JsonObject extraArgs = new JsonObject();
+        extraArgs.add("context", context);
+        extraArgs.add("meta", meta(Map.of()));
+        return extraArgs;
+    }
+
+    private static JsonObject meta(Map<String, String> values) {
+        JsonObject valuesJson = new JsonObject();
+        values.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> valuesJson.addProperty(entry.getKey(), entry.getValue()));
+        JsonObject meta = new JsonObject();
+        meta.add("values", valuesJson);
+        return meta;
+    }
+
+    private static JsonObject variant(String tag, JsonObject value) {
+        JsonObject variant = new JsonObject();
+        variant.addProperty("tag", tag);
+        variant.add("value", value);
+        return variant;
+    }
+
+    private static JsonObject variant(String tag, String value) {
+        JsonObject variant = new JsonObject();
+        variant.addProperty("tag", tag);
+        variant.addProperty("value", value);
+        return variant;
+    }
+
+    private static JsonArray strings(List<String> values) {
+        JsonArray array = new JsonArray(values.size());
+        values.forEach(array::add);
+        return array;
+    }
+
+    private static JsonArray array(List<? extends JsonElement> values) {
+        JsonArray array = new JsonArray(values.size());
+        values.forEach(array::add);
+        return array;
+    }
+
+    private static String packageName(String templateId) {
+        return templateId.substring(1, templateId.indexOf(':'));
+    }
+
+    private static String decimal(BigDecimal amount) {
+        return amount.setScale(10, RoundingMode.UNNECESSARY).toPlainString();
+    }
+
+    private static String timestamp(Instant instant) {
+        return TIMESTAMP_FORMAT.format(instant);
+    }
+
+    /**
+     * Write synthetic updates as newline-delimited JSON.
+     * <p>
+     * Usage: {@code SyntheticUpdateGenerator <numUpdates> <outputFile> [--treasury PARTY] [--parties N] [--holdings N]
+     * [--depth N] [--seed N] [--mix ONE_STEP_TRANSFER=40,BARE_MINT=5,...]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticUpdateGenerator <numUpdates> <outputFile> [--treasury PARTY] [--parties N] [--holdings N] [--depth N] [--seed N] [--mix SCENARIO=WEIGHT,...]");
+            System.exit(1);
+        }
+        long numUpdates = Long.parseLong(args[0]);
+        Path outputFile = Path.of(args[1]);
+        Config defaults = Config.defaults("treasury::synthetic");
+        String treasuryParty = defaults.treasuryParty();
+        int numParties = defaults.numParties();
+        int numHoldings = defaults.numHoldings();
+        int maxNestingDepth = defaults.maxNestingDepth();
+        long seed = defaults.seed();
+        Map<Scenario, Integer> mix = defaults.mix();
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--treasury" -> treasuryParty = args[++i];
+                case "--parties" -> numParties = Integer.parseInt(args[++i]);
+                case "--holdings" -> numHoldings = Integer.parseInt(args[++i]);
+                case "--depth" -> maxNestingDepth = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--mix" -> {
+                    mix = new EnumMap<>(Scenario.class);
+                    for (String weight : args[++i].split(",")) {
+                        String[] parts = weight.split("=");
+                        mix.put(Scenario.valueOf(parts[0]), Integer.parseInt(parts[1]));
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        Config config = new Config(treasuryParty, numParties, numHoldings, maxNestingDepth, mix, seed);
+        try (BufferedWriter out = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+            new SyntheticUpdateGenerator(config, 0L).writeNdjson(out, numUpdates);
+        }
+    }
+}
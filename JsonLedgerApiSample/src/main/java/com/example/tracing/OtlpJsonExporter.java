@@ -0,0 +1,159 @@
+package com.example.tracing;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports spans in the JSON encoding of the OpenTelemetry protocol (OTLP), either to a file or to a collector.
+ * <p>
+ * Each export is one {@code ExportTraceServiceRequest}. A file receives one request per line, which the OpenTelemetry
+ * collector can read with its {@code otlpjsonfile} receiver; a collector receives them via {@code POST /v1/traces}.
+ */
+public class OtlpJsonExporter implements SpanExporter {
+
+    private static final String SCOPE_NAME = "com.example.tracing";
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int STATUS_CODE_OK = 1;
+    private static final int STATUS_CODE_ERROR = 2;
+
+    private final String serviceName;
+    private final BufferedWriter fileWriter;
+    private final OkHttpClient httpClient;
+    private final String collectorUrl;
+
+    private OtlpJsonExporter(String serviceName, BufferedWriter fileWriter, OkHttpClient httpClient, String collectorUrl) {
+        this.serviceName = serviceName;
+        this.fileWriter = fileWriter;
+        this.httpClient = httpClient;
+        this.collectorUrl = collectorUrl;
+    }
+
+    /**
+     * Append the spans to the given file, creating it if needed.
+     */
+    public static OtlpJsonExporter toFile(Path file, String serviceName) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        return new OtlpJsonExporter(serviceName, writer, null, null);
+    }
+
+    /**
+     * Send the spans to the OTLP/HTTP endpoint of a collector, e.g., {@code http://localhost:4318}.
+     */
+    public static OtlpJsonExporter toCollector(URI endpoint, String serviceName) {
+        String url = endpoint.toString();
+        if (!url.endsWith("/v1/traces")) {
+            url = (url.endsWith("/") ? url.substring(0, url.length() - 1) : url) + "/v1/traces";
+        }
+        return new OtlpJsonExporter(serviceName, null, new OkHttpClient(), url);
+    }
+
+    @Override
+    public void export(List<Span> spans) throws IOException {
+        if (spans.isEmpty()) {
+            return;
+        }
+        String request = toRequest(spans).toString();
+        if (fileWriter != null) {
+            fileWriter.write(request);
+            fileWriter.newLine();
+            fileWriter.flush();
+        } else {
+            Request post = new Request.Builder().url(collectorUrl).post(RequestBody.create(request, JSON)).build();
+            try (Response response = httpClient.newCall(post).execute()) {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Exporting " + spans.size() + " spans to " + collectorUrl + " failed with status " + response.code());
+                }
+            }
+        }
+    }
+
+    JsonObject toRequest(List<Span> spans) {
+        JsonArray jsonSpans = new JsonArray();
+        for (Span span : spans) {
+            jsonSpans.add(toJson(span));
+        }
+        JsonObject scope = new JsonObject();
+        scope.addProperty("name", SCOPE_NAME);
+        JsonObject scopeSpans = new JsonObject();
+        scopeSpans.add("scope", scope);
+        scopeSpans.add("spans", jsonSpans);
+        JsonArray scopeSpansArray = new JsonArray();
+        scopeSpansArray.add(scopeSpans);
+
+        JsonObject resource = new JsonObject();
+        resource.add("attributes", toAttributes(Map.of("service.name", serviceName)));
+        JsonObject resourceSpans = new JsonObject();
+        resourceSpans.add("resource", resource);
+        resourceSpans.add("scopeSpans", scopeSpansArray);
+        JsonArray resourceSpansArray = new JsonArray();
+        resourceSpansArray.add(resourceSpans);
+
+        JsonObject request = new JsonObject();
+        request.add("resourceSpans", resourceSpansArray);
+        return request;
+    }
+
+    private static JsonObject toJson(Span span) {
+        JsonObject json = new JsonObject();
+        json.addProperty("traceId", span.traceId());
+        json.addProperty("spanId", span.spanId());
+        if (span.parentSpanId() != null) {
+            json.addProperty("parentSpanId", span.parentSpanId());
+        }
+        json.addProperty("name", span.name());
+        json.addProperty("kind", SPAN_KIND_INTERNAL);
+        // 64-bit integers are encoded as strings in the JSON encoding of protobuf
+        json.addProperty("startTimeUnixNano", Long.toString(span.startEpochNanos()));
+        json.addProperty("endTimeUnixNano", Long.toString(span.endEpochNanos()));
+        json.add("attributes", toAttributes(span.attributes()));
+        JsonObject status = new JsonObject();
+        if (span.isError()) {
+            status.addProperty("code", STATUS_CODE_ERROR);
+            status.addProperty("message", span.errorMessage());
+        } else {
+            status.addProperty("code", STATUS_CODE_OK);
+        }
+        json.add("status", status);
+        return json;
+    }
+
+    private static JsonArray toAttributes(Map<String, String> attributes) {
+        JsonArray json = new JsonArray();
+        attributes.forEach((key, value) -> {
+            JsonObject stringValue = new JsonObject();
+            stringValue.addProperty("stringValue", value);
+            JsonObject attribute = new JsonObject();
+            attribute.addProperty("key", key);
+            attribute.add("value", stringValue);
+            json.add(attribute);
+        });
+        return json;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileWriter != null) {
+            fileWriter.close();
+        } else {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+}
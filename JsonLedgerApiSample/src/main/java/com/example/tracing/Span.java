@@ -0,0 +1,28 @@
+package com.example.tracing;
+
+import java.util.Map;
+
+/**
+ * A timed operation within a trace, as recorded by a {@link TransferTracer}.
+ *
+ * @param parentSpanId   the id of the enclosing span, or null for the root span of the trace
+ * @param errorMessage   the message of the error with which the operation failed, or null if it succeeded
+ */
+public record Span(
+        String traceId,
+        String spanId,
+        String parentSpanId,
+        String name,
+        long startEpochNanos,
+        long endEpochNanos,
+        Map<String, String> attributes,
+        String errorMessage) {
+
+    public boolean isError() {
+        return errorMessage != null;
+    }
+
+    public long durationNanos() {
+        return endEpochNanos - startEpochNanos;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.tracing;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Exports the spans of finished traces, see {@link OtlpJsonExporter}.
+ */
+public interface SpanExporter extends AutoCloseable {
+
+    /**
+     * Export the spans of one or more traces. Called by a single thread at a time.
+     */
+    void export(List<Span> spans) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
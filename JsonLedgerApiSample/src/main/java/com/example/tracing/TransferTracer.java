@@ -0,0 +1,309 @@
+package com.example.tracing;
+
+import com.example.services.TransferListener;
+import com.example.store.IntegrationStore;
+import com.example.store.StoreChange;
+import com.example.store.StoreSubscription;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records a trace per transfer, keyed by its command id, with a span for each {@link TransferListener.Phase} and,
+ * if {@link #traceIngestion traced}, for the ingestion of the resulting update by an {@link IntegrationStore}.
+ * <p>
+ * The phases are children of a root span named {@code transfer}, which has the command id and the update id as
+ * attributes. The trace id is derived from the command id, so that the traces of a command can be found without
+ * knowing the id of its trace.
+ * <p>
+ * A trace is exported once the transfer failed, or was committed if ingestion is not traced, or was ingested by the
+ * store. Traces that are not finished within {@link #MAX_TRACE_AGE}, e.g., because nobody reported their completion or
+ * the store does not see their update, are exported as they are.
+ */
+public class TransferTracer implements TransferListener, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(TransferTracer.class.getName());
+
+    public static final Duration MAX_TRACE_AGE = Duration.ofMinutes(5);
+    private static final int MAX_EARLY_INGESTIONS = 10_000;
+    private static final int SUBSCRIPTION_CAPACITY = 10_000;
+
+    private final SpanExporter exporter;
+    private final long epochNanosOffset;
+    private final ScheduledExecutorService exportExecutor;
+    private final Map<String, Trace> traces = new ConcurrentHashMap<>();
+    private final Map<String, String> commandIdsByUpdateId = new ConcurrentHashMap<>();
+    // the updates that were ingested before their commit was reported, e.g., when the store polls faster than the
+    // completions, keyed by update id
+    private final Map<String, Long> earlyIngestions = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_EARLY_INGESTIONS;
+        }
+    };
+    private volatile boolean awaitIngestion = false;
+    private volatile boolean closed = false;
+    private Thread ingestionThread;
+
+    public TransferTracer(SpanExporter exporter) {
+        this.exporter = exporter;
+        Instant now = Instant.now();
+        this.epochNanosOffset = now.getEpochSecond() * 1_000_000_000L + now.getNano() - System.nanoTime();
+        this.exportExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trace-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMillis = Math.max(1000, MAX_TRACE_AGE.toMillis() / 10);
+        this.exportExecutor.scheduleWithFixedDelay(this::finishExpiredTraces, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribe to the changes of the store to add a span for the ingestion of the update of each transfer, which then
+     * ends its trace.
+     */
+    public synchronized void traceIngestion(IntegrationStore store) {
+        if (ingestionThread != null) {
+            throw new IllegalStateException("Already tracing the ingestion of a store");
+        }
+        awaitIngestion = true;
+        // subscribe before returning, so that all updates ingested from now on are traced
+        StoreSubscription subscription = store.subscribe(SUBSCRIPTION_CAPACITY, StoreSubscription.OverflowPolicy.DISCONNECT);
+        ingestionThread = new Thread(() -> followIngestion(store, subscription), "trace-ingestion");
+        ingestionThread.setDaemon(true);
+        ingestionThread.start();
+    }
+
+    @Override
+    public void phaseEnded(String commandId, Phase phase, long startNanos, long endNanos, Throwable error) {
+        if (closed) {
+            return;
+        }
+        Trace trace = traces.computeIfAbsent(commandId, Trace::new);
+        trace.addPhase(phase, startNanos, endNanos, error);
+        if (error != null) {
+            finish(trace);
+        }
+    }
+
+    @Override
+    public void committed(String commandId, String updateId) {
+        Trace trace = traces.get(commandId);
+        if (trace == null || updateId == null) {
+            return;
+        }
+        trace.setUpdateId(updateId);
+        if (!awaitIngestion) {
+            finish(trace);
+            return;
+        }
+        Long ingestedNanos;
+        synchronized (earlyIngestions) {
+            ingestedNanos = earlyIngestions.remove(updateId);
+            if (ingestedNanos == null) {
+                commandIdsByUpdateId.put(updateId, commandId);
+            }
+        }
+        if (ingestedNanos != null) {
+            trace.addIngestion(ingestedNanos);
+            finish(trace);
+        }
+    }
+
+    private void ingested(String updateId, long ingestedNanos) {
+        String commandId;
+        synchronized (earlyIngestions) {
+            commandId = commandIdsByUpdateId.remove(updateId);
+            if (commandId == null) {
+                earlyIngestions.putIfAbsent(updateId, ingestedNanos);
+                return;
+            }
+        }
+        Trace trace = traces.get(commandId);
+        if (trace != null) {
+            trace.addIngestion(ingestedNanos);
+            finish(trace);
+        }
+    }
+
+    private void followIngestion(IntegrationStore store, StoreSubscription initialSubscription) {
+        StoreSubscription subscription = initialSubscription;
+        try {
+            while (!closed) {
+                StoreChange change = subscription.poll(Duration.ofSeconds(1));
+                if (change instanceof StoreChange.HistoryEntryAppended appended) {
+                    ingested(appended.entry().updateMetadata().updateId(), System.nanoTime());
+                } else if (change == null && subscription.isClosed()) {
+                    if (!subscription.isOverflowed()) {
+                        return;
+                    }
+                    // the ingestion spans of the missed updates are lost, their traces expire
+                    log.warning("Tracing did not keep up with the ingestion, resubscribing to the store");
+                    subscription = store.subscribe(SUBSCRIPTION_CAPACITY, StoreSubscription.OverflowPolicy.DISCONNECT);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscription.close();
+        }
+    }
+
+    private void finish(Trace trace) {
+        if (!traces.remove(trace.commandId, trace)) {
+            return;
+        }
+        String updateId = trace.getUpdateId();
+        if (updateId != null) {
+            commandIdsByUpdateId.remove(updateId, trace.commandId);
+        }
+        List<Span> spans = trace.toSpans();
+        try {
+            exportExecutor.execute(() -> export(spans));
+        } catch (RuntimeException ex) {
+            // the executor is shut down when closing
+            export(spans);
+        }
+    }
+
+    private void export(List<Span> spans) {
+        try {
+            exporter.export(spans);
+        } catch (IOException | RuntimeException ex) {
+            log.log(Level.WARNING, "Failed to export " + spans.size() + " spans", ex);
+        }
+    }
+
+    private void finishExpiredTraces() {
+        long now = System.nanoTime();
+        for (Trace trace : traces.values()) {
+            if (now - trace.createdNanos > MAX_TRACE_AGE.toNanos()) {
+                finish(trace);
+            }
+        }
+    }
+
+    /**
+     * Stop tracing and export all traces, finished or not.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (this) {
+            if (ingestionThread != null) {
+                ingestionThread.interrupt();
+            }
+        }
+        for (Trace trace : traces.values()) {
+            finish(trace);
+        }
+        exportExecutor.shutdown();
+        try {
+            if (!exportExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warning("Timed out exporting the remaining traces");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        exporter.close();
+    }
+
+    static String traceIdOf(String commandId) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(commandId.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(Arrays.copyOf(hash, 16));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static String newSpanId() {
+        return HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextLong());
+    }
+
+    private class Trace {
+        final String commandId;
+        final String traceId;
+        final String rootSpanId = newSpanId();
+        final long createdNanos = System.nanoTime();
+        private final List<Span> spans = new ArrayList<>();
+        private long startNanos = Long.MAX_VALUE;
+        private long endNanos = Long.MIN_VALUE;
+        // the end of the submission, from which on the update can be ingested
+        private long submittedNanos = Long.MIN_VALUE;
+        private String updateId;
+        private String errorMessage;
+
+        Trace(String commandId) {
+            this.commandId = commandId;
+            this.traceId = traceIdOf(commandId);
+        }
+
+        synchronized void addPhase(Phase phase, long phaseStartNanos, long phaseEndNanos, Throwable error) {
+            String phaseErrorMessage = error == null ? null : String.valueOf(error.getMessage());
+            addSpan(phase.name().toLowerCase(Locale.ROOT), phaseStartNanos, phaseEndNanos, phaseErrorMessage);
+            if (error != null && errorMessage == null) {
+                errorMessage = phase.name().toLowerCase(Locale.ROOT) + " failed: " + phaseErrorMessage;
+            }
+            if (phase == Phase.SUBMIT_AND_WAIT || phase == Phase.EXECUTE) {
+                submittedNanos = Math.max(submittedNanos, phaseEndNanos);
+            }
+        }
+
+        synchronized void addIngestion(long ingestedNanos) {
+            long ingestionStartNanos = submittedNanos == Long.MIN_VALUE ? ingestedNanos : Math.min(submittedNanos, ingestedNanos);
+            addSpan("ingestion", ingestionStartNanos, ingestedNanos, null);
+        }
+
+        private void addSpan(String name, long spanStartNanos, long spanEndNanos, String spanErrorMessage) {
+            spans.add(new Span(traceId, newSpanId(), rootSpanId, name, toEpochNanos(spanStartNanos),
+                    toEpochNanos(spanEndNanos), Map.of(), spanErrorMessage));
+            startNanos = Math.min(startNanos, spanStartNanos);
+            endNanos = Math.max(endNanos, spanEndNanos);
+        }
+
+        synchronized void setUpdateId(String updateId) {
+            this.updateId = updateId;
+        }
+
+        synchronized String getUpdateId() {
+            return updateId;
+        }
+
+        synchronized List<Span> toSpans() {
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("command.id", commandId);
+            if (updateId != null) {
+                attributes.put("update.id", updateId);
+            }
+            List<Span> all = new ArrayList<>(spans.size() + 1);
+            all.add(new Span(traceId, rootSpanId, null, "transfer", toEpochNanos(startNanos), toEpochNanos(endNanos),
+                    Map.copyOf(attributes), errorMessage));
+            all.addAll(spans);
+            return all;
+        }
+
+        private long toEpochNanos(long nanoTime) {
+            return nanoTime + epochNanosOffset;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.benchmark;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.testdata.TestFiles;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The update lists of the golden tests, and larger amplifications of them for benchmarking.
+ */
+final class GoldenUpdates {
+
+    /**
+     * The golden test data sets and the treasury party that their expected stores were computed for.
+     */
+    static final Map<String, String> TREASURY_PARTIES = Map.of(
+            "one-step-deposit-and-withdraw", "treasury::1220bada55b12697a660ade92a1c920b2cd9d9bed0e854c17fb3697119c46b29c5e8",
+            "da_utility_transactions", "matteo::12207df51d7324dc93aea211bdd38ffc23d63a20db7a9cc06f2fac89339657f50b36",
+            "splice-test-cases", "treasury::normalized"
+    );
+
+    private GoldenUpdates() {
+    }
+
+    static JsonArray readJson(String dataSet) {
+        Path file = TestFiles.GOLDEN_TEST_DIR.resolve(dataSet + ".json");
+        try {
+            return JsonParser.parseString(Files.readString(file)).getAsJsonArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read " + file, ex);
+        }
+    }
+
+    static List<JsGetUpdatesResponse> read(String dataSet) {
+        return decode(readJson(dataSet));
+    }
+
+    static List<JsGetUpdatesResponse> decode(JsonArray updates) {
+        return ExtendedJson.gson.fromJson(updates, new TypeToken<List<JsGetUpdatesResponse>>() {
+        }.getType());
+    }
+
+    /**
+     * Repeat the updates {@code factor} times. Each copy uses fresh contract and update IDs and offsets after those
+     * of the previous copy, so that the copies create and archive their own contracts.
+     */
+    static List<JsGetUpdatesResponse> amplify(String dataSet, int factor) {
+        JsonArray original = readJson(dataSet);
+        Set<String> contractIds = new HashSet<>();
+        collectContractIds(original, contractIds);
+        long offsetSpan = maxOffset(original) + 1;
+
+        JsonArray amplified = new JsonArray();
+        for (int copy = 0; copy < factor; copy++) {
+            for (JsonElement update : original) {
+                amplified.add(copy == 0 ? update : rewrite(update, contractIds, "-" + copy, copy * offsetSpan));
+            }
+        }
+        return decode(amplified);
+    }
+
+    private static void collectContractIds(JsonElement json, Set<String> contractIds) {
+        if (json.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> field : json.getAsJsonObject().entrySet()) {
+                if (field.getKey().equals("contractId") && field.getValue().isJsonPrimitive()) {
+                    contractIds.add(field.getValue().getAsString());
+                } else {
+                    collectContractIds(field.getValue(), contractIds);
+                }
+            }
+        } else if (json.isJsonArray()) {
+            json.getAsJsonArray().forEach(element -> collectContractIds(element, contractIds));
+        }
+    }
+
+    private static long maxOffset(JsonElement json) {
+        long max = 0;
+        if (json.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> field : json.getAsJsonObject().entrySet()) {
+                if (field.getKey().equals("offset") && field.getValue().isJsonPrimitive()) {
+                    max = Math.max(max, field.getValue().getAsLong());
+                } else {
+                    max = Math.max(max, maxOffset(field.getValue()));
+                }
+            }
+        } else if (json.isJsonArray()) {
+            for (JsonElement element : json.getAsJsonArray()) {
+                max = Math.max(max, maxOffset(element));
+            }
+        }
+        return max;
+    }
+
+    private static JsonElement rewrite(JsonElement json, Set<String> contractIds, String suffix, long offsetShift) {
+        if (json.isJsonObject()) {
+            JsonObject result = new JsonObject();
+            for (Map.Entry<String, JsonElement> field : json.getAsJsonObject().entrySet()) {
+                JsonElement value = field.getValue();
+                if (field.getKey().equals("offset") && value.isJsonPrimitive()) {
+                    result.addProperty("offset", value.getAsLong() + offsetShift);
+                } else if (field.getKey().equals("updateId") && value.isJsonPrimitive()) {
+                    result.addProperty("updateId", value.getAsString() + suffix);
+                } else {
+                    result.add(field.getKey(), rewrite(value, contractIds, suffix, offsetShift));
+                }
+            }
+            return result;
+        } else if (json.isJsonArray()) {
+            JsonArray result = new JsonArray();
+            json.getAsJsonArray().forEach(element -> result.add(rewrite(element, contractIds, suffix, offsetShift)));
+            return result;
+        } else if (json.isJsonPrimitive() && json.getAsJsonPrimitive().isString() && contractIds.contains(json.getAsString())) {
+            return new JsonPrimitive(json.getAsString() + suffix);
+        }
+        return json;
+    }
+}
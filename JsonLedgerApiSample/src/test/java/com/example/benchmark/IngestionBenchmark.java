@@ -0,0 +1,95 @@
+package com.example.benchmark;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.client.ledger.model.Update;
+import com.example.client.ledger.model.UpdateOneOf3;
+import com.example.store.IntegrationStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * JMH benchmarks for ingesting the golden test updates, and amplifications of them, into an {@link IntegrationStore}.
+ * <p>
+ * Each benchmark operation ingests a single update, so the scores are per update. The {@code events} counter reports
+ * the number of ingested events per second, from which the time per event follows. Run with {@code -prof gc} to
+ * report the allocation per update ({@code gc.alloc.rate.norm}), e.g., via the {@code benchmark} Maven profile.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestionBenchmark {
+
+    @Param({"one-step-deposit-and-withdraw", "da_utility_transactions", "splice-test-cases"})
+    public String dataSet;
+
+    @Param({"1", "100"})
+    public int amplification;
+
+    private String treasuryParty;
+    private List<Update> updates;
+    private int[] numEvents;
+    private IntegrationStore store;
+    private int next;
+
+    /**
+     * Counts the events of the ingested updates.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class EventCounter {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Keep logging out of the measurements
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        treasuryParty = GoldenUpdates.TREASURY_PARTIES.get(dataSet);
+        updates = GoldenUpdates.amplify(dataSet, amplification).stream().map(JsGetUpdatesResponse::getUpdate).toList();
+        numEvents = updates.stream().mapToInt(IngestionBenchmark::countEvents).toArray();
+        resetStore();
+    }
+
+    private void resetStore() {
+        store = new IntegrationStore(treasuryParty, -1L);
+        next = 0;
+    }
+
+    @Benchmark
+    public IntegrationStore ingestUpdate(EventCounter counter) {
+        if (next == updates.size()) {
+            // Replay the updates into a fresh store, the cost of which is amortized over all updates
+            resetStore();
+        }
+        counter.events += numEvents[next];
+        store.ingestUpdate(updates.get(next++));
+        return store;
+    }
+
+    @Benchmark
+    public IntegrationStore.DecodedUpdate decodeUpdate(EventCounter counter) {
+        if (next == updates.size()) {
+            next = 0;
+        }
+        counter.events += numEvents[next];
+        return store.decodeUpdate(updates.get(next++));
+    }
+
+    static int countEvents(Update update) {
+        if (update.getActualInstance() instanceof UpdateOneOf3 transaction) {
+            return transaction.getTransaction().getValue().getEvents().size();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.benchmark;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.client.ledger.model.Update;
+import com.example.store.IntegrationStore;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays the golden test updates, amplified by a factor, into a fresh {@link IntegrationStore}, and reports:
+ * - the number of ingested updates per second,
+ * - the time per ingested event,
+ * - the bytes allocated per update, and
+ * - the heap retained by the store per 1000 active holdings.
+ * <p>
+ * Usage: {@code ReplayBenchmark [amplification] [--max-ns-per-event N] [--max-bytes-per-update N]}
+ * <p>
+ * If a budget is given and exceeded by any data set, the process exits with status 1, so that the replay can be
+ * used to hold changes to the parser and store to a performance budget.
+ */
+public class ReplayBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    record Result(String dataSet, int numUpdates, long numEvents, double updatesPerSecond, double nsPerEvent,
+                  double bytesPerUpdate, int numHoldings, long retainedBytes) {
+
+        double retainedBytesPer1kHoldings() {
+            return numHoldings == 0 ? Double.NaN : retainedBytes * 1000.0 / numHoldings;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int amplification = 100;
+        long maxNsPerEvent = Long.MAX_VALUE;
+        long maxBytesPerUpdate = Long.MAX_VALUE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--max-ns-per-event" -> maxNsPerEvent = Long.parseLong(args[++i]);
+                case "--max-bytes-per-update" -> maxBytesPerUpdate = Long.parseLong(args[++i]);
+                default -> amplification = Integer.parseInt(args[i]);
+            }
+        }
+        Logger.getLogger("").setLevel(Level.WARNING);
+
+        System.out.printf("%-32s %8s %8s %12s %10s %14s %10s %18s%n",
+                "data set", "updates", "events", "updates/s", "ns/event", "bytes/update", "holdings", "retained/1k hold.");
+        boolean withinBudget = true;
+        for (String dataSet : GoldenUpdates.TREASURY_PARTIES.keySet().stream().sorted().toList()) {
+            Result result = run(dataSet, amplification);
+            System.out.printf(Locale.ROOT, "%-32s %8d %8d %12.0f %10.0f %14.0f %10d %18.0f%n",
+                    result.dataSet(), result.numUpdates(), result.numEvents(), result.updatesPerSecond(), result.nsPerEvent(),
+                    result.bytesPerUpdate(), result.numHoldings(), result.retainedBytesPer1kHoldings());
+            if (result.nsPerEvent() > maxNsPerEvent || result.bytesPerUpdate() > maxBytesPerUpdate) {
+                System.out.println("  exceeds the budget of " + maxNsPerEvent + " ns per event and " + maxBytesPerUpdate + " bytes per update");
+                withinBudget = false;
+            }
+        }
+        System.exit(withinBudget ? 0 : 1);
+    }
+
+    static Result run(String dataSet, int amplification) {
+        String treasuryParty = GoldenUpdates.TREASURY_PARTIES.get(dataSet);
+        List<Update> updates = GoldenUpdates.amplify(dataSet, amplification).stream().map(JsGetUpdatesResponse::getUpdate).toList();
+        long numEvents = updates.stream().mapToLong(IngestionBenchmark::countEvents).sum();
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            replay(treasuryParty, updates);
+        }
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            replay(treasuryParty, updates);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytesBefore;
+        long numIngested = (long) updates.size() * MEASURED_ROUNDS;
+
+        long heapBefore = usedHeapAfterGc();
+        IntegrationStore store = replay(treasuryParty, updates);
+        long retained = usedHeapAfterGc() - heapBefore;
+        int numHoldings = store.getActiveHoldings().size();
+
+        return new Result(
+                dataSet,
+                updates.size(),
+                numEvents,
+                numIngested * 1e9 / elapsedNanos,
+                numEvents == 0 ? Double.NaN : (double) elapsedNanos / (numEvents * MEASURED_ROUNDS),
+                (double) allocated / numIngested,
+                numHoldings,
+                retained);
+    }
+
+    private static IntegrationStore replay(String treasuryParty, List<Update> updates) {
+        IntegrationStore store = new IntegrationStore(treasuryParty, -1L);
+        for (Update update : updates) {
+            store.ingestUpdate(update);
+        }
+        return store;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.loadtest;
+
+import com.example.services.Wallet;
+import com.example.simulator.LedgerSimulator;
+import com.example.simulator.SimulatedLedger;
+import com.example.simulator.SimulatorFixture;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.simulator.SimulatorFixture.TREASURY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LoadDriverTest {
+
+    @Test
+    void testLoadDriverAgainstSimulator() throws Exception {
+        SimulatedLedger ledger = SimulatorFixture.newTreasuryLedger();
+        List<LoadDriver.Sender> senders = LoadDriver.addSimulatedSenders(ledger, 4, 1, new BigDecimal("1000.0"));
+
+        try (LedgerSimulator simulator = LedgerSimulator.start(ledger)) {
+            Wallet wallet = SimulatorFixture.wallet(simulator);
+
+            // 4 senders, half of them external, start 20 transfers in total
+            LoadDriver.Options options = new LoadDriver.Options(4, 20, Duration.ofSeconds(1), new BigDecimal("1.0"), Duration.ofSeconds(10));
+            LoadReport report = new LoadDriver(wallet, ledger.getSynchronizerId(), SimulatorFixture.amulet(ledger), TREASURY, senders, options).run();
+
+            assertEquals(Map.of(), report.getErrors());
+            assertEquals(20, report.getNumSucceeded());
+            assertEquals(new BigDecimal("20.0000000000"), ledger.getBalance(TREASURY));
+            assertEquals(20, report.getLatencies().get(LoadReport.END_TO_END).getTotalCount());
+            assertEquals(10, report.getLatencies().get("completion").getTotalCount());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.metrics;
+
+import com.example.services.ApiClientInterceptors;
+import com.example.services.Wallet;
+import com.example.simulator.LedgerSimulator;
+import com.example.simulator.SimulatedLedger;
+import com.example.simulator.SimulatorFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.simulator.SimulatorFixture.TREASURY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiMetricsTest {
+
+    @Test
+    void testApiMetricsOfSimulatedRequests() throws Exception {
+        SimulatedLedger ledger = SimulatorFixture.newLedger();
+        ledger.addParty(TREASURY);
+        TextExpositionRegistry registry = new TextExpositionRegistry();
+        ApiMetrics metrics = new ApiMetrics(registry);
+
+        try (LedgerSimulator simulator = LedgerSimulator.start(ledger)) {
+            ApiClientInterceptors.add(metrics);
+            ApiClientInterceptors.addNetworkInterceptor(metrics.networkInterceptor());
+            try {
+                Wallet wallet = SimulatorFixture.wallet(simulator);
+                wallet.getLedgerEnd();
+                wallet.getLedgerEnd();
+                assertTrue(wallet.getPartyDetails(TREASURY).isPresent());
+                assertFalse(wallet.hasCantonCoinTransferPreapproval(TREASURY));
+            } finally {
+                ApiClientInterceptors.remove(metrics);
+                ApiClientInterceptors.removeNetworkInterceptor(metrics.networkInterceptor());
+            }
+        }
+
+        Map<String, EndpointMetrics> endpoints = new HashMap<>();
+        metrics.getEndpoints().forEach(endpoint -> endpoints.put(endpoint.getApi() + " " + endpoint.getMethod() + " " + endpoint.getPath(), endpoint));
+        assertEquals(Set.of("ledger GET /v2/state/ledger-end", "ledger GET /v2/parties/{id}", "scan-proxy GET /api/validator/v0/scan-proxy/transfer-preapprovals/by-party/{id}"),
+                endpoints.keySet());
+        EndpointMetrics ledgerEnd = endpoints.get("ledger GET /v2/state/ledger-end");
+        assertEquals(2, ledgerEnd.getRequestCount());
+        assertEquals(0, ledgerEnd.getInFlight());
+        assertEquals(2, ledgerEnd.getLatencyMicros().getTotalCount());
+        assertTrue(ledgerEnd.getResponseBytes() > 0);
+        assertEquals(Map.of(404, 1L), endpoints.get("scan-proxy GET /api/validator/v0/scan-proxy/transfer-preapprovals/by-party/{id}").getStatusCounts());
+        assertTrue(registry.toString().contains("api_requests_total{api=\"ledger\",method=\"GET\",path=\"/v2/state/ledger-end\"} 2\n"), registry::toString);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.metrics;
+
+import com.daml.ledger.api.v2.interactive.InteractiveSubmissionServiceOuterClass;
+import com.example.ConversionHelpers;
+import com.example.services.Wallet;
+import com.example.signing.Keys;
+import com.example.signing.TransactionHashBuilder;
+import com.example.simulator.LedgerSimulator;
+import com.example.simulator.SimulatorFixture;
+import com.example.store.IntegrationStore;
+import com.example.testdata.SyntheticUpdateGenerator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import splice.api.token.holdingv1.InstrumentId;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecorderEventsTest {
+
+    @Test
+    void testFlightRecorderEvents(@TempDir Path tempDir) throws Exception {
+        SyntheticUpdateGenerator.Config config = new SyntheticUpdateGenerator.Config("treasury::synthetic", 5, 20, 200,
+                SyntheticUpdateGenerator.Config.DEFAULT_MIX, 7L);
+        IntegrationStore store = new IntegrationStore(config.treasuryParty(), 0L);
+        Path recordingFile = tempDir.resolve("recording.jfr");
+        InstrumentId instrumentId = new InstrumentId("dso::simulated", "Amulet");
+
+        try (Recording recording = new Recording(); LedgerSimulator simulator = LedgerSimulator.start(SimulatorFixture.newLedger())) {
+            recording.enable("com.example.IngestTransaction");
+            recording.enable("com.example.Sign");
+            recording.enable("com.example.ApiCall");
+            recording.enable("com.example.TransactionHash");
+            recording.enable("com.example.JsonConversion");
+            recording.start();
+            new SyntheticUpdateGenerator(config, 0L).stream(200).forEach(update -> store.ingestUpdate(update.getUpdate()));
+            Keys.signHex(Keys.generate().getPrivate(), "cafe");
+            Wallet wallet = SimulatorFixture.wallet(simulator);
+            wallet.getLedgerEnd();
+            TransactionHashBuilder hashBuilder = new TransactionHashBuilder(preparedTransaction());
+            assertArrayEquals(hashBuilder.hash(), hashBuilder.hash());
+            assertEquals(instrumentId, ConversionHelpers.convertViaJson(instrumentId, InstrumentId::toJson, InstrumentId::fromJson));
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        Map<String, List<RecordedEvent>> eventsByType = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+            eventsByType.computeIfAbsent(event.getEventType().getName(), name -> new ArrayList<>()).add(event);
+        }
+        long entriesProduced = eventsByType.get("com.example.IngestTransaction").stream().mapToLong(event -> event.getInt("entriesProduced")).sum();
+        assertEquals(store.getTxHistoryLog().size(), entriesProduced);
+        assertEquals(4, eventsByType.get("com.example.Sign").get(0).getInt("bytesSigned"));
+        RecordedEvent apiCall = eventsByType.get("com.example.ApiCall").get(0);
+        assertEquals("/v2/state/ledger-end", apiCall.getString("path"));
+        assertEquals(200, apiCall.getInt("status"));
+        // hashing again counts the bytes of the second hash only
+        List<RecordedEvent> hashes = eventsByType.get("com.example.TransactionHash");
+        assertEquals(2, hashes.size());
+        assertEquals(hashes.get(0).getString("hash"), hashes.get(1).getString("hash"));
+        assertEquals(0, hashes.get(0).getInt("nodeCount"));
+        assertTrue(hashes.get(0).getLong("bytesHashed") > 0);
+        assertEquals(hashes.get(0).getLong("bytesHashed"), hashes.get(1).getLong("bytesHashed"));
+        RecordedEvent conversion = eventsByType.get("com.example.JsonConversion").get(0);
+        assertEquals(InstrumentId.class.getName(), conversion.getClass("sourceType").getName());
+        assertEquals(instrumentId.toJson().length(), conversion.getInt("jsonLength"));
+    }
+
+    private static InteractiveSubmissionServiceOuterClass.PreparedTransaction preparedTransaction() {
+        return InteractiveSubmissionServiceOuterClass.PreparedTransaction.newBuilder()
+                .setTransaction(InteractiveSubmissionServiceOuterClass.DamlTransaction.newBuilder()
+                        .setVersion("2.1"))
+                .setMetadata(InteractiveSubmissionServiceOuterClass.Metadata.newBuilder()
+                        .setSubmitterInfo(InteractiveSubmissionServiceOuterClass.Metadata.SubmitterInfo.newBuilder()
+                                .addActAs("sender::synthetic")
+                                .setCommandId("command-1"))
+                        .setTransactionUuid("00000000-0000-0000-0000-000000000001")
+                        .setSynchronizerId("sync::simulated")
+                        .setPreparationTime(1L))
+                .build();
+    }
+}
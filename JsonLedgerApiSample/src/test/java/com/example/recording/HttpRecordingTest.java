@@ -0,0 +1,75 @@
+package com.example.recording;
+
+import com.example.services.ApiClientInterceptors;
+import com.example.services.Wallet;
+import com.example.simulator.LedgerSimulator;
+import com.example.simulator.SimulatedLedger;
+import com.example.simulator.SimulatorFixture;
+import com.example.store.IntegrationStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import static com.example.simulator.SimulatorFixture.TREASURY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HttpRecordingTest {
+
+    @Test
+    void testRecordedTrafficIsReplayed(@TempDir Path tempDir) throws Exception {
+        SimulatedLedger ledger = SimulatorFixture.newLedger();
+        ledger.addParty(TREASURY);
+        ledger.mint(TREASURY, new BigDecimal("10.0"));
+        ledger.mint(TREASURY, new BigDecimal("20.0"));
+        Path recordingFile = tempDir.resolve("recording.ndjson.gz");
+
+        IntegrationStore recordedStore = new IntegrationStore(TREASURY, 0L);
+        try (LedgerSimulator simulator = LedgerSimulator.start(ledger);
+             HttpRecorder recorder = new HttpRecorder(recordingFile)) {
+            ApiClientInterceptors.add(recorder);
+            try {
+                Wallet wallet = SimulatorFixture.wallet(simulator);
+                wallet.queryForHoldingTransactions(TREASURY, 0L).forEach(update -> recordedStore.ingestUpdate(update.getUpdate()));
+            } finally {
+                ApiClientInterceptors.remove(recorder);
+            }
+            assertEquals(1, recorder.getNumRecorded());
+        }
+
+        IntegrationStore replayedStore = new IntegrationStore(TREASURY, 0L);
+        try (ReplayServer server = ReplayServer.start(recordingFile, new ReplayServer.Options(2, Duration.ofMillis(1)))) {
+            Wallet wallet = SimulatorFixture.wallet(server.getUrl(), server.getUrl() + "/api/validator");
+            wallet.queryForHoldingTransactions(TREASURY, 0L).forEach(update -> replayedStore.ingestUpdate(update.getUpdate()));
+            assertEquals(1, server.getNumServed());
+            assertEquals(0, server.getNumUnmatched());
+        }
+        assertEquals(2, replayedStore.getActiveHoldings().size());
+        assertEquals(recordedStore.toString(), replayedStore.toString());
+    }
+
+    @Test
+    void testUnclosedRecordingIsRead(@TempDir Path tempDir) throws Exception {
+        HttpRecording.Exchange exchange = new HttpRecording.Exchange(0L, "GET", "http://localhost/v2/state/ledger-end", null,
+                200, "application/json", "{\"offset\":1}", 100L);
+
+        // the writer is not closed, as when the process exits, so the compressed recording has no gzip trailer
+        Path compressed = tempDir.resolve("unclosed.ndjson.gz");
+        HttpRecording.Writer writer = HttpRecording.Writer.open(compressed);
+        writer.append(exchange);
+        writer.append(exchange);
+        assertEquals(List.of(exchange, exchange), HttpRecording.read(compressed));
+
+        // a partially written last exchange is ignored
+        Path plain = tempDir.resolve("unclosed.ndjson");
+        HttpRecording.Writer plainWriter = HttpRecording.Writer.open(plain);
+        plainWriter.append(exchange);
+        Files.writeString(plain, "{\"timestampMillis\":0,\"meth", StandardOpenOption.APPEND);
+        assertEquals(List.of(exchange), HttpRecording.read(plain));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.simulator;
+
+import com.example.models.ContractAndId;
+import com.example.services.CommandCompletionTracker;
+import com.example.services.Wallet;
+import com.example.signing.Keys;
+import com.example.store.IntegrationStore;
+import com.example.store.models.TxHistoryEntry;
+import org.junit.jupiter.api.Test;
+import splice.api.token.holdingv1.InstrumentId;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.simulator.SimulatorFixture.TREASURY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerSimulatorTest {
+
+    @Test
+    void testSimulatedTransfersAreIngested() throws Exception {
+        String customer = "customer::simulated";
+        KeyPair customerKeyPair = Keys.generate();
+        SimulatedLedger ledger = SimulatorFixture.newTreasuryLedger();
+        ledger.addParty(customer, customerKeyPair.getPublic());
+        String customerHoldingCid = ledger.mint(customer, new BigDecimal("100.0"));
+
+        try (LedgerSimulator simulator = LedgerSimulator.start(ledger)) {
+            Wallet wallet = SimulatorFixture.wallet(simulator);
+            InstrumentId amulet = SimulatorFixture.amulet(ledger);
+            IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+
+            // A direct deposit signed by the external customer, and a multi-step withdrawal by the treasury
+            assertTrue(wallet.transferHoldings(ledger.getSynchronizerId(), "deposit-1", customer, Optional.of(customerKeyPair),
+                    TREASURY, amulet, Optional.of("memo-1"), new HashMap<>(), new BigDecimal("40.0"), List.of(customerHoldingCid), true));
+            List<String> treasuryHoldingCids = wallet.queryForHoldings(TREASURY, amulet).stream().map(ContractAndId::contractId).toList();
+            assertTrue(wallet.transferHoldings(ledger.getSynchronizerId(), "withdrawal-1", TREASURY, Optional.empty(),
+                    customer, amulet, Optional.empty(), new HashMap<>(), new BigDecimal("15.0"), treasuryHoldingCids, false));
+
+            CommandCompletionTracker tracker = new CommandCompletionTracker();
+            tracker.observeCompletions(wallet.checkForCommandCompletion(List.of(customer), 0L));
+            assertEquals(0, tracker.resultCodeFor("deposit-1").orElseThrow().getCode());
+
+            wallet.queryForHoldingTransactions(TREASURY, 0L).forEach(updateResponse -> store.ingestUpdate(updateResponse.getUpdate()));
+            assertEquals(ledger.getLedgerEnd(), store.getLastIngestedOffset());
+            assertEquals(wallet.queryForHoldings(TREASURY, amulet).size(), store.getActiveHoldings().size());
+            assertEquals(new BigDecimal("40.0000000000"), ledger.getBalance(TREASURY));
+            List<TxHistoryEntry> entries = store.getTxHistoryLog().stream().filter(entry -> entry.transfer() != null).toList();
+            assertEquals(2, entries.size(), () -> "Unexpected entries: " + store.getTxHistoryLog());
+        }
+    }
+
+    /**
+     * Test that malformed requests are rejected as invalid, rather than failing as internal errors.
+     */
+    @Test
+    void testMalformedRequestsAreRejected() throws Exception {
+        try (LedgerSimulator simulator = LedgerSimulator.start(SimulatorFixture.newTreasuryLedger())) {
+            HttpClient client = HttpClient.newHttpClient();
+            List<String> bodies = List.of(
+                    "{",
+                    "{}",
+                    "{\"commands\":[]}",
+                    "{\"commands\":{\"actAs\":[\"" + TREASURY + "\"],\"commandId\":\"c\",\"commands\":[{\"ExerciseCommand\":{}}]}}",
+                    "{\"commands\":{\"actAs\":[{}],\"commandId\":\"c\",\"commands\":[]}}");
+            for (String body : bodies) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(simulator.getUrl() + "/v2/commands/submit-and-wait-for-transaction"))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                assertEquals(400, response.statusCode(), () -> body + ": " + response.body());
+            }
+        }
+    }
+}
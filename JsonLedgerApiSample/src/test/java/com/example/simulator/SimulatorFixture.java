@@ -0,0 +1,55 @@
+package com.example.simulator;
+
+import com.example.access.LedgerUser;
+import com.example.services.Ledger;
+import com.example.services.Wallet;
+import splice.api.token.holdingv1.InstrumentId;
+
+/**
+ * The simulated ledger and wallet that the tests of the simulator, recording, load test, metrics, and tracing packages
+ * run against.
+ */
+public final class SimulatorFixture {
+
+    public static final String TREASURY = "treasury::simulated";
+    public static final LedgerUser USER = new LedgerUser("simulated-user", "", "simulated-token");
+
+    private SimulatorFixture() {
+    }
+
+    /**
+     * A ledger without any parties.
+     */
+    public static SimulatedLedger newLedger() {
+        return new SimulatedLedger("dso::simulated", "sync::simulated");
+    }
+
+    /**
+     * A ledger with the {@link #TREASURY} party, which accepts direct transfers with a transfer preapproval.
+     */
+    public static SimulatedLedger newTreasuryLedger() {
+        SimulatedLedger ledger = newLedger();
+        ledger.addParty(TREASURY);
+        ledger.createTransferPreapproval(TREASURY, ledger.getDsoParty());
+        return ledger;
+    }
+
+    public static InstrumentId amulet(SimulatedLedger ledger) {
+        return new InstrumentId(ledger.getDsoParty(), SimulatedLedger.INSTRUMENT_ID);
+    }
+
+    /**
+     * A wallet that uses the simulator for all APIs.
+     */
+    public static Wallet wallet(LedgerSimulator simulator) {
+        return wallet(simulator.getUrl(), simulator.getValidatorUrl());
+    }
+
+    /**
+     * A wallet that uses the given URL for the Ledger API, Scan, and the token standard registry, and the validator URL
+     * for the Scan proxy, as served by the simulator.
+     */
+    public static Wallet wallet(String url, String validatorUrl) {
+        return new Wallet(USER, url, url, url, validatorUrl, validatorUrl, Ledger::verifyAndSign);
+    }
+}
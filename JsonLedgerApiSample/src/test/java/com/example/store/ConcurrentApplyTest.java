@@ -0,0 +1,162 @@
+package com.example.store;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.testdata.SyntheticUpdateGenerator;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentApplyTest {
+
+    private static final String TREASURY = "treasury::synthetic";
+    private static final List<String> SYNCHRONIZERS = List.of("sync::a", "sync::b", "sync::c");
+    private static final Pattern CONTRACT_ID = Pattern.compile("00[0-9a-f]+");
+
+    /**
+     * Test that when the transactions of several synchronizers are staged concurrently and one of them fails in the
+     * middle of its synchronizer's run, the transactions are committed up to the failed one, as when applying them one
+     * by one.
+     */
+    @Test
+    void testCommitStopsAtFirstFailure() throws Exception {
+        List<JsonObject> updates = interleavedUpdates(300);
+
+        // Corrupt the transfer argument of a transaction of the second synchronizer
+        int failed = -1;
+        for (int i = updates.size() / 2; i < updates.size() && failed < 0; i++) {
+            if (i % SYNCHRONIZERS.size() != 1) {
+                continue;
+            }
+            for (JsonElement event : transaction(updates.get(i)).getAsJsonArray("events")) {
+                JsonObject exercised = event.getAsJsonObject().getAsJsonObject("ExercisedEvent");
+                if (exercised != null && exercised.get("choice").getAsString().equals("TransferFactory_Transfer")) {
+                    exercised.add("choiceArgument", new JsonObject());
+                    failed = i;
+                    break;
+                }
+            }
+        }
+        assertTrue(failed > 0, "No transfer of the second synchronizer found");
+
+        IntegrationStore sequentialStore = new IntegrationStore(TREASURY, 0L);
+        for (JsonObject update : updates.subList(0, failed)) {
+            sequentialStore.ingestUpdate(toResponse(update).getUpdate());
+        }
+
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        List<IntegrationStore.DecodedUpdate> decoded = updates.stream()
+                .map(update -> store.decodeUpdate(toResponse(update).getUpdate()))
+                .toList();
+        ExecutorService executor = Executors.newFixedThreadPool(SYNCHRONIZERS.size());
+        try {
+            assertThrows(RuntimeException.class, () -> store.applyUpdates(decoded, executor));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(failed, store.getLastIngestedOffset());
+        assertEquals(SYNCHRONIZERS.size(), store.getSynchronizerPositions().size());
+        assertEquals(sequentialStore.getSynchronizerPositions(), store.getSynchronizerPositions());
+        assertEquals(sequentialStore.toString(), store.toString());
+        assertEquals(sequentialStore.getSnapshot().getActiveHoldings(), store.getSnapshot().getActiveHoldings());
+    }
+
+    /**
+     * Test that a checkpoint of several synchronizers advances each of their positions, and takes the store-wide
+     * synchronizer and record time from the one with the latest record time, whatever its position in the list.
+     */
+    @Test
+    void testCheckpointOfSeveralSynchronizers() {
+        List<JsonObject> updates = interleavedUpdates(3);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        updates.forEach(update -> store.ingestUpdate(toResponse(update).getUpdate()));
+        String lastUpdateId = transaction(updates.get(2)).get("updateId").getAsString();
+
+        String checkpoint = "{\"update\": {\"OffsetCheckpoint\": {\"value\": {\"offset\": 4, \"synchronizerTimes\": ["
+                + "{\"synchronizerId\": \"sync::a\", \"recordTime\": \"2025-01-01T00:00:01.5Z\"},"
+                + "{\"synchronizerId\": \"sync::b\", \"recordTime\": \"2025-01-01T00:00:02Z\"},"
+                + "{\"synchronizerId\": \"sync::c\", \"recordTime\": \"2025-01-01T00:00:01.75Z\"}]}}}}";
+        store.ingestUpdate(ExtendedJson.gson.fromJson(checkpoint, JsGetUpdatesResponse.class).getUpdate());
+
+        assertEquals(4, store.getLastIngestedOffset());
+        assertEquals("sync::b", store.getSourceSynchronizerId());
+        assertEquals("2025-01-01T00:00:02Z", store.getLastIngestedRecordTime());
+        assertEquals(4, store.getSnapshot().getLastIngestedOffset());
+        for (String synchronizerId : SYNCHRONIZERS) {
+            assertEquals(4, store.getSynchronizerPositions().get(synchronizerId).offset());
+        }
+        assertEquals("2025-01-01T00:00:01.75Z", store.getSynchronizerPositions().get("sync::c").recordTime());
+        assertEquals(lastUpdateId, store.getSynchronizerPositions().get("sync::c").updateId());
+        assertTrue(store.toString().contains("\"lastIngestedUpdateId\": \"" + lastUpdateId + "\""), "The last ingested update ID is kept");
+    }
+
+    /**
+     * Interleave the transactions of one generator per synchronizer, renumbering their offsets and giving their
+     * contracts disjoint IDs, as transactions from different synchronizers touch disjoint sets of contracts.
+     */
+    private static List<JsonObject> interleavedUpdates(int numUpdates) {
+        List<SyntheticUpdateGenerator> generators = new ArrayList<>();
+        for (int i = 0; i < SYNCHRONIZERS.size(); i++) {
+            SyntheticUpdateGenerator.Config defaults = SyntheticUpdateGenerator.Config.defaults(TREASURY);
+            generators.add(new SyntheticUpdateGenerator(
+                    new SyntheticUpdateGenerator.Config(TREASURY, defaults.numParties(), 20, 4, defaults.mix(), i), 0L));
+        }
+        List<JsonObject> updates = new ArrayList<>();
+        for (int i = 0; i < numUpdates; i++) {
+            int synchronizer = i % SYNCHRONIZERS.size();
+            JsonObject update = generators.get(synchronizer).nextJson();
+            prefixContractIds(update, Character.forDigit(10 + synchronizer, 16) + "0");
+            long offset = i + 1;
+            JsonObject tx = transaction(update);
+            tx.addProperty("offset", offset);
+            tx.addProperty("updateId", "update-" + offset);
+            tx.addProperty("synchronizerId", SYNCHRONIZERS.get(synchronizer));
+            for (JsonElement event : tx.getAsJsonArray("events")) {
+                for (Map.Entry<String, JsonElement> value : event.getAsJsonObject().entrySet()) {
+                    value.getValue().getAsJsonObject().addProperty("offset", offset);
+                }
+            }
+            updates.add(update);
+        }
+        return updates;
+    }
+
+    private static JsonElement prefixContractIds(JsonElement element, String prefix) {
+        if (element.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+                member.setValue(prefixContractIds(member.getValue(), prefix));
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, prefixContractIds(array.get(i), prefix));
+            }
+        } else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()
+                && CONTRACT_ID.matcher(element.getAsString()).matches()) {
+            return new JsonPrimitive("00" + prefix + element.getAsString().substring(2));
+        }
+        return element;
+    }
+
+    private static JsonObject transaction(JsonObject response) {
+        return response.getAsJsonObject("update").getAsJsonObject("Transaction").getAsJsonObject("value");
+    }
+
+    private static JsGetUpdatesResponse toResponse(JsonObject json) {
+        return ExtendedJson.gson.fromJson(json, JsGetUpdatesResponse.class);
+    }
+}
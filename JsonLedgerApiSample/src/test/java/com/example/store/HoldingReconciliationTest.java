@@ -0,0 +1,81 @@
+package com.example.store;
+
+import com.example.models.ContractAndId;
+import org.junit.jupiter.api.Test;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.holdingv1.InstrumentId;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HoldingReconciliationTest {
+
+    @Test
+    void testHoldingReconciliation() throws Exception {
+        IntegrationStore store = SpliceTestCases.ingest(SpliceTestCases.read());
+
+        // The incrementally maintained digest matches the digest of the final holdings
+        assertFalse(store.getActiveHoldings().isEmpty());
+        assertEquals(HoldingDigest.of(store.getActiveHoldings()).rootHash(), store.getHoldingDigest().rootHash());
+
+        Map<String, HoldingView> ledgerHoldings = new HashMap<>(store.getActiveHoldings());
+        HoldingReconciliation.LedgerHoldingSource source = sourceOf(ledgerHoldings);
+        assertTrue(HoldingReconciliation.reconcile(store, source).matches());
+
+        // Drifts are reported for the affected instrument only
+        String missingContractId = ledgerHoldings.keySet().iterator().next();
+        HoldingView missingHolding = ledgerHoldings.remove(missingContractId);
+        HoldingReconciliation.Result result = HoldingReconciliation.reconcile(store, source);
+        assertFalse(result.matches());
+        assertEquals(Set.of(missingHolding.instrumentId), result.mismatchingInstruments());
+        assertEquals(Map.of(missingContractId, missingHolding), result.onlyInStore());
+        assertEquals(Map.of(), result.onlyOnLedger());
+    }
+
+    /**
+     * Test that amounts that are rendered by the ledger with another scale than in the store are not reported as
+     * drifts, neither in the summaries of the instruments nor in the holdings of a mismatching instrument.
+     */
+    @Test
+    void testAmountsWithDifferentScales() throws Exception {
+        IntegrationStore store = SpliceTestCases.ingest(SpliceTestCases.read());
+        Map<String, HoldingView> ledgerHoldings = new HashMap<>();
+        store.getActiveHoldings().forEach((contractId, holding) -> ledgerHoldings.put(contractId, new HoldingView(
+                holding.owner, holding.instrumentId, holding.amount.setScale(holding.amount.scale() + 2), holding.lock, holding.meta)));
+        HoldingReconciliation.LedgerHoldingSource source = sourceOf(ledgerHoldings);
+        assertTrue(HoldingReconciliation.reconcile(store, source).matches());
+
+        // Drop a holding of the instrument with the most holdings, so that its other holdings are compared one by one
+        InstrumentId instrumentId = ledgerHoldings.values().stream()
+                .collect(Collectors.groupingBy(holding -> holding.instrumentId, Collectors.counting()))
+                .entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .orElseThrow()
+                .getKey();
+        String missingContractId = ledgerHoldings.entrySet().stream()
+                .filter(e -> e.getValue().instrumentId.equals(instrumentId))
+                .map(Map.Entry::getKey)
+                .min(Comparator.naturalOrder())
+                .orElseThrow();
+        ledgerHoldings.remove(missingContractId);
+        HoldingReconciliation.Result result = HoldingReconciliation.reconcile(store, source);
+        assertFalse(result.matches());
+        assertEquals(Set.of(instrumentId), result.mismatchingInstruments());
+        assertEquals(Map.of(missingContractId, store.getActiveHoldings().get(missingContractId)), result.onlyInStore());
+        assertEquals(Map.of(), result.onlyOnLedger());
+    }
+
+    private static HoldingReconciliation.LedgerHoldingSource sourceOf(Map<String, HoldingView> ledgerHoldings) {
+        return (activeAtOffset, instrumentIds) -> ledgerHoldings.entrySet().stream()
+                .filter(e -> instrumentIds == null || instrumentIds.contains(e.getValue().instrumentId))
+                .map(e -> new ContractAndId<>(e.getKey(), e.getValue()))
+                .toList();
+    }
+}
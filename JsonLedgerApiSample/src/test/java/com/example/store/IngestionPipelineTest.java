@@ -0,0 +1,50 @@
+package com.example.store;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngestionPipelineTest {
+
+    @Test
+    void testPipelinedIngestionMatchesSequentialIngestion() throws Exception {
+        List<JsGetUpdatesResponse> updates = SpliceTestCases.read();
+        IntegrationStore sequentialStore = SpliceTestCases.ingest(updates);
+
+        // Serve the updates in small pages, and use a small buffer to exercise the backpressure
+        int pageSize = 7;
+        IntegrationStore pipelinedStore = new IntegrationStore(SpliceTestCases.TREASURY_PARTY, -1L);
+        IngestionPipeline.UpdateSource source = beginAfterOffset -> {
+            int start = 0;
+            while (start < updates.size() && IntegrationStore.getUpdateOffset(updates.get(start).getUpdate()) <= beginAfterOffset) {
+                start++;
+            }
+            return updates.subList(start, Math.min(start + pageSize, updates.size()));
+        };
+        try (IngestionPipeline pipeline = new IngestionPipeline(pipelinedStore, 4, 3)) {
+            assertEquals(updates.size(), pipeline.ingestToEnd(source));
+        }
+        assertEquals(sequentialStore.toString(), pipelinedStore.toString());
+
+        // The published snapshot matches the state of the store
+        StoreSnapshot snapshot = pipelinedStore.getSnapshot();
+        assertEquals(pipelinedStore.getLastIngestedOffset(), snapshot.getLastIngestedOffset());
+        assertEquals(pipelinedStore.getActiveHoldings(), snapshot.getActiveHoldings());
+        assertEquals(pipelinedStore.getTxHistoryLog(), snapshot.getTxHistoryLog());
+
+        // Backfill the same updates using concurrently fetched offset ranges
+        long ledgerEnd = IntegrationStore.getUpdateOffset(updates.get(updates.size() - 1).getUpdate());
+        IntegrationStore backfilledStore = new IntegrationStore(SpliceTestCases.TREASURY_PARTY, -1L);
+        IngestionPipeline.RangeUpdateSource rangeSource = (beginAfterOffset, endInclusive) ->
+                source.fetchUpdates(beginAfterOffset).stream()
+                        .filter(response -> IntegrationStore.getUpdateOffset(response.getUpdate()) <= endInclusive)
+                        .toList();
+        try (IngestionPipeline pipeline = new IngestionPipeline(backfilledStore, 4, 3)) {
+            assertEquals(updates.size(), pipeline.backfill(rangeSource, ledgerEnd, 5, 3, 4));
+        }
+        assertEquals(sequentialStore.toString(), backfilledStore.toString());
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.store;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.store.models.TxHistoryEntry;
+import com.example.testdata.SyntheticUpdateGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class IngestionServiceTest {
+
+    private static final String TREASURY = "treasury::synthetic";
+    private static final int PAGE_SIZE = 10;
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+    /**
+     * A ledger to which the test appends updates, and whose pages can be held back until {@link #release} is called.
+     */
+    private static class FakeLedger implements IngestionPipeline.UpdateSource {
+        private final SyntheticUpdateGenerator generator =
+                new SyntheticUpdateGenerator(SyntheticUpdateGenerator.Config.defaults(TREASURY), 0L);
+        private final List<JsGetUpdatesResponse> updates = new CopyOnWriteArrayList<>();
+        private final CountDownLatch released;
+        volatile long ledgerEnd = 0;
+        volatile RuntimeException failure = null;
+
+        FakeLedger(boolean held) {
+            this.released = new CountDownLatch(held ? 1 : 0);
+        }
+
+        void append(int numUpdates) {
+            for (int i = 0; i < numUpdates; i++) {
+                updates.add(generator.next());
+            }
+            ledgerEnd = Math.max(ledgerEnd, generator.getLastOffset());
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public List<JsGetUpdatesResponse> fetchUpdates(long beginAfterOffset) throws Exception {
+            released.await();
+            if (failure != null) {
+                throw failure;
+            }
+            return updates.stream()
+                    .filter(response -> IntegrationStore.getUpdateOffset(response.getUpdate()) > beginAfterOffset)
+                    .limit(PAGE_SIZE)
+                    .toList();
+        }
+    }
+
+    private static void awaitCondition(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting until " + description);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static boolean hasServiceThread() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("ingestion-service") && thread.isAlive());
+    }
+
+    @Test
+    void testTailsUpdatesUntilStopped() throws Exception {
+        FakeLedger ledger = new FakeLedger(false);
+        ledger.append(95);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, 2, 16);
+             IngestionService service = new IngestionService(store, pipeline, ledger, () -> ledger.ledgerEnd, POLL_INTERVAL)) {
+            service.start();
+            assertTrue(service.isRunning());
+            assertThrows(IllegalStateException.class, service::start);
+            awaitCondition("the backlog is ingested", () -> service.getMetrics().lastIngestedOffset() == 95);
+
+            // New updates are picked up by polling
+            ledger.append(30);
+            awaitCondition("the new updates are ingested", () -> service.getMetrics().lastIngestedOffset() == 125);
+            IngestionService.Metrics metrics = service.getMetrics();
+            assertEquals(125, metrics.totalIngested());
+            assertEquals(125, store.getLastIngestedOffset());
+            assertNull(metrics.failure());
+            assertEquals(IngestionService.Mode.TAIL, metrics.mode());
+
+            service.stop();
+            assertFalse(service.isRunning());
+            assertFalse(hasServiceThread());
+
+            // Updates appended while stopped are ingested when resuming
+            ledger.append(5);
+            service.start();
+            awaitCondition("the service resumed", () -> service.getMetrics().lastIngestedOffset() == 130);
+        }
+        assertFalse(hasServiceThread());
+    }
+
+    @Test
+    void testReportsLag() throws Exception {
+        // The ledger end is ahead of the last update, as if the later updates were not visible to the treasury party
+        FakeLedger ledger = new FakeLedger(false);
+        ledger.append(40);
+        ledger.ledgerEnd = 1000;
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, 2, 16);
+             IngestionService service = new IngestionService(store, pipeline, ledger, () -> ledger.ledgerEnd, POLL_INTERVAL)) {
+            IngestionService.Metrics initial = service.getMetrics();
+            assertEquals(0, initial.lastIngestedOffset());
+            assertEquals(0, initial.totalIngested());
+
+            service.start();
+            awaitCondition("the updates are ingested", () -> service.getMetrics().lastIngestedOffset() == 40);
+            IngestionService.Metrics metrics = service.getMetrics();
+            assertEquals(1000, metrics.ledgerEnd());
+            assertEquals(960, metrics.offsetLag());
+            assertNotNull(metrics.recordTimeLag());
+        }
+    }
+
+    @Test
+    void testStopAtLeavesStoreAtOffset() throws Exception {
+        FakeLedger ledger = new FakeLedger(true);
+        ledger.append(100);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, 2, 16);
+             IngestionService service = new IngestionService(store, pipeline, ledger, () -> ledger.ledgerEnd, POLL_INTERVAL)) {
+            service.start();
+            // Set the stop offset while the first page is held back, so that the service cannot have passed it
+            Thread stopper = new Thread(() -> {
+                try {
+                    service.stopAt(42);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            stopper.start();
+            awaitCondition("stopAt waits for the service", () -> stopper.getState() == Thread.State.WAITING);
+            ledger.release();
+            stopper.join(Duration.ofSeconds(10).toMillis());
+            assertFalse(stopper.isAlive());
+
+            assertFalse(service.isRunning());
+            assertFalse(hasServiceThread());
+            assertEquals(42, store.getLastIngestedOffset());
+            assertEquals(42, service.getMetrics().totalIngested());
+        }
+    }
+
+    /**
+     * Test that resuming up to a new stop offset does not end at a page that was fetched ahead before the service
+     * was stopped, which is empty as there were no further updates at the time.
+     */
+    @Test
+    void testStopAtAfterResumingIgnoresStalePrefetchedPage() throws Exception {
+        FakeLedger ledger = new FakeLedger(false);
+        ledger.append(20);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        AtomicReference<CountDownLatch> ledgerEndReleased = new AtomicReference<>();
+        IngestionService.LedgerEndSource ledgerEnd = () -> {
+            ledgerEndReleased.get().await();
+            return ledger.ledgerEnd;
+        };
+        PrefetchingUpdateSource.PagedUpdateSource pages = (beginAfterOffset, limit) ->
+                new PrefetchingUpdateSource.Page(ledger.fetchUpdates(beginAfterOffset), 0);
+        try (PrefetchingUpdateSource source = new PrefetchingUpdateSource(pages, PrefetchingUpdateSource.PageSizeBounds.DEFAULT);
+             IngestionPipeline pipeline = new IngestionPipeline(store, 2, 16);
+             IngestionService service = new IngestionService(store, pipeline, source, ledgerEnd, POLL_INTERVAL)) {
+            // The last page prefetches the empty page after offset 20, which the stopping service does not request
+            resumeAndStopAt(service, 20, ledgerEndReleased);
+            assertEquals(20, store.getLastIngestedOffset());
+
+            // The first fetch after resuming would end the ingestion if it returned the stale page
+            ledger.append(10);
+            resumeAndStopAt(service, 30, ledgerEndReleased);
+            assertEquals(30, store.getLastIngestedOffset());
+            assertEquals(30, service.getMetrics().totalIngested());
+        }
+    }
+
+    /**
+     * Start the service and stop it at the given offset, holding back the first refresh of the ledger end until the
+     * stop offset is set.
+     */
+    private static void resumeAndStopAt(IngestionService service, long offset, AtomicReference<CountDownLatch> ledgerEndReleased) throws Exception {
+        ledgerEndReleased.set(new CountDownLatch(1));
+        service.start();
+        Thread stopper = new Thread(() -> {
+            try {
+                service.stopAt(offset);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopper.start();
+        awaitCondition("stopAt waits for the service", () -> stopper.getState() == Thread.State.WAITING);
+        ledgerEndReleased.get().countDown();
+        stopper.join(Duration.ofSeconds(10).toMillis());
+        assertFalse(stopper.isAlive());
+        assertFalse(service.isRunning());
+    }
+
+    @Test
+    void testFailureStopsService() throws Exception {
+        FakeLedger ledger = new FakeLedger(false);
+        ledger.append(20);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, 2, 16);
+             IngestionService service = new IngestionService(store, pipeline, ledger, () -> ledger.ledgerEnd, POLL_INTERVAL)) {
+            service.start();
+            awaitCondition("the updates are ingested", () -> service.getMetrics().lastIngestedOffset() == 20);
+            ledger.failure = new IllegalStateException("Ledger unavailable");
+            ledger.append(10);
+            awaitCondition("the service stopped", () -> !service.isRunning());
+            assertNotNull(service.getMetrics().failure());
+            assertEquals(20, store.getLastIngestedOffset());
+            awaitCondition("the service thread ended", () -> !hasServiceThread());
+        }
+    }
+
+    @Test
+    void testSwitchesBetweenCatchUpAndTailModes() throws Exception {
+        FakeLedger ledger = new FakeLedger(false);
+        ledger.append(200);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        List<IngestionService.Mode> modes = new CopyOnWriteArrayList<>();
+        IngestionService.CatchUpThresholds thresholds = new IngestionService.CatchUpThresholds(50, 5);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, 2, 16);
+             IngestionService service = new IngestionService(store, pipeline, ledger, () -> ledger.ledgerEnd, POLL_INTERVAL,
+                     thresholds, modes::add)) {
+            assertEquals(IngestionService.Mode.TAIL, service.getMetrics().mode());
+
+            // Catch up with the backlog, and switch back to tail mode close to the ledger end
+            service.start();
+            awaitCondition("the backlog is ingested", () -> service.getMetrics().lastIngestedOffset() == 200);
+            awaitCondition("the service switched to tail mode", () -> modes.size() == 2);
+            assertEquals(List.of(IngestionService.Mode.CATCH_UP, IngestionService.Mode.TAIL), modes);
+            assertEquals(IngestionService.Mode.TAIL, service.getMetrics().mode());
+            assertFalse(store.isCatchUpMode());
+
+            // The transactions ingested in catch-up mode are logged without their raw events
+            List<TxHistoryEntry> caughtUp = store.getTxHistoryLog().stream()
+                    .filter(entry -> entry.updateMetadata().offset() <= 100)
+                    .toList();
+            assertFalse(caughtUp.isEmpty());
+            assertTrue(caughtUp.stream().allMatch(entry -> entry.transactionEvents().isEmpty()));
+
+            // A new backlog while stopped switches to catch-up mode again when resuming
+            service.stop();
+            ledger.append(100);
+            service.start();
+            awaitCondition("the new backlog is ingested", () -> service.getMetrics().lastIngestedOffset() == 300);
+            awaitCondition("the service switched to tail mode", () -> modes.size() == 4);
+            assertEquals(List.of(IngestionService.Mode.CATCH_UP, IngestionService.Mode.TAIL,
+                    IngestionService.Mode.CATCH_UP, IngestionService.Mode.TAIL), modes);
+        }
+        assertFalse(store.isCatchUpMode());
+    }
+
+    @Test
+    void testWithoutThresholdsStaysInTailMode() throws Exception {
+        FakeLedger ledger = new FakeLedger(false);
+        ledger.append(200);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        List<IngestionService.Mode> modes = new CopyOnWriteArrayList<>();
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, 2, 16);
+             IngestionService service = new IngestionService(store, pipeline, ledger, () -> ledger.ledgerEnd, POLL_INTERVAL,
+                     null, modes::add)) {
+            service.start();
+            awaitCondition("the backlog is ingested", () -> service.getMetrics().lastIngestedOffset() == 200);
+        }
+        assertEquals(List.of(), modes);
+        assertTrue(store.getTxHistoryLog().stream().allMatch(entry -> !entry.transactionEvents().isEmpty()));
+    }
+
+    @Test
+    void testCatchUpModeDoesNotRetainTransactionEvents() {
+        SyntheticUpdateGenerator generator = new SyntheticUpdateGenerator(SyntheticUpdateGenerator.Config.defaults(TREASURY), 0L);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        store.setCatchUpMode(true);
+        generator.stream(50).forEach(response -> store.ingestUpdate(response.getUpdate()));
+        int numCaughtUp = store.getTxHistoryLog().size();
+        store.setCatchUpMode(false);
+        generator.stream(50).forEach(response -> store.ingestUpdate(response.getUpdate()));
+
+        List<TxHistoryEntry> history = store.getTxHistoryLog();
+        assertTrue(numCaughtUp > 0 && history.size() > numCaughtUp);
+        assertTrue(history.subList(0, numCaughtUp).stream().allMatch(entry -> entry.transactionEvents().isEmpty()));
+        assertTrue(history.subList(numCaughtUp, history.size()).stream().allMatch(entry -> !entry.transactionEvents().isEmpty()));
+    }
+}
@@ -2,6 +2,8 @@ package com.example.store;
 
 import com.example.GsonTypeAdapters.ExtendedJson;
 import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.services.Ledger;
+import com.example.services.Wallet;
 import com.example.store.models.TxHistoryEntry;
 import com.example.testdata.TestFiles;
 import com.example.testdata.TestIdentities;
@@ -11,8 +13,12 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import splice.api.token.holdingv1.HoldingView;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -191,6 +197,15 @@ class IntegrationStoreTest {
         }
     }
 
+    private static String exportJson(IntegrationStore store, IntegrationStore.ExportOptions options) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            store.writeJson(out, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
 
     private IntegrationStore testGolden(String baseName, String treasuryPartyId) {
         String treasuryHint = treasuryPartyId.substring(0, treasuryPartyId.indexOf(':'));
@@ -238,8 +253,12 @@ class IntegrationStoreTest {
             }
         }
 
+        // the streaming export produces the same JSON as toString()
+        assertEquals(compactStore.toString(), exportJson(store, new IntegrationStore.ExportOptions(true, true, true, false, true)));
+
         // write and compare test files
         String storeJson = store.toString();
+        assertEquals(storeJson, exportJson(store, IntegrationStore.ExportOptions.FULL));
         try {
             Files.writeString(actualStoreFile, storeJson);
         } catch (Exception e) {
@@ -0,0 +1,49 @@
+package com.example.store;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.client.ledger.model.Update;
+import org.junit.jupiter.api.Test;
+import splice.api.token.holdingv1.HoldingView;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JdbcUtxoStoreTest {
+
+    @Test
+    void testMatchesInMemoryStore() throws Exception {
+        List<JsGetUpdatesResponse> updates = SpliceTestCases.read();
+        IntegrationStore store = SpliceTestCases.ingest(updates);
+
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:integration-store")) {
+            JdbcUtxoStore jdbcStore = new JdbcUtxoStore(connection, SpliceTestCases.TREASURY_PARTY, -1L);
+            List<Update> batch = new ArrayList<>();
+            for (JsGetUpdatesResponse updateResponse : updates) {
+                batch.add(updateResponse.getUpdate());
+                if (batch.size() == 7) {
+                    jdbcStore.ingestUpdates(batch);
+                    batch.clear();
+                }
+            }
+            jdbcStore.ingestUpdates(batch);
+
+            assertEquals(store.getLastIngestedOffset(), jdbcStore.getLastIngestedOffset());
+            assertEquals(store.getActiveHoldings().size(), jdbcStore.getNumActiveHoldings());
+            assertEquals(store.getTxHistoryLog().size(), jdbcStore.getNumTxHistoryEntries());
+            for (Map.Entry<String, HoldingView> holding : store.getActiveHoldings().entrySet()) {
+                assertEquals(holding.getValue().toJson(), jdbcStore.lookupHoldingById(holding.getKey()).orElseThrow().toJson());
+            }
+
+            // Re-applying already committed updates is a no-op, also after reopening the store
+            JdbcUtxoStore reopenedStore = new JdbcUtxoStore(connection, SpliceTestCases.TREASURY_PARTY, -1L);
+            reopenedStore.ingestUpdates(updates.stream().map(JsGetUpdatesResponse::getUpdate).toList());
+            assertEquals(store.getLastIngestedOffset(), reopenedStore.getLastIngestedOffset());
+            assertEquals(store.getTxHistoryLog().size(), reopenedStore.getNumTxHistoryEntries());
+        }
+    }
+}
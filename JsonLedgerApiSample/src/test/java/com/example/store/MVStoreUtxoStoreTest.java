@@ -0,0 +1,125 @@
+package com.example.store;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.client.ledger.model.Update;
+import com.example.store.models.TxHistoryEntry;
+import com.example.testdata.SyntheticUpdateGenerator;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MVStoreUtxoStoreTest {
+
+    private static final String TREASURY = "treasury::synthetic";
+    private static final int COMMIT_INTERVAL = 5;
+
+    /**
+     * Test that when an update fails to be ingested in the middle of a commit interval, the updates before it are
+     * kept, so that resuming after the last ingested offset returns every history entry exactly once.
+     */
+    @Test
+    void testFailedUpdateDoesNotDuplicateEntries(@TempDir Path tempDir) {
+        List<JsonObject> updates = new ArrayList<>();
+        SyntheticUpdateGenerator generator = new SyntheticUpdateGenerator(SyntheticUpdateGenerator.Config.defaults(TREASURY), 0L);
+        for (int i = 0; i < 200; i++) {
+            updates.add(generator.nextJson());
+        }
+
+        // Corrupt the transfer argument of a transaction that is not the first one after a commit
+        int failed = -1;
+        JsonObject corrupted = null;
+        for (int i = updates.size() / 2; i < updates.size() && failed < 0; i++) {
+            if (i % COMMIT_INTERVAL < 2) {
+                continue;
+            }
+            JsonObject copy = updates.get(i).deepCopy();
+            for (JsonElement event : copy.getAsJsonObject("update").getAsJsonObject("Transaction").getAsJsonObject("value").getAsJsonArray("events")) {
+                JsonObject exercised = event.getAsJsonObject().getAsJsonObject("ExercisedEvent");
+                if (exercised != null && exercised.get("choice").getAsString().equals("TransferFactory_Transfer")) {
+                    exercised.add("choiceArgument", new JsonObject());
+                    failed = i;
+                    corrupted = copy;
+                    break;
+                }
+            }
+        }
+        assertTrue(failed > 0, "No transfer found");
+
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        for (JsonObject update : updates) {
+            store.ingestUpdate(toUpdate(update));
+        }
+
+        List<TxHistoryEntry> entries = new ArrayList<>();
+        try (MVStoreUtxoStore utxoStore = MVStoreUtxoStore.open(tempDir.resolve("utxo.mv.db"), TREASURY, 0L, COMMIT_INTERVAL)) {
+            for (JsonObject update : updates.subList(0, failed)) {
+                entries.addAll(utxoStore.ingestUpdate(toUpdate(update)));
+            }
+            Update corruptedUpdate = toUpdate(corrupted);
+            assertThrows(RuntimeException.class, () -> utxoStore.ingestUpdate(corruptedUpdate));
+            long lastIngestedOffset = IntegrationStore.getUpdateOffset(toUpdate(updates.get(failed - 1)));
+            assertEquals(lastIngestedOffset, utxoStore.getLastIngestedOffset());
+
+            // Resume with the intact update
+            for (JsonObject update : updates) {
+                Update update0 = toUpdate(update);
+                if (IntegrationStore.getUpdateOffset(update0) > utxoStore.getLastIngestedOffset()) {
+                    entries.addAll(utxoStore.ingestUpdate(update0));
+                }
+            }
+
+            assertEquals(store.getLastIngestedOffset(), utxoStore.getLastIngestedOffset());
+            assertEquals(entryIds(store.getTxHistoryLog()), entryIds(entries));
+            assertEquals(store.getActiveHoldings().size(), utxoStore.getNumActiveHoldings());
+            store.getActiveHoldings().forEach((contractId, holding) ->
+                    assertEquals(holding.toJson(), utxoStore.lookupHoldingById(contractId).orElseThrow().toJson()));
+        }
+    }
+
+    /**
+     * Test that ingesting the golden updates in two sessions of the same file ends with the holdings of the in-memory
+     * store.
+     */
+    @Test
+    void testMatchesInMemoryStore(@TempDir Path tempDir) {
+        List<JsGetUpdatesResponse> updates = SpliceTestCases.read();
+        IntegrationStore store = SpliceTestCases.ingest(updates);
+
+        // Ingest the first half, and resume the ingestion of the second half after reopening the store
+        Path file = tempDir.resolve("utxo.mv.db");
+        int half = updates.size() / 2;
+        try (MVStoreUtxoStore utxoStore = MVStoreUtxoStore.open(file, SpliceTestCases.TREASURY_PARTY, -1L, COMMIT_INTERVAL)) {
+            for (JsGetUpdatesResponse updateResponse : updates.subList(0, half)) {
+                utxoStore.ingestUpdate(updateResponse.getUpdate());
+            }
+        }
+        try (MVStoreUtxoStore utxoStore = MVStoreUtxoStore.open(file, SpliceTestCases.TREASURY_PARTY, -1L, COMMIT_INTERVAL)) {
+            assertEquals(IntegrationStore.getUpdateOffset(updates.get(half - 1).getUpdate()), utxoStore.getLastIngestedOffset());
+            for (JsGetUpdatesResponse updateResponse : updates.subList(half, updates.size())) {
+                utxoStore.ingestUpdate(updateResponse.getUpdate());
+            }
+            assertEquals(store.getLastIngestedOffset(), utxoStore.getLastIngestedOffset());
+            assertEquals(store.getActiveHoldings().size(), utxoStore.getNumActiveHoldings());
+            store.getActiveHoldings().forEach((contractId, holding) ->
+                    assertEquals(holding.toJson(), utxoStore.lookupHoldingById(contractId).orElseThrow().toJson()));
+        }
+    }
+
+    private static List<String> entryIds(List<TxHistoryEntry> entries) {
+        return entries.stream().map(entry -> entry.updateMetadata().updateId() + "/" + entry.exerciseNodeId()).toList();
+    }
+
+    private static Update toUpdate(JsonObject json) {
+        return ExtendedJson.gson.fromJson(json, JsGetUpdatesResponse.class).getUpdate();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.store;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.testdata.SyntheticUpdateGenerator;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiPartyIntegrationStoreTest {
+
+    private static final String PARTY_A = "treasury-a::synthetic";
+    private static final String PARTY_B = "treasury-b::synthetic";
+
+    /**
+     * Test that routing the updates read on behalf of two treasury parties to their shards results in the same stores
+     * as reading the updates of each party on its own.
+     */
+    @Test
+    void testRoutingMatchesSinglePartyStores() throws Exception {
+        SyntheticUpdateGenerator generatorA = new SyntheticUpdateGenerator(config(PARTY_A, 1L), 0L);
+        SyntheticUpdateGenerator generatorB = new SyntheticUpdateGenerator(config(PARTY_B, 2L), 0L);
+
+        // Each transaction has the events of both parties, as if both took part in it
+        List<JsonObject> transactions = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            transactions.add(merge(generatorA.nextJson(), generatorB.nextJson()));
+        }
+
+        IntegrationStore storeA = new IntegrationStore(PARTY_A, 0L);
+        IntegrationStore storeB = new IntegrationStore(PARTY_B, 0L);
+        for (JsonObject tx : transactions) {
+            storeA.ingestUpdate(toResponse(visibleTo(tx, PARTY_A)).getUpdate());
+            storeB.ingestUpdate(toResponse(visibleTo(tx, PARTY_B)).getUpdate());
+        }
+
+        try (MultiPartyIntegrationStore store = new MultiPartyIntegrationStore(List.of(PARTY_A, PARTY_B), 0L, 2)) {
+            // Ingest in pages, as read from the ledger on behalf of both parties
+            for (int start = 0; start < transactions.size(); start += 64) {
+                store.ingestUpdates(transactions.subList(start, Math.min(start + 64, transactions.size())).stream()
+                        .map(MultiPartyIntegrationStoreTest::toResponse)
+                        .toList());
+            }
+            assertEquals(List.of(PARTY_A, PARTY_B), store.getTreasuryParties());
+            assertEquals(generatorA.getLastOffset(), store.getLastIngestedOffset());
+            assertTrue(storeA.getActiveHoldings().size() > 0);
+            assertTrue(storeB.getActiveHoldings().size() > 0);
+            assertEquals(storeA.toString(), store.getShard(PARTY_A).toString());
+            assertEquals(storeB.toString(), store.getShard(PARTY_B).toString());
+            assertThrows(IllegalArgumentException.class, () -> store.getShard("unknown::party"));
+        }
+    }
+
+    private static SyntheticUpdateGenerator.Config config(String treasuryParty, long seed) {
+        SyntheticUpdateGenerator.Config defaults = SyntheticUpdateGenerator.Config.defaults(treasuryParty);
+        return new SyntheticUpdateGenerator.Config(treasuryParty, defaults.numParties(), 20, 4, defaults.mix(), seed);
+    }
+
+    private static JsonObject transaction(JsonObject response) {
+        return response.getAsJsonObject("update").getAsJsonObject("Transaction").getAsJsonObject("value");
+    }
+
+    private static JsonObject eventValue(JsonElement event) {
+        return event.getAsJsonObject().entrySet().iterator().next().getValue().getAsJsonObject();
+    }
+
+    /**
+     * Append the events of the second transaction to the first one, which has the same offset, renumbering their node IDs.
+     */
+    private static JsonObject merge(JsonObject first, JsonObject second) {
+        JsonArray events = transaction(first).getAsJsonArray("events");
+        int shift = events.size();
+        for (JsonElement event : transaction(second).getAsJsonArray("events")) {
+            JsonObject value = eventValue(event);
+            value.addProperty("nodeId", value.get("nodeId").getAsInt() + shift);
+            if (value.has("lastDescendantNodeId")) {
+                value.addProperty("lastDescendantNodeId", value.get("lastDescendantNodeId").getAsInt() + shift);
+            }
+            events.add(event);
+        }
+        return first;
+    }
+
+    /**
+     * The transaction as served when reading on behalf of the given party alone.
+     */
+    private static JsonObject visibleTo(JsonObject response, String party) {
+        JsonObject copy = response.deepCopy();
+        JsonArray visibleEvents = new JsonArray();
+        for (JsonElement event : transaction(copy).getAsJsonArray("events")) {
+            if (eventValue(event).getAsJsonArray("witnessParties").asList().stream().anyMatch(p -> p.getAsString().equals(party))) {
+                visibleEvents.add(event);
+            }
+        }
+        transaction(copy).add("events", visibleEvents);
+        return copy;
+    }
+
+    private static JsGetUpdatesResponse toResponse(JsonObject json) {
+        return ExtendedJson.gson.fromJson(json, JsGetUpdatesResponse.class);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.store;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefetchingUpdateSourceTest {
+
+    private static final PrefetchingUpdateSource.PageSizeBounds BOUNDS =
+            new PrefetchingUpdateSource.PageSizeBounds(10, 80, Duration.ofSeconds(10), 1000);
+
+    /**
+     * Serves offset checkpoints up to the ledger end, and reports the pages that begin after {@code largeAfterOffset}
+     * as larger than the maximal page size in bytes. The byte count depends on the offset rather than on the time of
+     * the request, so that the prefetched pages see the same sizes in each run.
+     */
+    private static class FakePages implements PrefetchingUpdateSource.PagedUpdateSource {
+        final List<Long> limits = new CopyOnWriteArrayList<>();
+        final long ledgerEnd;
+        final long largeAfterOffset;
+
+        FakePages(long ledgerEnd, long largeAfterOffset) {
+            this.ledgerEnd = ledgerEnd;
+            this.largeAfterOffset = largeAfterOffset;
+        }
+
+        @Override
+        public PrefetchingUpdateSource.Page fetchPage(long beginAfterOffset, long limit) {
+            limits.add(limit);
+            List<JsGetUpdatesResponse> updates = new ArrayList<>();
+            for (long offset = beginAfterOffset + 1; offset <= Math.min(ledgerEnd, beginAfterOffset + limit); offset++) {
+                updates.add(offsetCheckpoint(offset));
+            }
+            long responseBytes = beginAfterOffset >= largeAfterOffset ? 2 * BOUNDS.maxPageBytes() : 100;
+            return new PrefetchingUpdateSource.Page(updates, responseBytes);
+        }
+    }
+
+    private static JsGetUpdatesResponse offsetCheckpoint(long offset) {
+        String json = "{\"update\": {\"OffsetCheckpoint\": {\"value\": {\"offset\": " + offset + ", \"synchronizerTimes\": []}}}}";
+        return ExtendedJson.gson.fromJson(json, JsGetUpdatesResponse.class);
+    }
+
+    /**
+     * Fetch {@code numPages} pages in sequence, checking that they are contiguous.
+     */
+    private static void fetchPages(PrefetchingUpdateSource source, int numPages) throws Exception {
+        long lastOffset = 0;
+        for (int i = 0; i < numPages; i++) {
+            List<JsGetUpdatesResponse> updates = source.fetchUpdates(lastOffset);
+            for (JsGetUpdatesResponse update : updates) {
+                assertEquals(lastOffset + 1, IntegrationStore.getUpdateOffset(update.getUpdate()));
+                lastOffset++;
+            }
+        }
+    }
+
+    @Test
+    void testPageSizeGrowsOnFullPagesAndShrinksOnLargePages() throws Exception {
+        // The pages of 10, 20, 40 and 80 updates end at offset 150, and the pages after it are too large
+        FakePages pages = new FakePages(Long.MAX_VALUE, 150);
+        try (PrefetchingUpdateSource source = new PrefetchingUpdateSource(pages, BOUNDS)) {
+            fetchPages(source, 9);
+        }
+        assertTrue(pages.limits.size() >= 9, "Fetched " + pages.limits);
+        assertEquals(List.of(10L, 20L, 40L, 80L, 80L, 40L, 20L, 10L, 10L), pages.limits.subList(0, 9));
+    }
+
+    @Test
+    void testPageSizeDoesNotGrowOnPartialPages() throws Exception {
+        // The second page only has 15 of 20 updates, as it reaches the ledger end
+        FakePages pages = new FakePages(25, Long.MAX_VALUE);
+        try (PrefetchingUpdateSource source = new PrefetchingUpdateSource(pages, BOUNDS)) {
+            fetchPages(source, 3);
+        }
+        assertEquals(List.of(10L, 20L, 20L), pages.limits);
+    }
+
+    @Test
+    void testPageSizeBoundsChangeTakesEffectOnNextPage() throws Exception {
+        FakePages pages = new FakePages(Long.MAX_VALUE, Long.MAX_VALUE);
+        try (PrefetchingUpdateSource source = new PrefetchingUpdateSource(pages, BOUNDS)) {
+            List<JsGetUpdatesResponse> first = source.fetchUpdates(0);
+            assertEquals(10, first.size());
+            source.setPageSizeBounds(new PrefetchingUpdateSource.PageSizeBounds(50, 100, Duration.ofSeconds(10), 1000));
+            // The second page may have been prefetched with the old bounds, the third one is requested with the new ones
+            List<JsGetUpdatesResponse> second = source.fetchUpdates(10);
+            List<JsGetUpdatesResponse> third = source.fetchUpdates(10 + second.size());
+            assertTrue(third.size() >= 50, "Third page has " + third.size() + " updates");
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.store;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.testdata.TestFiles;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The updates of the splice-test-cases golden test, which the tests of the ingestion paths and the store
+ * implementations compare against the sequentially ingested in-memory store.
+ */
+final class SpliceTestCases {
+
+    static final String TREASURY_PARTY = "treasury::normalized";
+
+    private SpliceTestCases() {
+    }
+
+    static List<JsGetUpdatesResponse> read() {
+        Path file = TestFiles.GOLDEN_TEST_DIR.resolve("splice-test-cases.json");
+        try {
+            return ExtendedJson.gson.fromJson(Files.readString(file), new TypeToken<List<JsGetUpdatesResponse>>() {
+            }.getType());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read " + file, ex);
+        }
+    }
+
+    /**
+     * An in-memory store of {@link #TREASURY_PARTY} that ingested the updates one by one. The offsets of the
+     * normalized test data start at 0, so the store starts after offset -1.
+     */
+    static IntegrationStore ingest(List<JsGetUpdatesResponse> updates) {
+        IntegrationStore store = new IntegrationStore(TREASURY_PARTY, -1L);
+        for (JsGetUpdatesResponse updateResponse : updates) {
+            store.ingestUpdate(updateResponse.getUpdate());
+        }
+        return store;
+    }
+}
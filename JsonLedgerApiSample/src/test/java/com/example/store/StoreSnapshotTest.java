@@ -0,0 +1,159 @@
+package com.example.store;
+
+import com.example.store.models.TxHistoryEntry;
+import com.example.testdata.SyntheticUpdateGenerator;
+import org.junit.jupiter.api.Test;
+import splice.api.token.holdingv1.HoldingView;
+import splice.api.token.transferinstructionv1.TransferInstructionView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreSnapshotTest {
+
+    private static final String TREASURY = "treasury::synthetic";
+
+    // A key with a configurable hash, to exercise keys whose hashes collide
+    private record Key(int id, int hash) {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Test
+    void testPersistentHashMapMatchesHashMap() {
+        Random random = new Random(42);
+        for (int numHashes : List.of(7, 1000, Integer.MAX_VALUE)) {
+            HashMap<Key, Integer> expected = new HashMap<>();
+            PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+            List<PersistentHashMap<Key, Integer>> versions = new ArrayList<>();
+            List<Map<Key, Integer>> expectedVersions = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                int id = random.nextInt(3000);
+                Key key = new Key(id, Integer.hashCode(id) % numHashes * 0x9E3779B9);
+                if (random.nextInt(3) == 0) {
+                    expected.remove(key);
+                    map = map.without(key);
+                } else {
+                    int value = random.nextInt();
+                    expected.put(key, value);
+                    map = map.with(key, value);
+                }
+                if (i % 1000 == 0) {
+                    versions.add(map);
+                    expectedVersions.add(new HashMap<>(expected));
+                }
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected, map);
+            assertEquals(map, expected);
+            assertEquals(expected.hashCode(), map.hashCode());
+            for (Map.Entry<Key, Integer> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), map.get(entry.getKey()));
+            }
+            assertNull(map.get(new Key(-1, 0)));
+            // Earlier versions are not affected by later changes
+            assertEquals(expectedVersions, versions);
+
+            for (Key key : expected.keySet()) {
+                map = map.without(key);
+            }
+            assertEquals(0, map.size());
+            assertTrue(map.isEmpty() && !map.entrySet().iterator().hasNext());
+        }
+    }
+
+    @Test
+    void testOldSnapshotIsUnchangedByLaterUpdates() {
+        SyntheticUpdateGenerator generator = new SyntheticUpdateGenerator(SyntheticUpdateGenerator.Config.defaults(TREASURY), 0L);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        IntegrationStore storeAtSnapshot = new IntegrationStore(TREASURY, 0L);
+        generator.stream(300).forEach(response -> {
+            store.ingestUpdate(response.getUpdate());
+            storeAtSnapshot.ingestUpdate(response.getUpdate());
+        });
+
+        StoreSnapshot snapshot = store.getSnapshot();
+        Map<String, HoldingView> holdings = new HashMap<>(snapshot.getActiveHoldings());
+        Map<String, TransferInstructionView> instructions = new HashMap<>(snapshot.getPendingTransferInstructions());
+        List<TxHistoryEntry> history = new ArrayList<>(snapshot.getTxHistoryLog());
+        String holdingId = holdings.keySet().iterator().next();
+
+        generator.stream(1000).forEach(response -> store.ingestUpdate(response.getUpdate()));
+
+        assertEquals(300, snapshot.getLastIngestedOffset());
+        assertEquals(holdings, snapshot.getActiveHoldings());
+        assertEquals(instructions, snapshot.getPendingTransferInstructions());
+        assertEquals(history, snapshot.getTxHistoryLog());
+        assertEquals(holdings.get(holdingId), snapshot.lookupHoldingById(holdingId).orElseThrow());
+        assertEquals(storeAtSnapshot.getActiveHoldings(), snapshot.getActiveHoldings());
+        assertEquals(storeAtSnapshot.getTxHistoryLog(), snapshot.getTxHistoryLog());
+
+        // The latest snapshot has the later updates
+        StoreSnapshot latest = store.getSnapshot();
+        assertEquals(1300, latest.getLastIngestedOffset());
+        assertEquals(store.getActiveHoldings(), latest.getActiveHoldings());
+        assertEquals(store.getTxHistoryLog(), latest.getTxHistoryLog());
+    }
+
+    @Test
+    void testReadsRunConcurrentlyWithIngestion() throws Exception {
+        SyntheticUpdateGenerator generator = new SyntheticUpdateGenerator(SyntheticUpdateGenerator.Config.defaults(TREASURY), 0L);
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+        AtomicLong numReads = new AtomicLong();
+
+        Thread reader = new Thread(() -> {
+            long lastOffset = 0;
+            int lastHistorySize = 0;
+            try {
+                while (!done.get()) {
+                    StoreSnapshot snapshot = store.getSnapshot();
+                    assertTrue(snapshot.getLastIngestedOffset() >= lastOffset);
+                    List<TxHistoryEntry> history = snapshot.getTxHistoryLog();
+                    assertTrue(history.size() >= lastHistorySize);
+                    if (!history.isEmpty()) {
+                        assertTrue(history.get(history.size() - 1).updateMetadata().offset() <= snapshot.getLastIngestedOffset());
+                    }
+                    int numHoldings = 0;
+                    for (Map.Entry<String, HoldingView> holding : snapshot.getActiveHoldings().entrySet()) {
+                        assertEquals(holding.getValue(), snapshot.lookupHoldingById(holding.getKey()).orElseThrow());
+                        numHoldings++;
+                    }
+                    assertEquals(snapshot.getActiveHoldings().size(), numHoldings);
+                    lastOffset = snapshot.getLastIngestedOffset();
+                    lastHistorySize = history.size();
+                    numReads.incrementAndGet();
+                }
+            } catch (Throwable ex) {
+                readerFailure.set(ex);
+            }
+        });
+        reader.start();
+        try {
+            generator.stream(3000).forEach(response -> store.ingestUpdate(response.getUpdate()));
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+
+        assertNull(readerFailure.get());
+        assertTrue(numReads.get() > 0);
+        StoreSnapshot snapshot = store.getSnapshot();
+        assertEquals(store.getLastIngestedOffset(), snapshot.getLastIngestedOffset());
+        assertEquals(store.getActiveHoldings(), snapshot.getActiveHoldings());
+        assertEquals(store.getTxHistoryLog(), snapshot.getTxHistoryLog());
+    }
+}
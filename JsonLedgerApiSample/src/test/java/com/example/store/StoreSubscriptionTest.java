@@ -0,0 +1,123 @@
+package com.example.store;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreSubscriptionTest {
+
+    @Test
+    void testSubscriptionReplaysStoreChanges() throws Exception {
+        List<JsGetUpdatesResponse> updates = SpliceTestCases.read();
+        IntegrationStore store = new IntegrationStore(SpliceTestCases.TREASURY_PARTY, -1L);
+        Map<String, HoldingView> replayedHoldings = new HashMap<>();
+        int numHistoryEntries = 0;
+        try (StoreSubscription subscription = store.subscribe(updates.size() * 100, StoreSubscription.OverflowPolicy.DISCONNECT)) {
+            for (JsGetUpdatesResponse updateResponse : updates) {
+                store.ingestUpdate(updateResponse.getUpdate());
+            }
+            StoreChange change;
+            while ((change = subscription.poll(Duration.ZERO)) != null) {
+                if (change instanceof StoreChange.HoldingAdded added) {
+                    replayedHoldings.put(added.contractId(), added.holding());
+                } else if (change instanceof StoreChange.HoldingRemoved removed) {
+                    replayedHoldings.remove(removed.contractId());
+                } else if (change instanceof StoreChange.HistoryEntryAppended) {
+                    numHistoryEntries++;
+                }
+            }
+            assertFalse(subscription.isOverflowed());
+        }
+        assertEquals(store.getActiveHoldings(), replayedHoldings);
+        assertEquals(store.getTxHistoryLog().size(), numHistoryEntries);
+    }
+
+    /**
+     * Test that a subscriber that reads the snapshot on receiving a change observes the state after that change.
+     */
+    @Test
+    void testChangesAreDeliveredAfterTheirSnapshot() throws Exception {
+        List<JsGetUpdatesResponse> updates = SpliceTestCases.read();
+        IntegrationStore store = new IntegrationStore(SpliceTestCases.TREASURY_PARTY, -1L);
+        StoreSubscription subscription = store.subscribe(1, StoreSubscription.OverflowPolicy.BLOCK);
+        CompletableFuture<List<String>> inconsistencies = CompletableFuture.supplyAsync(() -> {
+            List<String> found = new ArrayList<>();
+            try {
+                StoreChange change;
+                while ((change = subscription.poll(Duration.ofMillis(100))) != null || !subscription.isClosed()) {
+                    if (change == null) {
+                        continue;
+                    }
+                    long snapshotOffset = store.getSnapshot().getLastIngestedOffset();
+                    if (snapshotOffset < change.offset()) {
+                        found.add(change + " delivered with the snapshot at offset " + snapshotOffset);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return found;
+        });
+        for (JsGetUpdatesResponse updateResponse : updates) {
+            store.ingestUpdate(updateResponse.getUpdate());
+        }
+        subscription.close();
+        assertEquals(List.of(), inconsistencies.get(30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test that the changes applied by a transaction that fails to be parsed are not delivered.
+     */
+    @Test
+    void testChangesOfFailedTransactionAreNotDelivered() throws Exception {
+        List<JsGetUpdatesResponse> updates = SpliceTestCases.read();
+        int failed = -1;
+        JsonObject corrupted = null;
+        for (int i = 0; i < updates.size() && failed < 0; i++) {
+            JsonObject json = ExtendedJson.gson.toJsonTree(updates.get(i)).getAsJsonObject();
+            JsonObject transaction = json.getAsJsonObject("update").getAsJsonObject("Transaction");
+            if (transaction == null) {
+                continue;
+            }
+            for (JsonElement event : transaction.getAsJsonObject("value").getAsJsonArray("events")) {
+                JsonObject exercised = event.getAsJsonObject().getAsJsonObject("ExercisedEvent");
+                if (exercised != null && exercised.get("choice").getAsString().equals("TransferFactory_Transfer")) {
+                    exercised.add("choiceArgument", new JsonObject());
+                    failed = i;
+                    corrupted = json;
+                    break;
+                }
+            }
+        }
+        assertTrue(failed > 0, "No transfer found");
+
+        IntegrationStore store = new IntegrationStore(SpliceTestCases.TREASURY_PARTY, -1L);
+        try (StoreSubscription subscription = store.subscribe(updates.size() * 100, StoreSubscription.OverflowPolicy.DISCONNECT)) {
+            for (JsGetUpdatesResponse updateResponse : updates.subList(0, failed)) {
+                store.ingestUpdate(updateResponse.getUpdate());
+            }
+            while (subscription.poll(Duration.ZERO) != null) {
+                // Skip the changes of the transactions before the failed one
+            }
+            JsGetUpdatesResponse failedUpdate = ExtendedJson.gson.fromJson(corrupted, JsGetUpdatesResponse.class);
+            assertThrows(RuntimeException.class, () -> store.ingestUpdate(failedUpdate.getUpdate()));
+            assertNull(subscription.poll(Duration.ZERO));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.store;
+
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.testdata.SyntheticUpdateGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateArchiveTest {
+
+    private static final String TREASURY = "treasury::synthetic";
+
+    @Test
+    void testUpdateArchiveReplay(@TempDir Path tempDir) throws Exception {
+        List<JsGetUpdatesResponse> updates = SpliceTestCases.read();
+        IntegrationStore store = SpliceTestCases.ingest(updates);
+
+        // Archive the updates in two sessions, the second one resuming after the last archived update
+        Path file = tempDir.resolve("updates.ndjson.gz");
+        int half = updates.size() / 2;
+        try (UpdateArchive.Writer writer = UpdateArchive.Writer.open(file, -1L)) {
+            for (JsGetUpdatesResponse updateResponse : updates.subList(0, half)) {
+                writer.append(updateResponse);
+            }
+        }
+        try (UpdateArchive.Writer writer = UpdateArchive.Writer.open(file, -1L)) {
+            assertEquals(IntegrationStore.getUpdateOffset(updates.get(half - 1).getUpdate()), writer.getLastOffset());
+            List<JsGetUpdatesResponse> remaining = updates.subList(half, updates.size());
+            assertEquals(remaining.size(), writer.appendFrom(offset -> offset < store.getLastIngestedOffset() ? remaining : List.of()));
+        }
+
+        IntegrationStore replayedStore = new IntegrationStore(SpliceTestCases.TREASURY_PARTY, -1L);
+        assertEquals(updates.size(), UpdateArchive.replay(file, replayedStore));
+        assertEquals(store.toString(), replayedStore.toString());
+    }
+
+    /**
+     * Test that an archive whose writer was not closed can be read up to its last flushed page, and reopened for
+     * appending the remaining updates.
+     */
+    @Test
+    void testReopenArchiveThatWasNotClosed(@TempDir Path tempDir) throws Exception {
+        List<JsGetUpdatesResponse> updates = new SyntheticUpdateGenerator(SyntheticUpdateGenerator.Config.defaults(TREASURY), 0L)
+                .stream(300).toList();
+        int half = updates.size() / 2;
+        IntegrationStore store = new IntegrationStore(TREASURY, 0L);
+        updates.forEach(update -> store.ingestUpdate(update.getUpdate()));
+
+        for (String fileName : List.of("updates.ndjson.gz", "updates.ndjson")) {
+            Path file = tempDir.resolve(fileName);
+            Path crashed = tempDir.resolve("crashed-" + fileName);
+            UpdateArchive.Writer writer = UpdateArchive.Writer.open(file, 0L);
+            List<JsGetUpdatesResponse> firstHalf = updates.subList(0, half);
+            writer.appendFrom(offset -> offset == 0L ? firstHalf : List.of());
+            // Copy the archive as the writer left it, without the gzip trailer
+            Files.copy(file, crashed);
+            writer.close();
+            if (fileName.endsWith(".ndjson")) {
+                Files.writeString(crashed, "{\"update\":{\"Transaction\":{\"value\":{\"offset\":", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            }
+
+            // A follower reads the flushed updates
+            List<JsGetUpdatesResponse> read = new ArrayList<>();
+            try (UpdateArchive.Reader reader = UpdateArchive.Reader.open(crashed)) {
+                reader.forEachRemaining(read::add);
+                assertTrue(reader.isTruncated());
+            }
+            assertEquals(firstHalf.stream().map(JsGetUpdatesResponse::toJson).toList(), read.stream().map(JsGetUpdatesResponse::toJson).toList());
+
+            // Reopening the archive resumes after the last complete update
+            try (UpdateArchive.Writer resumed = UpdateArchive.Writer.open(crashed, 0L)) {
+                assertEquals(IntegrationStore.getUpdateOffset(updates.get(half - 1).getUpdate()), resumed.getLastOffset());
+                List<JsGetUpdatesResponse> remaining = updates.subList(half, updates.size());
+                assertEquals(remaining.size(), resumed.appendFrom(offset -> offset < store.getLastIngestedOffset() ? remaining : List.of()));
+            }
+            try (UpdateArchive.Reader reader = UpdateArchive.Reader.open(crashed)) {
+                reader.forEachRemaining(update -> {
+                });
+                assertFalse(reader.isTruncated());
+            }
+
+            IntegrationStore replayedStore = new IntegrationStore(TREASURY, 0L);
+            assertEquals(updates.size(), UpdateArchive.replay(crashed, replayedStore));
+            assertEquals(store.toString(), replayedStore.toString());
+        }
+    }
+}
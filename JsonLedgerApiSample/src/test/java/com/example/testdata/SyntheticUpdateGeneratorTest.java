@@ -0,0 +1,47 @@
+package com.example.testdata;
+
+import com.example.GsonTypeAdapters.ExtendedJson;
+import com.example.client.ledger.model.JsGetUpdatesResponse;
+import com.example.store.IntegrationStore;
+import com.example.store.models.TxHistoryEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticUpdateGeneratorTest {
+
+    @Test
+    void testSyntheticUpdatesAreRecognized() throws Exception {
+        Map<SyntheticUpdateGenerator.Scenario, Integer> mix = new HashMap<>(SyntheticUpdateGenerator.Config.DEFAULT_MIX);
+        // bare mints are deliberately unrecognizable
+        mix.remove(SyntheticUpdateGenerator.Scenario.BARE_MINT);
+        SyntheticUpdateGenerator.Config config = new SyntheticUpdateGenerator.Config("treasury::synthetic", 5, 20, 200, mix, 7L);
+        SyntheticUpdateGenerator generator = new SyntheticUpdateGenerator(config, 0L);
+        IntegrationStore store = new IntegrationStore(config.treasuryParty(), 0L);
+        generator.stream(2000).forEach(updateResponse -> store.ingestUpdate(updateResponse.getUpdate()));
+
+        assertEquals(generator.getLastOffset(), store.getLastIngestedOffset());
+        assertEquals(generator.getNumTreasuryHoldings(), store.getActiveHoldings().size());
+        assertFalse(store.getTxHistoryLog().isEmpty());
+        for (TxHistoryEntry entry : store.getTxHistoryLog()) {
+            assertTrue(entry.transfer() != null, () -> "Unrecognized entry: " + entry);
+        }
+
+        // The NDJSON output consists of the same updates
+        StringWriter ndjson = new StringWriter();
+        new SyntheticUpdateGenerator(config, 0L).writeNdjson(ndjson, 10);
+        List<String> lines = ndjson.toString().lines().toList();
+        List<JsGetUpdatesResponse> expected = new SyntheticUpdateGenerator(config, 0L).stream(10).toList();
+        assertEquals(expected.size(), lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(expected.get(i).toJson(), ExtendedJson.gson.fromJson(lines.get(i), JsGetUpdatesResponse.class).toJson());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.tracing;
+
+import com.example.loadtest.LoadDriver;
+import com.example.loadtest.LoadReport;
+import com.example.services.Wallet;
+import com.example.simulator.LedgerSimulator;
+import com.example.simulator.SimulatedLedger;
+import com.example.simulator.SimulatorFixture;
+import com.example.store.IntegrationStore;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.example.simulator.SimulatorFixture.TREASURY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class TransferTracerTest {
+
+    @Test
+    void testTransfersAreTraced(@TempDir Path tempDir) throws Exception {
+        SimulatedLedger ledger = SimulatorFixture.newTreasuryLedger();
+        List<LoadDriver.Sender> senders = LoadDriver.addSimulatedSenders(ledger, 2, 1, new BigDecimal("1000.0"));
+        Path traceFile = tempDir.resolve("traces.ndjson");
+
+        try (LedgerSimulator simulator = LedgerSimulator.start(ledger)) {
+            Wallet wallet = SimulatorFixture.wallet(simulator);
+            try (TransferTracer tracer = new TransferTracer(OtlpJsonExporter.toFile(traceFile, "test"))) {
+                wallet.transferListener = tracer;
+                LoadDriver.Options options = new LoadDriver.Options(2, 2, Duration.ofSeconds(1), new BigDecimal("1.0"), Duration.ofSeconds(10));
+                LoadReport report = new LoadDriver(wallet, ledger.getSynchronizerId(), SimulatorFixture.amulet(ledger), TREASURY, senders, options).run();
+                assertEquals(2, report.getNumSucceeded());
+            }
+        }
+
+        // one trace per transfer, the local sender submits and waits, the external one prepares, signs, executes and awaits the completion
+        Map<String, List<JsonObject>> spansByTrace = readSpansByTrace(traceFile);
+        assertEquals(2, spansByTrace.size());
+        assertEquals(2, spansByTrace.values().stream().map(TransferTracerTest::updateIdOf).filter(Objects::nonNull).count());
+        assertEquals(Set.of(
+                        List.of("transfer", "factory_lookup", "submit_and_wait"),
+                        List.of("transfer", "factory_lookup", "prepare", "sign", "execute", "completion")),
+                spansByTrace.values().stream().map(TransferTracerTest::spanNames).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Test that when the ingestion is traced, each trace ends with the ingestion of its update by the store.
+     */
+    @Test
+    void testIngestionIsTraced(@TempDir Path tempDir) throws Exception {
+        SimulatedLedger ledger = SimulatorFixture.newTreasuryLedger();
+        List<LoadDriver.Sender> senders = LoadDriver.addSimulatedSenders(ledger, 2, 1, new BigDecimal("1000.0"));
+        Path traceFile = tempDir.resolve("traces.ndjson");
+        IntegrationStore store = new IntegrationStore(TREASURY, ledger.getLedgerEnd());
+
+        try (LedgerSimulator simulator = LedgerSimulator.start(ledger)) {
+            Wallet wallet = SimulatorFixture.wallet(simulator);
+            try (TransferTracer tracer = new TransferTracer(OtlpJsonExporter.toFile(traceFile, "test"))) {
+                tracer.traceIngestion(store);
+                wallet.transferListener = tracer;
+                LoadDriver.Options options = new LoadDriver.Options(2, 2, Duration.ofSeconds(1), new BigDecimal("1.0"), Duration.ofSeconds(10));
+                LoadReport report = new LoadDriver(wallet, ledger.getSynchronizerId(), SimulatorFixture.amulet(ledger), TREASURY, senders, options).run();
+                assertEquals(2, report.getNumSucceeded());
+                assertFalse(Files.exists(traceFile) && !Files.readAllLines(traceFile).isEmpty(), "Traces were exported before their ingestion");
+
+                wallet.queryForHoldingTransactions(TREASURY, store.getLastIngestedOffset())
+                        .forEach(updateResponse -> store.ingestUpdate(updateResponse.getUpdate()));
+                // the traces are exported once the tracer saw the ingestion of their updates
+                long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+                while (!(Files.exists(traceFile) && Files.readAllLines(traceFile).size() == 2) && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+            }
+        }
+
+        Map<String, List<JsonObject>> spansByTrace = readSpansByTrace(traceFile);
+        assertEquals(2, spansByTrace.size());
+        assertEquals(Set.of(
+                        List.of("transfer", "factory_lookup", "submit_and_wait", "ingestion"),
+                        List.of("transfer", "factory_lookup", "prepare", "sign", "execute", "completion", "ingestion")),
+                spansByTrace.values().stream().map(TransferTracerTest::spanNames).collect(Collectors.toSet()));
+        Set<String> ingestedUpdateIds = store.getTxHistoryLog().stream().map(entry -> entry.updateMetadata().updateId()).collect(Collectors.toSet());
+        assertEquals(ingestedUpdateIds, spansByTrace.values().stream().map(TransferTracerTest::updateIdOf).collect(Collectors.toSet()));
+    }
+
+    private static Map<String, List<JsonObject>> readSpansByTrace(Path traceFile) throws IOException {
+        Map<String, List<JsonObject>> spansByTrace = new HashMap<>();
+        for (String line : Files.readAllLines(traceFile)) {
+            JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+            JsonArray spans = request.getAsJsonArray("resourceSpans").get(0).getAsJsonObject()
+                    .getAsJsonArray("scopeSpans").get(0).getAsJsonObject().getAsJsonArray("spans");
+            for (JsonElement element : spans) {
+                JsonObject span = element.getAsJsonObject();
+                String traceId = span.get("traceId").getAsString();
+                assertEquals(32, traceId.length());
+                assertEquals(1, span.getAsJsonObject("status").get("code").getAsInt());
+                spansByTrace.computeIfAbsent(traceId, id -> new ArrayList<>()).add(span);
+            }
+        }
+        return spansByTrace;
+    }
+
+    private static List<String> spanNames(List<JsonObject> spans) {
+        return spans.stream().map(span -> span.get("name").getAsString()).toList();
+    }
+
+    // The update.id attribute of the root span of the trace
+    private static String updateIdOf(List<JsonObject> spans) {
+        for (JsonElement attribute : spans.get(0).getAsJsonArray("attributes")) {
+            if (attribute.getAsJsonObject().get("key").getAsString().equals("update.id")) {
+                return attribute.getAsJsonObject().getAsJsonObject("value").get("stringValue").getAsString();
+            }
+        }
+        return null;
+    }
+}